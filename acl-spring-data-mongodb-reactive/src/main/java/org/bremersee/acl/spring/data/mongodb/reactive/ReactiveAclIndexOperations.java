@@ -0,0 +1,170 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.bremersee.acl.spring.data.mongodb.reactive;
+
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import org.bremersee.acl.annotation.AclHolders;
+import org.bremersee.acl.spring.data.mongodb.AclIndexOperations;
+import org.bremersee.acl.spring.data.mongodb.index.AclIndexStrategy;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.data.mongodb.core.index.IndexDefinition;
+import org.springframework.data.mongodb.core.index.IndexInfo;
+import org.springframework.data.mongodb.core.index.ReactiveIndexOperations;
+import org.springframework.util.Assert;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * The reactive acl index operations reconcile the acl indexes of a collection like the
+ * {@link AclIndexOperations}, but without blocking.
+ *
+ * @author Christian Bremer
+ */
+public class ReactiveAclIndexOperations {
+
+  private final ReactiveMongoOperations mongoOperations;
+
+  /**
+   * Instantiates new reactive acl index operations.
+   *
+   * @param mongoOperations the reactive mongo operations
+   */
+  public ReactiveAclIndexOperations(ReactiveMongoOperations mongoOperations) {
+    Assert.notNull(mongoOperations, "Reactive mongo operations must be present.");
+    this.mongoOperations = mongoOperations;
+  }
+
+  /**
+   * Gets acl index info.
+   *
+   * @param entityClass the entity class
+   * @return the acl index info
+   */
+  public Flux<IndexInfo> getAclIndexInfo(Class<?> entityClass) {
+    Assert.notNull(entityClass, "Entity class must be present.");
+    return getAclIndexInfo(
+        mongoOperations.indexOps(entityClass), AclHolders.getAclPath(entityClass), false);
+  }
+
+  /**
+   * Gets acl index info.
+   *
+   * @param collectionName the collection name
+   * @param aclPath the acl path
+   * @return the acl index info
+   */
+  public Flux<IndexInfo> getAclIndexInfo(String collectionName, String aclPath) {
+    Assert.hasLength(collectionName, "Collection name must be present.");
+    return getAclIndexInfo(mongoOperations.indexOps(collectionName.trim()), aclPath, false);
+  }
+
+  private Flux<IndexInfo> getAclIndexInfo(
+      ReactiveIndexOperations indexOps,
+      String aclPath,
+      boolean matchFields) {
+
+    return indexOps.getIndexInfo()
+        .filter(indexInfo -> AclIndexOperations.isAclIndex(indexInfo, aclPath, matchFields));
+  }
+
+  /**
+   * Ensure acl indexes of the given index strategy.
+   *
+   * @param entityClass the entity class
+   * @param possiblePermissions the possible permissions
+   * @param indexStrategy the index strategy
+   * @param dropOtherAclIndexes specifies whether acl indexes, that are not defined by the index
+   *     strategy, should be dropped; acl indexes are determined by name and by fields (see
+   *     {@link AclIndexOperations#isAclIndex(IndexInfo, String, boolean)}), so compound indexes,
+   *     that contain an acl field, are dropped, too
+   * @return the names of the ensured indexes
+   */
+  public Flux<String> ensureAclIndexes(
+      Class<?> entityClass,
+      Collection<String> possiblePermissions,
+      AclIndexStrategy indexStrategy,
+      boolean dropOtherAclIndexes) {
+
+    Assert.notNull(entityClass, "Entity class must be present.");
+    return ensureAclIndexes(
+        mongoOperations.indexOps(entityClass),
+        AclHolders.getAclPath(entityClass),
+        possiblePermissions,
+        indexStrategy,
+        dropOtherAclIndexes);
+  }
+
+  /**
+   * Ensure acl indexes of the given index strategy.
+   *
+   * @param collectionName the collection name
+   * @param aclPath the acl path
+   * @param possiblePermissions the possible permissions
+   * @param indexStrategy the index strategy
+   * @param dropOtherAclIndexes specifies whether acl indexes, that are not defined by the index
+   *     strategy, should be dropped; acl indexes are determined by name and by fields (see
+   *     {@link AclIndexOperations#isAclIndex(IndexInfo, String, boolean)}), so compound indexes,
+   *     that contain an acl field, are dropped, too
+   * @return the names of the ensured indexes
+   */
+  public Flux<String> ensureAclIndexes(
+      String collectionName,
+      String aclPath,
+      Collection<String> possiblePermissions,
+      AclIndexStrategy indexStrategy,
+      boolean dropOtherAclIndexes) {
+
+    Assert.hasLength(collectionName, "Collection name must be present.");
+    return ensureAclIndexes(
+        mongoOperations.indexOps(collectionName.trim()),
+        aclPath,
+        possiblePermissions,
+        indexStrategy,
+        dropOtherAclIndexes);
+  }
+
+  private Flux<String> ensureAclIndexes(
+      ReactiveIndexOperations indexOps,
+      String aclPath,
+      Collection<String> possiblePermissions,
+      AclIndexStrategy indexStrategy,
+      boolean dropOtherAclIndexes) {
+
+    Assert.notNull(indexStrategy, "Acl index strategy must be present.");
+    List<IndexDefinition> indexDefinitions = indexStrategy
+        .getIndexDefinitions(aclPath, possiblePermissions);
+    Mono<Void> drop = Mono.empty();
+    if (dropOtherAclIndexes) {
+      Set<String> indexNames = indexDefinitions.stream()
+          .map(AclIndexOperations::getIndexName)
+          .collect(Collectors.toSet());
+      drop = getAclIndexInfo(indexOps, aclPath, true)
+          .map(IndexInfo::getName)
+          .filter(indexName -> !indexNames.contains(indexName))
+          .concatMap(indexOps::dropIndex)
+          .then();
+    }
+    return drop.thenMany(Flux.fromIterable(indexDefinitions)
+        .concatMap(indexOps::ensureIndex));
+  }
+
+
+}
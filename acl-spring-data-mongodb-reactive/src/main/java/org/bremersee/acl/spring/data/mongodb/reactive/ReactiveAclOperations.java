@@ -0,0 +1,283 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.bremersee.acl.spring.data.mongodb.reactive;
+
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+
+import java.util.Collection;
+import java.util.List;
+import org.bremersee.acl.AccessEvaluation;
+import org.bremersee.acl.Acl;
+import org.bremersee.acl.AclUserContext;
+import org.bremersee.acl.model.AccessControlListModifications;
+import org.bremersee.acl.spring.data.mongodb.AclCriteriaAndUpdateBuilder;
+import org.bson.Document;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoOperations;
+import org.springframework.data.mongodb.core.query.BasicQuery;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Meta;
+import org.springframework.data.mongodb.core.query.Meta.CursorOption;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.UpdateDefinition;
+import org.springframework.util.Assert;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * The reactive acl operations find documents, that a user can access, and modify, replace or
+ * change the owner of their access control lists with the criteria and updates of the
+ * {@link AclCriteriaAndUpdateBuilder}.
+ *
+ * <p>The found documents are streamed from the cursor of MongoDB with the demand of the
+ * subscriber, so a slow subscriber doesn't cause the whole result to be buffered. The batch size
+ * of the cursor can be limited in addition.
+ *
+ * @author Christian Bremer
+ */
+public class ReactiveAclOperations {
+
+  private final ReactiveMongoOperations mongoOperations;
+
+  private final AclCriteriaAndUpdateBuilder builder;
+
+  /**
+   * Instantiates new reactive acl operations.
+   *
+   * @param mongoOperations the reactive mongo operations
+   * @param builder the acl criteria and update builder
+   */
+  public ReactiveAclOperations(
+      ReactiveMongoOperations mongoOperations,
+      AclCriteriaAndUpdateBuilder builder) {
+
+    Assert.notNull(mongoOperations, "Reactive mongo operations must be present.");
+    Assert.notNull(builder, "Acl criteria and update builder must be present.");
+    this.mongoOperations = mongoOperations;
+    this.builder = builder;
+  }
+
+  /**
+   * Finds the documents of the query, that the user can access.
+   *
+   * @param <T> the type of the entity
+   * @param entityClass the entity class
+   * @param query the query
+   * @param userContext the user context
+   * @param accessEvaluation the access evaluation
+   * @param permissions the permissions
+   * @return the accessible documents
+   */
+  public <T> Flux<T> find(
+      Class<T> entityClass,
+      Query query,
+      AclUserContext userContext,
+      AccessEvaluation accessEvaluation,
+      Collection<String> permissions) {
+
+    return find(entityClass, query, userContext, accessEvaluation, permissions, 0);
+  }
+
+  /**
+   * Finds the documents of the query, that the user can access.
+   *
+   * @param <T> the type of the entity
+   * @param entityClass the entity class
+   * @param query the query; its filter, fields, sort, skip, limit, hint, meta and collation are
+   *     used, without a collation the collation of the index strategy is used
+   * @param userContext the user context
+   * @param accessEvaluation the access evaluation
+   * @param permissions the permissions
+   * @param batchSize the maximum number of documents, that are fetched from the cursor at once;
+   *     zero means the default of MongoDB
+   * @return the accessible documents
+   */
+  public <T> Flux<T> find(
+      Class<T> entityClass,
+      Query query,
+      AclUserContext userContext,
+      AccessEvaluation accessEvaluation,
+      Collection<String> permissions,
+      int batchSize) {
+
+    Assert.notNull(entityClass, "Entity class must be present.");
+    Assert.isTrue(batchSize >= 0, "Batch size must not be negative.");
+    Document permissionObject = builder
+        .buildPermissionCriteria(userContext, accessEvaluation, permissions)
+        .getCriteriaObject();
+    Query sourceQuery = isNull(query) ? new Query() : query;
+    Document queryObject = sourceQuery.getQueryObject();
+    BasicQuery aclQuery = new BasicQuery(
+        queryObject.isEmpty()
+            ? permissionObject
+            : new Document("$and", List.of(queryObject, permissionObject)),
+        sourceQuery.getFieldsObject());
+    aclQuery.setSortObject(sourceQuery.getSortObject());
+    aclQuery.skip(sourceQuery.getSkip());
+    aclQuery.limit(sourceQuery.getLimit());
+    aclQuery.collation(sourceQuery.getCollation().or(builder::getCollation).orElse(null));
+    if (nonNull(sourceQuery.getHint())) {
+      aclQuery.withHint(sourceQuery.getHint());
+    }
+    copyMeta(sourceQuery.getMeta(), aclQuery);
+    if (batchSize > 0) {
+      aclQuery.cursorBatchSize(batchSize);
+    }
+    return mongoOperations.find(aclQuery, entityClass);
+  }
+
+  // the meta of the source query is copied, because the batch size must not change it
+  private static void copyMeta(Meta meta, Query target) {
+    if (nonNull(meta.getMaxTimeMsec())) {
+      target.maxTimeMsec(meta.getMaxTimeMsec());
+    }
+    if (nonNull(meta.getComment())) {
+      target.comment(meta.getComment());
+    }
+    if (nonNull(meta.getCursorBatchSize())) {
+      target.cursorBatchSize(meta.getCursorBatchSize());
+    }
+    if (nonNull(meta.getAllowDiskUse())) {
+      target.allowDiskUse(meta.getAllowDiskUse());
+    }
+    if (meta.getFlags().contains(CursorOption.NO_TIMEOUT)) {
+      target.noCursorTimeout();
+    }
+    if (meta.getFlags().contains(CursorOption.EXHAUST)) {
+      target.exhaust();
+    }
+    if (meta.getFlags().contains(CursorOption.SECONDARY_READS)) {
+      target.allowSecondaryReads();
+    }
+    if (meta.getFlags().contains(CursorOption.PARTIAL)) {
+      target.partialResults();
+    }
+  }
+
+  /**
+   * Modifies the access control list of the document, that matches the given criteria, if the
+   * user has the given permissions.
+   *
+   * @param <T> the type of the entity
+   * @param entityClass the entity class
+   * @param criteria the criteria
+   * @param modifications the modifications
+   * @param userContext the user context
+   * @param accessEvaluation the access evaluation
+   * @param permissions the permissions, that are required to modify the access control list
+   * @return the modified document or empty, if there is no such document or the user has not
+   *     the required permissions; if there are no modifications, the document is returned
+   *     unchanged
+   */
+  public <T> Mono<T> modifyAcl(
+      Class<T> entityClass,
+      Criteria criteria,
+      AccessControlListModifications modifications,
+      AclUserContext userContext,
+      AccessEvaluation accessEvaluation,
+      Collection<String> permissions) {
+
+    Criteria accessCriteria = builder
+        .buildPermissionCriteria(userContext, accessEvaluation, permissions);
+    return builder.buildPipelineUpdate(modifications)
+        .map(update -> findAndModify(entityClass, criteria, accessCriteria, update))
+        .orElseGet(() -> findOne(entityClass, criteria, accessCriteria));
+  }
+
+  /**
+   * Replaces the access control list of the document, that matches the given criteria, if the
+   * user has the given permissions.
+   *
+   * @param <T> the type of the entity
+   * @param entityClass the entity class
+   * @param criteria the criteria
+   * @param newAcl the new access control list
+   * @param userContext the user context
+   * @param accessEvaluation the access evaluation
+   * @param permissions the permissions, that are required to replace the access control list
+   * @return the modified document or empty, if there is no such document or the user has not
+   *     the required permissions
+   */
+  public <T> Mono<T> replaceAcl(
+      Class<T> entityClass,
+      Criteria criteria,
+      Acl newAcl,
+      AclUserContext userContext,
+      AccessEvaluation accessEvaluation,
+      Collection<String> permissions) {
+
+    return findAndModify(
+        entityClass,
+        criteria,
+        builder.buildPermissionCriteria(userContext, accessEvaluation, permissions),
+        builder.buildUpdate(newAcl));
+  }
+
+  /**
+   * Changes the owner of the document, that matches the given criteria, if the user is the
+   * owner.
+   *
+   * @param <T> the type of the entity
+   * @param entityClass the entity class
+   * @param criteria the criteria
+   * @param userContext the user context
+   * @param newOwner the new owner
+   * @return the modified document or empty, if there is no such document or the user is not
+   *     allowed to change the owner
+   */
+  public <T> Mono<T> changeOwner(
+      Class<T> entityClass,
+      Criteria criteria,
+      AclUserContext userContext,
+      String newOwner) {
+
+    return findAndModify(
+        entityClass,
+        criteria,
+        builder.buildUpdateOwnerCriteria(userContext),
+        builder.buildUpdate(newOwner));
+  }
+
+  private <T> Mono<T> findAndModify(
+      Class<T> entityClass,
+      Criteria criteria,
+      Criteria accessCriteria,
+      UpdateDefinition update) {
+
+    Assert.notNull(entityClass, "Entity class must be present.");
+    Assert.notNull(criteria, "Criteria must be present.");
+    Query query = builder
+        .applyCollation(Query.query(new Criteria().andOperator(accessCriteria, criteria)));
+    FindAndModifyOptions options = new FindAndModifyOptions()
+        .returnNew(true);
+    return mongoOperations.findAndModify(query, update, options, entityClass);
+  }
+
+  private <T> Mono<T> findOne(
+      Class<T> entityClass,
+      Criteria criteria,
+      Criteria accessCriteria) {
+
+    Assert.notNull(entityClass, "Entity class must be present.");
+    Assert.notNull(criteria, "Criteria must be present.");
+    Query query = builder
+        .applyCollation(Query.query(new Criteria().andOperator(accessCriteria, criteria)));
+    return mongoOperations.findOne(query, entityClass);
+  }
+
+}
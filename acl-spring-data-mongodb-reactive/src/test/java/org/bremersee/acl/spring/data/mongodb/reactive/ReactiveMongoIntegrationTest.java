@@ -0,0 +1,214 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.bremersee.acl.spring.data.mongodb.reactive;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.bremersee.acl.AccessEvaluation;
+import org.bremersee.acl.Acl;
+import org.bremersee.acl.AclUserContext;
+import org.bremersee.acl.PermissionConstants;
+import org.bremersee.acl.model.AccessControlEntryModifications;
+import org.bremersee.acl.model.AccessControlListModifications;
+import org.bremersee.acl.spring.data.mongodb.AclCriteriaAndUpdateBuilder;
+import org.bremersee.acl.spring.data.mongodb.index.AclIndexStrategy;
+import org.bremersee.acl.spring.data.mongodb.reactive.app.ExampleConfiguration;
+import org.bremersee.acl.spring.data.mongodb.reactive.app.ExampleEntity;
+import org.junit.jupiter.api.MethodOrderer;
+import org.junit.jupiter.api.Order;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestMethodOrder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexInfo;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.testcontainers.containers.MongoDBContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+/**
+ * The reactive mongo integration test.
+ *
+ * @author Christian Bremer
+ */
+@Testcontainers
+@SpringBootTest(
+    classes = {ExampleConfiguration.class},
+    webEnvironment = WebEnvironment.NONE)
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+public class ReactiveMongoIntegrationTest {
+
+  @Container
+  @ServiceConnection
+  static MongoDBContainer mongoDBContainer = new MongoDBContainer(DockerImageName
+      .parse("mongo:6.0"));
+
+  /**
+   * The reactive mongo template.
+   */
+  @SuppressWarnings("SpringJavaInjectionPointsAutowiringInspection")
+  @Autowired
+  ReactiveMongoTemplate mongoTemplate;
+
+  /**
+   * Ensure acl indexes.
+   */
+  @Order(10)
+  @Test
+  void ensureAclIndexes() {
+    ReactiveAclIndexOperations indexOperations = new ReactiveAclIndexOperations(mongoTemplate);
+    StepVerifier
+        .create(indexOperations.ensureAclIndexes(
+            ExampleEntity.class,
+            PermissionConstants.getAll(),
+            AclIndexStrategy.singleField(),
+            false))
+        .expectNextCount(PermissionConstants.getAll().size() * 4L + 1L)
+        .verifyComplete();
+
+    StepVerifier
+        .create(indexOperations.ensureAclIndexes(
+                ExampleEntity.class,
+                List.of(PermissionConstants.READ),
+                AclIndexStrategy.wildcard(),
+                true)
+            .thenMany(indexOperations.getAclIndexInfo(ExampleEntity.class))
+            .map(IndexInfo::getName)
+            .collectList())
+        .assertNext(indexNames -> assertThat(indexNames)
+            .hasSize(2))
+        .verifyComplete();
+  }
+
+  /**
+   * Find, modify, replace and change owner.
+   */
+  @Order(100)
+  @Test
+  void findModifyReplaceAndChangeOwner() {
+    String content = UUID.randomUUID().toString();
+    List<ExampleEntity> entities = IntStream.range(0, 10)
+        .mapToObj(i -> {
+          ExampleEntity entity = new ExampleEntity();
+          entity.setAcl(Acl.builder()
+              .owner("junit")
+              .addUsers(PermissionConstants.READ, i % 2 == 0 ? List.of("anna") : List.of())
+              .build());
+          entity.setOtherContent(content);
+          return entity;
+        })
+        .collect(Collectors.toList());
+    StepVerifier
+        .create(mongoTemplate.insertAll(entities))
+        .expectNextCount(10L)
+        .verifyComplete();
+
+    ReactiveAclOperations aclOperations = new ReactiveAclOperations(
+        mongoTemplate,
+        new AclCriteriaAndUpdateBuilder(ExampleEntity.class));
+    AclUserContext anna = AclUserContext.builder().name("anna").build();
+    Query query = Query.query(Criteria.where(ExampleEntity.OTHER_CONTENT).is(content))
+        .with(Sort.by("_id"));
+    Flux<ExampleEntity> found = aclOperations.find(
+        ExampleEntity.class,
+        query,
+        anna,
+        AccessEvaluation.ANY_PERMISSION,
+        List.of(PermissionConstants.READ),
+        2);
+    StepVerifier
+        .create(found, 1L)
+        .expectNextCount(1L)
+        .thenRequest(4L)
+        .expectNextCount(4L)
+        .verifyComplete();
+
+    // the hint of the query is used, so an unknown index fails
+    Query hintedQuery = Query.query(Criteria.where(ExampleEntity.OTHER_CONTENT).is(content))
+        .withHint("unknown_index");
+    StepVerifier
+        .create(aclOperations.find(
+            ExampleEntity.class,
+            hintedQuery,
+            anna,
+            AccessEvaluation.ANY_PERMISSION,
+            List.of(PermissionConstants.READ)))
+        .expectError()
+        .verify();
+    StepVerifier
+        .create(aclOperations.find(
+            ExampleEntity.class,
+            Query.query(Criteria.where(ExampleEntity.OTHER_CONTENT).is(content))
+                .withHint("_id_")
+                .limit(2),
+            anna,
+            AccessEvaluation.ANY_PERMISSION,
+            List.of(PermissionConstants.READ)))
+        .expectNextCount(2L)
+        .verifyComplete();
+
+    String id = entities.get(1).getId();
+    StepVerifier
+        .create(aclOperations.modifyAcl(
+            ExampleEntity.class,
+            Criteria.where("_id").is(id),
+            AccessControlListModifications.builder()
+                .modifications(List.of(AccessControlEntryModifications.builder()
+                    .permission(PermissionConstants.READ)
+                    .addAddUsers("anna")
+                    .build()))
+                .build(),
+            AclUserContext.builder().name("junit").build(),
+            AccessEvaluation.ALL_PERMISSIONS,
+            List.of(PermissionConstants.ADMINISTRATION)))
+        .expectNextMatches(entity -> entity.getAcl().getPermissionMap()
+            .get(PermissionConstants.READ).getUsers().contains("anna"))
+        .verifyComplete();
+
+    StepVerifier
+        .create(aclOperations.replaceAcl(
+            ExampleEntity.class,
+            Criteria.where("_id").is(id),
+            Acl.builder().owner("anna").build(),
+            anna,
+            AccessEvaluation.ALL_PERMISSIONS,
+            List.of(PermissionConstants.ADMINISTRATION)))
+        .verifyComplete();
+
+    StepVerifier
+        .create(aclOperations.changeOwner(
+            ExampleEntity.class,
+            Criteria.where("_id").is(id),
+            AclUserContext.builder().name("junit").build(),
+            "anna"))
+        .expectNextMatches(entity -> "anna".equals(entity.getAcl().getOwner()))
+        .verifyComplete();
+  }
+
+}
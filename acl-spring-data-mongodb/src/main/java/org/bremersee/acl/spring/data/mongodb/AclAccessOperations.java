@@ -0,0 +1,497 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.bremersee.acl.spring.data.mongodb;
+
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import org.bremersee.acl.AccessEvaluation;
+import org.bremersee.acl.AclUserContext;
+import org.bson.Document;
+import org.bson.json.JsonMode;
+import org.bson.json.JsonParseException;
+import org.bson.json.JsonWriterSettings;
+import org.bson.types.ObjectId;
+import org.springframework.data.domain.Sort.Direction;
+import org.springframework.data.mongodb.core.ExecutableFindOperation.FindWithQuery;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationResults;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.IndexDefinition;
+import org.springframework.data.mongodb.core.query.BasicQuery;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.util.Assert;
+
+/**
+ * The acl access operations check the access of a user to many documents at once.
+ *
+ * <p>The ids are combined with the permission criteria of the {@link AclCriteriaAndUpdateBuilder}
+ * and only the ids of the accessible documents are read, so the documents are selected by the id
+ * index and the access control lists are never transferred. Large lists of ids are split into
+ * chunks, every chunk is checked with one query.
+ *
+ * <p>The documents, that a user can access, can be read page by page with keyset pagination:
+ * instead of skipping the documents of the previous pages, the permission criteria are combined
+ * with a condition on the sort keys, which selects only the documents after the last document of
+ * the previous page. The sort keys of this document are passed as opaque continuation token, so
+ * that a deep page costs about the same as the first one, if an index matches the sort (see
+ * {@link #buildKeysetIndex(Query)}).
+ *
+ * <p>The number of accessible documents per permission is counted with one aggregation, whose
+ * first stage selects the documents with the acl indexes.
+ *
+ * @author Christian Bremer
+ */
+public class AclAccessOperations {
+
+  /**
+   * The default chunk size.
+   */
+  public static final int DEFAULT_CHUNK_SIZE = 1000;
+
+  private static final String ID = "_id";
+
+  private static final String TOKEN_SORT = "s";
+
+  private static final String TOKEN_VALUES = "v";
+
+  private static final JsonWriterSettings TOKEN_SETTINGS = JsonWriterSettings.builder()
+      .outputMode(JsonMode.EXTENDED)
+      .build();
+
+  private final MongoOperations mongoOperations;
+
+  private final AclCriteriaAndUpdateBuilder builder;
+
+  private final int chunkSize;
+
+  /**
+   * Instantiates new acl access operations.
+   *
+   * @param mongoOperations the mongo operations
+   * @param builder the acl criteria and update builder
+   */
+  public AclAccessOperations(
+      MongoOperations mongoOperations,
+      AclCriteriaAndUpdateBuilder builder) {
+
+    this(mongoOperations, builder, DEFAULT_CHUNK_SIZE);
+  }
+
+  /**
+   * Instantiates new acl access operations.
+   *
+   * @param mongoOperations the mongo operations
+   * @param builder the acl criteria and update builder
+   * @param chunkSize the maximum number of ids, that are checked with one query
+   */
+  public AclAccessOperations(
+      MongoOperations mongoOperations,
+      AclCriteriaAndUpdateBuilder builder,
+      int chunkSize) {
+
+    Assert.notNull(mongoOperations, "Mongo operations must be present.");
+    Assert.notNull(builder, "Acl criteria and update builder must be present.");
+    if (chunkSize < 1) {
+      throw new IllegalArgumentException("Chunk size must be greater than zero.");
+    }
+    this.mongoOperations = mongoOperations;
+    this.builder = builder;
+    this.chunkSize = chunkSize;
+  }
+
+  /**
+   * Finds the ids of the documents, that the user can access.
+   *
+   * @param <T> the type of the ids
+   * @param entityClass the entity class
+   * @param ids the ids
+   * @param userContext the user context
+   * @param accessEvaluation the access evaluation
+   * @param permissions the permissions
+   * @return the accessible ids in the order of the given ids
+   */
+  public <T> List<T> findAccessibleIds(
+      Class<?> entityClass,
+      Collection<T> ids,
+      AclUserContext userContext,
+      AccessEvaluation accessEvaluation,
+      Collection<String> permissions) {
+
+    Assert.notNull(entityClass, "Entity class must be present.");
+    return findAccessibleIds(
+        mongoOperations.query(entityClass).as(Document.class),
+        ids, userContext, accessEvaluation, permissions);
+  }
+
+  /**
+   * Finds the ids of the documents, that the user can access.
+   *
+   * @param <T> the type of the ids
+   * @param collectionName the collection name
+   * @param ids the ids
+   * @param userContext the user context
+   * @param accessEvaluation the access evaluation
+   * @param permissions the permissions
+   * @return the accessible ids in the order of the given ids
+   */
+  public <T> List<T> findAccessibleIds(
+      String collectionName,
+      Collection<T> ids,
+      AclUserContext userContext,
+      AccessEvaluation accessEvaluation,
+      Collection<String> permissions) {
+
+    Assert.hasText(collectionName, "Collection name must be present.");
+    return findAccessibleIds(
+        mongoOperations.query(Document.class).inCollection(collectionName),
+        ids, userContext, accessEvaluation, permissions);
+  }
+
+  private <T> List<T> findAccessibleIds(
+      FindWithQuery<Document> find,
+      Collection<T> ids,
+      AclUserContext userContext,
+      AccessEvaluation accessEvaluation,
+      Collection<String> permissions) {
+
+    Assert.notNull(ids, "Ids must be present.");
+    Criteria permissionCriteria = builder
+        .buildPermissionCriteria(userContext, accessEvaluation, permissions);
+    List<T> distinctIds = new ArrayList<>(new LinkedHashSet<>(ids));
+    List<T> accessibleIds = new ArrayList<>();
+    for (int i = 0; i < distinctIds.size(); i += chunkSize) {
+      List<T> chunk = distinctIds.subList(i, Math.min(i + chunkSize, distinctIds.size()));
+      Query query = builder.applyCollation(Query.query(new Criteria()
+          .andOperator(Criteria.where(ID).in(chunk), permissionCriteria)));
+      query.fields().include(ID);
+      Set<Object> foundIds = new HashSet<>();
+      find.matching(query).all().forEach(document -> foundIds.add(document.get(ID)));
+      for (T id : chunk) {
+        if (isFound(id, foundIds)) {
+          accessibleIds.add(id);
+        }
+      }
+    }
+    return accessibleIds;
+  }
+
+  private static boolean isFound(Object id, Set<Object> foundIds) {
+    if (foundIds.contains(id)) {
+      return true;
+    }
+    // string ids of entities are stored as object ids, if they are valid object ids
+    return id instanceof String
+        && ObjectId.isValid((String) id)
+        && foundIds.contains(new ObjectId((String) id));
+  }
+
+  /**
+   * Counts the documents, that match the given criteria, per permission, that the user holds.
+   * All permissions are counted in one pass by one aggregation (see
+   * {@link AclAggregationBuilder#buildPermissionCountAggregation(Criteria, AclUserContext,
+   * Collection)}).
+   *
+   * @param entityClass the entity class
+   * @param criteria the criteria (can be {@code null})
+   * @param userContext the user context
+   * @param permissions the permissions
+   * @return the number of accessible documents per permission in the order of the given
+   *     permissions
+   */
+  public Map<String, Long> countByPermission(
+      Class<?> entityClass,
+      Criteria criteria,
+      AclUserContext userContext,
+      Collection<String> permissions) {
+
+    Assert.notNull(entityClass, "Entity class must be present.");
+    return countByPermission(
+        aggregation -> mongoOperations.aggregate(aggregation, entityClass, Document.class),
+        criteria, userContext, permissions);
+  }
+
+  /**
+   * Counts the documents, that match the given criteria, per permission, that the user holds.
+   * All permissions are counted in one pass by one aggregation (see
+   * {@link AclAggregationBuilder#buildPermissionCountAggregation(Criteria, AclUserContext,
+   * Collection)}).
+   *
+   * @param collectionName the collection name
+   * @param criteria the criteria (can be {@code null})
+   * @param userContext the user context
+   * @param permissions the permissions
+   * @return the number of accessible documents per permission in the order of the given
+   *     permissions
+   */
+  public Map<String, Long> countByPermission(
+      String collectionName,
+      Criteria criteria,
+      AclUserContext userContext,
+      Collection<String> permissions) {
+
+    Assert.hasText(collectionName, "Collection name must be present.");
+    return countByPermission(
+        aggregation -> mongoOperations.aggregate(aggregation, collectionName, Document.class),
+        criteria, userContext, permissions);
+  }
+
+  private Map<String, Long> countByPermission(
+      Function<Aggregation, AggregationResults<Document>> aggregate,
+      Criteria criteria,
+      AclUserContext userContext,
+      Collection<String> permissions) {
+
+    Map<String, Long> counts = new LinkedHashMap<>();
+    if (isNull(permissions) || permissions.isEmpty()) {
+      return counts;
+    }
+    permissions.forEach(permission -> counts.put(permission, 0L));
+    aggregate
+        .apply(new AclAggregationBuilder(builder)
+            .buildPermissionCountAggregation(criteria, userContext, permissions))
+        .forEach(document -> counts.put(
+            document.getString(ID),
+            ((Number) document.get("count")).longValue()));
+    return counts;
+  }
+
+  /**
+   * Finds a page of the documents of the query, that the user can access.
+   *
+   * @param <T> the type of the entity
+   * @param entityClass the entity class
+   * @param query the query; its filter, fields, sort and collation are used, skip and limit are
+   *     ignored; the sort keys must be field names of the documents and they must be included in
+   *     the fields; the id is always appended as last sort key; documents without a sort value
+   *     come first in ascending and last in descending order
+   * @param userContext the user context
+   * @param accessEvaluation the access evaluation
+   * @param permissions the permissions
+   * @param pageSize the maximum number of documents of the page
+   * @param continuationToken the continuation token of the previous page or {@code null} for the
+   *     first page
+   * @return the page
+   */
+  public <T> AclPage<T> findPage(
+      Class<T> entityClass,
+      Query query,
+      AclUserContext userContext,
+      AccessEvaluation accessEvaluation,
+      Collection<String> permissions,
+      int pageSize,
+      String continuationToken) {
+
+    Assert.notNull(entityClass, "Entity class must be present.");
+    return findPage(
+        mongoOperations.query(entityClass).as(Document.class),
+        document -> mongoOperations.getConverter().read(entityClass, document),
+        query, userContext, accessEvaluation, permissions, pageSize, continuationToken);
+  }
+
+  /**
+   * Finds a page of the documents of the query, that the user can access.
+   *
+   * @param collectionName the collection name
+   * @param query the query; its filter, fields, sort and collation are used, skip and limit are
+   *     ignored; the sort keys must be included in the fields; the id is always appended as last
+   *     sort key; documents without a sort value come first in ascending and last in descending
+   *     order
+   * @param userContext the user context
+   * @param accessEvaluation the access evaluation
+   * @param permissions the permissions
+   * @param pageSize the maximum number of documents of the page
+   * @param continuationToken the continuation token of the previous page or {@code null} for the
+   *     first page
+   * @return the page
+   */
+  public AclPage<Document> findPage(
+      String collectionName,
+      Query query,
+      AclUserContext userContext,
+      AccessEvaluation accessEvaluation,
+      Collection<String> permissions,
+      int pageSize,
+      String continuationToken) {
+
+    Assert.hasText(collectionName, "Collection name must be present.");
+    return findPage(
+        mongoOperations.query(Document.class).inCollection(collectionName),
+        Function.identity(),
+        query, userContext, accessEvaluation, permissions, pageSize, continuationToken);
+  }
+
+  private <T> AclPage<T> findPage(
+      FindWithQuery<Document> find,
+      Function<Document, T> reader,
+      Query query,
+      AclUserContext userContext,
+      AccessEvaluation accessEvaluation,
+      Collection<String> permissions,
+      int pageSize,
+      String continuationToken) {
+
+    if (pageSize < 1) {
+      throw new IllegalArgumentException("Page size must be greater than zero.");
+    }
+    Query sourceQuery = isNull(query) ? new Query() : query;
+    Document sort = getKeysetSort(sourceQuery);
+    List<Document> filters = new ArrayList<>();
+    if (!sourceQuery.getQueryObject().isEmpty()) {
+      filters.add(sourceQuery.getQueryObject());
+    }
+    filters.add(builder
+        .buildPermissionCriteria(userContext, accessEvaluation, permissions)
+        .getCriteriaObject());
+    if (nonNull(continuationToken)) {
+      filters.add(buildKeysetFilter(sort, decodeToken(continuationToken, sort)));
+    }
+    BasicQuery pageQuery = new BasicQuery(
+        filters.size() == 1 ? filters.get(0) : new Document("$and", filters),
+        sourceQuery.getFieldsObject());
+    pageQuery.setSortObject(sort);
+    pageQuery.limit(pageSize + 1);
+    pageQuery.collation(sourceQuery.getCollation().or(builder::getCollation).orElse(null));
+
+    List<Document> documents = find.matching(pageQuery).all();
+    boolean hasNext = documents.size() > pageSize;
+    List<Document> content = hasNext ? documents.subList(0, pageSize) : documents;
+    return AclPage.<T>builder()
+        .content(content.stream().map(reader).collect(Collectors.toList()))
+        .continuationToken(hasNext
+            ? Optional.of(encodeToken(sort, content.get(content.size() - 1)))
+            : Optional.empty())
+        .build();
+  }
+
+  /**
+   * Builds the index, that matches the sort of the keyset pagination of the given query. The
+   * permission criteria are evaluated on the documents of this index in sort order, so the
+   * documents of a page are found without sorting in memory.
+   *
+   * @param query the query
+   * @return the index definition
+   */
+  public static IndexDefinition buildKeysetIndex(Query query) {
+    Index index = new Index();
+    getKeysetSort(isNull(query) ? new Query() : query)
+        .forEach((key, direction) -> index
+            .on(key, ((Number) direction).intValue() < 0 ? Direction.DESC : Direction.ASC));
+    return index;
+  }
+
+  private static Document getKeysetSort(Query query) {
+    Document sort = new Document();
+    for (Map.Entry<String, Object> entry : query.getSortObject().entrySet()) {
+      if (!(entry.getValue() instanceof Number)) {
+        throw new IllegalArgumentException(String.format(
+            "Sort key %s is not supported by keyset pagination.", entry.getKey()));
+      }
+      sort.put(entry.getKey(), ((Number) entry.getValue()).intValue() < 0 ? -1 : 1);
+    }
+    sort.putIfAbsent(ID, 1);
+    return sort;
+  }
+
+  private static Document buildKeysetFilter(Document sort, List<Object> values) {
+    // (k0 > v0) or (k0 = v0 and k1 > v1) or ...
+    List<String> keys = new ArrayList<>(sort.keySet());
+    List<Document> branches = new ArrayList<>();
+    for (int i = 0; i < keys.size(); i++) {
+      Document after = buildAfterCondition(
+          keys.get(i), sort.getInteger(keys.get(i)) < 0, values.get(i));
+      if (nonNull(after)) {
+        Document branch = new Document();
+        for (int j = 0; j < i; j++) {
+          branch.append(keys.get(j), values.get(j));
+        }
+        branch.putAll(after);
+        branches.add(branch);
+      }
+    }
+    return branches.size() == 1 ? branches.get(0) : new Document("$or", branches);
+  }
+
+  private static Document buildAfterCondition(String key, boolean descending, Object value) {
+    // Null and missing values are equal and sort before all other values. A comparison with
+    // null matches nothing, so they need their own conditions.
+    if (isNull(value)) {
+      return descending ? null : new Document(key, new Document("$ne", null));
+    }
+    if (descending) {
+      return new Document("$or", List.of(
+          new Document(key, new Document("$lt", value)),
+          new Document(key, null)));
+    }
+    return new Document(key, new Document("$gt", value));
+  }
+
+  private static String encodeToken(Document sort, Document lastDocument) {
+    List<Object> values = sort.keySet().stream()
+        .map(key -> getValue(lastDocument, key))
+        .collect(Collectors.toList());
+    String json = new Document(TOKEN_SORT, sort)
+        .append(TOKEN_VALUES, values)
+        .toJson(TOKEN_SETTINGS);
+    return Base64.getUrlEncoder()
+        .withoutPadding()
+        .encodeToString(json.getBytes(StandardCharsets.UTF_8));
+  }
+
+  private static List<Object> decodeToken(String continuationToken, Document sort) {
+    Document token;
+    try {
+      token = Document.parse(new String(
+          Base64.getUrlDecoder().decode(continuationToken),
+          StandardCharsets.UTF_8));
+    } catch (IllegalArgumentException | JsonParseException e) {
+      throw new IllegalArgumentException("Continuation token is invalid.", e);
+    }
+    List<?> values = token.get(TOKEN_VALUES, List.class);
+    if (!sort.equals(token.get(TOKEN_SORT)) || isNull(values) || values.size() != sort.size()) {
+      throw new IllegalArgumentException("Continuation token does not match the sort.");
+    }
+    return new ArrayList<>(values);
+  }
+
+  private static Object getValue(Document document, String key) {
+    Object value = document;
+    for (String name : key.split("\\.")) {
+      if (!(value instanceof Document)) {
+        return null;
+      }
+      value = ((Document) value).get(name);
+    }
+    return value;
+  }
+
+}
@@ -0,0 +1,399 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.bremersee.acl.spring.data.mongodb;
+
+import static org.springframework.util.ObjectUtils.isEmpty;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collectors;
+import org.bremersee.acl.AccessEvaluation;
+import org.bremersee.acl.Ace;
+import org.bremersee.acl.Acl;
+import org.bremersee.acl.AclUserContext;
+import org.bremersee.acl.spring.data.mongodb.index.CaseInsensitiveAclIndexStrategy;
+import org.bson.Document;
+import org.springframework.data.mongodb.core.aggregation.AddFieldsOperation;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationExpression;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOptions;
+import org.springframework.data.mongodb.core.aggregation.UnionWithOperation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.util.Assert;
+
+/**
+ * The acl aggregation builder creates aggregation stages and expressions, that evaluate access
+ * control lists on the server side.
+ *
+ * <p>The permission criteria of the {@link AclCriteriaAndUpdateBuilder} are placed as
+ * {@code $match} in the first stage of the pipeline, so that the acl indexes can be used, before
+ * any other stage is executed (see {@link #buildAggregation(Criteria, AclUserContext,
+ * AccessEvaluation, Collection, boolean, List)}). The accessible documents of other collections
+ * can be added with {@code $unionWith} (see {@link #buildUnionWithStage(String, Criteria,
+ * AclUserContext, AccessEvaluation, Collection, boolean, List)}).
+ *
+ * <p>The names of users, roles and groups are compared like the permission criteria of the
+ * {@link AclCriteriaAndUpdateBuilder}: case-sensitively or, if its index strategy has a
+ * collation, case-insensitively. In the latter case the aggregation must be executed with this
+ * collation (see {@link #buildAggregation(Criteria, AclUserContext, AccessEvaluation,
+ * Collection, boolean, List)}). The owner is always compared case-sensitively.
+ *
+ * @author Christian Bremer
+ */
+public class AclAggregationBuilder {
+
+  private final String aclPath;
+
+  private final AclCriteriaAndUpdateBuilder criteriaBuilder;
+
+  /**
+   * Instantiates a new acl aggregation builder.
+   *
+   * @param aclPath the acl path
+   */
+  public AclAggregationBuilder(String aclPath) {
+    this(new AclCriteriaAndUpdateBuilder(aclPath));
+  }
+
+  /**
+   * Instantiates a new acl aggregation builder.
+   *
+   * @param entityClass the entity class
+   */
+  public AclAggregationBuilder(Class<?> entityClass) {
+    this(new AclCriteriaAndUpdateBuilder(entityClass));
+  }
+
+  /**
+   * Instantiates a new acl aggregation builder.
+   *
+   * @param criteriaBuilder the acl criteria and update builder, that builds the permission
+   *     criteria of the match stage
+   */
+  public AclAggregationBuilder(AclCriteriaAndUpdateBuilder criteriaBuilder) {
+    Assert.notNull(criteriaBuilder, "Acl criteria and update builder must be present.");
+    this.aclPath = criteriaBuilder.getAclPath();
+    this.criteriaBuilder = criteriaBuilder;
+  }
+
+  /**
+   * Build match stage, that selects the documents, which the user can access and which match the
+   * given criteria.
+   *
+   * @param criteria the criteria (can be {@code null})
+   * @param userContext the user context
+   * @param accessEvaluation the access evaluation
+   * @param permissions the permissions
+   * @return the aggregation operation
+   */
+  public AggregationOperation buildMatchStage(
+      Criteria criteria,
+      AclUserContext userContext,
+      AccessEvaluation accessEvaluation,
+      Collection<String> permissions) {
+
+    Criteria permissionCriteria = criteriaBuilder
+        .buildPermissionCriteria(userContext, accessEvaluation, permissions);
+    return Aggregation.match(Objects.isNull(criteria)
+        ? permissionCriteria
+        : new Criteria().andOperator(criteria, permissionCriteria));
+  }
+
+  /**
+   * Build the stages, that select the documents, which the user can access and which match the
+   * given criteria, followed by the given stages.
+   *
+   * @param criteria the criteria (can be {@code null})
+   * @param userContext the user context
+   * @param accessEvaluation the access evaluation
+   * @param permissions the permissions
+   * @param excludeAcl specifies whether the access control list is removed from the documents
+   *     before the given stages
+   * @param stages the stages, that follow the match stage
+   * @return the aggregation operations
+   */
+  public List<AggregationOperation> buildStages(
+      Criteria criteria,
+      AclUserContext userContext,
+      AccessEvaluation accessEvaluation,
+      Collection<String> permissions,
+      boolean excludeAcl,
+      List<? extends AggregationOperation> stages) {
+
+    List<AggregationOperation> operations = new ArrayList<>();
+    operations.add(buildMatchStage(criteria, userContext, accessEvaluation, permissions));
+    if (excludeAcl) {
+      operations.add(buildExcludeAclStage());
+    }
+    if (!isEmpty(stages)) {
+      operations.addAll(stages);
+    }
+    return operations;
+  }
+
+  /**
+   * Build aggregation, that starts with the selection of the documents, which the user can access
+   * and which match the given criteria. If the index strategy has a collation, the aggregation is
+   * executed with it.
+   *
+   * @param criteria the criteria (can be {@code null})
+   * @param userContext the user context
+   * @param accessEvaluation the access evaluation
+   * @param permissions the permissions
+   * @param excludeAcl specifies whether the access control list is removed from the documents
+   *     before the given stages
+   * @param stages the stages, that follow the match stage
+   * @return the aggregation
+   */
+  public Aggregation buildAggregation(
+      Criteria criteria,
+      AclUserContext userContext,
+      AccessEvaluation accessEvaluation,
+      Collection<String> permissions,
+      boolean excludeAcl,
+      List<? extends AggregationOperation> stages) {
+
+    Aggregation aggregation = Aggregation.newAggregation(buildStages(
+        criteria, userContext, accessEvaluation, permissions, excludeAcl, stages));
+    return criteriaBuilder.getCollation()
+        .map(collation -> aggregation
+            .withOptions(AggregationOptions.builder().collation(collation).build()))
+        .orElse(aggregation);
+  }
+
+  /**
+   * Build union with stage, that adds the documents of the given collection, which the user can
+   * access and which match the given criteria, to the documents of the pipeline. The access
+   * control lists of the given collection must be described by this builder, so that every
+   * collection of the union gets its own builder. The sub-pipeline starts with the match stage,
+   * so the acl indexes of the given collection can be used.
+   *
+   * <p>A {@code $unionWith} stage has no collation of its own, the sub-pipeline is always
+   * executed with the collation of the aggregation, that contains the stage. If the index
+   * strategy of this builder has a collation, the stage must therefore be added to an aggregation
+   * with the same collation, otherwise the principals are compared case-sensitively and the
+   * case-insensitive indexes of the given collection are not used.
+   *
+   * @param collectionName the name of the collection to add
+   * @param criteria the criteria (can be {@code null})
+   * @param userContext the user context
+   * @param accessEvaluation the access evaluation
+   * @param permissions the permissions
+   * @param excludeAcl specifies whether the access control list is removed from the documents
+   *     before the given stages
+   * @param stages the stages of the sub-pipeline, that follow the match stage
+   * @return the aggregation operation
+   */
+  public AggregationOperation buildUnionWithStage(
+      String collectionName,
+      Criteria criteria,
+      AclUserContext userContext,
+      AccessEvaluation accessEvaluation,
+      Collection<String> permissions,
+      boolean excludeAcl,
+      List<? extends AggregationOperation> stages) {
+
+    Assert.hasText(collectionName, "Collection name must be present.");
+    return UnionWithOperation.unionWith(collectionName)
+        .pipeline(buildStages(
+            criteria, userContext, accessEvaluation, permissions, excludeAcl, stages));
+  }
+
+  /**
+   * Build effective permissions expression, that computes the permissions of the given ones,
+   * which the user holds. The owner holds all permissions.
+   *
+   * @param userContext the user context
+   * @param permissions the permissions
+   * @return the aggregation expression
+   */
+  public AggregationExpression buildEffectivePermissionsExpression(
+      AclUserContext userContext,
+      Collection<String> permissions) {
+
+    Assert.notNull(userContext, "User context must be present.");
+    List<String> distinctPermissions = isEmpty(permissions)
+        ? List.of()
+        : List.copyOf(new LinkedHashSet<>(permissions));
+    boolean isAnonymous = userContext.getName().isBlank();
+    List<String> roles = distinct(userContext.getRoles());
+    List<String> groups = distinct(userContext.getGroups());
+
+    List<Object> grantedPermissions = new ArrayList<>(distinctPermissions.size());
+    for (String permission : distinctPermissions) {
+      List<Object> conditions = new ArrayList<>();
+      conditions.add(new Document("$eq", List
+          .of(field(Acl.ENTRIES, permission, Ace.GUEST), true)));
+      if (!isAnonymous) {
+        conditions.add(new Document("$in", List.of(
+            new Document("$literal", userContext.getName()),
+            array(Acl.ENTRIES, permission, Ace.USERS))));
+      }
+      if (!roles.isEmpty()) {
+        conditions.add(intersects(array(Acl.ENTRIES, permission, Ace.ROLES), roles));
+      }
+      if (!groups.isEmpty()) {
+        conditions.add(intersects(array(Acl.ENTRIES, permission, Ace.GROUPS), groups));
+      }
+      grantedPermissions.add(new Document("$cond", Arrays.asList(
+          new Document("$or", conditions),
+          new Document("$literal", permission),
+          null)));
+    }
+    // null is an element of the permission list, if the permission is not granted
+    Document entriesPermissions = new Document("$setDifference", List
+        .of(grantedPermissions, Collections.singletonList(null)));
+    Document effectivePermissions = isAnonymous
+        ? entriesPermissions
+        : new Document("$cond", List.of(
+            buildOwnerCondition(userContext.getName()),
+            new Document("$literal", distinctPermissions),
+            entriesPermissions));
+    return context -> effectivePermissions;
+  }
+
+  /**
+   * Build effective permissions stage, that adds the permissions of the given ones, which the user
+   * holds, as array to the given field.
+   *
+   * @param targetField the target field
+   * @param userContext the user context
+   * @param permissions the permissions
+   * @return the aggregation operation
+   */
+  public AggregationOperation buildEffectivePermissionsStage(
+      String targetField,
+      AclUserContext userContext,
+      Collection<String> permissions) {
+
+    Assert.hasText(targetField, "Target field must be present.");
+    return AddFieldsOperation.addField(targetField)
+        .withValueOf(buildEffectivePermissionsExpression(userContext, permissions))
+        .build();
+  }
+
+  /**
+   * Build exclude acl stage, that removes the access control list from the documents.
+   *
+   * @return the aggregation operation
+   */
+  public AggregationOperation buildExcludeAclStage() {
+    return Aggregation.project().andExclude(aclPath);
+  }
+
+  /**
+   * Build effective permissions stages, that add the permissions of the given ones, which the
+   * user holds, as array to the given field and remove the access control list.
+   *
+   * @param targetField the target field
+   * @param userContext the user context
+   * @param permissions the permissions
+   * @return the aggregation operations
+   */
+  public List<AggregationOperation> buildEffectivePermissionsStages(
+      String targetField,
+      AclUserContext userContext,
+      Collection<String> permissions) {
+
+    return List.of(
+        buildEffectivePermissionsStage(targetField, userContext, permissions),
+        buildExcludeAclStage());
+  }
+
+  /**
+   * Build permission count aggregation, that counts in one pass the documents, which match the
+   * given criteria, per permission, that the user holds. The documents are selected by a match
+   * stage with any of the given permissions, so that the acl indexes can be used. The result
+   * contains one document per granted permission with the permission as id and the number of
+   * documents as {@code count}; permissions without any documents are missing.
+   *
+   * @param criteria the criteria (can be {@code null})
+   * @param userContext the user context
+   * @param permissions the permissions
+   * @return the aggregation
+   */
+  public Aggregation buildPermissionCountAggregation(
+      Criteria criteria,
+      AclUserContext userContext,
+      Collection<String> permissions) {
+
+    String permissionsField = "permissions";
+    return buildAggregation(
+        criteria,
+        userContext,
+        AccessEvaluation.ANY_PERMISSION,
+        permissions,
+        false,
+        List.of(
+            Aggregation.project()
+                .andExclude("_id")
+                .and(buildEffectivePermissionsExpression(userContext, permissions))
+                .as(permissionsField),
+            Aggregation.unwind(permissionsField),
+            Aggregation.group(permissionsField).count().as("count")));
+  }
+
+  private Document buildOwnerCondition(String owner) {
+    if (criteriaBuilder.getCollation().isPresent()) {
+      // the collation is ignored by regular expressions, so the owner is compared like in memory
+      return new Document("$regexMatch", new Document("input", field(Acl.OWNER))
+          .append("regex", CaseInsensitiveAclIndexStrategy.toExactPattern(owner)));
+    }
+    return new Document("$eq", List
+        .of(field(Acl.OWNER), new Document("$literal", owner)));
+  }
+
+  private Document intersects(Document array, List<String> values) {
+    return new Document("$gt", List.of(
+        new Document("$size", new Document("$setIntersection", List
+            .of(array, new Document("$literal", values)))),
+        0));
+  }
+
+  private Document array(String... pathSegments) {
+    return new Document("$ifNull", List.of(field(pathSegments), List.of()));
+  }
+
+  private String field(String... pathSegments) {
+    return "$" + path(pathSegments);
+  }
+
+  private String path(String... pathSegments) {
+    if (aclPath.isEmpty()) {
+      return String.join(".", pathSegments);
+    }
+    return aclPath + "." + String.join(".", pathSegments);
+  }
+
+  private static List<String> distinct(Collection<String> values) {
+    if (isEmpty(values)) {
+      return List.of();
+    }
+    return values.stream()
+        .filter(value -> !isEmpty(value))
+        .distinct()
+        .sorted()
+        .collect(Collectors.toList());
+  }
+
+}
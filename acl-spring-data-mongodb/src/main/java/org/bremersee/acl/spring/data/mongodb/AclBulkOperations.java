@@ -0,0 +1,404 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.bremersee.acl.spring.data.mongodb;
+
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.result.UpdateResult;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import org.bremersee.acl.model.AccessControlListModifications;
+import org.bson.Document;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.BulkOperations.BulkMode;
+import org.springframework.data.mongodb.core.ExecutableFindOperation.FindWithQuery;
+import org.springframework.data.mongodb.core.ExecutableUpdateOperation.UpdateWithQuery;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.aggregation.AggregationUpdate;
+import org.springframework.data.mongodb.core.query.BasicQuery;
+import org.springframework.data.mongodb.core.query.Collation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.UpdateDefinition;
+import org.springframework.util.Assert;
+
+/**
+ * The acl bulk operations apply access control list modifications to many documents. The
+ * documents are modified in batches of ids with one atomic pipeline update per document (see
+ * {@link AclCriteriaAndUpdateBuilder#buildPipelineUpdate(AccessControlListModifications)}), so
+ * pipeline updates of MongoDB 4.2 or newer are required. Empty modifications write nothing and
+ * return a completed result without any batch.
+ *
+ * <p>The documents of a query are read in ascending order of their ids, so that every document is
+ * modified only once, even if the modification changes whether it matches the query. An
+ * interrupted modification can be resumed with the last id of the result. The collation of the
+ * query is only used to select the ids, the ids themselves are written without collation, so that
+ * string ids, that differ only in case, are not modified, too.
+ *
+ * @author Christian Bremer
+ */
+public class AclBulkOperations {
+
+  private static final String ID = "_id";
+
+  private final MongoOperations mongoOperations;
+
+  private final AclCriteriaAndUpdateBuilder builder;
+
+  /**
+   * Instantiates new acl bulk operations.
+   *
+   * @param mongoOperations the mongo operations
+   * @param builder the acl criteria and update builder
+   */
+  public AclBulkOperations(
+      MongoOperations mongoOperations,
+      AclCriteriaAndUpdateBuilder builder) {
+
+    Assert.notNull(mongoOperations, "Mongo operations must be present.");
+    Assert.notNull(builder, "Acl criteria and update builder must be present.");
+    this.mongoOperations = mongoOperations;
+    this.builder = builder;
+  }
+
+  /**
+   * Modifies the access control lists of all documents, that match the given query.
+   *
+   * @param entityClass the entity class
+   * @param query the query
+   * @param modifications the modifications
+   * @param options the options
+   * @return the result
+   */
+  public AclBulkResult modify(
+      Class<?> entityClass,
+      Query query,
+      AccessControlListModifications modifications,
+      AclBulkOptions options) {
+
+    Assert.notNull(entityClass, "Entity class must be present.");
+    return modify(new Target(entityClass, null), query, modifications, options);
+  }
+
+  /**
+   * Modifies the access control lists of all documents, that match the given query.
+   *
+   * @param collectionName the collection name
+   * @param query the query
+   * @param modifications the modifications
+   * @param options the options
+   * @return the result
+   */
+  public AclBulkResult modify(
+      String collectionName,
+      Query query,
+      AccessControlListModifications modifications,
+      AclBulkOptions options) {
+
+    Assert.hasText(collectionName, "Collection name must be present.");
+    return modify(new Target(null, collectionName), query, modifications, options);
+  }
+
+  /**
+   * Modifies the access control lists of the documents with the given ids in the given order. If
+   * the id to start after is set (see {@link AclBulkOptions#getStartAfterId()}), it must be one of
+   * the given ids.
+   *
+   * @param entityClass the entity class
+   * @param ids the ids
+   * @param modifications the modifications
+   * @param options the options
+   * @return the result
+   */
+  public AclBulkResult modifyByIds(
+      Class<?> entityClass,
+      Collection<?> ids,
+      AccessControlListModifications modifications,
+      AclBulkOptions options) {
+
+    Assert.notNull(entityClass, "Entity class must be present.");
+    return modifyByIds(new Target(entityClass, null), ids, modifications, options);
+  }
+
+  /**
+   * Modifies the access control lists of the documents with the given ids in the given order. If
+   * the id to start after is set (see {@link AclBulkOptions#getStartAfterId()}), it must be one of
+   * the given ids.
+   *
+   * @param collectionName the collection name
+   * @param ids the ids
+   * @param modifications the modifications
+   * @param options the options
+   * @return the result
+   */
+  public AclBulkResult modifyByIds(
+      String collectionName,
+      Collection<?> ids,
+      AccessControlListModifications modifications,
+      AclBulkOptions options) {
+
+    Assert.hasText(collectionName, "Collection name must be present.");
+    return modifyByIds(new Target(null, collectionName), ids, modifications, options);
+  }
+
+  /**
+   * Applies the given update to all documents, that match the given query, in batches.
+   *
+   * @param entityClass the entity class
+   * @param query the query
+   * @param update the update
+   * @param options the options
+   * @return the result
+   */
+  public AclBulkResult update(
+      Class<?> entityClass,
+      Query query,
+      UpdateDefinition update,
+      AclBulkOptions options) {
+
+    Assert.notNull(entityClass, "Entity class must be present.");
+    return update(new Target(entityClass, null), query, update, options);
+  }
+
+  /**
+   * Applies the given update to all documents, that match the given query, in batches.
+   *
+   * @param collectionName the collection name
+   * @param query the query
+   * @param update the update
+   * @param options the options
+   * @return the result
+   */
+  public AclBulkResult update(
+      String collectionName,
+      Query query,
+      UpdateDefinition update,
+      AclBulkOptions options) {
+
+    Assert.hasText(collectionName, "Collection name must be present.");
+    return update(new Target(null, collectionName), query, update, options);
+  }
+
+  private AclBulkResult modify(
+      Target target,
+      Query query,
+      AccessControlListModifications modifications,
+      AclBulkOptions options) {
+
+    Assert.notNull(query, "Query must be present.");
+    Assert.notNull(options, "Acl bulk options must be present.");
+    return builder.buildPipelineUpdate(modifications)
+        .map(update -> update(target, query, update, options))
+        .orElseGet(() -> unmodified(options));
+  }
+
+  private AclBulkResult update(
+      Target target,
+      Query query,
+      UpdateDefinition update,
+      AclBulkOptions options) {
+
+    Assert.notNull(query, "Query must be present.");
+    Assert.notNull(update, "Update must be present.");
+    Assert.notNull(options, "Acl bulk options must be present.");
+    Document queryObject = query.getQueryObject();
+    Collation collation = query.getCollation().orElse(null);
+    return execute(
+        target,
+        options.getStartAfterId().orElse(null),
+        lastId -> findIds(target, queryObject, collation, lastId, options.getBatchSize()),
+        update,
+        options);
+  }
+
+  private AclBulkResult modifyByIds(
+      Target target,
+      Collection<?> ids,
+      AccessControlListModifications modifications,
+      AclBulkOptions options) {
+
+    Assert.notNull(ids, "Ids must be present.");
+    Assert.notNull(options, "Acl bulk options must be present.");
+    List<Object> idList = new ArrayList<>(ids);
+    int start = options.getStartAfterId()
+        .map(startAfterId -> idList.indexOf(startAfterId) + 1)
+        .orElse(0);
+    Assert.isTrue(
+        options.getStartAfterId().isEmpty() || start > 0,
+        "The id to start after must be one of the given ids.");
+    Optional<AggregationUpdate> update = builder.buildPipelineUpdate(modifications);
+    if (update.isEmpty()) {
+      return unmodified(options);
+    }
+    List<List<Object>> batches = new ArrayList<>();
+    for (int i = start; i < idList.size(); i += options.getBatchSize()) {
+      batches.add(idList.subList(i, Math.min(i + options.getBatchSize(), idList.size())));
+    }
+    Iterator<List<Object>> batchIterator = batches.iterator();
+    return execute(
+        target,
+        options.getStartAfterId().orElse(null),
+        lastId -> batchIterator.hasNext() ? batchIterator.next() : List.of(),
+        update.get(),
+        options);
+  }
+
+  private List<Object> findIds(
+      Target target,
+      Document queryObject,
+      Collation collation,
+      Object lastId,
+      int limit) {
+
+    Document filter = isNull(lastId)
+        ? queryObject
+        : new Document("$and", List.of(queryObject, new Document(ID, new Document("$gt", lastId))));
+    Query batchQuery = new BasicQuery(filter, new Document(ID, 1))
+        .with(Sort.by(ID))
+        .limit(limit)
+        .collation(collation);
+    return target.find(mongoOperations)
+        .matching(batchQuery)
+        .all()
+        .stream()
+        .map(document -> document.get(ID))
+        .collect(Collectors.toList());
+  }
+
+  private AclBulkResult execute(
+      Target target,
+      Object startAfterId,
+      Function<Object, List<Object>> nextBatch,
+      UpdateDefinition update,
+      AclBulkOptions options) {
+
+    // the ids are written without collation, otherwise string ids, that differ only in case,
+    // would be modified, too
+    long matchedCount = 0L;
+    long modifiedCount = 0L;
+    int batchCount = 0;
+    Object lastId = startAfterId;
+    List<Object> ids = nextBatch.apply(lastId);
+    while (!ids.isEmpty()) {
+      if (batchCount > 0 && !pause(options)) {
+        return result(matchedCount, modifiedCount, batchCount, lastId, false);
+      }
+      if (options.getWriteMode() == AclBulkOptions.WriteMode.UPDATE_MANY) {
+        UpdateResult result = target.update(mongoOperations)
+            .matching(Query.query(Criteria.where(ID).in(ids)))
+            .apply(update)
+            .all();
+        matchedCount += result.getMatchedCount();
+        modifiedCount += result.getModifiedCount();
+      } else {
+        BulkOperations bulkOperations = target.bulkOps(
+            mongoOperations,
+            options.getWriteMode() == AclBulkOptions.WriteMode.BULK_ORDERED
+                ? BulkMode.ORDERED
+                : BulkMode.UNORDERED);
+        ids.forEach(id -> bulkOperations
+            .updateOne(Query.query(Criteria.where(ID).is(id)), update));
+        BulkWriteResult result = bulkOperations.execute();
+        matchedCount += result.getMatchedCount();
+        modifiedCount += result.getModifiedCount();
+      }
+      batchCount++;
+      lastId = ids.get(ids.size() - 1);
+      if (options.getProgressListener().isPresent()) {
+        options.getProgressListener().get()
+            .accept(result(matchedCount, modifiedCount, batchCount, lastId, false));
+      }
+      ids = nextBatch.apply(lastId);
+    }
+    return result(matchedCount, modifiedCount, batchCount, lastId, true);
+  }
+
+  private static boolean pause(AclBulkOptions options) {
+    if (options.getPause().isZero()) {
+      return true;
+    }
+    try {
+      Thread.sleep(options.getPause().toMillis());
+      return true;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return false;
+    }
+  }
+
+  private static AclBulkResult unmodified(AclBulkOptions options) {
+    return result(0L, 0L, 0, options.getStartAfterId().orElse(null), true);
+  }
+
+  private static AclBulkResult result(
+      long matchedCount,
+      long modifiedCount,
+      int batchCount,
+      Object lastId,
+      boolean completed) {
+
+    return AclBulkResult.builder()
+        .matchedCount(matchedCount)
+        .modifiedCount(modifiedCount)
+        .batchCount(batchCount)
+        .lastId(Optional.ofNullable(lastId))
+        .isCompleted(completed)
+        .build();
+  }
+
+  /**
+   * The entity class or collection, that is modified.
+   */
+  private static class Target {
+
+    private final Class<?> entityClass;
+
+    private final String collectionName;
+
+    private Target(Class<?> entityClass, String collectionName) {
+      this.entityClass = entityClass;
+      this.collectionName = collectionName;
+    }
+
+    private FindWithQuery<Document> find(MongoOperations mongoOperations) {
+      return nonNull(entityClass)
+          ? mongoOperations.query(entityClass).as(Document.class)
+          : mongoOperations.query(Document.class).inCollection(collectionName);
+    }
+
+    private UpdateWithQuery<?> update(MongoOperations mongoOperations) {
+      return nonNull(entityClass)
+          ? mongoOperations.update(entityClass)
+          : mongoOperations.update(Document.class).inCollection(collectionName);
+    }
+
+    private BulkOperations bulkOps(MongoOperations mongoOperations, BulkMode bulkMode) {
+      return nonNull(entityClass)
+          ? mongoOperations.bulkOps(bulkMode, entityClass)
+          : mongoOperations.bulkOps(bulkMode, collectionName);
+    }
+  }
+
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.bremersee.acl.spring.data.mongodb;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.function.Consumer;
+import org.immutables.value.Value;
+import org.immutables.value.Value.Style.ImplementationVisibility;
+
+/**
+ * The options of the acl bulk operations.
+ *
+ * @author Christian Bremer
+ */
+@Value.Immutable
+@Value.Style(visibility = ImplementationVisibility.PACKAGE)
+public interface AclBulkOptions {
+
+  /**
+   * The default batch size.
+   */
+  int DEFAULT_BATCH_SIZE = 1000;
+
+  /**
+   * Creates acl bulk options builder.
+   *
+   * @return the acl bulk options builder
+   */
+  static ImmutableAclBulkOptions.Builder builder() {
+    return ImmutableAclBulkOptions.builder();
+  }
+
+  /**
+   * Gets the default options.
+   *
+   * @return the default options
+   */
+  static AclBulkOptions defaults() {
+    return builder().build();
+  }
+
+  /**
+   * Gets the number of documents, that are modified with one write operation.
+   *
+   * @return the batch size
+   */
+  @Value.Default
+  default int getBatchSize() {
+    return DEFAULT_BATCH_SIZE;
+  }
+
+  /**
+   * Gets write mode.
+   *
+   * @return the write mode
+   */
+  @Value.Default
+  default WriteMode getWriteMode() {
+    return WriteMode.UPDATE_MANY;
+  }
+
+  /**
+   * Gets the pause between two batches to reduce the load of the primary.
+   *
+   * @return the pause between two batches
+   */
+  @Value.Default
+  default Duration getPause() {
+    return Duration.ZERO;
+  }
+
+  /**
+   * Gets the id of the document, after which the modification starts. It is used to resume an
+   * interrupted modification with the last id of its result.
+   *
+   * @return the id of the document, after which the modification starts
+   */
+  Optional<Object> getStartAfterId();
+
+  /**
+   * Gets the progress listener, that is called with the intermediate result after every batch.
+   *
+   * @return the progress listener
+   */
+  @Value.Auxiliary
+  Optional<Consumer<AclBulkResult>> getProgressListener();
+
+  /**
+   * Check.
+   */
+  @Value.Check
+  default void check() {
+    if (getBatchSize() < 1) {
+      throw new IllegalArgumentException("Batch size must be greater than zero.");
+    }
+    if (getPause().isNegative()) {
+      throw new IllegalArgumentException("Pause must not be negative.");
+    }
+  }
+
+  /**
+   * The write mode.
+   */
+  enum WriteMode {
+
+    /**
+     * Every batch is modified with one update many operation.
+     */
+    UPDATE_MANY,
+
+    /**
+     * Every batch is modified with ordered bulk operations, one update per document. The batch is
+     * aborted on the first error.
+     */
+    BULK_ORDERED,
+
+    /**
+     * Every batch is modified with unordered bulk operations, one update per document. All
+     * updates of the batch are executed, even if some of them fail.
+     */
+    BULK_UNORDERED
+  }
+
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.bremersee.acl.spring.data.mongodb;
+
+import java.util.Optional;
+import org.immutables.value.Value;
+import org.immutables.value.Value.Style.ImplementationVisibility;
+
+/**
+ * The result of the acl bulk operations.
+ *
+ * @author Christian Bremer
+ */
+@Value.Immutable
+@Value.Style(visibility = ImplementationVisibility.PACKAGE)
+public interface AclBulkResult {
+
+  /**
+   * Creates acl bulk result builder.
+   *
+   * @return the acl bulk result builder
+   */
+  static ImmutableAclBulkResult.Builder builder() {
+    return ImmutableAclBulkResult.builder();
+  }
+
+  /**
+   * Gets the number of matched documents.
+   *
+   * @return the matched count
+   */
+  long getMatchedCount();
+
+  /**
+   * Gets the number of modified documents.
+   *
+   * @return the modified count
+   */
+  long getModifiedCount();
+
+  /**
+   * Gets the number of executed batches.
+   *
+   * @return the batch count
+   */
+  int getBatchCount();
+
+  /**
+   * Gets the id of the last processed document. It can be used as
+   * {@link AclBulkOptions#getStartAfterId()} to resume the modification.
+   *
+   * @return the id of the last processed document
+   */
+  Optional<Object> getLastId();
+
+  /**
+   * Determines whether all documents were processed or the modification was interrupted.
+   *
+   * @return {@code true} if all documents were processed, otherwise {@code false}
+   */
+  boolean isCompleted();
+
+}
@@ -0,0 +1,536 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.bremersee.acl.spring.data.mongodb;
+
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+
+import com.mongodb.client.ChangeStreamIterable;
+import com.mongodb.client.MongoChangeStreamCursor;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.OperationType;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+import lombok.extern.apachecommons.CommonsLog;
+import org.bremersee.acl.Acl;
+import org.bremersee.acl.annotation.AclHolders;
+import org.bremersee.acl.spring.data.mongodb.convert.DocumentToAclConverter;
+import org.bson.BsonDocument;
+import org.bson.BsonDocumentReader;
+import org.bson.BsonTimestamp;
+import org.bson.Document;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.DocumentCodec;
+import org.bson.types.ObjectId;
+import org.springframework.data.mongodb.core.ExecutableFindOperation.FindWithQuery;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.util.Assert;
+
+/**
+ * The acl cache is a read-through cache of the access control lists of one collection, whose
+ * keys are the ids of the documents.
+ *
+ * <p>The access control lists of all requested ids, that are not cached, are loaded with one
+ * query, that reads only the acl path. The cache is bounded, the least recently used access
+ * control list is removed, if the maximum size is exceeded. After {@link #start()} the changes
+ * of the collection are watched with a change stream, that contains only replaced and deleted
+ * documents and updates of the acl path, and the access control list of every changed document
+ * is removed immediately. If the change stream fails, it is resumed after the last seen change.
+ * Change streams require a replica set or a sharded cluster; if the change stream can't be opened
+ * (e.g. on a standalone server) or fails repeatedly, the cached access control lists expire after
+ * the time to live instead.
+ *
+ * <pre>
+ * try (AclCache cache = new AclCache(mongoOperations, ExampleEntity.class, options)) {
+ *   cache.start();
+ *   Map&lt;Object, Acl&gt; acls = cache.getAll(ids);
+ *   ...
+ * }
+ * </pre>
+ *
+ * <p>Loaded access control lists are only cached, if no invalidation happened during the query,
+ * so that an outdated access control list is never cached.
+ *
+ * @author Christian Bremer
+ */
+@CommonsLog
+public class AclCache implements AutoCloseable {
+
+  private static final String ID = "_id";
+
+  private static final long MAX_AWAIT_MILLIS = 1000L;
+
+  private static final int MAX_WATCH_FAILURES = 5;
+
+  private final MongoOperations mongoOperations;
+
+  private final Class<?> entityClass;
+
+  private final String collectionName;
+
+  private final String aclPath;
+
+  private final long timeToLiveNanos;
+
+  private final Executor watchExecutor;
+
+  private final Map<Object, Entry> entries;
+
+  private final DocumentToAclConverter aclConverter = new DocumentToAclConverter();
+
+  private final AtomicLong generation = new AtomicLong();
+
+  private final LongAdder hitCount = new LongAdder();
+
+  private final LongAdder missCount = new LongAdder();
+
+  private final LongAdder loadCount = new LongAdder();
+
+  private final LongAdder evictionCount = new LongAdder();
+
+  private final LongAdder invalidationCount = new LongAdder();
+
+  private final boolean watchChanges;
+
+  private volatile boolean running;
+
+  private volatile boolean watching;
+
+  private volatile Duration changeLag;
+
+  /**
+   * Instantiates a new acl cache for the collection of the given entity class.
+   *
+   * @param mongoOperations the mongo operations
+   * @param entityClass the entity class
+   * @param options the options
+   */
+  public AclCache(
+      MongoOperations mongoOperations,
+      Class<?> entityClass,
+      AclCacheOptions options) {
+
+    this(mongoOperations, entityClass, null, null, options, null);
+  }
+
+  /**
+   * Instantiates a new acl cache.
+   *
+   * @param mongoOperations the mongo operations
+   * @param collectionName the collection name
+   * @param aclPath the acl path
+   * @param options the options
+   */
+  public AclCache(
+      MongoOperations mongoOperations,
+      String collectionName,
+      String aclPath,
+      AclCacheOptions options) {
+
+    this(mongoOperations, collectionName, aclPath, options, null);
+  }
+
+  /**
+   * Instantiates a new acl cache.
+   *
+   * @param mongoOperations the mongo operations
+   * @param collectionName the collection name
+   * @param aclPath the acl path
+   * @param options the options
+   * @param watchExecutor the executor, that runs the watching of the changes; if it is
+   *     {@code null}, a new daemon thread is started
+   */
+  public AclCache(
+      MongoOperations mongoOperations,
+      String collectionName,
+      String aclPath,
+      AclCacheOptions options,
+      Executor watchExecutor) {
+
+    this(mongoOperations, null, collectionName, aclPath, options, watchExecutor);
+  }
+
+  private AclCache(
+      MongoOperations mongoOperations,
+      Class<?> entityClass,
+      String collectionName,
+      String aclPath,
+      AclCacheOptions options,
+      Executor watchExecutor) {
+
+    Assert.notNull(mongoOperations, "Mongo operations must be present.");
+    Assert.notNull(options, "Acl cache options must be present.");
+    this.mongoOperations = mongoOperations;
+    this.entityClass = entityClass;
+    if (nonNull(entityClass)) {
+      this.collectionName = mongoOperations.getCollectionName(entityClass);
+      this.aclPath = AclHolders.getAclPath(entityClass);
+    } else {
+      Assert.hasText(collectionName, "Collection name must be present.");
+      Assert.hasText(aclPath, "Acl path must be present.");
+      this.collectionName = collectionName.trim();
+      this.aclPath = aclPath.trim();
+    }
+    this.timeToLiveNanos = options.getTimeToLive().toNanos();
+    this.watchChanges = options.isWatchChanges();
+    String threadName = "acl-cache-" + this.collectionName;
+    this.watchExecutor = isNull(watchExecutor)
+        ? runnable -> {
+          Thread thread = new Thread(runnable, threadName);
+          thread.setDaemon(true);
+          thread.start();
+        }
+        : watchExecutor;
+    int maximumSize = options.getMaximumSize();
+    this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Object, Entry> eldest) {
+        if (size() > maximumSize) {
+          evictionCount.increment();
+          return true;
+        }
+        return false;
+      }
+    };
+  }
+
+
+  /**
+   * Starts watching the changes of the collection, if it is enabled by the options.
+   */
+  public synchronized void start() {
+    if (watchChanges && !running) {
+      running = true;
+      watchExecutor.execute(this::watch);
+    }
+  }
+
+  /**
+   * Stops watching the changes of the collection. The cached access control lists expire after
+   * the time to live.
+   */
+  @Override
+  public synchronized void close() {
+    running = false;
+  }
+
+  /**
+   * Gets the access control list of the document with the given id.
+   *
+   * @param id the id of the document
+   * @return the access control list or empty, if there is no such document or it has no access
+   *     control list
+   */
+  public Optional<Acl> get(Object id) {
+    Assert.notNull(id, "Id must be present.");
+    return Optional.ofNullable(getAll(List.of(id)).get(id));
+  }
+
+  /**
+   * Gets the access control lists of the documents with the given ids. The access control lists,
+   * that are not cached, are loaded with one query.
+   *
+   * @param ids the ids of the documents
+   * @return the access control lists by the given ids; ids of documents, that don't exist or
+   *     have no access control list, are missing
+   */
+  public Map<Object, Acl> getAll(Collection<?> ids) {
+    Assert.notNull(ids, "Ids must be present.");
+    Map<Object, Acl> found = new LinkedHashMap<>();
+    List<Object> missing = new ArrayList<>();
+    long now = System.nanoTime();
+    synchronized (entries) {
+      for (Object id : new LinkedHashSet<>(ids)) {
+        Object key = toKey(id);
+        Entry entry = entries.get(key);
+        if (nonNull(entry) && !isExpired(entry, now)) {
+          hitCount.increment();
+          found.put(key, entry.acl);
+        } else {
+          if (nonNull(entry)) {
+            entries.remove(key);
+          }
+          missCount.increment();
+          missing.add(id);
+        }
+      }
+    }
+    if (!missing.isEmpty()) {
+      found.putAll(load(missing));
+    }
+    Map<Object, Acl> acls = new LinkedHashMap<>();
+    for (Object id : ids) {
+      Acl acl = found.get(toKey(id));
+      if (nonNull(acl)) {
+        acls.put(id, acl);
+      }
+    }
+    return acls;
+  }
+
+  private Map<Object, Acl> load(List<Object> ids) {
+    long loadGeneration = generation.get();
+    long loadedAt = System.nanoTime();
+    Query query = Query.query(Criteria.where(ID).in(ids));
+    query.fields().include(aclPath);
+    FindWithQuery<Document> find = nonNull(entityClass)
+        ? mongoOperations.query(entityClass).as(Document.class)
+        : mongoOperations.query(Document.class).inCollection(collectionName);
+    loadCount.increment();
+    Map<Object, Acl> loaded = new LinkedHashMap<>();
+    for (Document document : find.matching(query).all()) {
+      Object value = getValue(document, aclPath);
+      if (value instanceof Document) {
+        loaded.put(toKey(document.get(ID)), aclConverter.convert((Document) value));
+      }
+    }
+    synchronized (entries) {
+      if (generation.get() == loadGeneration) {
+        loaded.forEach((key, acl) -> entries.put(key, new Entry(acl, loadedAt)));
+      }
+    }
+    return loaded;
+  }
+
+  /**
+   * Removes the access control list of the document with the given id.
+   *
+   * @param id the id of the document
+   */
+  public void invalidate(Object id) {
+    Assert.notNull(id, "Id must be present.");
+    synchronized (entries) {
+      generation.incrementAndGet();
+      entries.remove(toKey(id));
+    }
+    invalidationCount.increment();
+  }
+
+  /**
+   * Removes all access control lists.
+   */
+  public void invalidateAll() {
+    synchronized (entries) {
+      generation.incrementAndGet();
+      entries.clear();
+    }
+    invalidationCount.increment();
+  }
+
+  /**
+   * Gets the statistics of the cache.
+   *
+   * @return the statistics
+   */
+  public AclCacheStatistics getStatistics() {
+    int size;
+    long oldest;
+    long now = System.nanoTime();
+    synchronized (entries) {
+      size = entries.size();
+      oldest = entries.values().stream()
+          .mapToLong(entry -> entry.loadedAt)
+          .min()
+          .orElse(now);
+    }
+    return AclCacheStatistics.builder()
+        .size(size)
+        .hitCount(hitCount.sum())
+        .missCount(missCount.sum())
+        .loadCount(loadCount.sum())
+        .evictionCount(evictionCount.sum())
+        .invalidationCount(invalidationCount.sum())
+        .watching(watching)
+        .oldestEntryAge(Duration.ofNanos(now - oldest))
+        .changeLag(Optional.ofNullable(changeLag))
+        .build();
+  }
+
+  private boolean isExpired(Entry entry, long now) {
+    return !watching && now - entry.loadedAt > timeToLiveNanos;
+  }
+
+  private void watch() {
+    BsonDocument resumeToken = null;
+    int failures = 0;
+    try {
+      while (running) {
+        try (MongoChangeStreamCursor<ChangeStreamDocument<Document>> cursor = openChangeStream(
+            resumeToken)) {
+
+          if (isNull(resumeToken)) {
+            // changes before the cursor was opened are unknown
+            invalidateAll();
+          }
+          watching = true;
+          failures = 0;
+          while (running) {
+            ChangeStreamDocument<Document> event = cursor.tryNext();
+            if (nonNull(event) && !process(event)) {
+              // the change stream was invalidated, a new one is opened
+              resumeToken = null;
+              break;
+            }
+            resumeToken = cursor.getResumeToken();
+          }
+        } catch (RuntimeException e) {
+          watching = false;
+          failures++;
+          if (failures > MAX_WATCH_FAILURES) {
+            log.error("Watching changes of collection " + collectionName
+                + " failed, the cached access control lists expire after the time to live.", e);
+            return;
+          }
+          log.warn("Watching changes of collection " + collectionName
+              + " failed (attempt " + failures + "), resuming ...", e);
+          if (failures > 1) {
+            // the resume token may be lost
+            resumeToken = null;
+          }
+          Thread.sleep(MAX_AWAIT_MILLIS * failures);
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } finally {
+      watching = false;
+      running = false;
+    }
+  }
+
+  private MongoChangeStreamCursor<ChangeStreamDocument<Document>> openChangeStream(
+      BsonDocument resumeToken) {
+
+    ChangeStreamIterable<Document> changeStream = mongoOperations
+        .getCollection(collectionName)
+        .watch(List.of(new Document("$match", buildChangeFilter())))
+        .maxAwaitTime(MAX_AWAIT_MILLIS, TimeUnit.MILLISECONDS);
+    if (nonNull(resumeToken)) {
+      changeStream = changeStream.resumeAfter(resumeToken);
+    }
+    return changeStream.cursor();
+  }
+
+  private boolean process(ChangeStreamDocument<Document> event) {
+    BsonTimestamp clusterTime = event.getClusterTime();
+    if (nonNull(clusterTime)) {
+      changeLag = Duration.between(Instant.ofEpochSecond(clusterTime.getTime()), Instant.now());
+    }
+    OperationType operationType = event.getOperationType();
+    BsonDocument documentKey = event.getDocumentKey();
+    if (operationType == OperationType.INVALIDATE
+        || operationType == OperationType.DROP
+        || operationType == OperationType.DROP_DATABASE
+        || operationType == OperationType.RENAME
+        || isNull(documentKey)) {
+      invalidateAll();
+      // the change stream is closed by the server
+      return operationType != OperationType.INVALIDATE;
+    }
+    Object id = new DocumentCodec()
+        .decode(new BsonDocumentReader(documentKey), DecoderContext.builder().build())
+        .get(ID);
+    if (nonNull(id)) {
+      invalidate(id);
+    }
+    return true;
+  }
+
+  private Document buildChangeFilter() {
+    List<Object> operationTypes = List.of(
+        "replace", "delete", "drop", "rename", "dropDatabase", "invalidate");
+    Document updateFilter = new Document("operationType", "update");
+    if (!aclPath.isEmpty()) {
+      // updated or removed fields, that are the acl path, one of its ancestors (e.g. 'security'
+      // of 'security.acl') or one of its descendants
+      List<String> paths = new ArrayList<>();
+      String[] segments = aclPath.split("\\.");
+      for (int i = 1; i <= segments.length; i++) {
+        paths.add(Pattern.quote(String.join(".", List.of(segments).subList(0, i))));
+      }
+      String regex = "^(" + String.join("|", paths) + ")$|^" + Pattern.quote(aclPath) + "\\.";
+      Document updatedFields = new Document("$filter", new Document("input", new Document(
+          "$objectToArray",
+          new Document("$ifNull", List.of("$updateDescription.updatedFields", new Document()))))
+          .append("as", "field")
+          .append("cond", new Document("$regexMatch", new Document("input", "$$field.k")
+              .append("regex", regex))));
+      Document removedFields = new Document("$filter", new Document("input", new Document(
+          "$ifNull", List.of("$updateDescription.removedFields", List.of())))
+          .append("as", "field")
+          .append("cond", new Document("$regexMatch", new Document("input", "$$field")
+              .append("regex", regex))));
+      updateFilter.append("$expr", new Document("$gt", List.of(
+          new Document("$add", List.of(
+              new Document("$size", updatedFields),
+              new Document("$size", removedFields))),
+          0)));
+    }
+    return new Document("$or", List.of(
+        new Document("operationType", new Document("$in", operationTypes)),
+        updateFilter));
+  }
+
+  private static Object toKey(Object id) {
+    // string ids of entities are stored as object ids, if they are valid object ids
+    if (id instanceof String && ObjectId.isValid((String) id)) {
+      return new ObjectId((String) id);
+    }
+    return id;
+  }
+
+  private static Object getValue(Document document, String path) {
+    Object value = document;
+    for (String name : path.split("\\.")) {
+      if (!(value instanceof Document)) {
+        return null;
+      }
+      value = ((Document) value).get(name);
+    }
+    return value;
+  }
+
+  /**
+   * The cached access control list.
+   */
+  private static class Entry {
+
+    private final Acl acl;
+
+    private final long loadedAt;
+
+    private Entry(Acl acl, long loadedAt) {
+      this.acl = acl;
+      this.loadedAt = loadedAt;
+    }
+  }
+
+}
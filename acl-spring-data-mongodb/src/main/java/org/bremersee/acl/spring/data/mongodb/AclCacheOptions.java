@@ -0,0 +1,102 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.bremersee.acl.spring.data.mongodb;
+
+import java.time.Duration;
+import org.immutables.value.Value;
+import org.immutables.value.Value.Style.ImplementationVisibility;
+
+/**
+ * The options of the acl cache.
+ *
+ * @author Christian Bremer
+ */
+@Value.Immutable
+@Value.Style(visibility = ImplementationVisibility.PACKAGE)
+public interface AclCacheOptions {
+
+  /**
+   * The default maximum size.
+   */
+  int DEFAULT_MAXIMUM_SIZE = 10000;
+
+  /**
+   * Creates acl cache options builder.
+   *
+   * @return the acl cache options builder
+   */
+  static ImmutableAclCacheOptions.Builder builder() {
+    return ImmutableAclCacheOptions.builder();
+  }
+
+  /**
+   * Gets the default options.
+   *
+   * @return the default options
+   */
+  static AclCacheOptions defaults() {
+    return builder().build();
+  }
+
+  /**
+   * Gets the maximum number of cached access control lists. If it is exceeded, the least
+   * recently used access control list is removed.
+   *
+   * @return the maximum size
+   */
+  @Value.Default
+  default int getMaximumSize() {
+    return DEFAULT_MAXIMUM_SIZE;
+  }
+
+  /**
+   * Gets the time to live of a cached access control list, that is used, if the changes of the
+   * collection are not watched.
+   *
+   * @return the time to live
+   */
+  @Value.Default
+  default Duration getTimeToLive() {
+    return Duration.ofMinutes(1);
+  }
+
+  /**
+   * Specifies whether the changes of the collection are watched with a change stream, so that
+   * modified access control lists are removed immediately. Change streams require a replica set
+   * or a sharded cluster.
+   *
+   * @return {@code true} if the changes are watched, otherwise {@code false}
+   */
+  @Value.Default
+  default boolean isWatchChanges() {
+    return true;
+  }
+
+  /**
+   * Check.
+   */
+  @Value.Check
+  default void check() {
+    if (getMaximumSize() < 1) {
+      throw new IllegalArgumentException("Maximum size must be greater than zero.");
+    }
+    if (getTimeToLive().isNegative() || getTimeToLive().isZero()) {
+      throw new IllegalArgumentException("Time to live must be greater than zero.");
+    }
+  }
+
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.bremersee.acl.spring.data.mongodb;
+
+import java.time.Duration;
+import java.util.Optional;
+import org.immutables.value.Value;
+import org.immutables.value.Value.Style.ImplementationVisibility;
+
+/**
+ * The statistics of the acl cache.
+ *
+ * @author Christian Bremer
+ */
+@Value.Immutable
+@Value.Style(visibility = ImplementationVisibility.PACKAGE)
+public interface AclCacheStatistics {
+
+  /**
+   * Creates acl cache statistics builder.
+   *
+   * @return the acl cache statistics builder
+   */
+  static ImmutableAclCacheStatistics.Builder builder() {
+    return ImmutableAclCacheStatistics.builder();
+  }
+
+  /**
+   * Gets the number of cached access control lists.
+   *
+   * @return the size
+   */
+  int getSize();
+
+  /**
+   * Gets the number of requested ids, whose access control list was cached.
+   *
+   * @return the hit count
+   */
+  long getHitCount();
+
+  /**
+   * Gets the number of requested ids, whose access control list had to be loaded.
+   *
+   * @return the miss count
+   */
+  long getMissCount();
+
+  /**
+   * Gets the number of queries, that loaded access control lists.
+   *
+   * @return the load count
+   */
+  long getLoadCount();
+
+  /**
+   * Gets the number of access control lists, that were removed, because the maximum size was
+   * exceeded.
+   *
+   * @return the eviction count
+   */
+  long getEvictionCount();
+
+  /**
+   * Gets the number of invalidations by changes of the collection or by calls of the cache.
+   *
+   * @return the invalidation count
+   */
+  long getInvalidationCount();
+
+  /**
+   * Determines whether the changes of the collection are watched. If not, the cached access
+   * control lists expire after the time to live.
+   *
+   * @return {@code true} if the changes are watched, otherwise {@code false}
+   */
+  boolean isWatching();
+
+  /**
+   * Gets the age of the oldest cached access control list. Without watching, this is the maximum
+   * staleness of the cache.
+   *
+   * @return the age of the oldest entry
+   */
+  Duration getOldestEntryAge();
+
+  /**
+   * Gets the delay between the last change of the collection and its processing by the cache.
+   * While watching, this is the staleness of the cache.
+   *
+   * @return the change lag or empty, if no change was processed yet
+   */
+  Optional<Duration> getChangeLag();
+
+  /**
+   * Gets the ratio of hits to all requested ids.
+   *
+   * @return the hit rate between {@code 0} and {@code 1}
+   */
+  @Value.Derived
+  default double getHitRate() {
+    long requestCount = getHitCount() + getMissCount();
+    return requestCount == 0L ? 0.0 : (double) getHitCount() / requestCount;
+  }
+
+}
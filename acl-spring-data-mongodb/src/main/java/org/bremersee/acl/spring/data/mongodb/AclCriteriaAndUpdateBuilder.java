@@ -16,43 +16,97 @@
 
 package org.bremersee.acl.spring.data.mongodb;
 
-import static org.springframework.core.annotation.AnnotationUtils.findAnnotation;
+import static java.util.Objects.isNull;
 import static org.springframework.util.ObjectUtils.isEmpty;
 
-import java.util.ArrayList;
 import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
-import java.util.stream.Collectors;
 import org.bremersee.acl.AccessEvaluation;
 import org.bremersee.acl.Ace;
 import org.bremersee.acl.Acl;
 import org.bremersee.acl.AclUserContext;
-import org.bremersee.acl.annotation.AclHolder;
+import org.bremersee.acl.PartialAcl;
+import org.bremersee.acl.annotation.AclHolders;
 import org.bremersee.acl.model.AccessControlEntryModifications;
 import org.bremersee.acl.model.AccessControlListModifications;
+import org.bremersee.acl.spring.data.mongodb.convert.AceToDocumentConverter;
+import org.bremersee.acl.spring.data.mongodb.convert.AclToDocumentConverter;
+import org.bremersee.acl.spring.data.mongodb.index.AclIndexStrategy;
+import org.bremersee.acl.spring.data.mongodb.index.CaseInsensitiveAclIndexStrategy;
+import org.bson.Document;
+import org.springframework.data.mongodb.core.aggregation.AggregationExpression;
+import org.springframework.data.mongodb.core.aggregation.AggregationUpdate;
+import org.springframework.data.mongodb.core.aggregation.SetOperation;
+import org.springframework.data.mongodb.core.query.Collation;
 import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.util.Assert;
 
 /**
  * The acl criteria and update builder.
  *
+ * <p>The shape of the permission criteria is defined by the {@link AclIndexStrategy}, so that
+ * they match the indexes, that are created with the same strategy by {@link AclIndexOperations}.
+ * The default strategy is {@link AclIndexStrategy#singleField()}.
+ *
+ * <p>If tokens are enabled, the updates maintain the flat tokens of the access control list (see
+ * {@link AclTokens}) and the permission criteria match these tokens with a single {@code $in}
+ * instead of the entries. In this case the access control lists must be written with tokens, too
+ * (see {@link AclToDocumentConverter#AclToDocumentConverter(boolean)}).
+ *
+ * <p>If the index strategy defines a collation (see
+ * {@link AclIndexStrategy#caseInsensitive(AclIndexStrategy)}), the queries and updates must be
+ * executed with this collation (see {@link #applyCollation(Query)}). The owner is still matched
+ * case-sensitively like in memory, but all other criteria of the query are compared
+ * case-insensitively.
+ *
  * @author Christian Bremer
  */
 public class AclCriteriaAndUpdateBuilder {
 
   private final String aclPath;
 
+  private final boolean withTokens;
+
+  private final AclIndexStrategy indexStrategy;
+
   /**
    * Instantiates a new acl criteria and update builder.
    *
    * @param aclPath the acl path
    */
   public AclCriteriaAndUpdateBuilder(String aclPath) {
+    this(aclPath, false);
+  }
+
+  /**
+   * Instantiates a new acl criteria and update builder.
+   *
+   * @param aclPath the acl path
+   * @param withTokens specifies whether the acl tokens are used or not
+   */
+  public AclCriteriaAndUpdateBuilder(String aclPath, boolean withTokens) {
+    this(aclPath, withTokens ? AclIndexStrategy.tokens() : AclIndexStrategy.singleField());
+  }
+
+  /**
+   * Instantiates a new acl criteria and update builder.
+   *
+   * @param aclPath the acl path
+   * @param indexStrategy the index strategy
+   */
+  public AclCriteriaAndUpdateBuilder(String aclPath, AclIndexStrategy indexStrategy) {
+    Assert.notNull(indexStrategy, "Acl index strategy must be present.");
     this.aclPath = Objects.isNull(aclPath) ? "" : aclPath;
+    this.indexStrategy = indexStrategy;
+    this.withTokens = indexStrategy.isWithTokens();
   }
 
   /**
@@ -61,24 +115,108 @@ public class AclCriteriaAndUpdateBuilder {
    * @param entityClass the entity class
    */
   public AclCriteriaAndUpdateBuilder(Class<?> entityClass) {
-    Assert.notNull(entityClass, "Entity class must be present.");
-    this.aclPath = Optional
-        .ofNullable(findAnnotation(entityClass, AclHolder.class))
-        .map(AclHolder::path)
-        .orElseThrow(() -> new IllegalArgumentException(String
-            .format(
-                "Entity class %s must be annotated with %s.",
-                entityClass.getSimpleName(), AclHolder.class.getSimpleName())));
+    this(entityClass, false);
+  }
+
+  /**
+   * Instantiates a new acl criteria and update builder.
+   *
+   * @param entityClass the entity class
+   * @param withTokens specifies whether the acl tokens are used or not
+   */
+  public AclCriteriaAndUpdateBuilder(Class<?> entityClass, boolean withTokens) {
+    this(AclHolders.getAclPath(entityClass), withTokens);
+  }
+
+  /**
+   * Instantiates a new acl criteria and update builder.
+   *
+   * @param entityClass the entity class
+   * @param indexStrategy the index strategy
+   */
+  public AclCriteriaAndUpdateBuilder(Class<?> entityClass, AclIndexStrategy indexStrategy) {
+    this(AclHolders.getAclPath(entityClass), indexStrategy);
+  }
+
+
+  /**
+   * Determines whether the acl tokens are used or not.
+   *
+   * @return {@code true} if the acl tokens are used, otherwise {@code false}
+   */
+  public boolean isWithTokens() {
+    return withTokens;
+  }
+
+  /**
+   * Gets acl path.
+   *
+   * @return the acl path
+   */
+  public String getAclPath() {
+    return aclPath;
+  }
+
+  /**
+   * Gets index strategy.
+   *
+   * @return the index strategy
+   */
+  public AclIndexStrategy getIndexStrategy() {
+    return indexStrategy;
+  }
+
+  /**
+   * Gets the collation of the index strategy, with which the queries and updates must be
+   * executed.
+   *
+   * @return the collation or empty, if the indexes have no collation
+   */
+  public Optional<Collation> getCollation() {
+    return indexStrategy.getCollation();
   }
 
   /**
-   * Build update acl modification update.
+   * Applies the collation of the index strategy (if any) to the given query. The collation
+   * applies to the whole query, so that all string comparisons of the given query, e.g. of a
+   * tenant field, become case-insensitive, too. Only the owner is matched case-sensitively (see
+   * {@link #buildOwnerCriteria(String)}).
+   *
+   * @param query the query
+   * @return the query
+   */
+  public Query applyCollation(Query query) {
+    Assert.notNull(query, "Query must be present.");
+    return getCollation().map(query::collation).orElse(query);
+  }
+
+  /**
+   * Build update acl modification update. If tokens are used, the guest token of every modified
+   * permission without guest access is removed, because the stored guest flag is unknown. If
+   * principals are added, too, this requires a preparation update (see
+   * {@link #buildUpdate(AccessControlListModifications, Acl)}).
    *
    * @param accessControlListModifications the access control list modifications
    * @return the acl modification update
    */
   public AclModificationUpdate buildUpdate(
       AccessControlListModifications accessControlListModifications) {
+    return buildUpdate(accessControlListModifications, null);
+  }
+
+  /**
+   * Build update acl modification update. If tokens are used, the guest token is only removed,
+   * if the guest flag of the stored access control list changes from {@code true} to
+   * {@code false}, so that adding principals doesn't require a preparation update.
+   *
+   * @param accessControlListModifications the access control list modifications
+   * @param storedAcl the stored access control list (can be {@code null}, then the guest token
+   *     of every modified permission without guest access is removed)
+   * @return the acl modification update
+   */
+  public AclModificationUpdate buildUpdate(
+      AccessControlListModifications accessControlListModifications,
+      Acl storedAcl) {
 
     Collection<AccessControlEntryModifications> mods = isEmpty(accessControlListModifications)
         ? List.of()
@@ -87,6 +225,8 @@ public class AclCriteriaAndUpdateBuilder {
     Update addAndSetUpdate = new Update();
     Update removeUpdate = new Update();
     boolean isSomethingRemoved = false;
+    Set<String> addTokens = new LinkedHashSet<>();
+    Set<String> removeTokens = new LinkedHashSet<>();
 
     for (AccessControlEntryModifications mod : mods) {
 
@@ -95,6 +235,23 @@ public class AclCriteriaAndUpdateBuilder {
           path(Acl.ENTRIES, mod.getPermission(), Ace.GUEST),
           mod.isGuest());
 
+      if (withTokens) {
+        String permission = mod.getPermission();
+        if (mod.isGuest()) {
+          addTokens.add(AclTokens.guest(permission));
+        } else if (isNull(storedAcl) || storedAcl.getPermissionMap()
+            .getOrDefault(permission, Ace.empty()).isGuest()) {
+          removeTokens.add(AclTokens.guest(permission));
+        }
+        mod.getAddUsers().forEach(user -> addTokens.add(AclTokens.user(permission, user)));
+        mod.getRemoveUsers().forEach(user -> removeTokens.add(AclTokens.user(permission, user)));
+        mod.getAddRoles().forEach(role -> addTokens.add(AclTokens.role(permission, role)));
+        mod.getRemoveRoles().forEach(role -> removeTokens.add(AclTokens.role(permission, role)));
+        mod.getAddGroups().forEach(group -> addTokens.add(AclTokens.group(permission, group)));
+        mod.getRemoveGroups()
+            .forEach(group -> removeTokens.add(AclTokens.group(permission, group)));
+      }
+
       // users
       if (!mod.getAddUsers().isEmpty()) {
         addAndSetUpdate = addAndSetUpdate
@@ -133,12 +290,130 @@ public class AclCriteriaAndUpdateBuilder {
             mod.getRemoveGroups().toArray(new String[0]));
       }
     }
+
+    // tokens
+    if (!addTokens.isEmpty()) {
+      addAndSetUpdate = addAndSetUpdate
+          .addToSet(path(AclTokens.TOKENS))
+          .each(addTokens.toArray());
+    }
+    if (!removeTokens.isEmpty()) {
+      if (isSomethingRemoved || !addTokens.isEmpty()) {
+        // $addToSet and $pullAll must not be applied on the same field in one update
+        isSomethingRemoved = true;
+        removeUpdate = removeUpdate.pullAll(path(AclTokens.TOKENS), removeTokens.toArray());
+      } else {
+        addAndSetUpdate = addAndSetUpdate.pullAll(path(AclTokens.TOKENS), removeTokens.toArray());
+      }
+    }
     return AclModificationUpdate.builder()
         .preparationUpdates(isSomethingRemoved ? List.of(addAndSetUpdate) : List.of())
         .finalUpdate(isSomethingRemoved ? removeUpdate : addAndSetUpdate)
         .build();
   }
 
+  /**
+   * Build pipeline update. In contrast to {@link #buildUpdate(AccessControlListModifications)}
+   * the returned update adds and removes the principals in one step, so that the modification can
+   * be executed atomically with one update or find and modify operation. Every modified array is
+   * computed with {@code $setUnion} and {@code $setDifference}. Pipeline updates require MongoDB
+   * 4.2 or newer.
+   *
+   * @param accessControlListModifications the access control list modifications
+   * @return the aggregation update or empty, if there are no modifications (MongoDB rejects an
+   *     empty pipeline update)
+   */
+  public Optional<AggregationUpdate> buildPipelineUpdate(
+      AccessControlListModifications accessControlListModifications) {
+
+    Collection<AccessControlEntryModifications> mods = isEmpty(accessControlListModifications)
+        ? List.of()
+        : accessControlListModifications.getModificationsDistinct();
+
+    Map<String, Object> values = new LinkedHashMap<>();
+    Map<String, Set<String>> adds = new LinkedHashMap<>();
+    Map<String, Set<String>> removes = new LinkedHashMap<>();
+    for (AccessControlEntryModifications mod : mods) {
+      String permission = mod.getPermission();
+
+      // guest
+      values.put(path(Acl.ENTRIES, permission, Ace.GUEST), mod.isGuest());
+
+      // users, roles and groups
+      collect(adds, path(Acl.ENTRIES, permission, Ace.USERS), mod.getAddUsers());
+      collect(removes, path(Acl.ENTRIES, permission, Ace.USERS), mod.getRemoveUsers());
+      collect(adds, path(Acl.ENTRIES, permission, Ace.ROLES), mod.getAddRoles());
+      collect(removes, path(Acl.ENTRIES, permission, Ace.ROLES), mod.getRemoveRoles());
+      collect(adds, path(Acl.ENTRIES, permission, Ace.GROUPS), mod.getAddGroups());
+      collect(removes, path(Acl.ENTRIES, permission, Ace.GROUPS), mod.getRemoveGroups());
+
+      // tokens
+      if (withTokens) {
+        String tokensPath = path(AclTokens.TOKENS);
+        collect(mod.isGuest() ? adds : removes, tokensPath, List.of(AclTokens.guest(permission)));
+        collect(adds, tokensPath, mod.getAddUsers().stream()
+            .map(user -> AclTokens.user(permission, user)).toList());
+        collect(removes, tokensPath, mod.getRemoveUsers().stream()
+            .map(user -> AclTokens.user(permission, user)).toList());
+        collect(adds, tokensPath, mod.getAddRoles().stream()
+            .map(role -> AclTokens.role(permission, role)).toList());
+        collect(removes, tokensPath, mod.getRemoveRoles().stream()
+            .map(role -> AclTokens.role(permission, role)).toList());
+        collect(adds, tokensPath, mod.getAddGroups().stream()
+            .map(group -> AclTokens.group(permission, group)).toList());
+        collect(removes, tokensPath, mod.getRemoveGroups().stream()
+            .map(group -> AclTokens.group(permission, group)).toList());
+      }
+    }
+
+    Set<String> arrayPaths = new LinkedHashSet<>(adds.keySet());
+    arrayPaths.addAll(removes.keySet());
+    for (String arrayPath : arrayPaths) {
+      values.put(arrayPath, arrayExpression(
+          arrayPath,
+          adds.getOrDefault(arrayPath, Set.of()),
+          removes.getOrDefault(arrayPath, Set.of())));
+    }
+
+    SetOperation setOperation = null;
+    for (Map.Entry<String, Object> entry : values.entrySet()) {
+      setOperation = isNull(setOperation)
+          ? new SetOperation(entry.getKey(), entry.getValue())
+          : setOperation.set(entry.getKey(), entry.getValue());
+    }
+    return Optional.ofNullable(setOperation)
+        .map(operation -> AggregationUpdate.update().set(operation));
+  }
+
+  private static void collect(
+      Map<String, Set<String>> principals,
+      String path,
+      Collection<String> values) {
+
+    if (!values.isEmpty()) {
+      principals.computeIfAbsent(path, key -> new LinkedHashSet<>()).addAll(values);
+    }
+  }
+
+  private static AggregationExpression arrayExpression(
+      String path,
+      Collection<String> adds,
+      Collection<String> removes) {
+
+    return context -> {
+      Document value = new Document("$ifNull", List.of("$" + path, List.of()));
+      if (!adds.isEmpty()) {
+        value = new Document("$setUnion", List
+            .of(value, new Document("$literal", List.copyOf(adds))));
+      }
+      if (!removes.isEmpty()) {
+        value = new Document("$setDifference", List
+            .of(value, new Document("$literal", List.copyOf(removes))));
+      }
+      return value;
+    };
+  }
+
   /**
    * Build update.
    *
@@ -146,7 +421,101 @@ public class AclCriteriaAndUpdateBuilder {
    * @return the update
    */
   public Update buildUpdate(Acl acl) {
-    return Update.update(path(), isEmpty(acl) ? Acl.builder().build() : acl);
+    Assert.isTrue(
+        !(acl instanceof PartialAcl),
+        "A partial access control list can not be written.");
+    Acl value = isEmpty(acl) ? Acl.builder().build() : acl;
+    if (withTokens) {
+      return Update.update(path(), new AclToDocumentConverter(true).convert(value));
+    }
+    return Update.update(path(), value);
+  }
+
+  /**
+   * Build update, that changes the stored access control list into the new one. Only the
+   * differences are written: changed owner and guest flags are set, added principals are added
+   * with {@code $addToSet}, removed principals are removed with {@code $pullAll} (if principals
+   * are added and removed, the whole array is set), new entries are set and missing entries are
+   * unset. If the stored access control list is not present, the whole new access control list
+   * is set (see {@link #buildUpdate(Acl)}). The new access control list must not be a
+   * {@link PartialAcl}.
+   *
+   * @param storedAcl the stored access control list
+   * @param newAcl the new access control list
+   * @return the update or empty, if nothing has changed
+   */
+  public Optional<Update> buildUpdate(Acl storedAcl, Acl newAcl) {
+    Assert.isTrue(
+        !(newAcl instanceof PartialAcl),
+        "A partial access control list can not be written.");
+    if (isEmpty(storedAcl)) {
+      return Optional.of(buildUpdate(newAcl));
+    }
+    Acl targetAcl = isEmpty(newAcl) ? Acl.builder().build() : newAcl;
+    Update update = new Update();
+    if (!Objects.equals(storedAcl.getOwner(), targetAcl.getOwner())) {
+      update = update.set(path(Acl.OWNER), targetAcl.getOwner());
+    }
+
+    Map<String, Ace> storedEntries = storedAcl.getPermissionMap();
+    Map<String, Ace> targetEntries = targetAcl.getPermissionMap();
+    for (String permission : storedEntries.keySet()) {
+      if (!targetEntries.containsKey(permission)) {
+        update = update.unset(path(Acl.ENTRIES, permission));
+      }
+    }
+    AceToDocumentConverter aceConverter = new AceToDocumentConverter();
+    for (Map.Entry<String, Ace> entry : targetEntries.entrySet()) {
+      String permission = entry.getKey();
+      Ace targetAce = entry.getValue();
+      Ace storedAce = storedEntries.get(permission);
+      if (isNull(storedAce)) {
+        update = update.set(path(Acl.ENTRIES, permission), aceConverter.convert(targetAce));
+        continue;
+      }
+      if (storedAce.isGuest() != targetAce.isGuest()) {
+        update = update.set(path(Acl.ENTRIES, permission, Ace.GUEST), targetAce.isGuest());
+      }
+      update = applyDelta(update, path(Acl.ENTRIES, permission, Ace.USERS),
+          storedAce.getUsers(), targetAce.getUsers());
+      update = applyDelta(update, path(Acl.ENTRIES, permission, Ace.ROLES),
+          storedAce.getRoles(), targetAce.getRoles());
+      update = applyDelta(update, path(Acl.ENTRIES, permission, Ace.GROUPS),
+          storedAce.getGroups(), targetAce.getGroups());
+    }
+
+    if (withTokens) {
+      update = applyDelta(update, path(AclTokens.TOKENS),
+          AclTokens.of(storedAcl), AclTokens.of(targetAcl));
+    }
+    return update.getUpdateObject().isEmpty() ? Optional.empty() : Optional.of(update);
+  }
+
+  private static Update applyDelta(
+      Update update,
+      String path,
+      Collection<String> storedValues,
+      Collection<String> targetValues) {
+
+    Set<String> stored = new LinkedHashSet<>(storedValues);
+    Set<String> target = new LinkedHashSet<>(targetValues);
+    List<String> adds = target.stream()
+        .filter(value -> !stored.contains(value))
+        .toList();
+    List<String> removes = stored.stream()
+        .filter(value -> !target.contains(value))
+        .toList();
+    if (!adds.isEmpty() && !removes.isEmpty()) {
+      // $addToSet and $pullAll must not be applied on the same field in one update
+      return update.set(path, List.copyOf(target));
+    }
+    if (!adds.isEmpty()) {
+      return update.addToSet(path).each(adds.toArray());
+    }
+    if (!removes.isEmpty()) {
+      return update.pullAll(path, removes.toArray());
+    }
+    return update;
   }
 
   /**
@@ -167,7 +536,171 @@ public class AclCriteriaAndUpdateBuilder {
    */
   public Criteria buildUpdateOwnerCriteria(AclUserContext userContext) {
     Assert.notNull(userContext, "User context must be present.");
-    return Criteria.where(path(Acl.OWNER)).is(userContext.getName());
+    return ownerCriteria(userContext.getName());
+  }
+
+  /**
+   * Build owner criteria.
+   *
+   * @param owner the owner
+   * @return the criteria
+   */
+  public Criteria buildOwnerCriteria(String owner) {
+    return ownerCriteria(isEmpty(owner) ? "" : owner);
+  }
+
+  private Criteria ownerCriteria(String owner) {
+    if (getCollation().isPresent()) {
+      return CaseInsensitiveAclIndexStrategy.buildOwnerCriteria(path(Acl.OWNER), owner);
+    }
+    return Criteria.where(path(Acl.OWNER)).is(owner);
+  }
+
+  /**
+   * Build principal criteria, that matches all access control lists, which contain the given
+   * principal in any of the given permissions. If no permissions are given, all access control
+   * lists with entries are matched.
+   *
+   * @param principalType the principal type
+   * @param name the name of the principal
+   * @param permissions the permissions
+   * @return the criteria
+   */
+  public Criteria buildPrincipalCriteria(
+      AclPrincipalType principalType,
+      String name,
+      Collection<String> permissions) {
+
+    Assert.notNull(principalType, "Principal type must be present.");
+    Assert.hasText(name, "Name of principal must be present.");
+    if (isEmpty(permissions)) {
+      return Criteria.where(path(Acl.ENTRIES)).exists(true);
+    }
+    return new Criteria().orOperator(new LinkedHashSet<>(permissions).stream()
+        .map(permission -> Criteria
+            .where(path(Acl.ENTRIES, permission, principalType.getField()))
+            .is(name))
+        .toList());
+  }
+
+  /**
+   * Build pipeline update, that removes the given principal from all entries, whatever the names
+   * of the permissions are.
+   *
+   * @param principalType the principal type
+   * @param name the name of the principal
+   * @return the aggregation update
+   */
+  public AggregationUpdate buildRemovePrincipalUpdate(
+      AclPrincipalType principalType,
+      String name) {
+
+    Assert.notNull(principalType, "Principal type must be present.");
+    Assert.hasText(name, "Name of principal must be present.");
+    String field = "$$entry.v." + principalType.getField();
+    Document principals = new Document("$ifNull", List.of(field, List.of()));
+    Document entries = entriesExpression(
+        principalType,
+        new Document("$setDifference", List
+            .of(principals, new Document("$literal", List.of(name)))));
+    SetOperation setOperation = new SetOperation(path(Acl.ENTRIES), entries);
+    if (withTokens) {
+      String suffix = principalType.getTokenSuffix(name);
+      setOperation = setOperation.set(path(AclTokens.TOKENS), tokensExpression(
+          new Document("$filter", new Document("input", "$" + path(AclTokens.TOKENS))
+              .append("as", "token")
+              .append("cond", new Document("$not", List
+                  .of(tokenEndsWith(suffix)))))));
+    }
+    return AggregationUpdate.update().set(setOperation);
+  }
+
+  /**
+   * Build pipeline update, that renames the given principal in all entries, whatever the names
+   * of the permissions are.
+   *
+   * @param principalType the principal type
+   * @param oldName the old name of the principal
+   * @param newName the new name of the principal
+   * @return the aggregation update
+   */
+  public AggregationUpdate buildRenamePrincipalUpdate(
+      AclPrincipalType principalType,
+      String oldName,
+      String newName) {
+
+    Assert.notNull(principalType, "Principal type must be present.");
+    Assert.hasText(oldName, "Old name of principal must be present.");
+    Assert.hasText(newName, "New name of principal must be present.");
+    String field = "$$entry.v." + principalType.getField();
+    Document principals = new Document("$ifNull", List.of(field, List.of()));
+    Document entries = entriesExpression(
+        principalType,
+        new Document("$cond", List.of(
+            new Document("$in", List.of(new Document("$literal", oldName), principals)),
+            new Document("$setUnion", List.of(
+                new Document("$setDifference", List
+                    .of(principals, new Document("$literal", List.of(oldName)))),
+                new Document("$literal", List.of(newName)))),
+            principals)));
+    SetOperation setOperation = new SetOperation(path(Acl.ENTRIES), entries);
+    if (withTokens) {
+      String oldSuffix = principalType.getTokenSuffix(oldName);
+      String newSuffix = principalType.getTokenSuffix(newName);
+      Document tokenLength = new Document("$strLenCP", "$$token");
+      Document renamedToken = new Document("$concat", List.of(
+          new Document("$substrCP", List.of(
+              "$$token",
+              0,
+              new Document("$subtract", List
+                  .of(tokenLength, oldSuffix.codePointCount(0, oldSuffix.length()))))),
+          new Document("$literal", newSuffix)));
+      setOperation = setOperation.set(path(AclTokens.TOKENS), tokensExpression(
+          new Document("$setUnion", List.of(
+              new Document("$map", new Document("input", "$" + path(AclTokens.TOKENS))
+                  .append("as", "token")
+                  .append("in", new Document("$cond", List
+                      .of(tokenEndsWith(oldSuffix), renamedToken, "$$token")))),
+              List.of()))));
+    }
+    return AggregationUpdate.update().set(setOperation);
+  }
+
+  private AggregationExpression entriesExpression(
+      AclPrincipalType principalType,
+      Document principalsExpression) {
+
+    String entriesField = "$" + path(Acl.ENTRIES);
+    return context -> new Document("$cond", List.of(
+        new Document("$eq", List.of(new Document("$type", entriesField), "object")),
+        new Document("$arrayToObject", new Document("$map", new Document()
+            .append("input", new Document("$objectToArray", entriesField))
+            .append("as", "entry")
+            .append("in", new Document()
+                .append("k", "$$entry.k")
+                .append("v", new Document("$mergeObjects", List.of(
+                    "$$entry.v",
+                    new Document(principalType.getField(), principalsExpression)))))))),
+        "$$REMOVE"));
+  }
+
+  private AggregationExpression tokensExpression(Document tokensExpression) {
+    return context -> new Document("$cond", List.of(
+        new Document("$isArray", "$" + path(AclTokens.TOKENS)),
+        tokensExpression,
+        "$$REMOVE"));
+  }
+
+  private static Document tokenEndsWith(String suffix) {
+    int length = suffix.codePointCount(0, suffix.length());
+    Document tokenLength = new Document("$strLenCP", "$$token");
+    return new Document("$eq", List.of(
+        new Document("$substrCP", List.of(
+            "$$token",
+            new Document("$max", List
+                .of(0, new Document("$subtract", List.of(tokenLength, length)))),
+            length)),
+        new Document("$literal", suffix)));
   }
 
   /**
@@ -187,45 +720,8 @@ public class AclCriteriaAndUpdateBuilder {
     Assert.notNull(accessEvaluation, "Access evaluation type must be present.");
     Assert.notEmpty(permissions, "At least one permission must be present.");
 
-    List<Criteria> permissionCriteriaList = Set.copyOf(permissions).stream()
-        .map(permission -> createAccessCriteria(userContext, permission))
-        .collect(Collectors.toList());
-    Criteria permissionCriteria = accessEvaluation.isAnyPermission()
-        ? new Criteria().orOperator(permissionCriteriaList)
-        : new Criteria().andOperator(permissionCriteriaList);
-    if (userContext.getName().isBlank()) {
-      return permissionCriteria;
-    }
-    Criteria ownerCriteria = Criteria.where(path(Acl.OWNER)).is(userContext.getName());
-    return new Criteria().orOperator(ownerCriteria, permissionCriteria);
-  }
-
-  private Criteria createAccessCriteria(
-      AclUserContext userContext,
-      String permission) {
-
-    List<Criteria> criteriaList = new ArrayList<>();
-    criteriaList.add(Criteria.where(path(Acl.ENTRIES, permission, Ace.GUEST)).is(true));
-    if (!userContext.getName().isBlank()) {
-      criteriaList.add(Criteria
-          .where(path(Acl.ENTRIES, permission, Ace.USERS))
-          .all(userContext.getName()));
-    }
-    criteriaList.addAll(userContext.getRoles().stream()
-        .filter(role -> !isEmpty(role))
-        .map(role -> Criteria.
-            where(path(Acl.ENTRIES, permission, Ace.ROLES))
-            .all(role))
-        .toList()
-    );
-    criteriaList.addAll(userContext.getGroups().stream()
-        .filter(group -> !isEmpty(group))
-        .map(group -> Criteria
-            .where(path(Acl.ENTRIES, permission, Ace.GROUPS))
-            .all(group))
-        .toList()
-    );
-    return new Criteria().orOperator(criteriaList);
+    return indexStrategy
+        .buildPermissionCriteria(aclPath, userContext, accessEvaluation, permissions);
   }
 
   private String path(String... pathSegments) {
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.bremersee.acl.spring.data.mongodb;
+
+import java.util.List;
+import java.util.Map;
+import org.immutables.value.Value;
+import org.immutables.value.Value.Style.ImplementationVisibility;
+
+/**
+ * The advice of the acl index advisor for one collection.
+ *
+ * @author Christian Bremer
+ */
+@Value.Immutable
+@Value.Style(visibility = ImplementationVisibility.PACKAGE)
+public interface AclIndexAdvice {
+
+  /**
+   * Creates acl index advice builder.
+   *
+   * @return the acl index advice builder
+   */
+  static ImmutableAclIndexAdvice.Builder builder() {
+    return ImmutableAclIndexAdvice.builder();
+  }
+
+  /**
+   * Gets the collection name.
+   *
+   * @return the collection name
+   */
+  String getCollectionName();
+
+  /**
+   * Gets the acl fields, that were used by the permission criteria, and how often they were
+   * used.
+   *
+   * @return the recorded fields
+   */
+  Map<String, Long> getRecordedFields();
+
+  /**
+   * Gets the used acl fields, that are not covered by an index.
+   *
+   * @return the fields, that should be indexed
+   */
+  List<String> getMissingIndexes();
+
+  /**
+   * Gets the names of the acl indexes, that have no accesses and whose fields were not used.
+   *
+   * @return the names of the indexes, that can be dropped
+   */
+  List<String> getUnusedIndexes();
+
+  /**
+   * Determines whether the advice was applied.
+   *
+   * @return {@code true} if the missing indexes were created and the unused indexes were dropped,
+   *     otherwise {@code false}
+   */
+  boolean isApplied();
+
+}
@@ -0,0 +1,337 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.bremersee.acl.spring.data.mongodb;
+
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+import org.bremersee.acl.AccessEvaluation;
+import org.bremersee.acl.AclUserContext;
+import org.bremersee.acl.annotation.AclHolders;
+import org.bremersee.acl.spring.data.mongodb.index.AclIndexStrategy;
+import org.bremersee.acl.spring.data.mongodb.index.CaseInsensitiveAclIndexStrategy;
+import org.bson.Document;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.index.IndexDefinition;
+import org.springframework.data.mongodb.core.index.IndexInfo;
+import org.springframework.data.mongodb.core.query.Collation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.util.Assert;
+
+/**
+ * The acl index advisor compares the acl fields, that are actually used by the permission
+ * criteria, with the usage statistics of the acl indexes of one collection.
+ *
+ * <p>The used fields are recorded by wrapping the index strategy of the
+ * {@link AclCriteriaAndUpdateBuilder}:
+ *
+ * <pre>
+ * AclIndexAdvisor advisor = new AclIndexAdvisor(mongoOperations, ExampleEntity.class);
+ * AclCriteriaAndUpdateBuilder builder = new AclCriteriaAndUpdateBuilder(
+ *     ExampleEntity.class, advisor.recording(AclIndexStrategy.singleField()));
+ * ...
+ * AclIndexAdvice advice = advisor.advise(Duration.ofDays(7), false);
+ * </pre>
+ *
+ * <p>A used field is missing an index, if no index starts with it, either directly, after
+ * fields that are not part of the access control list (e.g. a tenant) or as a wildcard. An acl
+ * index is unused, if the {@code $indexStats} report no accesses since the given minimum age and
+ * none of its fields was used. The advice can be applied, which creates an ascending index on
+ * every missing field with one {@code createIndexes} command and drops the unused indexes with
+ * one {@code dropIndexes} command.
+ *
+ * <p>If the recorded index strategy defines a collation (see
+ * {@link AclIndexStrategy#caseInsensitive(AclIndexStrategy)}), only indexes with the same
+ * collation cover a field and the missing indexes are created with this collation and the suffix
+ * {@value CaseInsensitiveAclIndexStrategy#INDEX_NAME_SUFFIX}.
+ *
+ * @author Christian Bremer
+ */
+public class AclIndexAdvisor {
+
+  private static final String WILDCARD = "$**";
+
+  private final MongoOperations mongoOperations;
+
+  private final String collectionName;
+
+  private final String aclPath;
+
+  private final Map<String, LongAdder> recordedFields = new ConcurrentHashMap<>();
+
+  private volatile Collation collation;
+
+  /**
+   * Instantiates a new acl index advisor for the collection of the given entity class.
+   *
+   * @param mongoOperations the mongo operations
+   * @param entityClass the entity class
+   */
+  public AclIndexAdvisor(MongoOperations mongoOperations, Class<?> entityClass) {
+    this(
+        mongoOperations,
+        getCollectionName(mongoOperations, entityClass),
+        AclHolders.getAclPath(entityClass));
+  }
+
+  /**
+   * Instantiates a new acl index advisor.
+   *
+   * @param mongoOperations the mongo operations
+   * @param collectionName the collection name
+   * @param aclPath the acl path
+   */
+  public AclIndexAdvisor(
+      MongoOperations mongoOperations,
+      String collectionName,
+      String aclPath) {
+
+    Assert.notNull(mongoOperations, "Mongo operations must be present.");
+    Assert.hasLength(collectionName, "Collection name must be present.");
+    this.mongoOperations = mongoOperations;
+    this.collectionName = collectionName.trim();
+    this.aclPath = isNull(aclPath) ? "" : aclPath.trim();
+  }
+
+  private static String getCollectionName(MongoOperations mongoOperations, Class<?> entityClass) {
+    Assert.notNull(mongoOperations, "Mongo operations must be present.");
+    Assert.notNull(entityClass, "Entity class must be present.");
+    return mongoOperations.getCollectionName(entityClass);
+  }
+
+
+  /**
+   * Wraps the given index strategy, so that the fields of every permission criteria, that is
+   * built by it, are recorded.
+   *
+   * @param delegate the index strategy
+   * @return the recording index strategy
+   */
+  public AclIndexStrategy recording(AclIndexStrategy delegate) {
+    Assert.notNull(delegate, "Acl index strategy must be present.");
+    collation = delegate.getCollation().orElse(null);
+    return new RecordingAclIndexStrategy(delegate);
+  }
+
+  /**
+   * Gets the recorded fields and how often they were used.
+   *
+   * @return the recorded fields
+   */
+  public Map<String, Long> getRecordedFields() {
+    Map<String, Long> fields = new TreeMap<>();
+    recordedFields.forEach((field, counter) -> fields.put(field, counter.sum()));
+    return fields;
+  }
+
+  /**
+   * Clears the recorded fields.
+   */
+  public void reset() {
+    recordedFields.clear();
+  }
+
+  /**
+   * Compares the recorded fields with the acl indexes and their usage statistics.
+   *
+   * @param minAge the minimum age of the usage statistics of an index, before it can be
+   *     considered as unused; the statistics are reset on every restart of the server
+   * @param apply specifies whether the missing indexes should be created and the unused indexes
+   *     should be dropped
+   * @return the acl index advice
+   */
+  public AclIndexAdvice advise(Duration minAge, boolean apply) {
+    Map<String, Long> fields = getRecordedFields();
+    List<Document> indexStats = mongoOperations.execute(collectionName, collection -> collection
+        .aggregate(List.of(new Document("$indexStats", new Document())))
+        .into(new ArrayList<>()));
+    List<IndexInfo> indexes = mongoOperations.indexOps(collectionName).getIndexInfo();
+    Collation indexCollation = collation;
+
+    List<String> missing = fields.keySet().stream()
+        .filter(this::isAclField)
+        .filter(field -> indexes.stream()
+            .noneMatch(index -> hasCollation(index, indexCollation) && isCovered(index, field)))
+        .collect(Collectors.toList());
+
+    Instant usedSince = Instant.now().minus(isNull(minAge) ? Duration.ZERO : minAge);
+    List<String> unused = indexes.stream()
+        .filter(index -> AclIndexOperations.isAclIndex(index, aclPath))
+        .filter(index -> index.getIndexFields().stream()
+            .noneMatch(indexField -> isRecorded(indexField.getKey(), fields.keySet())))
+        .map(IndexInfo::getName)
+        .filter(indexName -> isNotAccessed(indexName, indexStats, usedSince))
+        .collect(Collectors.toList());
+
+    if (apply) {
+      if (!unused.isEmpty()) {
+        mongoOperations.executeCommand(new Document("dropIndexes", collectionName)
+            .append("index", unused));
+      }
+      if (!missing.isEmpty()) {
+        mongoOperations.executeCommand(new Document("createIndexes", collectionName)
+            .append("indexes", missing.stream()
+                .map(field -> buildIndex(field, indexCollation))
+                .collect(Collectors.toList())));
+      }
+    }
+    return AclIndexAdvice.builder()
+        .collectionName(collectionName)
+        .recordedFields(fields)
+        .missingIndexes(missing)
+        .unusedIndexes(unused)
+        .applied(apply)
+        .build();
+  }
+
+  private boolean isAclField(String field) {
+    return aclPath.isEmpty() || field.startsWith(aclPath + ".");
+  }
+
+  private static Document buildIndex(String field, Collation collation) {
+    if (isNull(collation)) {
+      return new Document("key", new Document(field, 1))
+          .append("name", field + "_1");
+    }
+    return new Document("key", new Document(field, 1))
+        .append("name", field + "_1" + CaseInsensitiveAclIndexStrategy.INDEX_NAME_SUFFIX)
+        .append("collation", collation.toDocument());
+  }
+
+  private static boolean hasCollation(IndexInfo index, Collation collation) {
+    Optional<Document> indexCollation = index.getCollation();
+    if (isNull(collation)) {
+      return indexCollation.isEmpty();
+    }
+    Document expected = collation.toDocument();
+    return indexCollation
+        .map(actual -> Objects.equals(expected.get("locale"), actual.get("locale"))
+            && Objects.equals(expected.get("strength"), actual.get("strength")))
+        .orElse(false);
+  }
+
+  private boolean isCovered(IndexInfo index, String field) {
+    for (IndexInfo.IndexField indexField : index.getIndexFields()) {
+      String key = indexField.getKey();
+      if (key.equals(field) || isWildcardOf(key, field)) {
+        return true;
+      }
+      if (isAclField(key)) {
+        return false;
+      }
+    }
+    return false;
+  }
+
+  private static boolean isWildcardOf(String key, String field) {
+    if (!key.endsWith(WILDCARD)) {
+      return false;
+    }
+    String prefix = key.substring(0, key.length() - WILDCARD.length());
+    return prefix.isEmpty() || field.startsWith(prefix);
+  }
+
+  private static boolean isRecorded(String key, Collection<String> fields) {
+    return fields.stream().anyMatch(field -> key.equals(field) || isWildcardOf(key, field));
+  }
+
+  private static boolean isNotAccessed(
+      String indexName,
+      List<Document> indexStats,
+      Instant usedSince) {
+
+    return indexStats.stream()
+        .filter(stats -> indexName.equals(stats.getString("name")))
+        .map(stats -> stats.get("accesses", Document.class))
+        .filter(accesses -> nonNull(accesses) && accesses.get("ops") instanceof Number)
+        .findFirst()
+        .map(accesses -> ((Number) accesses.get("ops")).longValue() == 0L
+            && nonNull(accesses.getDate("since"))
+            && accesses.getDate("since").toInstant().isBefore(usedSince))
+        .orElse(false);
+  }
+
+  private void record(Object value) {
+    if (value instanceof Document) {
+      ((Document) value).forEach((key, nested) -> {
+        if (key.startsWith("$")) {
+          record(nested);
+        } else {
+          recordedFields.computeIfAbsent(key, k -> new LongAdder()).increment();
+        }
+      });
+    } else if (value instanceof Collection) {
+      ((Collection<?>) value).forEach(this::record);
+    }
+  }
+
+  /**
+   * The index strategy, that records the fields of the permission criteria.
+   */
+  private class RecordingAclIndexStrategy implements AclIndexStrategy {
+
+    private final AclIndexStrategy delegate;
+
+    private RecordingAclIndexStrategy(AclIndexStrategy delegate) {
+      this.delegate = delegate;
+    }
+
+    @Override
+    public List<IndexDefinition> getIndexDefinitions(
+        String aclPath,
+        Collection<String> permissions) {
+
+      return delegate.getIndexDefinitions(aclPath, permissions);
+    }
+
+    @Override
+    public Criteria buildPermissionCriteria(
+        String aclPath,
+        AclUserContext userContext,
+        AccessEvaluation accessEvaluation,
+        Collection<String> permissions) {
+
+      Criteria criteria = delegate
+          .buildPermissionCriteria(aclPath, userContext, accessEvaluation, permissions);
+      record(criteria.getCriteriaObject());
+      return criteria;
+    }
+
+    @Override
+    public boolean isWithTokens() {
+      return delegate.isWithTokens();
+    }
+
+    @Override
+    public Optional<Collation> getCollation() {
+      return delegate.getCollation();
+    }
+  }
+
+}
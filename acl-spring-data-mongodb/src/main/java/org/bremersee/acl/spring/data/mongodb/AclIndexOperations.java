@@ -16,22 +16,20 @@
 
 package org.bremersee.acl.spring.data.mongodb;
 
-import static org.springframework.core.annotation.AnnotationUtils.findAnnotation;
 import static org.springframework.util.ObjectUtils.isEmpty;
 
 import java.util.Collection;
 import java.util.List;
-import java.util.Optional;
 import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 import org.bremersee.acl.Ace;
 import org.bremersee.acl.Acl;
-import org.bremersee.acl.annotation.AclHolder;
-import org.springframework.data.domain.Sort.Direction;
+import org.bremersee.acl.annotation.AclHolders;
+import org.bremersee.acl.spring.data.mongodb.index.AclIndexStrategy;
 import org.springframework.data.mongodb.core.MongoOperations;
-import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.IndexDefinition;
 import org.springframework.data.mongodb.core.index.IndexInfo;
 import org.springframework.data.mongodb.core.index.IndexOperations;
 import org.springframework.util.Assert;
@@ -63,7 +61,7 @@ public class AclIndexOperations {
    */
   public List<IndexInfo> getAclIndexInfo(Class<?> entityClass) {
     Assert.notNull(entityClass, "Entity class must be present.");
-    String aclPath = getAclPath(entityClass);
+    String aclPath = AclHolders.getAclPath(entityClass);
     return getAclIndexInfo(entityClass, aclPath);
   }
 
@@ -91,25 +89,73 @@ public class AclIndexOperations {
     return getAclIndexInfo(mongoOperations.indexOps(collectionName), aclPath);
   }
 
-  private List<IndexInfo> getAclIndexInfo(IndexOperations indexOps, String aclPath) {
-    String validAclPath = isEmpty(aclPath) ? "" : aclPath.trim() + ".";
-    // Example: acl.(owner|(entries.(\.*).(guest|users|roles|groups)))(.*)
-    String regex = String.format(
-        "%s(%s|(%s.(.*).(%s|%s|%s|%s)))(.*)",
-        validAclPath, Acl.OWNER, Acl.ENTRIES, Ace.GUEST, Ace.USERS, Ace.ROLES, Ace.GROUPS);
-    Pattern pattern = Pattern.compile(regex);
+  private List<IndexInfo> getAclIndexInfo(
+      IndexOperations indexOps,
+      String aclPath,
+      boolean matchFields) {
+
     return indexOps.getIndexInfo()
         .stream()
-        .filter(indexInfo -> pattern.matcher(indexInfo.getName()).matches())
+        .filter(indexInfo -> isAclIndex(indexInfo, aclPath, matchFields))
         .collect(Collectors.toList());
   }
 
+  private List<IndexInfo> getAclIndexInfo(IndexOperations indexOps, String aclPath) {
+    return getAclIndexInfo(indexOps, aclPath, false);
+  }
+
+  /**
+   * Determines whether the given index is an index of the access control list by its name.
+   *
+   * @param indexInfo the index info
+   * @param aclPath the acl path
+   * @return {@code true} if the index is an index of the access control list, otherwise
+   *     {@code false}
+   */
+  public static boolean isAclIndex(IndexInfo indexInfo, String aclPath) {
+    return isAclIndex(indexInfo, aclPath, false);
+  }
+
+  /**
+   * Determines whether the given index is an index of the access control list by its name or,
+   * if requested, by one of its fields. Matching by fields finds the indexes of strategies, that
+   * don't start with the acl path (see {@link AclIndexStrategy#compound(String,
+   * AclIndexStrategy)}), but it also finds indexes of the application, that contain an acl field.
+   *
+   * @param indexInfo the index info
+   * @param aclPath the acl path
+   * @param matchFields specifies whether an index with a field of the access control list is an
+   *     index of the access control list, too
+   * @return {@code true} if the index is an index of the access control list, otherwise
+   *     {@code false}
+   */
+  public static boolean isAclIndex(IndexInfo indexInfo, String aclPath, boolean matchFields) {
+    String validAclPath = isEmpty(aclPath) ? "" : aclPath.trim() + ".";
+    // Example: acl.(owner|tokens|(entries.(\$\*\*|(.*).(guest|users|roles|groups))))(.*)
+    String regex = String.format(
+        "%s(%s|%s|(%s.(\\$\\*\\*|(.*).(%s|%s|%s|%s))))(.*)",
+        validAclPath, Acl.OWNER, AclTokens.TOKENS,
+        Acl.ENTRIES, Ace.GUEST, Ace.USERS, Ace.ROLES, Ace.GROUPS);
+    if (Pattern.matches(regex, indexInfo.getName())) {
+      return true;
+    }
+    return matchFields && indexInfo.getIndexFields().stream()
+        .anyMatch(indexField -> isAclField(indexField.getKey(), validAclPath));
+  }
+
+  private static boolean isAclField(String key, String validAclPath) {
+    return key.equals(validAclPath + Acl.OWNER)
+        || key.equals(validAclPath + AclTokens.TOKENS)
+        || key.startsWith(validAclPath + Acl.ENTRIES + ".");
+  }
+
   /**
    * Ensure acl indexes.
    *
    * @param entityClass the entity class
    * @param possiblePermissions the possible permissions
-   * @param dropIndexesOfOtherPermissions the drop indexes of other permissions
+   * @param dropIndexesOfOtherPermissions specifies whether the indexes of the entries of
+   *     permissions, that are not in the possible permissions, should be dropped
    */
   public void ensureAclIndexes(
       Class<?> entityClass,
@@ -117,7 +163,7 @@ public class AclIndexOperations {
       boolean dropIndexesOfOtherPermissions) {
 
     Assert.notNull(entityClass, "Entity class must be present.");
-    String aclPath = getAclPath(entityClass);
+    String aclPath = AclHolders.getAclPath(entityClass);
     ensureAclIndexes(entityClass, aclPath, possiblePermissions, dropIndexesOfOtherPermissions);
   }
 
@@ -127,7 +173,8 @@ public class AclIndexOperations {
    * @param entityClass the entity class
    * @param aclPath the acl path
    * @param possiblePermissions the possible permissions
-   * @param dropIndexesOfOtherPermissions the drop indexes of other permissions
+   * @param dropIndexesOfOtherPermissions specifies whether the indexes of the entries of
+   *     permissions, that are not in the possible permissions, should be dropped
    */
   public void ensureAclIndexes(
       Class<?> entityClass,
@@ -149,7 +196,8 @@ public class AclIndexOperations {
    * @param collectionName the collection name
    * @param aclPath the acl path
    * @param possiblePermissions the possible permissions
-   * @param dropIndexesOfOtherPermissions the drop indexes of other permissions
+   * @param dropIndexesOfOtherPermissions specifies whether the indexes of the entries of
+   *     permissions, that are not in the possible permissions, should be dropped
    */
   public void ensureAclIndexes(
       String collectionName,
@@ -174,18 +222,7 @@ public class AclIndexOperations {
     if (dropIndexesOfOtherPermissions) {
       dropUnusedAclIndexes(indexOps, aclPath, possiblePermissions);
     }
-
-    String validAclPath = isEmpty(aclPath) ? "" : aclPath.trim();
-    indexOps.ensureIndex(new Index()
-        .on(path(validAclPath, Acl.OWNER), Direction.ASC));
-    if (!isEmpty(possiblePermissions)) {
-      List.of(Ace.GUEST, Ace.USERS, Ace.ROLES, Ace.GROUPS)
-          .forEach(field -> Set.copyOf(possiblePermissions)
-              .forEach(permission -> indexOps
-                  .ensureIndex(new Index()
-                      .on(path(validAclPath, Acl.ENTRIES, permission, field),
-                          Direction.ASC))));
-    }
+    ensureAclIndexes(indexOps, aclPath, possiblePermissions, AclIndexStrategy.singleField(), false);
   }
 
   private void dropUnusedAclIndexes(
@@ -211,19 +248,193 @@ public class AclIndexOperations {
         .forEach(indexInfo -> indexOps.dropIndex(indexInfo.getName()));
   }
 
-  private String getAclPath(Class<?> entityClass) {
-    return Optional
-        .ofNullable(findAnnotation(entityClass, AclHolder.class))
-        .map(AclHolder::path)
-        .orElseThrow(() -> new IllegalArgumentException(String
-            .format(
-                "Entity class %s must be annotated with %s.",
-                entityClass.getSimpleName(), AclHolder.class.getSimpleName())));
+  /**
+   * Ensure acl indexes of the given index strategy.
+   *
+   * @param entityClass the entity class
+   * @param possiblePermissions the possible permissions
+   * @param indexStrategy the index strategy
+   * @param dropOtherAclIndexes specifies whether acl indexes, that are not defined by the index
+   *     strategy, should be dropped; acl indexes are determined by name and by fields (see
+   *     {@link #isAclIndex(IndexInfo, String, boolean)}), so compound indexes, that contain an
+   *     acl field, are dropped, too
+   */
+  public void ensureAclIndexes(
+      Class<?> entityClass,
+      Collection<String> possiblePermissions,
+      AclIndexStrategy indexStrategy,
+      boolean dropOtherAclIndexes) {
+
+    Assert.notNull(entityClass, "Entity class must be present.");
+    String aclPath = AclHolders.getAclPath(entityClass);
+    ensureAclIndexes(
+        entityClass, aclPath, possiblePermissions, indexStrategy, dropOtherAclIndexes);
+  }
+
+  /**
+   * Ensure acl indexes of the given index strategy.
+   *
+   * @param entityClass the entity class
+   * @param aclPath the acl path
+   * @param possiblePermissions the possible permissions
+   * @param indexStrategy the index strategy
+   * @param dropOtherAclIndexes specifies whether acl indexes, that are not defined by the index
+   *     strategy, should be dropped; acl indexes are determined by name and by fields (see
+   *     {@link #isAclIndex(IndexInfo, String, boolean)}), so compound indexes, that contain an
+   *     acl field, are dropped, too
+   */
+  public void ensureAclIndexes(
+      Class<?> entityClass,
+      String aclPath,
+      Collection<String> possiblePermissions,
+      AclIndexStrategy indexStrategy,
+      boolean dropOtherAclIndexes) {
+
+    Assert.notNull(entityClass, "Entity class must be present.");
+    ensureAclIndexes(
+        mongoOperations.indexOps(entityClass),
+        aclPath,
+        possiblePermissions,
+        indexStrategy,
+        dropOtherAclIndexes);
+  }
+
+  /**
+   * Ensure acl indexes of the given index strategy.
+   *
+   * @param collectionName the collection name
+   * @param aclPath the acl path
+   * @param possiblePermissions the possible permissions
+   * @param indexStrategy the index strategy
+   * @param dropOtherAclIndexes specifies whether acl indexes, that are not defined by the index
+   *     strategy, should be dropped; acl indexes are determined by name and by fields (see
+   *     {@link #isAclIndex(IndexInfo, String, boolean)}), so compound indexes, that contain an
+   *     acl field, are dropped, too
+   */
+  public void ensureAclIndexes(
+      String collectionName,
+      String aclPath,
+      Collection<String> possiblePermissions,
+      AclIndexStrategy indexStrategy,
+      boolean dropOtherAclIndexes) {
+
+    Assert.hasLength(collectionName, "Collection name must be present.");
+    ensureAclIndexes(
+        mongoOperations.indexOps(collectionName.trim()),
+        aclPath,
+        possiblePermissions,
+        indexStrategy,
+        dropOtherAclIndexes);
+  }
+
+  private void ensureAclIndexes(
+      IndexOperations indexOps,
+      String aclPath,
+      Collection<String> possiblePermissions,
+      AclIndexStrategy indexStrategy,
+      boolean dropOtherAclIndexes) {
+
+    Assert.notNull(indexStrategy, "Acl index strategy must be present.");
+    List<IndexDefinition> indexDefinitions = indexStrategy
+        .getIndexDefinitions(aclPath, possiblePermissions);
+    if (dropOtherAclIndexes) {
+      Set<String> indexNames = indexDefinitions.stream()
+          .map(AclIndexOperations::getIndexName)
+          .collect(Collectors.toSet());
+      getAclIndexInfo(indexOps, aclPath, true)
+          .stream()
+          .filter(indexInfo -> !indexNames.contains(indexInfo.getName()))
+          .forEach(indexInfo -> indexOps.dropIndex(indexInfo.getName()));
+    }
+    indexDefinitions.forEach(indexOps::ensureIndex);
+  }
+
+  /**
+   * Gets the name of the given index definition. If the definition has no name, the default name
+   * of MongoDB is returned.
+   *
+   * @param indexDefinition the index definition
+   * @return the index name
+   */
+  public static String getIndexName(IndexDefinition indexDefinition) {
+    Object name = indexDefinition.getIndexOptions().get("name");
+    if (!isEmpty(name)) {
+      return String.valueOf(name);
+    }
+    return indexDefinition.getIndexKeys().entrySet().stream()
+        .map(entry -> entry.getKey() + "_" + entry.getValue())
+        .collect(Collectors.joining("_"));
   }
 
-  private String path(String... pathSegments) {
-    String aclPath = String.join(".", pathSegments);
-    return aclPath.startsWith(".") ? aclPath.substring(1) : aclPath;
+  /**
+   * Ensure acl token indexes. Only an index on the owner and a multikey index on the acl tokens
+   * (see {@link AclTokens}) are created.
+   *
+   * @param entityClass the entity class
+   * @param dropIndexesOfPermissions specifies whether the indexes of the permission entries
+   *     should be dropped
+   */
+  public void ensureAclTokenIndexes(
+      Class<?> entityClass,
+      boolean dropIndexesOfPermissions) {
+
+    Assert.notNull(entityClass, "Entity class must be present.");
+    String aclPath = AclHolders.getAclPath(entityClass);
+    ensureAclTokenIndexes(entityClass, aclPath, dropIndexesOfPermissions);
   }
 
+  /**
+   * Ensure acl token indexes. Only an index on the owner and a multikey index on the acl tokens
+   * (see {@link AclTokens}) are created.
+   *
+   * @param entityClass the entity class
+   * @param aclPath the acl path
+   * @param dropIndexesOfPermissions specifies whether the indexes of the permission entries
+   *     should be dropped
+   */
+  public void ensureAclTokenIndexes(
+      Class<?> entityClass,
+      String aclPath,
+      boolean dropIndexesOfPermissions) {
+
+    Assert.notNull(entityClass, "Entity class must be present.");
+    ensureAclTokenIndexes(
+        mongoOperations.indexOps(entityClass),
+        aclPath,
+        dropIndexesOfPermissions);
+  }
+
+  /**
+   * Ensure acl token indexes. Only an index on the owner and a multikey index on the acl tokens
+   * (see {@link AclTokens}) are created.
+   *
+   * @param collectionName the collection name
+   * @param aclPath the acl path
+   * @param dropIndexesOfPermissions specifies whether the indexes of the permission entries
+   *     should be dropped
+   */
+  public void ensureAclTokenIndexes(
+      String collectionName,
+      String aclPath,
+      boolean dropIndexesOfPermissions) {
+
+    Assert.hasLength(collectionName, "Collection name must be present.");
+    ensureAclTokenIndexes(
+        mongoOperations.indexOps(collectionName.trim()),
+        aclPath,
+        dropIndexesOfPermissions);
+  }
+
+  private void ensureAclTokenIndexes(
+      IndexOperations indexOps,
+      String aclPath,
+      boolean dropIndexesOfPermissions) {
+
+    if (dropIndexesOfPermissions) {
+      dropUnusedAclIndexes(indexOps, aclPath, Set.of());
+    }
+    ensureAclIndexes(indexOps, aclPath, Set.of(), AclIndexStrategy.tokens(), false);
+  }
+
+
 }
@@ -0,0 +1,452 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.bremersee.acl.spring.data.mongodb;
+
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import org.bremersee.acl.annotation.AclHolders;
+import org.bremersee.acl.spring.data.mongodb.index.AclIndexStrategy;
+import org.bson.Document;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.index.IndexDefinition;
+import org.springframework.data.mongodb.core.index.IndexInfo;
+import org.springframework.util.Assert;
+
+/**
+ * The acl index reconciler creates the missing acl indexes of many collections in the background.
+ *
+ * <p>For every collection the indexes of the index strategy are compared with the existing ones:
+ * an index is missing, if no index with its name exists, and it is mismatched, if the existing
+ * index has other keys, another partial filter expression or another collation. All missing
+ * indexes are created with one {@code createIndexes} command and, if requested, all other acl
+ * indexes and the mismatched ones are dropped with one {@code dropIndexes} command before, so that
+ * the mismatched indexes are replaced. Otherwise the mismatched indexes are only reported and the
+ * reconciler doesn't become ready until they are replaced, for example by a reconciliation, that
+ * may drop other acl indexes, or manually followed by a new reconciler. A collection, whose
+ * indexes are up-to-date, costs only the listing of its indexes. The collections are reconciled
+ * in parallel by the given executor and the progress can be queried at any time, for example by
+ * a readiness probe:
+ *
+ * <pre>
+ * AclIndexReconciler reconciler = new AclIndexReconciler(mongoOperations, executor)
+ *     .add(ExampleEntity.class, permissions, AclIndexStrategy.singleField(), false)
+ *     .add(OtherEntity.class, permissions, AclIndexStrategy.tokens(), true);
+ * reconciler.start();
+ * ...
+ * boolean ready = reconciler.isReady();
+ * </pre>
+ *
+ * @author Christian Bremer
+ */
+public class AclIndexReconciler {
+
+  /**
+   * The maximum number of threads of the default executor.
+   */
+  private static final int MAX_DEFAULT_THREADS = 4;
+
+  private final MongoOperations mongoOperations;
+
+  private final Executor executor;
+
+  private final List<Target> targets = new ArrayList<>();
+
+  private final List<AclIndexReconciliation> results = new CopyOnWriteArrayList<>();
+
+  private volatile CompletableFuture<List<AclIndexReconciliation>> future;
+
+  /**
+   * Instantiates a new acl index reconciler, that runs in its own pool of at most
+   * {@value #MAX_DEFAULT_THREADS} daemon threads. The index builds are limited by the server
+   * anyway, so they don't block the common fork join pool of the application.
+   *
+   * @param mongoOperations the mongo operations
+   */
+  public AclIndexReconciler(MongoOperations mongoOperations) {
+    this(mongoOperations, createDefaultExecutor());
+  }
+
+  /**
+   * Instantiates a new acl index reconciler.
+   *
+   * @param mongoOperations the mongo operations
+   * @param executor the executor, that reconciles the collections
+   */
+  public AclIndexReconciler(MongoOperations mongoOperations, Executor executor) {
+    Assert.notNull(mongoOperations, "Mongo operations must be present.");
+    Assert.notNull(executor, "Executor must be present.");
+    this.mongoOperations = mongoOperations;
+    this.executor = executor;
+  }
+
+  /**
+   * Adds the collection of the given entity class.
+   *
+   * @param entityClass the entity class
+   * @param possiblePermissions the possible permissions
+   * @param indexStrategy the index strategy
+   * @param dropOtherAclIndexes specifies whether acl indexes, that are not defined by the index
+   *     strategy, should be dropped (acl indexes are matched by name and by fields)
+   * @return the acl index reconciler
+   */
+  public AclIndexReconciler add(
+      Class<?> entityClass,
+      Collection<String> possiblePermissions,
+      AclIndexStrategy indexStrategy,
+      boolean dropOtherAclIndexes) {
+
+    Assert.notNull(entityClass, "Entity class must be present.");
+    return add(
+        mongoOperations.getCollectionName(entityClass),
+        AclHolders.getAclPath(entityClass),
+        possiblePermissions,
+        indexStrategy,
+        dropOtherAclIndexes);
+  }
+
+  /**
+   * Adds the given collection.
+   *
+   * @param collectionName the collection name
+   * @param aclPath the acl path
+   * @param possiblePermissions the possible permissions
+   * @param indexStrategy the index strategy
+   * @param dropOtherAclIndexes specifies whether acl indexes, that are not defined by the index
+   *     strategy, should be dropped (acl indexes are matched by name and by fields)
+   * @return the acl index reconciler
+   */
+  public synchronized AclIndexReconciler add(
+      String collectionName,
+      String aclPath,
+      Collection<String> possiblePermissions,
+      AclIndexStrategy indexStrategy,
+      boolean dropOtherAclIndexes) {
+
+    Assert.hasLength(collectionName, "Collection name must be present.");
+    Assert.notNull(indexStrategy, "Acl index strategy must be present.");
+    Assert.state(isNull(future), "The reconciliation has already been started.");
+    targets.add(new Target(
+        collectionName.trim(),
+        aclPath,
+        isNull(possiblePermissions) ? List.of() : new ArrayList<>(possiblePermissions),
+        indexStrategy,
+        dropOtherAclIndexes));
+    return this;
+  }
+
+  /**
+   * Starts the reconciliation of all added collections in the background. If it is already
+   * started, the running reconciliation is returned.
+   *
+   * @return the future of the results
+   */
+  public CompletableFuture<List<AclIndexReconciliation>> start() {
+    return start(null);
+  }
+
+  /**
+   * Starts the reconciliation of all added collections in the background. If it is already
+   * started, the running reconciliation is returned.
+   *
+   * @param progressListener the progress listener, that is called with the result of every
+   *     collection
+   * @return the future of the results
+   */
+  public synchronized CompletableFuture<List<AclIndexReconciliation>> start(
+      Consumer<AclIndexReconciliation> progressListener) {
+
+    if (nonNull(future)) {
+      return future;
+    }
+    List<CompletableFuture<AclIndexReconciliation>> futures = targets.stream()
+        .map(target -> CompletableFuture.supplyAsync(() -> {
+          AclIndexReconciliation result = reconcile(target);
+          results.add(result);
+          if (nonNull(progressListener)) {
+            progressListener.accept(result);
+          }
+          return result;
+        }, executor))
+        .collect(Collectors.toList());
+    future = CompletableFuture
+        .allOf(futures.toArray(new CompletableFuture[0]))
+        .thenApply(ignored -> futures.stream()
+            .map(CompletableFuture::join)
+            .collect(Collectors.toList()));
+    return future;
+  }
+
+  /**
+   * Reconciles the acl indexes of the given collection in the current thread.
+   *
+   * @param collectionName the collection name
+   * @param aclPath the acl path
+   * @param possiblePermissions the possible permissions
+   * @param indexStrategy the index strategy
+   * @param dropOtherAclIndexes specifies whether acl indexes, that are not defined by the index
+   *     strategy, should be dropped (acl indexes are matched by name and by fields)
+   * @return the result
+   */
+  public AclIndexReconciliation reconcile(
+      String collectionName,
+      String aclPath,
+      Collection<String> possiblePermissions,
+      AclIndexStrategy indexStrategy,
+      boolean dropOtherAclIndexes) {
+
+    Assert.hasLength(collectionName, "Collection name must be present.");
+    Assert.notNull(indexStrategy, "Acl index strategy must be present.");
+    return reconcile(new Target(
+        collectionName.trim(),
+        aclPath,
+        isNull(possiblePermissions) ? List.of() : new ArrayList<>(possiblePermissions),
+        indexStrategy,
+        dropOtherAclIndexes));
+  }
+
+  private AclIndexReconciliation reconcile(Target target) {
+    ImmutableAclIndexReconciliation.Builder result = AclIndexReconciliation.builder()
+        .collectionName(target.collectionName);
+    try {
+      Map<String, IndexDefinition> desired = new LinkedHashMap<>();
+      target.indexStrategy
+          .getIndexDefinitions(target.aclPath, target.possiblePermissions)
+          .forEach(definition -> desired
+              .putIfAbsent(AclIndexOperations.getIndexName(definition), definition));
+      Map<String, Document> existing = new LinkedHashMap<>();
+      mongoOperations.execute(target.collectionName, collection -> collection
+              .listIndexes()
+              .into(new ArrayList<>()))
+          .forEach(index -> existing.put(index.getString("name"), index));
+
+      List<String> mismatched = desired.entrySet().stream()
+          .filter(entry -> existing.containsKey(entry.getKey()))
+          .filter(entry -> !matches(existing.get(entry.getKey()), entry.getValue()))
+          .map(Map.Entry::getKey)
+          .collect(Collectors.toList());
+      result.mismatchedIndexes(mismatched);
+
+      if (target.dropOtherAclIndexes) {
+        List<String> dropped = new ArrayList<>(mismatched);
+        existing.values().stream()
+            .filter(index -> !desired.containsKey(index.getString("name")))
+            .filter(index -> AclIndexOperations
+                .isAclIndex(IndexInfo.indexInfoOf(index), target.aclPath, true))
+            .map(index -> index.getString("name"))
+            .forEach(dropped::add);
+        if (!dropped.isEmpty()) {
+          mongoOperations.executeCommand(new Document("dropIndexes", target.collectionName)
+              .append("index", dropped));
+          result.droppedIndexes(dropped);
+          dropped.forEach(existing::remove);
+        }
+      }
+
+      List<Document> missing = new ArrayList<>();
+      desired.forEach((indexName, definition) -> {
+        if (!existing.containsKey(indexName)) {
+          Document index = new Document("key", definition.getIndexKeys());
+          index.putAll(definition.getIndexOptions());
+          index.put("name", indexName);
+          missing.add(index);
+        }
+      });
+      if (!missing.isEmpty()) {
+        mongoOperations.executeCommand(new Document("createIndexes", target.collectionName)
+            .append("indexes", missing));
+        result.createdIndexes(missing.stream()
+            .map(index -> index.getString("name"))
+            .collect(Collectors.toList()));
+      }
+    } catch (RuntimeException e) {
+      result.error(String.valueOf(e.getMessage()));
+    }
+    return result.build();
+  }
+
+  /**
+   * Determines whether the existing index has the keys, the partial filter expression and the
+   * collation of the given definition. Only the collation attributes of the definition are
+   * compared, because the server adds the defaults of the locale.
+   *
+   * @param index the existing index
+   * @param definition the index definition
+   * @return {@code true} if the index matches the definition, otherwise {@code false}
+   */
+  private static boolean matches(Document index, IndexDefinition definition) {
+    Document options = definition.getIndexOptions();
+    if (!isEqual(index.get("key"), definition.getIndexKeys(), true)) {
+      return false;
+    }
+    Object partialFilterExpression = options.get("partialFilterExpression");
+    if (!isEqual(index.get("partialFilterExpression"), partialFilterExpression, false)) {
+      return false;
+    }
+    Object expectedCollation = options.get("collation");
+    Object actualCollation = index.get("collation");
+    if (isNull(expectedCollation) || isNull(actualCollation)) {
+      return isNull(expectedCollation) && isNull(actualCollation);
+    }
+    Document actual = (Document) actualCollation;
+    return ((Document) expectedCollation).entrySet().stream()
+        .allMatch(entry -> isEqual(actual.get(entry.getKey()), entry.getValue(), false));
+  }
+
+  private static boolean isEqual(Object actual, Object expected, boolean ordered) {
+    if (actual instanceof Number && expected instanceof Number) {
+      return ((Number) actual).doubleValue() == ((Number) expected).doubleValue();
+    }
+    if (actual instanceof Map && expected instanceof Map) {
+      Map<?, ?> actualMap = (Map<?, ?>) actual;
+      Map<?, ?> expectedMap = (Map<?, ?>) expected;
+      if (actualMap.size() != expectedMap.size()) {
+        return false;
+      }
+      if (ordered && !List.copyOf(actualMap.keySet()).equals(List.copyOf(expectedMap.keySet()))) {
+        return false;
+      }
+      return expectedMap.entrySet().stream()
+          .allMatch(entry -> actualMap.containsKey(entry.getKey())
+              && isEqual(actualMap.get(entry.getKey()), entry.getValue(), false));
+    }
+    if (actual instanceof List && expected instanceof List) {
+      List<?> actualList = (List<?>) actual;
+      List<?> expectedList = (List<?>) expected;
+      if (actualList.size() != expectedList.size()) {
+        return false;
+      }
+      for (int i = 0; i < actualList.size(); i++) {
+        if (!isEqual(actualList.get(i), expectedList.get(i), false)) {
+          return false;
+        }
+      }
+      return true;
+    }
+    return Objects.equals(actual, expected);
+  }
+
+  private static Executor createDefaultExecutor() {
+    int threads = Math.min(MAX_DEFAULT_THREADS, Runtime.getRuntime().availableProcessors());
+    AtomicInteger threadNumber = new AtomicInteger();
+    ThreadPoolExecutor executor = new ThreadPoolExecutor(
+        threads, threads, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+          Thread thread = new Thread(
+              runnable, "acl-index-reconciler-" + threadNumber.incrementAndGet());
+          thread.setDaemon(true);
+          return thread;
+        });
+    executor.allowCoreThreadTimeOut(true);
+    return executor;
+  }
+
+  /**
+   * Gets the number of collections, that are reconciled.
+   *
+   * @return the total count
+   */
+  public synchronized int getTotalCount() {
+    return targets.size();
+  }
+
+  /**
+   * Gets the number of collections, that are already reconciled.
+   *
+   * @return the completed count
+   */
+  public int getCompletedCount() {
+    return results.size();
+  }
+
+  /**
+   * Gets the results of the collections, that are already reconciled, in the order of their
+   * completion.
+   *
+   * @return the results
+   */
+  public List<AclIndexReconciliation> getResults() {
+    return List.copyOf(results);
+  }
+
+  /**
+   * Determines whether the reconciliation of all collections is completed.
+   *
+   * @return {@code true} if the reconciliation is completed, otherwise {@code false}
+   */
+  public boolean isCompleted() {
+    CompletableFuture<List<AclIndexReconciliation>> current = future;
+    return nonNull(current) && current.isDone();
+  }
+
+  /**
+   * Determines whether the reconciliation of all collections is completed successfully and no
+   * mismatched index remains, that was only reported.
+   *
+   * @return {@code true} if the acl indexes of all collections are consistent, otherwise
+   *     {@code false}
+   */
+  public boolean isReady() {
+    return isCompleted() && results.stream().allMatch(AclIndexReconciliation::isConsistent);
+  }
+
+
+  /**
+   * The collection, whose acl indexes are reconciled.
+   */
+  private static class Target {
+
+    private final String collectionName;
+
+    private final String aclPath;
+
+    private final Collection<String> possiblePermissions;
+
+    private final AclIndexStrategy indexStrategy;
+
+    private final boolean dropOtherAclIndexes;
+
+    private Target(
+        String collectionName,
+        String aclPath,
+        Collection<String> possiblePermissions,
+        AclIndexStrategy indexStrategy,
+        boolean dropOtherAclIndexes) {
+
+      this.collectionName = collectionName;
+      this.aclPath = aclPath;
+      this.possiblePermissions = possiblePermissions;
+      this.indexStrategy = indexStrategy;
+      this.dropOtherAclIndexes = dropOtherAclIndexes;
+    }
+  }
+
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.bremersee.acl.spring.data.mongodb;
+
+import java.util.List;
+import java.util.Optional;
+import org.immutables.value.Value;
+import org.immutables.value.Value.Style.ImplementationVisibility;
+
+/**
+ * The result of the acl index reconciliation of one collection.
+ *
+ * @author Christian Bremer
+ */
+@Value.Immutable
+@Value.Style(visibility = ImplementationVisibility.PACKAGE)
+public interface AclIndexReconciliation {
+
+  /**
+   * Creates acl index reconciliation builder.
+   *
+   * @return the acl index reconciliation builder
+   */
+  static ImmutableAclIndexReconciliation.Builder builder() {
+    return ImmutableAclIndexReconciliation.builder();
+  }
+
+  /**
+   * Gets the collection name.
+   *
+   * @return the collection name
+   */
+  String getCollectionName();
+
+  /**
+   * Gets the names of the created indexes.
+   *
+   * @return the created indexes
+   */
+  List<String> getCreatedIndexes();
+
+  /**
+   * Gets the names of the dropped indexes.
+   *
+   * @return the dropped indexes
+   */
+  List<String> getDroppedIndexes();
+
+  /**
+   * Gets the names of the existing indexes, whose keys, partial filter expression or collation
+   * differ from the definition of the index strategy. They are replaced, if other acl indexes may
+   * be dropped, otherwise they are only reported.
+   *
+   * @return the mismatched indexes
+   */
+  List<String> getMismatchedIndexes();
+
+  /**
+   * Gets the error message, if the reconciliation has failed.
+   *
+   * @return the error message
+   */
+  Optional<String> getError();
+
+  /**
+   * Determines whether the reconciliation was successful.
+   *
+   * @return {@code true} if the reconciliation was successful, otherwise {@code false}
+   */
+  @Value.Derived
+  default boolean isSuccessful() {
+    return getError().isEmpty();
+  }
+
+  /**
+   * Determines whether the acl indexes of the collection match the index strategy after the
+   * reconciliation, i.e. the reconciliation was successful and all mismatched indexes were
+   * replaced.
+   *
+   * @return {@code true} if the acl indexes are consistent, otherwise {@code false}
+   */
+  @Value.Derived
+  default boolean isConsistent() {
+    return isSuccessful() && getDroppedIndexes().containsAll(getMismatchedIndexes());
+  }
+
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.bremersee.acl.spring.data.mongodb;
+
+import java.util.List;
+import java.util.Optional;
+import org.immutables.value.Value;
+import org.immutables.value.Value.Style.ImplementationVisibility;
+
+/**
+ * A page of the documents, that a user can access.
+ *
+ * @param <T> the type of the documents
+ * @author Christian Bremer
+ */
+@Value.Immutable
+@Value.Style(visibility = ImplementationVisibility.PACKAGE)
+public interface AclPage<T> {
+
+  /**
+   * Creates acl page builder.
+   *
+   * @param <T> the type of the documents
+   * @return the acl page builder
+   */
+  static <T> ImmutableAclPage.Builder<T> builder() {
+    return ImmutableAclPage.builder();
+  }
+
+  /**
+   * Gets the documents of the page.
+   *
+   * @return the content
+   */
+  List<T> getContent();
+
+  /**
+   * Gets the opaque continuation token, with which the next page can be read.
+   *
+   * @return the continuation token or empty, if this is the last page
+   */
+  Optional<String> getContinuationToken();
+
+  /**
+   * Determines whether this is the last page.
+   *
+   * @return {@code true} if this is the last page, otherwise {@code false}
+   */
+  @Value.Derived
+  default boolean isLast() {
+    return getContinuationToken().isEmpty();
+  }
+
+}
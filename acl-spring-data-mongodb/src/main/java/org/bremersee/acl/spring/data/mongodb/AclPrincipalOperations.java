@@ -0,0 +1,216 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.bremersee.acl.spring.data.mongodb;
+
+import java.util.Collection;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.util.Assert;
+
+/**
+ * The acl principal operations remove or rename a principal in the access control lists of all
+ * documents of a collection and transfer the ownership of all documents from one owner to another.
+ * The principals are removed or renamed with a pipeline update in all entries, whatever the names
+ * of the permissions are, so MongoDB 4.2 or newer is required.
+ *
+ * <p>The documents are modified in batches by the {@link AclBulkOperations}, so the progress can
+ * be tracked and an interrupted operation can be resumed with the last id of its result (see
+ * {@link AclBulkOptions}).
+ *
+ * @author Christian Bremer
+ */
+public class AclPrincipalOperations {
+
+  private final AclCriteriaAndUpdateBuilder builder;
+
+  private final AclBulkOperations bulkOperations;
+
+  /**
+   * Instantiates new acl principal operations.
+   *
+   * @param mongoOperations the mongo operations
+   * @param builder the acl criteria and update builder
+   */
+  public AclPrincipalOperations(
+      MongoOperations mongoOperations,
+      AclCriteriaAndUpdateBuilder builder) {
+
+    Assert.notNull(mongoOperations, "Mongo operations must be present.");
+    Assert.notNull(builder, "Acl criteria and update builder must be present.");
+    this.bulkOperations = new AclBulkOperations(mongoOperations, builder);
+    this.builder = builder;
+  }
+
+  /**
+   * Removes the given principal from all access control lists.
+   *
+   * @param entityClass the entity class
+   * @param principalType the principal type
+   * @param name the name of the principal
+   * @param possiblePermissions the possible permissions; if they are present, only the documents,
+   *     that contain the principal, are modified, otherwise all documents with entries are
+   *     processed
+   * @param options the options
+   * @return the result
+   */
+  public AclBulkResult purge(
+      Class<?> entityClass,
+      AclPrincipalType principalType,
+      String name,
+      Collection<String> possiblePermissions,
+      AclBulkOptions options) {
+
+    return bulkOperations.update(
+        entityClass,
+        builder.applyCollation(Query
+            .query(builder.buildPrincipalCriteria(principalType, name, possiblePermissions))),
+        builder.buildRemovePrincipalUpdate(principalType, name),
+        options);
+  }
+
+  /**
+   * Removes the given principal from all access control lists.
+   *
+   * @param collectionName the collection name
+   * @param principalType the principal type
+   * @param name the name of the principal
+   * @param possiblePermissions the possible permissions; if they are present, only the documents,
+   *     that contain the principal, are modified, otherwise all documents with entries are
+   *     processed
+   * @param options the options
+   * @return the result
+   */
+  public AclBulkResult purge(
+      String collectionName,
+      AclPrincipalType principalType,
+      String name,
+      Collection<String> possiblePermissions,
+      AclBulkOptions options) {
+
+    return bulkOperations.update(
+        collectionName,
+        builder.applyCollation(Query
+            .query(builder.buildPrincipalCriteria(principalType, name, possiblePermissions))),
+        builder.buildRemovePrincipalUpdate(principalType, name),
+        options);
+  }
+
+  /**
+   * Renames the given principal in all access control lists.
+   *
+   * @param entityClass the entity class
+   * @param principalType the principal type
+   * @param oldName the old name of the principal
+   * @param newName the new name of the principal
+   * @param possiblePermissions the possible permissions; if they are present, only the documents,
+   *     that contain the principal, are modified, otherwise all documents with entries are
+   *     processed
+   * @param options the options
+   * @return the result
+   */
+  public AclBulkResult rename(
+      Class<?> entityClass,
+      AclPrincipalType principalType,
+      String oldName,
+      String newName,
+      Collection<String> possiblePermissions,
+      AclBulkOptions options) {
+
+    return bulkOperations.update(
+        entityClass,
+        builder.applyCollation(Query
+            .query(builder.buildPrincipalCriteria(principalType, oldName, possiblePermissions))),
+        builder.buildRenamePrincipalUpdate(principalType, oldName, newName),
+        options);
+  }
+
+  /**
+   * Renames the given principal in all access control lists.
+   *
+   * @param collectionName the collection name
+   * @param principalType the principal type
+   * @param oldName the old name of the principal
+   * @param newName the new name of the principal
+   * @param possiblePermissions the possible permissions; if they are present, only the documents,
+   *     that contain the principal, are modified, otherwise all documents with entries are
+   *     processed
+   * @param options the options
+   * @return the result
+   */
+  public AclBulkResult rename(
+      String collectionName,
+      AclPrincipalType principalType,
+      String oldName,
+      String newName,
+      Collection<String> possiblePermissions,
+      AclBulkOptions options) {
+
+    return bulkOperations.update(
+        collectionName,
+        builder.applyCollation(Query
+            .query(builder.buildPrincipalCriteria(principalType, oldName, possiblePermissions))),
+        builder.buildRenamePrincipalUpdate(principalType, oldName, newName),
+        options);
+  }
+
+  /**
+   * Transfers the ownership of all documents of the old owner to the new owner.
+   *
+   * @param entityClass the entity class
+   * @param oldOwner the old owner
+   * @param newOwner the new owner
+   * @param options the options
+   * @return the result
+   */
+  public AclBulkResult transferOwnership(
+      Class<?> entityClass,
+      String oldOwner,
+      String newOwner,
+      AclBulkOptions options) {
+
+    Assert.hasText(oldOwner, "Old owner must be present.");
+    return bulkOperations.update(
+        entityClass,
+        builder.applyCollation(Query.query(builder.buildOwnerCriteria(oldOwner))),
+        builder.buildUpdate(newOwner),
+        options);
+  }
+
+  /**
+   * Transfers the ownership of all documents of the old owner to the new owner.
+   *
+   * @param collectionName the collection name
+   * @param oldOwner the old owner
+   * @param newOwner the new owner
+   * @param options the options
+   * @return the result
+   */
+  public AclBulkResult transferOwnership(
+      String collectionName,
+      String oldOwner,
+      String newOwner,
+      AclBulkOptions options) {
+
+    Assert.hasText(oldOwner, "Old owner must be present.");
+    return bulkOperations.update(
+        collectionName,
+        builder.applyCollation(Query.query(builder.buildOwnerCriteria(oldOwner))),
+        builder.buildUpdate(newOwner),
+        options);
+  }
+
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.bremersee.acl.spring.data.mongodb;
+
+import org.bremersee.acl.Ace;
+
+/**
+ * The principal types of an access control entry.
+ *
+ * @author Christian Bremer
+ */
+public enum AclPrincipalType {
+
+  /**
+   * User principal type.
+   */
+  USER(Ace.USERS, AclTokens.USER_PREFIX),
+
+  /**
+   * Role principal type.
+   */
+  ROLE(Ace.ROLES, AclTokens.ROLE_PREFIX),
+
+  /**
+   * Group principal type.
+   */
+  GROUP(Ace.GROUPS, AclTokens.GROUP_PREFIX);
+
+  private final String field;
+
+  private final String tokenPrefix;
+
+  AclPrincipalType(String field, String tokenPrefix) {
+    this.field = field;
+    this.tokenPrefix = tokenPrefix;
+  }
+
+  /**
+   * Gets the field of the access control entry.
+   *
+   * @return the field
+   */
+  public String getField() {
+    return field;
+  }
+
+  /**
+   * Gets the suffix of the tokens of the given principal, e.g. {@code |u:anna}. The suffix is
+   * unique, because the names of the principals must not contain the separator.
+   *
+   * @param name the name of the principal
+   * @return the token suffix
+   */
+  public String getTokenSuffix(String name) {
+    return AclTokens.SEPARATOR + tokenPrefix + AclTokens.principal(name);
+  }
+
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.bremersee.acl.spring.data.mongodb;
+
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Optional;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import org.bremersee.acl.Acl;
+import org.bremersee.acl.PartialAcl;
+import org.bremersee.acl.annotation.AclHolders;
+import org.bremersee.acl.spring.data.mongodb.convert.DocumentToAclConverter;
+import org.bson.Document;
+import org.springframework.data.mongodb.core.aggregation.LiteralOperators;
+import org.springframework.data.mongodb.core.query.Field;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.util.Assert;
+
+/**
+ * The acl projection limits the parts of the access control list, that are read together with a
+ * document.
+ *
+ * <p>The projection either excludes the access control list entirely or includes only the owner
+ * and the entries of the requested permissions. The second one is an inclusion projection, so all
+ * other fields, that should be read, must be included, too. It adds the included permissions to
+ * the access control list (see {@link #INCLUDED_PERMISSIONS}), so that the
+ * {@link DocumentToAclConverter} returns a {@link PartialAcl}, too, when an entity is read with
+ * this projection. A partial access control list can not be written back, so such an entity can
+ * not be saved.
+ *
+ * @author Christian Bremer
+ */
+public class AclProjection {
+
+  /**
+   * The name of the field, that contains the included permissions of a projected access control
+   * list. It exists only in the result of a query with this projection.
+   */
+  public static final String INCLUDED_PERMISSIONS = "includedPermissions";
+
+  private final String aclPath;
+
+  private final SortedSet<String> includedPermissions;
+
+  private AclProjection(String aclPath, SortedSet<String> includedPermissions) {
+    this.aclPath = isNull(aclPath) ? "" : aclPath;
+    this.includedPermissions = includedPermissions;
+  }
+
+  /**
+   * Creates a projection, that excludes the access control list.
+   *
+   * @param entityClass the entity class
+   * @return the acl projection
+   */
+  public static AclProjection excludeAcl(Class<?> entityClass) {
+    return excludeAcl(AclHolders.getAclPath(entityClass));
+  }
+
+  /**
+   * Creates a projection, that excludes the access control list.
+   *
+   * @param aclPath the acl path
+   * @return the acl projection
+   */
+  public static AclProjection excludeAcl(String aclPath) {
+    Assert.hasText(aclPath, "Acl path must be present.");
+    return new AclProjection(aclPath, null);
+  }
+
+  /**
+   * Creates a projection, that includes only the owner and the entries of the given permissions.
+   *
+   * @param entityClass the entity class
+   * @param permissions the permissions
+   * @return the acl projection
+   */
+  public static AclProjection includePermissions(
+      Class<?> entityClass,
+      Collection<String> permissions) {
+    return includePermissions(AclHolders.getAclPath(entityClass), permissions);
+  }
+
+  /**
+   * Creates a projection, that includes only the owner and the entries of the given permissions.
+   *
+   * @param aclPath the acl path
+   * @param permissions the permissions
+   * @return the acl projection
+   */
+  public static AclProjection includePermissions(
+      String aclPath,
+      Collection<String> permissions) {
+
+    SortedSet<String> includedPermissions = new TreeSet<>();
+    if (nonNull(permissions)) {
+      permissions.stream()
+          .filter(permission -> nonNull(permission) && !permission.isBlank())
+          .forEach(includedPermissions::add);
+    }
+    return new AclProjection(aclPath, Collections.unmodifiableSortedSet(includedPermissions));
+  }
+
+
+  /**
+   * Determines whether the access control list is excluded.
+   *
+   * @return {@code true} if the access control list is excluded, otherwise {@code false}
+   */
+  public boolean isAclExcluded() {
+    return isNull(includedPermissions);
+  }
+
+  /**
+   * Gets the included permissions.
+   *
+   * @return the included permissions; it is empty, if the access control list is excluded
+   */
+  public SortedSet<String> getIncludedPermissions() {
+    return isAclExcluded() ? Collections.emptySortedSet() : includedPermissions;
+  }
+
+  /**
+   * Adds this projection to the fields of the given query.
+   *
+   * @param query the query
+   * @return the query
+   */
+  public Query applyTo(Query query) {
+    Assert.notNull(query, "Query must be present.");
+    Field fields = query.fields();
+    if (isAclExcluded()) {
+      fields.exclude(aclPath);
+    } else {
+      fields.include(path(Acl.OWNER));
+      includedPermissions.forEach(permission -> fields.include(path(Acl.ENTRIES, permission)));
+      fields.project(LiteralOperators.valueOf(new ArrayList<>(includedPermissions)).asLiteral())
+          .as(path(INCLUDED_PERMISSIONS));
+    }
+    return query;
+  }
+
+  /**
+   * Reads the partial access control list from the given document, that was read with this
+   * projection.
+   *
+   * @param document the document
+   * @return the partial access control list or empty, if the access control list is excluded or
+   *     the document has none
+   */
+  public Optional<PartialAcl> readAcl(Document document) {
+    if (isAclExcluded() || isNull(document)) {
+      return Optional.empty();
+    }
+    Object value = document;
+    for (String segment : aclPath.isEmpty() ? new String[0] : aclPath.split("\\.")) {
+      value = value instanceof Map ? ((Map<?, ?>) value).get(segment) : null;
+    }
+    if (!(value instanceof Map)) {
+      return Optional.empty();
+    }
+    //noinspection unchecked
+    Acl acl = new DocumentToAclConverter().convert(new Document((Map<String, Object>) value));
+    return Optional.of(PartialAcl.of(acl, includedPermissions));
+  }
+
+  private String path(String... pathSegments) {
+    if (aclPath.isEmpty()) {
+      return String.join(".", pathSegments);
+    }
+    return aclPath + "." + String.join(".", pathSegments);
+  }
+
+}
@@ -0,0 +1,211 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.bremersee.acl.spring.data.mongodb;
+
+import static java.util.Objects.isNull;
+import static org.springframework.util.ObjectUtils.isEmpty;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import org.bremersee.acl.Ace;
+import org.bremersee.acl.Acl;
+import org.bremersee.acl.AclUserContext;
+import org.springframework.util.Assert;
+
+/**
+ * The acl tokens are a flat representation of the entries of an access control list. They are
+ * stored in the field {@code tokens} of the access control list, so that a single multikey index
+ * on this field can be used to find all documents, a user has access to, instead of one index for
+ * each permission and each principal type.
+ *
+ * <p>A token consists of the permission and the principal, e.g. {@code read|*} (guest),
+ * {@code read|u:anna} (user), {@code read|r:ROLE_USER} (role) or {@code read|g:dev} (group).
+ * The owner is not part of the tokens. The names of the principals must not contain the
+ * separator, otherwise the principal of a token would be ambiguous (see
+ * {@link AclPrincipalType#getTokenSuffix(String)}).
+ *
+ * @author Christian Bremer
+ */
+public abstract class AclTokens {
+
+  /**
+   * The field name of the tokens.
+   */
+  public static final String TOKENS = "tokens";
+
+  /**
+   * The separator of permission and principal.
+   */
+  public static final String SEPARATOR = "|";
+
+  /**
+   * The principal of a guest token.
+   */
+  public static final String GUEST_PRINCIPAL = "*";
+
+  /**
+   * The prefix of a user principal.
+   */
+  public static final String USER_PREFIX = "u:";
+
+  /**
+   * The prefix of a role principal.
+   */
+  public static final String ROLE_PREFIX = "r:";
+
+  /**
+   * The prefix of a group principal.
+   */
+  public static final String GROUP_PREFIX = "g:";
+
+  private AclTokens() {
+  }
+
+  /**
+   * Creates the guest token of the given permission.
+   *
+   * @param permission the permission
+   * @return the guest token
+   */
+  public static String guest(String permission) {
+    return permission + SEPARATOR + GUEST_PRINCIPAL;
+  }
+
+  /**
+   * Creates the user token of the given permission. The user must not contain the separator.
+   *
+   * @param permission the permission
+   * @param user the user
+   * @return the user token
+   */
+  public static String user(String permission, String user) {
+    return permission + SEPARATOR + USER_PREFIX + principal(user);
+  }
+
+  /**
+   * Creates the role token of the given permission. The role must not contain the separator.
+   *
+   * @param permission the permission
+   * @param role the role
+   * @return the role token
+   */
+  public static String role(String permission, String role) {
+    return permission + SEPARATOR + ROLE_PREFIX + principal(role);
+  }
+
+  /**
+   * Creates the group token of the given permission. The group must not contain the separator.
+   *
+   * @param permission the permission
+   * @param group the group
+   * @return the group token
+   */
+  public static String group(String permission, String group) {
+    return permission + SEPARATOR + GROUP_PREFIX + principal(group);
+  }
+
+  /**
+   * Validates the name of a principal, which must not contain the separator.
+   *
+   * @param name the name of the principal
+   * @return the name of the principal
+   */
+  static String principal(String name) {
+    Assert.isTrue(
+        isNull(name) || !name.contains(SEPARATOR),
+        String.format("Name of principal '%s' must not contain '%s'.", name, SEPARATOR));
+    return name;
+  }
+
+  /**
+   * Creates the tokens of the given access control list.
+   *
+   * @param acl the access control list
+   * @return the sorted tokens
+   */
+  public static List<String> of(Acl acl) {
+    Set<String> tokens = new TreeSet<>();
+    if (!isEmpty(acl)) {
+      for (Map.Entry<String, Ace> entry : acl.getPermissionMap().entrySet()) {
+        addTokens(tokens, entry.getKey(), entry.getValue());
+      }
+    }
+    return List.copyOf(tokens);
+  }
+
+  private static void addTokens(Set<String> tokens, String permission, Ace ace) {
+    if (isEmpty(permission) || isEmpty(ace)) {
+      return;
+    }
+    if (ace.isGuest()) {
+      tokens.add(guest(permission));
+    }
+    ace.getUsers().forEach(user -> tokens.add(user(permission, user)));
+    ace.getRoles().forEach(role -> tokens.add(role(permission, role)));
+    ace.getGroups().forEach(group -> tokens.add(group(permission, group)));
+  }
+
+  /**
+   * Creates the tokens, that grant the given permission to the given user.
+   *
+   * @param userContext the user context
+   * @param permission the permission
+   * @return the sorted tokens
+   */
+  public static List<String> of(AclUserContext userContext, String permission) {
+    return of(userContext, List.of(permission));
+  }
+
+  /**
+   * Creates the tokens, that grant any of the given permissions to the given user.
+   *
+   * @param userContext the user context
+   * @param permissions the permissions
+   * @return the sorted tokens
+   */
+  public static List<String> of(AclUserContext userContext, Collection<String> permissions) {
+    if (isEmpty(userContext) || isEmpty(permissions)) {
+      return List.of();
+    }
+    Set<String> tokens = new TreeSet<>();
+    for (String permission : permissions) {
+      if (isEmpty(permission)) {
+        continue;
+      }
+      tokens.add(guest(permission));
+      // principals with the separator can't be stored, so they don't have tokens
+      if (isValid(userContext.getName()) && !userContext.getName().isBlank()) {
+        tokens.add(user(permission, userContext.getName()));
+      }
+      userContext.getRoles().stream()
+          .filter(AclTokens::isValid)
+          .forEach(role -> tokens.add(role(permission, role)));
+      userContext.getGroups().stream()
+          .filter(AclTokens::isValid)
+          .forEach(group -> tokens.add(group(permission, group)));
+    }
+    return List.copyOf(tokens);
+  }
+
+  private static boolean isValid(String name) {
+    return !isEmpty(name) && !name.contains(SEPARATOR);
+  }
+
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.bremersee.acl.spring.data.mongodb.convert;
+
+import static java.util.Objects.isNull;
+
+import java.util.Collection;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import org.bremersee.acl.Ace;
+import org.bson.BsonReader;
+import org.bson.BsonType;
+import org.bson.BsonWriter;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+
+/**
+ * The ace codec reads and writes an access control entry directly from and to BSON without an
+ * intermediate document. The format is the same as the one of the {@link AceToDocumentConverter}.
+ *
+ * @author Christian Bremer
+ */
+public class AceCodec implements Codec<Ace> {
+
+  @Override
+  public void encode(BsonWriter writer, Ace value, EncoderContext encoderContext) {
+    writer.writeStartDocument();
+    writer.writeBoolean(Ace.GUEST, value.isGuest());
+    writeStrings(writer, Ace.USERS, value.getUsers());
+    writeStrings(writer, Ace.ROLES, value.getRoles());
+    writeStrings(writer, Ace.GROUPS, value.getGroups());
+    writer.writeEndDocument();
+  }
+
+  private static void writeStrings(BsonWriter writer, String name, Collection<String> values) {
+    writer.writeStartArray(name);
+    for (String value : values) {
+      writer.writeString(value);
+    }
+    writer.writeEndArray();
+  }
+
+  @Override
+  public Ace decode(BsonReader reader, DecoderContext decoderContext) {
+    boolean guest = false;
+    SortedSet<String> users = null;
+    SortedSet<String> roles = null;
+    SortedSet<String> groups = null;
+    reader.readStartDocument();
+    while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+      String name = reader.readName();
+      BsonType type = reader.getCurrentBsonType();
+      if (Ace.GUEST.equals(name) && type == BsonType.BOOLEAN) {
+        guest = reader.readBoolean();
+      } else if (Ace.USERS.equals(name) && type == BsonType.ARRAY) {
+        users = readStrings(reader);
+      } else if (Ace.ROLES.equals(name) && type == BsonType.ARRAY) {
+        roles = readStrings(reader);
+      } else if (Ace.GROUPS.equals(name) && type == BsonType.ARRAY) {
+        groups = readStrings(reader);
+      } else {
+        reader.skipValue();
+      }
+    }
+    reader.readEndDocument();
+    // the sets are sorted as the ones of the builder, so they are copied without sorting again
+    return Ace.of(guest, orEmpty(users), orEmpty(roles), orEmpty(groups));
+  }
+
+  private static SortedSet<String> readStrings(BsonReader reader) {
+    SortedSet<String> values = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+    reader.readStartArray();
+    while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+      if (reader.getCurrentBsonType() == BsonType.STRING) {
+        String value = reader.readString();
+        if (!value.isBlank()) {
+          values.add(value);
+        }
+      } else {
+        reader.skipValue();
+      }
+    }
+    reader.readEndArray();
+    return values;
+  }
+
+  private static SortedSet<String> orEmpty(SortedSet<String> values) {
+    return isNull(values) ? new TreeSet<>(String.CASE_INSENSITIVE_ORDER) : values;
+  }
+
+  @Override
+  public Class<Ace> getEncoderClass() {
+    return Ace.class;
+  }
+
+}
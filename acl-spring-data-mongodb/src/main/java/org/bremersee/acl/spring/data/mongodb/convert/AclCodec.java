@@ -0,0 +1,162 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.bremersee.acl.spring.data.mongodb.convert;
+
+import static java.util.Objects.isNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import org.bremersee.acl.Ace;
+import org.bremersee.acl.Acl;
+import org.bremersee.acl.PartialAcl;
+import org.bremersee.acl.spring.data.mongodb.AclProjection;
+import org.bremersee.acl.spring.data.mongodb.AclTokens;
+import org.bson.BsonReader;
+import org.bson.BsonType;
+import org.bson.BsonWriter;
+import org.bson.codecs.Codec;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.springframework.util.Assert;
+
+/**
+ * The acl codec reads and writes an access control list directly from and to BSON without an
+ * intermediate document. The format is the same as the one of the {@link AclToDocumentConverter}.
+ * If tokens are enabled, the flat representation of the entries (see {@link AclTokens}) is
+ * written, too; it is skipped while reading. A {@link PartialAcl} is rejected, but it is returned,
+ * if the access control list was read with an {@link AclProjection}, that includes only some
+ * permissions.
+ *
+ * @author Christian Bremer
+ */
+public class AclCodec implements Codec<Acl> {
+
+  private final boolean withTokens;
+
+  private final Codec<Ace> aceCodec;
+
+  /**
+   * Instantiates a new acl codec without tokens.
+   */
+  public AclCodec() {
+    this(false);
+  }
+
+  /**
+   * Instantiates a new acl codec.
+   *
+   * @param withTokens specifies whether the tokens are written or not
+   */
+  public AclCodec(boolean withTokens) {
+    this(withTokens, new AceCodec());
+  }
+
+  /**
+   * Instantiates a new acl codec.
+   *
+   * @param withTokens specifies whether the tokens are written or not
+   * @param aceCodec the ace codec
+   */
+  public AclCodec(boolean withTokens, Codec<Ace> aceCodec) {
+    Assert.notNull(aceCodec, "Ace codec must be present.");
+    this.withTokens = withTokens;
+    this.aceCodec = aceCodec;
+  }
+
+  @Override
+  public void encode(BsonWriter writer, Acl value, EncoderContext encoderContext) {
+    if (value instanceof PartialAcl) {
+      throw new IllegalArgumentException("A partial access control list can not be written.");
+    }
+    writer.writeStartDocument();
+    if (isNull(value.getOwner())) {
+      writer.writeNull(Acl.OWNER);
+    } else {
+      writer.writeString(Acl.OWNER, value.getOwner());
+    }
+    Map<String, Ace> entries = value.getPermissionMap();
+    if (!entries.isEmpty()) {
+      writer.writeStartDocument(Acl.ENTRIES);
+      for (Map.Entry<String, Ace> entry : entries.entrySet()) {
+        writer.writeName(entry.getKey());
+        encoderContext.encodeWithChildContext(aceCodec, writer, entry.getValue());
+      }
+      writer.writeEndDocument();
+    }
+    if (withTokens) {
+      writer.writeStartArray(AclTokens.TOKENS);
+      for (String token : AclTokens.of(value)) {
+        writer.writeString(token);
+      }
+      writer.writeEndArray();
+    }
+    writer.writeEndDocument();
+  }
+
+  @Override
+  public Acl decode(BsonReader reader, DecoderContext decoderContext) {
+    String owner = null;
+    SortedMap<String, Ace> permissionMap = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+    List<String> includedPermissions = null;
+    reader.readStartDocument();
+    while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+      String name = reader.readName();
+      BsonType type = reader.getCurrentBsonType();
+      if (Acl.OWNER.equals(name) && type == BsonType.STRING) {
+        owner = reader.readString();
+      } else if (Acl.ENTRIES.equals(name) && type == BsonType.DOCUMENT) {
+        reader.readStartDocument();
+        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+          String permission = reader.readName();
+          if (reader.getCurrentBsonType() == BsonType.DOCUMENT && !permission.isBlank()) {
+            Ace ace = decoderContext.decodeWithChildContext(aceCodec, reader);
+            permissionMap.putIfAbsent(permission, ace);
+          } else {
+            reader.skipValue();
+          }
+        }
+        reader.readEndDocument();
+      } else if (AclProjection.INCLUDED_PERMISSIONS.equals(name) && type == BsonType.ARRAY) {
+        includedPermissions = new ArrayList<>();
+        reader.readStartArray();
+        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+          if (reader.getCurrentBsonType() == BsonType.STRING) {
+            includedPermissions.add(reader.readString());
+          } else {
+            reader.skipValue();
+          }
+        }
+        reader.readEndArray();
+      } else {
+        reader.skipValue();
+      }
+    }
+    reader.readEndDocument();
+    // the map is sorted as the one of the builder, so it is copied without sorting again
+    Acl acl = Acl.of(owner, permissionMap);
+    return isNull(includedPermissions) ? acl : PartialAcl.of(acl, includedPermissions);
+  }
+
+  @Override
+  public Class<Acl> getEncoderClass() {
+    return Acl.class;
+  }
+
+}
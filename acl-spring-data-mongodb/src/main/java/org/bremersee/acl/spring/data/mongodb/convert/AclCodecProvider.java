@@ -0,0 +1,95 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.bremersee.acl.spring.data.mongodb.convert;
+
+import org.bremersee.acl.Ace;
+import org.bremersee.acl.Acl;
+import org.bremersee.acl.PartialAcl;
+import org.bson.codecs.Codec;
+import org.bson.codecs.configuration.CodecProvider;
+import org.bson.codecs.configuration.CodecRegistries;
+import org.bson.codecs.configuration.CodecRegistry;
+import org.springframework.util.Assert;
+
+/**
+ * The acl codec provider provides the {@link AclCodec} and the {@link AceCodec}. It can be
+ * registered at the mongo client settings, for example with a customizer of Spring Boot:
+ *
+ * <pre>
+ * &#64;Bean
+ * MongoClientSettingsBuilderCustomizer aclCodecs() {
+ *   return builder -&gt; builder.codecRegistry(new AclCodecProvider()
+ *       .withFallback(MongoClientSettings.getDefaultCodecRegistry()));
+ * }
+ * </pre>
+ *
+ * <p>Collections of the driver use the codecs then for access control lists and entries, so they
+ * are read without intermediate documents. The mapping of Spring Data still uses the
+ * {@link AclConverters}.
+ *
+ * @author Christian Bremer
+ */
+public class AclCodecProvider implements CodecProvider {
+
+  private final AclCodec aclCodec;
+
+  private final AceCodec aceCodec;
+
+  /**
+   * Instantiates a new acl codec provider, whose acl codec doesn't write tokens.
+   */
+  public AclCodecProvider() {
+    this(false);
+  }
+
+  /**
+   * Instantiates a new acl codec provider.
+   *
+   * @param withTokens specifies whether the acl tokens are written or not
+   */
+  public AclCodecProvider(boolean withTokens) {
+    this.aceCodec = new AceCodec();
+    this.aclCodec = new AclCodec(withTokens, aceCodec);
+  }
+
+  @SuppressWarnings("unchecked")
+  @Override
+  public <T> Codec<T> get(Class<T> clazz, CodecRegistry registry) {
+    if (Ace.class.isAssignableFrom(clazz)) {
+      return (Codec<T>) aceCodec;
+    }
+    if (Acl.class.isAssignableFrom(clazz) && !PartialAcl.class.isAssignableFrom(clazz)) {
+      return (Codec<T>) aclCodec;
+    }
+    return null;
+  }
+
+  /**
+   * Creates a codec registry, that provides the acl codecs and all codecs of the given fallback
+   * registry.
+   *
+   * @param fallbackRegistry the fallback registry
+   * @return the codec registry
+   */
+  public CodecRegistry withFallback(CodecRegistry fallbackRegistry) {
+    Assert.notNull(fallbackRegistry, "Fallback codec registry must be present.");
+    return CodecRegistries.fromRegistries(
+        CodecRegistries.fromProviders(this),
+        fallbackRegistry);
+  }
+
+}
@@ -27,6 +27,24 @@ import org.springframework.core.convert.converter.Converter;
  */
 public class AclConverters implements MongoCustomConversionsProvider {
 
+  private final boolean withTokens;
+
+  /**
+   * Instantiates new acl converters, that don't write tokens.
+   */
+  public AclConverters() {
+    this(false);
+  }
+
+  /**
+   * Instantiates new acl converters.
+   *
+   * @param withTokens specifies whether the acl tokens are written or not
+   */
+  public AclConverters(boolean withTokens) {
+    this.withTokens = withTokens;
+  }
+
   /**
    * Gets converters to register.
    *
@@ -36,7 +54,7 @@ public class AclConverters implements MongoCustomConversionsProvider {
   public List<Converter<?, ?>> getCustomConversions() {
     return List.of(
         new AceToDocumentConverter(),
-        new AclToDocumentConverter(),
+        new AclToDocumentConverter(withTokens),
         new DocumentToAceConverter(),
         new DocumentToAclConverter()
     );
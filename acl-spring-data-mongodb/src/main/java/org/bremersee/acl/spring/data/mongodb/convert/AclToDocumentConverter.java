@@ -24,13 +24,16 @@ import java.util.Map.Entry;
 import java.util.Objects;
 import java.util.stream.Collectors;
 import org.bremersee.acl.Acl;
+import org.bremersee.acl.PartialAcl;
+import org.bremersee.acl.spring.data.mongodb.AclTokens;
 import org.bson.Document;
 import org.springframework.core.convert.converter.Converter;
 import org.springframework.data.convert.WritingConverter;
 import org.springframework.lang.NonNull;
 
 /**
- * The acl to document converter.
+ * The acl to document converter. If tokens are enabled, the flat representation of the entries
+ * (see {@link AclTokens}) is written, too. A {@link PartialAcl} is rejected.
  *
  * @author Christian Bremer
  */
@@ -39,8 +42,29 @@ public class AclToDocumentConverter implements Converter<Acl, Document> {
 
   private final AceToDocumentConverter aceConverter = new AceToDocumentConverter();
 
+  private final boolean withTokens;
+
+  /**
+   * Instantiates a new acl to document converter without tokens.
+   */
+  public AclToDocumentConverter() {
+    this(false);
+  }
+
+  /**
+   * Instantiates a new acl to document converter.
+   *
+   * @param withTokens specifies whether the tokens are written or not
+   */
+  public AclToDocumentConverter(boolean withTokens) {
+    this.withTokens = withTokens;
+  }
+
   @Override
   public Document convert(@NonNull Acl source) {
+    if (source instanceof PartialAcl) {
+      throw new IllegalArgumentException("A partial access control list can not be written.");
+    }
     String owner = source.getOwner();
     Map<String, Document> entries = source.getPermissionMap().entrySet().stream()
         .collect(Collectors.toMap(
@@ -53,6 +77,9 @@ public class AclToDocumentConverter implements Converter<Acl, Document> {
     if (!entries.isEmpty()) {
       target.put(Acl.ENTRIES, entries);
     }
+    if (withTokens) {
+      target.put(AclTokens.TOKENS, AclTokens.of(source));
+    }
     return target;
   }
 
@@ -61,11 +88,12 @@ public class AclToDocumentConverter implements Converter<Acl, Document> {
     if (this == o) {
       return true;
     }
-    return o != null && getClass() == o.getClass();
+    return o != null && getClass() == o.getClass()
+        && withTokens == ((AclToDocumentConverter) o).withTokens;
   }
 
   @Override
   public int hashCode() {
-    return Objects.hashCode(getClass());
+    return Objects.hash(getClass(), withTokens);
   }
 }
@@ -16,18 +16,24 @@
 
 package org.bremersee.acl.spring.data.mongodb.convert;
 
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.stream.Collectors;
 import org.bremersee.acl.Ace;
 import org.bremersee.acl.Acl;
+import org.bremersee.acl.PartialAcl;
+import org.bremersee.acl.spring.data.mongodb.AclProjection;
 import org.bson.Document;
 import org.springframework.core.convert.converter.Converter;
 import org.springframework.data.convert.ReadingConverter;
 import org.springframework.lang.NonNull;
 
 /**
- * The document to acl converter.
+ * The document to acl converter. If the document was read with an {@link AclProjection}, that
+ * includes only some permissions, a {@link PartialAcl} is returned.
  *
  * @author Christian Bremer
  */
@@ -57,10 +63,19 @@ public class DocumentToAclConverter implements Converter<Document, Acl> {
         }
       }
     }
-    return Acl.builder()
+    Acl acl = Acl.builder()
         .owner(owner)
         .permissionMap(permissionMap)
         .build();
+    Object includedPermissions = source.get(AclProjection.INCLUDED_PERMISSIONS);
+    if (includedPermissions instanceof Collection) {
+      List<String> permissions = ((Collection<?>) includedPermissions).stream()
+          .filter(permission -> permission instanceof String)
+          .map(String::valueOf)
+          .collect(Collectors.toList());
+      return PartialAcl.of(acl, permissions);
+    }
+    return acl;
   }
 
   @Override
@@ -0,0 +1,176 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.bremersee.acl.spring.data.mongodb.convert;
+
+import static java.util.Collections.unmodifiableSortedSet;
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+
+import java.util.Collection;
+import java.util.Objects;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.function.Predicate;
+import org.bremersee.acl.Ace;
+import org.bson.BsonValue;
+import org.bson.RawBsonDocument;
+import org.springframework.util.Assert;
+
+/**
+ * The lazy ace is an access control entry, that is backed by raw bson. The principals are only
+ * decoded into sorted sets, if they are requested; the checks of {@link #containsUser(String)},
+ * {@link #containsAnyRole(Collection)} and {@link #containsAnyGroup(Collection)} scan the raw
+ * arrays instead. Like the sets of the other access control entries, the names are compared
+ * case-insensitive.
+ *
+ * @author Christian Bremer
+ */
+public class LazyAce implements Ace {
+
+  private final RawBsonDocument source;
+
+  private volatile SortedSet<String> users;
+
+  private volatile SortedSet<String> roles;
+
+  private volatile SortedSet<String> groups;
+
+  /**
+   * Instantiates a new lazy ace.
+   *
+   * @param source the raw bson of the access control entry
+   */
+  public LazyAce(RawBsonDocument source) {
+    Assert.notNull(source, "Source must be present.");
+    this.source = source;
+  }
+
+  @Override
+  public boolean isGuest() {
+    BsonValue value = source.get(GUEST);
+    return nonNull(value) && value.isBoolean() && value.asBoolean().getValue();
+  }
+
+  @Override
+  public SortedSet<String> getUsers() {
+    SortedSet<String> values = users;
+    if (isNull(values)) {
+      values = decode(USERS);
+      users = values;
+    }
+    return values;
+  }
+
+  @Override
+  public SortedSet<String> getRoles() {
+    SortedSet<String> values = roles;
+    if (isNull(values)) {
+      values = decode(ROLES);
+      roles = values;
+    }
+    return values;
+  }
+
+  @Override
+  public SortedSet<String> getGroups() {
+    SortedSet<String> values = groups;
+    if (isNull(values)) {
+      values = decode(GROUPS);
+      groups = values;
+    }
+    return values;
+  }
+
+  @Override
+  public boolean containsUser(String user) {
+    return nonNull(user) && anyMatch(USERS, user::equalsIgnoreCase);
+  }
+
+  @Override
+  public boolean containsAnyRole(Collection<String> values) {
+    return containsAny(ROLES, values);
+  }
+
+  @Override
+  public boolean containsAnyGroup(Collection<String> values) {
+    return containsAny(GROUPS, values);
+  }
+
+  private boolean containsAny(String field, Collection<String> values) {
+    if (isNull(values) || values.isEmpty()) {
+      return false;
+    }
+    SortedSet<String> lookup = new TreeSet<>(String::compareToIgnoreCase);
+    values.stream().filter(Objects::nonNull).forEach(lookup::add);
+    return !lookup.isEmpty() && anyMatch(field, lookup::contains);
+  }
+
+  private boolean anyMatch(String field, Predicate<String> predicate) {
+    BsonValue array = source.get(field);
+    if (isNull(array) || !array.isArray()) {
+      return false;
+    }
+    for (BsonValue value : array.asArray()) {
+      if (value.isString() && predicate.test(value.asString().getValue())) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private SortedSet<String> decode(String field) {
+    SortedSet<String> values = new TreeSet<>(String::compareToIgnoreCase);
+    BsonValue array = source.get(field);
+    if (nonNull(array) && array.isArray()) {
+      for (BsonValue value : array.asArray()) {
+        if (value.isString()) {
+          values.add(value.asString().getValue());
+        }
+      }
+    }
+    return unmodifiableSortedSet(values);
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof Ace)) {
+      return false;
+    }
+    Ace ace = (Ace) o;
+    return isGuest() == ace.isGuest()
+        && getUsers().equals(ace.getUsers())
+        && getRoles().equals(ace.getRoles())
+        && getGroups().equals(ace.getGroups());
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(isGuest(), getUsers(), getRoles(), getGroups());
+  }
+
+  @Override
+  public String toString() {
+    return "LazyAce(guest=" + isGuest()
+        + ", users=" + getUsers()
+        + ", roles=" + getRoles()
+        + ", groups=" + getGroups() + ")";
+  }
+
+}
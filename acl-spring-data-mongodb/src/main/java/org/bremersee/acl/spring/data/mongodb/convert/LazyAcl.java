@@ -0,0 +1,259 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.bremersee.acl.spring.data.mongodb.convert;
+
+import static java.util.Collections.unmodifiableSortedMap;
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+import static org.bremersee.acl.AclUserContext.ANONYMOUS;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import org.bremersee.acl.Ace;
+import org.bremersee.acl.Acl;
+import org.bson.BsonReader;
+import org.bson.BsonType;
+import org.bson.BsonValue;
+import org.bson.RawBsonDocument;
+import org.springframework.util.Assert;
+
+/**
+ * The lazy acl is an access control list, that is backed by raw bson, for example by a slice of a
+ * document, that was read as {@link RawBsonDocument}. Only the names of the permissions are read
+ * in advance; an entry is decoded into a {@link LazyAce}, when it is requested from the
+ * permission map, and its principals are scanned in the raw arrays by the access evaluator. So
+ * the costs of reading one permission don't depend on the number of entries.
+ *
+ * @author Christian Bremer
+ */
+public class LazyAcl implements Acl {
+
+  private final RawBsonDocument source;
+
+  private final LazyPermissionMap permissionMap;
+
+  /**
+   * Instantiates a new lazy acl.
+   *
+   * @param source the raw bson of the access control list
+   */
+  public LazyAcl(RawBsonDocument source) {
+    Assert.notNull(source, "Source must be present.");
+    this.source = source;
+    this.permissionMap = new LazyPermissionMap(source.get(ENTRIES));
+  }
+
+  /**
+   * Gets the lazy access control list of the given document.
+   *
+   * @param document the raw document
+   * @param aclPath the acl path
+   * @return the lazy access control list or empty, if the document has none
+   */
+  public static Optional<LazyAcl> of(RawBsonDocument document, String aclPath) {
+    BsonValue value = document;
+    if (nonNull(aclPath) && !aclPath.isEmpty()) {
+      for (String segment : aclPath.split("\\.")) {
+        value = nonNull(value) && value.isDocument() ? value.asDocument().get(segment) : null;
+      }
+    }
+    return value instanceof RawBsonDocument
+        ? Optional.of(new LazyAcl((RawBsonDocument) value))
+        : Optional.empty();
+  }
+
+  @Override
+  public String getOwner() {
+    BsonValue value = source.get(OWNER);
+    return nonNull(value) && value.isString() && !value.asString().getValue().isBlank()
+        ? value.asString().getValue()
+        : ANONYMOUS;
+  }
+
+  @Override
+  public SortedMap<String, Ace> getPermissionMap() {
+    return permissionMap;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof Acl)) {
+      return false;
+    }
+    Acl acl = (Acl) o;
+    return Objects.equals(getOwner(), acl.getOwner())
+        && getPermissionMap().equals(acl.getPermissionMap());
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(getOwner(), getPermissionMap());
+  }
+
+  @Override
+  public String toString() {
+    return "LazyAcl(owner=" + getOwner() + ", permissions=" + permissionMap.keySet() + ")";
+  }
+
+  /**
+   * The unmodifiable permission map, that decodes the entries on demand.
+   */
+  private static class LazyPermissionMap extends AbstractMap<String, Ace>
+      implements SortedMap<String, Ace> {
+
+    private static final Comparator<String> COMPARATOR = String::compareToIgnoreCase;
+
+    private final RawBsonDocument entries;
+
+    private final SortedMap<String, String> names;
+
+    private final Map<String, Ace> decoded = new ConcurrentHashMap<>();
+
+    private LazyPermissionMap(BsonValue entries) {
+      this.entries = entries instanceof RawBsonDocument ? (RawBsonDocument) entries : null;
+      this.names = readNames(this.entries);
+    }
+
+    private static SortedMap<String, String> readNames(RawBsonDocument entries) {
+      SortedMap<String, String> names = new TreeMap<>(COMPARATOR);
+      if (isNull(entries)) {
+        return names;
+      }
+      try (BsonReader reader = entries.asBsonReader()) {
+        reader.readStartDocument();
+        while (reader.readBsonType() != BsonType.END_OF_DOCUMENT) {
+          String name = reader.readName();
+          if (reader.getCurrentBsonType() == BsonType.DOCUMENT && !name.isBlank()) {
+            names.putIfAbsent(name, name);
+          }
+          reader.skipValue();
+        }
+        reader.readEndDocument();
+      }
+      return names;
+    }
+
+    @Override
+    public Ace get(Object key) {
+      if (!(key instanceof String)) {
+        return null;
+      }
+      String name = names.get(key);
+      if (isNull(name)) {
+        return null;
+      }
+      return decoded.computeIfAbsent(name, n -> new LazyAce((RawBsonDocument) entries.get(n)));
+    }
+
+    @Override
+    public Ace getOrDefault(Object key, Ace defaultValue) {
+      Ace ace = get(key);
+      return isNull(ace) ? defaultValue : ace;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+      return key instanceof String && names.containsKey(key);
+    }
+
+    @Override
+    public int size() {
+      return names.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+      return names.isEmpty();
+    }
+
+    @Override
+    public Set<Entry<String, Ace>> entrySet() {
+      return new AbstractSet<>() {
+        @Override
+        public Iterator<Entry<String, Ace>> iterator() {
+          Iterator<String> iterator = names.values().iterator();
+          return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+              return iterator.hasNext();
+            }
+
+            @Override
+            public Entry<String, Ace> next() {
+              String name = iterator.next();
+              return new SimpleImmutableEntry<>(name, get(name));
+            }
+          };
+        }
+
+        @Override
+        public int size() {
+          return names.size();
+        }
+      };
+    }
+
+    @Override
+    public Comparator<? super String> comparator() {
+      return COMPARATOR;
+    }
+
+    @Override
+    public SortedMap<String, Ace> subMap(String fromKey, String toKey) {
+      return toSortedMap().subMap(fromKey, toKey);
+    }
+
+    @Override
+    public SortedMap<String, Ace> headMap(String toKey) {
+      return toSortedMap().headMap(toKey);
+    }
+
+    @Override
+    public SortedMap<String, Ace> tailMap(String fromKey) {
+      return toSortedMap().tailMap(fromKey);
+    }
+
+    @Override
+    public String firstKey() {
+      return names.get(names.firstKey());
+    }
+
+    @Override
+    public String lastKey() {
+      return names.get(names.lastKey());
+    }
+
+    private SortedMap<String, Ace> toSortedMap() {
+      SortedMap<String, Ace> map = new TreeMap<>(COMPARATOR);
+      map.putAll(this);
+      return unmodifiableSortedMap(map);
+    }
+  }
+
+}
@@ -15,7 +15,7 @@
  */
 
 /**
- * The package contains the acl converters for MongoDB.
+ * The package contains the acl converters and codecs for MongoDB.
  *
  * @author Christian Bremer
  */
@@ -0,0 +1,182 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.bremersee.acl.spring.data.mongodb.index;
+
+import static org.springframework.util.ObjectUtils.isEmpty;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import org.bremersee.acl.AccessEvaluation;
+import org.bremersee.acl.Ace;
+import org.bremersee.acl.Acl;
+import org.bremersee.acl.AclUserContext;
+import org.springframework.data.domain.Sort.Direction;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.IndexDefinition;
+import org.springframework.data.mongodb.core.query.Criteria;
+
+/**
+ * The abstract acl index strategy, that matches the entries of the access control list.
+ *
+ * <p>The permission criteria contain one {@code $in} for the users, the roles and the groups of
+ * each permission and the owner is merged into the same {@code $or}, e.g.
+ * <pre>
+ * { $or: [
+ *   { 'acl.owner': 'anna' },
+ *   { 'acl.entries.read.guest': true },
+ *   { 'acl.entries.read.users': { $in: [ 'anna' ] } },
+ *   { 'acl.entries.read.roles': { $in: [ 'ROLE_USER' ] } },
+ *   { 'acl.entries.read.groups': { $in: [ 'dev', 'net' ] } }
+ * ] }
+ * </pre>
+ * The shape of the criteria only depends on the access evaluation and the permissions, so MongoDB
+ * can reuse the cached plan of a query for every user.
+ *
+ * @author Christian Bremer
+ */
+public abstract class AbstractAclIndexStrategy implements AclIndexStrategy {
+
+  /**
+   * The entry fields.
+   */
+  protected static final List<String> ENTRY_FIELDS = List
+      .of(Ace.GUEST, Ace.USERS, Ace.ROLES, Ace.GROUPS);
+
+  /**
+   * Instantiates a new abstract acl index strategy.
+   */
+  protected AbstractAclIndexStrategy() {
+    super();
+  }
+
+  @Override
+  public List<IndexDefinition> getIndexDefinitions(
+      String aclPath,
+      Collection<String> permissions) {
+
+    List<IndexDefinition> indexDefinitions = new ArrayList<>();
+    indexDefinitions.add(new Index().on(path(aclPath, Acl.OWNER), Direction.ASC));
+    indexDefinitions.addAll(getEntriesIndexDefinitions(
+        aclPath,
+        isEmpty(permissions) ? Set.of() : Set.copyOf(permissions)));
+    return indexDefinitions;
+  }
+
+  /**
+   * Gets the index definitions of the entries.
+   *
+   * @param aclPath the acl path
+   * @param permissions the distinct permissions
+   * @return the index definitions of the entries
+   */
+  protected abstract List<IndexDefinition> getEntriesIndexDefinitions(
+      String aclPath,
+      Set<String> permissions);
+
+  @Override
+  public Criteria buildPermissionCriteria(
+      String aclPath,
+      AclUserContext userContext,
+      AccessEvaluation accessEvaluation,
+      Collection<String> permissions) {
+
+    List<String> users = userContext.getName().isBlank()
+        ? List.of()
+        : List.of(userContext.getName());
+    List<String> roles = distinct(userContext.getRoles());
+    List<String> groups = distinct(userContext.getGroups());
+    List<String> distinctPermissions = distinct(permissions);
+    List<List<Criteria>> permissionCriteriaList = new ArrayList<>(distinctPermissions.size());
+    for (String permission : distinctPermissions) {
+      permissionCriteriaList.add(List.of(
+          Criteria.where(path(aclPath, Acl.ENTRIES, permission, Ace.GUEST)).is(true),
+          Criteria.where(path(aclPath, Acl.ENTRIES, permission, Ace.USERS)).in(users),
+          Criteria.where(path(aclPath, Acl.ENTRIES, permission, Ace.ROLES)).in(roles),
+          Criteria.where(path(aclPath, Acl.ENTRIES, permission, Ace.GROUPS)).in(groups)));
+    }
+    if (accessEvaluation.isAnyPermission() || permissionCriteriaList.size() == 1) {
+      return anyOf(aclPath, userContext, permissionCriteriaList.stream()
+          .flatMap(List::stream)
+          .collect(Collectors.toList()));
+    }
+    return anyOf(aclPath, userContext, List.of(new Criteria()
+        .andOperator(permissionCriteriaList.stream()
+            .map(criteriaList -> new Criteria().orOperator(criteriaList))
+            .collect(Collectors.toList()))));
+  }
+
+  /**
+   * Creates the criteria, that matches the owner or any of the given criteria. If the user is
+   * anonymous, the owner is not tested.
+   *
+   * @param aclPath the acl path
+   * @param userContext the user context
+   * @param criteriaList the criteria list
+   * @return the criteria
+   */
+  protected static Criteria anyOf(
+      String aclPath,
+      AclUserContext userContext,
+      List<Criteria> criteriaList) {
+
+    List<Criteria> branches = new ArrayList<>(criteriaList.size() + 1);
+    if (!userContext.getName().isBlank()) {
+      branches.add(Criteria.where(path(aclPath, Acl.OWNER)).is(userContext.getName()));
+    }
+    branches.addAll(criteriaList);
+    return branches.size() == 1
+        ? branches.get(0)
+        : new Criteria().orOperator(branches);
+  }
+
+  /**
+   * Removes empty and duplicate values and sorts the remaining ones.
+   *
+   * @param values the values
+   * @return the distinct and sorted values
+   */
+  protected static List<String> distinct(Collection<String> values) {
+    if (isEmpty(values)) {
+      return List.of();
+    }
+    return values.stream()
+        .filter(value -> !isEmpty(value))
+        .distinct()
+        .sorted()
+        .collect(Collectors.toList());
+  }
+
+  /**
+   * Creates the path of the given segments below the acl path.
+   *
+   * @param aclPath the acl path
+   * @param pathSegments the path segments
+   * @return the path
+   */
+  protected static String path(String aclPath, String... pathSegments) {
+    String validAclPath = isEmpty(aclPath) ? "" : aclPath.trim();
+    if (isEmpty(pathSegments)) {
+      return validAclPath;
+    }
+    String subPath = String.join(".", pathSegments);
+    return validAclPath.isEmpty() ? subPath : validAclPath + "." + subPath;
+  }
+
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.bremersee.acl.spring.data.mongodb.index;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import org.bremersee.acl.AccessEvaluation;
+import org.bremersee.acl.AclUserContext;
+import org.springframework.data.mongodb.core.index.IndexDefinition;
+import org.springframework.data.mongodb.core.query.Collation;
+import org.springframework.data.mongodb.core.query.Criteria;
+
+/**
+ * The acl index strategy defines the indexes of the access control list and the shape of the
+ * permission criteria, that matches these indexes.
+ *
+ * @author Christian Bremer
+ */
+public interface AclIndexStrategy {
+
+  /**
+   * Gets the index definitions of the access control list. The index of the owner must be
+   * included.
+   *
+   * @param aclPath the acl path
+   * @param permissions the permissions
+   * @return the index definitions
+   */
+  List<IndexDefinition> getIndexDefinitions(String aclPath, Collection<String> permissions);
+
+  /**
+   * Builds the permission criteria, that matches the owner and the entries of the access control
+   * list. The shape of the criteria must not depend on the number of roles and groups of the
+   * user, so that the plan cache of MongoDB can be used.
+   *
+   * @param aclPath the acl path
+   * @param userContext the user context
+   * @param accessEvaluation the access evaluation
+   * @param permissions the permissions
+   * @return the criteria
+   */
+  Criteria buildPermissionCriteria(
+      String aclPath,
+      AclUserContext userContext,
+      AccessEvaluation accessEvaluation,
+      Collection<String> permissions);
+
+  /**
+   * Determines whether the acl tokens must be maintained by the updates.
+   *
+   * @return {@code true} if the acl tokens must be maintained, otherwise {@code false}
+   */
+  default boolean isWithTokens() {
+    return false;
+  }
+
+  /**
+   * Gets the collation of the indexes. If it is present, the queries and updates must be executed
+   * with this collation, so that the indexes can be used.
+   *
+   * @return the collation or empty, if the indexes have no collation
+   */
+  default Optional<Collation> getCollation() {
+    return Optional.empty();
+  }
+
+  /**
+   * Creates the single field index strategy, that creates an ascending index on every field of
+   * every permission.
+   *
+   * @return the single field index strategy
+   */
+  static AclIndexStrategy singleField() {
+    return new SingleFieldAclIndexStrategy();
+  }
+
+  /**
+   * Creates the wildcard index strategy, that creates one wildcard index on the entries.
+   *
+   * @return the wildcard index strategy
+   */
+  static AclIndexStrategy wildcard() {
+    return new WildcardAclIndexStrategy();
+  }
+
+  /**
+   * Creates the partial index strategy, that indexes only guest entries with value {@code true}.
+   *
+   * @return the partial index strategy
+   */
+  static AclIndexStrategy partialGuest() {
+    return new PartialGuestAclIndexStrategy();
+  }
+
+  /**
+   * Creates the compound index strategy, that prefixes every index of the given strategy with the
+   * given field, e.g. a tenant. The permission criteria contain the prefix criteria, if they are
+   * set with {@link CompoundAclIndexStrategy#withPrefixValues(Object...)} or
+   * {@link CompoundAclIndexStrategy#withPrefixCriteria(Criteria)}.
+   *
+   * @param prefixField the prefix field
+   * @param delegate the strategy of the indexes to prefix
+   * @return the compound index strategy
+   */
+  static CompoundAclIndexStrategy compound(String prefixField, AclIndexStrategy delegate) {
+    return new CompoundAclIndexStrategy(prefixField, delegate);
+  }
+
+  /**
+   * Creates the token index strategy, that creates one multikey index on the acl tokens.
+   *
+   * @return the token index strategy
+   */
+  static AclIndexStrategy tokens() {
+    return new TokenAclIndexStrategy();
+  }
+
+  /**
+   * Creates the case-insensitive index strategy, that creates every index of the given strategy
+   * with a collation of strength 2, so that principals are matched case-insensitively with the
+   * indexes. The collation applies to the whole query, so it can't be combined with the prefix
+   * criteria of a compound strategy.
+   *
+   * @param delegate the strategy of the indexes
+   * @return the case-insensitive index strategy
+   */
+  static AclIndexStrategy caseInsensitive(AclIndexStrategy delegate) {
+    return new CaseInsensitiveAclIndexStrategy(delegate);
+  }
+
+}
@@ -0,0 +1,228 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.bremersee.acl.spring.data.mongodb.index;
+
+import static org.springframework.util.ObjectUtils.isEmpty;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import org.bremersee.acl.AccessEvaluation;
+import org.bremersee.acl.Acl;
+import org.bremersee.acl.AclUserContext;
+import org.bson.Document;
+import org.springframework.data.mongodb.core.index.IndexDefinition;
+import org.springframework.data.mongodb.core.query.Collation;
+import org.springframework.data.mongodb.core.query.Collation.ComparisonLevel;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.util.Assert;
+
+/**
+ * The case-insensitive acl index strategy creates every index of another strategy with a
+ * collation of strength 2, which compares strings case-insensitively like the access control
+ * list does in memory. The permission criteria are the criteria of the other strategy. The
+ * queries and updates must be executed with the same collation (see {@link #getCollation()}),
+ * otherwise MongoDB compares case-sensitively and doesn't use the indexes.
+ *
+ * <p>The owner is compared case-sensitively in memory, so the owner branch of the permission
+ * criteria is kept out of the collation (see {@link #buildOwnerCriteria(String, String)}): the
+ * equality still uses the index of the owner and a regular expression, which ignores the
+ * collation, removes the owners, that differ only in case.
+ *
+ * <p>The collation applies to the whole query and not only to the access control list: the
+ * criteria of the caller, e.g. a tenant condition, are compared case-insensitively, too. A
+ * tenant {@code acme} would therefore also see the documents of the tenant {@code ACME}. So this
+ * strategy can't be combined with the prefix criteria of a
+ * {@link CompoundAclIndexStrategy} and the caller must not rely on case-sensitive criteria of
+ * other fields (a regular expression, which ignores the collation, can be used instead, see
+ * {@link #buildOwnerCriteria(String, String)}).
+ *
+ * <p>The names of the indexes get the suffix {@value #INDEX_NAME_SUFFIX}, so that they can exist
+ * beside the case-sensitive indexes of the other strategy.
+ *
+ * @author Christian Bremer
+ */
+public class CaseInsensitiveAclIndexStrategy implements AclIndexStrategy {
+
+  /**
+   * The suffix of the case-insensitive index names.
+   */
+  public static final String INDEX_NAME_SUFFIX = "_ci";
+
+  private final AclIndexStrategy delegate;
+
+  private final Collation collation;
+
+  /**
+   * Instantiates a new case-insensitive acl index strategy with the english locale.
+   *
+   * @param delegate the strategy of the indexes
+   */
+  public CaseInsensitiveAclIndexStrategy(AclIndexStrategy delegate) {
+    this(delegate, Locale.ENGLISH);
+  }
+
+  /**
+   * Instantiates a new case-insensitive acl index strategy.
+   *
+   * @param delegate the strategy of the indexes
+   * @param locale the locale of the collation
+   */
+  public CaseInsensitiveAclIndexStrategy(AclIndexStrategy delegate, Locale locale) {
+    Assert.notNull(delegate, "Acl index strategy must be present.");
+    Assert.notNull(locale, "Locale must be present.");
+    Assert.isTrue(
+        !(delegate instanceof CompoundAclIndexStrategy)
+            || ((CompoundAclIndexStrategy) delegate).getPrefixCriteria().isEmpty(),
+        "Prefix criteria of a compound acl index strategy can't be used with a collation.");
+    this.delegate = delegate;
+    this.collation = Collation.of(locale).strength(ComparisonLevel.secondary());
+  }
+
+  @Override
+  public List<IndexDefinition> getIndexDefinitions(
+      String aclPath,
+      Collection<String> permissions) {
+
+    return delegate.getIndexDefinitions(aclPath, permissions).stream()
+        .map(indexDefinition -> (IndexDefinition) new CollatedIndexDefinition(
+            collation, indexDefinition))
+        .collect(Collectors.toList());
+  }
+
+  @Override
+  public Criteria buildPermissionCriteria(
+      String aclPath,
+      AclUserContext userContext,
+      AccessEvaluation accessEvaluation,
+      Collection<String> permissions) {
+
+    Criteria criteria = delegate
+        .buildPermissionCriteria(aclPath, userContext, accessEvaluation, permissions);
+    if (userContext.getName().isBlank()) {
+      return criteria;
+    }
+    String ownerPath = isEmpty(aclPath) ? Acl.OWNER : aclPath.trim() + "." + Acl.OWNER;
+    Document criteriaObject = (Document) matchOwnerCaseSensitively(
+        criteria.getCriteriaObject(), ownerPath, userContext.getName());
+    List<Criteria> criteriaList = new ArrayList<>(criteriaObject.size());
+    criteriaObject.forEach((key, value) -> criteriaList.add(Criteria.where(key).is(value)));
+    return criteriaList.size() == 1
+        ? criteriaList.get(0)
+        : new Criteria().andOperator(criteriaList);
+  }
+
+  /**
+   * Builds the owner criteria, that matches the owner case-sensitively, although the query is
+   * executed with a case-insensitive collation, e.g.
+   * <pre>
+   * { $and: [
+   *   { 'acl.owner': 'anna' },
+   *   { 'acl.owner': /^\Qanna\E$/ }
+   * ] }
+   * </pre>
+   *
+   * @param ownerPath the path of the owner
+   * @param owner the owner
+   * @return the owner criteria
+   */
+  public static Criteria buildOwnerCriteria(String ownerPath, String owner) {
+    return new Criteria().andOperator(
+        Criteria.where(ownerPath).is(owner),
+        Criteria.where(ownerPath).regex(toExactPattern(owner)));
+  }
+
+  /**
+   * Creates the regular expression, that matches exactly the given value. Regular expressions
+   * ignore the collation.
+   *
+   * @param value the value
+   * @return the regular expression
+   */
+  public static String toExactPattern(String value) {
+    return "^" + Pattern.quote(value) + "$";
+  }
+
+  private static Object matchOwnerCaseSensitively(Object value, String ownerPath, String owner) {
+    if (value instanceof Document) {
+      Document document = (Document) value;
+      if (document.size() == 1 && owner.equals(document.get(ownerPath))) {
+        return buildOwnerCriteria(ownerPath, owner).getCriteriaObject();
+      }
+      Document result = new Document();
+      for (Map.Entry<String, Object> entry : document.entrySet()) {
+        result.put(
+            entry.getKey(), matchOwnerCaseSensitively(entry.getValue(), ownerPath, owner));
+      }
+      return result;
+    } else if (value instanceof Collection) {
+      return ((Collection<?>) value).stream()
+          .map(nested -> matchOwnerCaseSensitively(nested, ownerPath, owner))
+          .collect(Collectors.toList());
+    }
+    return value;
+  }
+
+  @Override
+  public boolean isWithTokens() {
+    return delegate.isWithTokens();
+  }
+
+  @Override
+  public Optional<Collation> getCollation() {
+    return Optional.of(collation);
+  }
+
+  /**
+   * The collated index definition.
+   */
+  private static class CollatedIndexDefinition implements IndexDefinition {
+
+    private final Document indexKeys;
+
+    private final Document indexOptions;
+
+    private CollatedIndexDefinition(Collation collation, IndexDefinition indexDefinition) {
+      this.indexKeys = new Document(indexDefinition.getIndexKeys());
+      this.indexOptions = new Document(indexDefinition.getIndexOptions());
+      String name = this.indexOptions.getString("name");
+      if (name == null) {
+        name = this.indexKeys.entrySet().stream()
+            .map(entry -> entry.getKey() + "_" + entry.getValue())
+            .collect(Collectors.joining("_"));
+      }
+      this.indexOptions.put("name", name + INDEX_NAME_SUFFIX);
+      this.indexOptions.put("collation", collation.toDocument());
+    }
+
+    @Override
+    public Document getIndexKeys() {
+      return indexKeys;
+    }
+
+    @Override
+    public Document getIndexOptions() {
+      return indexOptions;
+    }
+  }
+
+}
@@ -0,0 +1,206 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.bremersee.acl.spring.data.mongodb.index;
+
+import static java.util.Objects.isNull;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import org.bremersee.acl.AccessEvaluation;
+import org.bremersee.acl.AclUserContext;
+import org.bson.Document;
+import org.springframework.data.mongodb.core.index.IndexDefinition;
+import org.springframework.data.mongodb.core.query.Collation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.util.Assert;
+
+/**
+ * The compound acl index strategy prefixes every index of another strategy with a field, e.g. a
+ * tenant. The compound indexes can only be used, if the query contains an equality condition on
+ * the prefix field. Therefore the permission criteria of this strategy are the criteria of the
+ * other strategy combined with the prefix criteria, that are given by
+ * {@link #withPrefixValues(Object...)} or {@link #withPrefixCriteria(Criteria)}. MongoDB pushes
+ * the prefix condition into every branch of the permission criteria.
+ *
+ * <p>A strategy without prefix criteria can be used to create the indexes, but its permission
+ * criteria are the criteria of the other strategy only.
+ *
+ * <p>Prefix criteria can't be combined with a strategy, that defines a collation (see
+ * {@link AclIndexStrategy#caseInsensitive(AclIndexStrategy)}), because the collation would
+ * compare the prefix field case-insensitively, too, and a tenant {@code acme} would match the
+ * documents of the tenant {@code ACME}.
+ *
+ * @author Christian Bremer
+ */
+public class CompoundAclIndexStrategy implements AclIndexStrategy {
+
+  private final String prefixField;
+
+  private final AclIndexStrategy delegate;
+
+  private final Criteria prefixCriteria;
+
+  /**
+   * Instantiates a new compound acl index strategy.
+   *
+   * @param prefixField the prefix field
+   * @param delegate the strategy of the indexes to prefix
+   */
+  public CompoundAclIndexStrategy(String prefixField, AclIndexStrategy delegate) {
+    this(prefixField, delegate, null);
+  }
+
+  /**
+   * Instantiates a new compound acl index strategy.
+   *
+   * @param prefixField the prefix field
+   * @param delegate the strategy of the indexes to prefix
+   * @param prefixCriteria the criteria of the prefix field (can be {@code null})
+   */
+  public CompoundAclIndexStrategy(
+      String prefixField,
+      AclIndexStrategy delegate,
+      Criteria prefixCriteria) {
+
+    Assert.hasText(prefixField, "Prefix field must be present.");
+    Assert.notNull(delegate, "Acl index strategy must be present.");
+    Assert.isTrue(
+        isNull(prefixCriteria) || prefixField.equals(prefixCriteria.getKey()),
+        String.format("Prefix criteria must be a criteria of field '%s'.", prefixField));
+    Assert.isTrue(
+        isNull(prefixCriteria) || delegate.getCollation().isEmpty(),
+        "Prefix criteria of a compound acl index strategy can't be used with a collation.");
+    this.prefixField = prefixField;
+    this.delegate = delegate;
+    this.prefixCriteria = prefixCriteria;
+  }
+
+  /**
+   * Gets prefix field.
+   *
+   * @return the prefix field
+   */
+  public String getPrefixField() {
+    return prefixField;
+  }
+
+  /**
+   * Gets prefix criteria.
+   *
+   * @return the prefix criteria
+   */
+  public Optional<Criteria> getPrefixCriteria() {
+    return Optional.ofNullable(prefixCriteria);
+  }
+
+  /**
+   * Creates a strategy with the same indexes, whose permission criteria require, that the prefix
+   * field is equal to the given value or, if more than one value is given, to one of the given
+   * values. The strategy of the indexes must not define a collation.
+   *
+   * @param prefixValues the prefix values
+   * @return the compound acl index strategy with prefix criteria
+   */
+  public CompoundAclIndexStrategy withPrefixValues(Object... prefixValues) {
+    Assert.notEmpty(prefixValues, "Prefix values must be present.");
+    Criteria criteria = prefixValues.length == 1
+        ? Criteria.where(prefixField).is(prefixValues[0])
+        : Criteria.where(prefixField).in(prefixValues);
+    return withPrefixCriteria(criteria);
+  }
+
+  /**
+   * Creates a strategy with the same indexes, whose permission criteria contain the given
+   * criteria of the prefix field.
+   *
+   * @param prefixCriteria the prefix criteria
+   * @return the compound acl index strategy with prefix criteria
+   */
+  public CompoundAclIndexStrategy withPrefixCriteria(Criteria prefixCriteria) {
+    Assert.notNull(prefixCriteria, "Prefix criteria must be present.");
+    return new CompoundAclIndexStrategy(prefixField, delegate, prefixCriteria);
+  }
+
+  @Override
+  public List<IndexDefinition> getIndexDefinitions(
+      String aclPath,
+      Collection<String> permissions) {
+
+    return delegate.getIndexDefinitions(aclPath, permissions).stream()
+        .map(indexDefinition -> (IndexDefinition) new PrefixedIndexDefinition(
+            prefixField, indexDefinition))
+        .collect(Collectors.toList());
+  }
+
+  @Override
+  public Criteria buildPermissionCriteria(
+      String aclPath,
+      AclUserContext userContext,
+      AccessEvaluation accessEvaluation,
+      Collection<String> permissions) {
+
+    Criteria permissionCriteria = delegate
+        .buildPermissionCriteria(aclPath, userContext, accessEvaluation, permissions);
+    if (isNull(prefixCriteria)) {
+      return permissionCriteria;
+    }
+    return new Criteria().andOperator(prefixCriteria, permissionCriteria);
+  }
+
+  @Override
+  public boolean isWithTokens() {
+    return delegate.isWithTokens();
+  }
+
+  @Override
+  public Optional<Collation> getCollation() {
+    return delegate.getCollation();
+  }
+
+  /**
+   * The prefixed index definition.
+   */
+  private static class PrefixedIndexDefinition implements IndexDefinition {
+
+    private final Document indexKeys;
+
+    private final Document indexOptions;
+
+    private PrefixedIndexDefinition(String prefixField, IndexDefinition indexDefinition) {
+      this.indexKeys = new Document(prefixField, 1);
+      this.indexKeys.putAll(indexDefinition.getIndexKeys());
+      this.indexOptions = new Document(indexDefinition.getIndexOptions());
+      String name = this.indexOptions.getString("name");
+      if (name != null) {
+        this.indexOptions.put("name", prefixField + "_1_" + name);
+      }
+    }
+
+    @Override
+    public Document getIndexKeys() {
+      return indexKeys;
+    }
+
+    @Override
+    public Document getIndexOptions() {
+      return indexOptions;
+    }
+  }
+
+}
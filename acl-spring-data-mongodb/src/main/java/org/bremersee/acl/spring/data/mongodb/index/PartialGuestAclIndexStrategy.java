@@ -0,0 +1,74 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.bremersee.acl.spring.data.mongodb.index;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import org.bremersee.acl.Ace;
+import org.bremersee.acl.Acl;
+import org.springframework.data.domain.Sort.Direction;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.IndexDefinition;
+import org.springframework.data.mongodb.core.index.PartialIndexFilter;
+import org.springframework.data.mongodb.core.query.Criteria;
+
+/**
+ * The partial guest acl index strategy creates ascending indexes on the users, roles and groups
+ * field of every permission and partial indexes on the guest field, that contain only the
+ * documents with guest access. The permission criteria test the guest field with
+ * {@code guest: true}, so that the partial indexes can be used.
+ *
+ * @author Christian Bremer
+ */
+public class PartialGuestAclIndexStrategy extends AbstractAclIndexStrategy {
+
+  /**
+   * The suffix of the partial index names.
+   */
+  public static final String PARTIAL_INDEX_NAME_SUFFIX = "_partial";
+
+  /**
+   * Instantiates a new partial guest acl index strategy.
+   */
+  public PartialGuestAclIndexStrategy() {
+    super();
+  }
+
+  @Override
+  protected List<IndexDefinition> getEntriesIndexDefinitions(
+      String aclPath,
+      Set<String> permissions) {
+
+    List<IndexDefinition> indexDefinitions = new ArrayList<>();
+    for (String permission : permissions) {
+      String guestPath = path(aclPath, Acl.ENTRIES, permission, Ace.GUEST);
+      indexDefinitions.add(new Index()
+          .on(guestPath, Direction.ASC)
+          .named(guestPath + "_1" + PARTIAL_INDEX_NAME_SUFFIX)
+          .partial(PartialIndexFilter.of(Criteria.where(guestPath).is(true))));
+    }
+    for (String field : List.of(Ace.USERS, Ace.ROLES, Ace.GROUPS)) {
+      for (String permission : permissions) {
+        indexDefinitions.add(new Index()
+            .on(path(aclPath, Acl.ENTRIES, permission, field), Direction.ASC));
+      }
+    }
+    return indexDefinitions;
+  }
+
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.bremersee.acl.spring.data.mongodb.index;
+
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import org.bremersee.acl.Acl;
+import org.springframework.data.domain.Sort.Direction;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.IndexDefinition;
+
+/**
+ * The single field acl index strategy creates an ascending index on the guest, users, roles and
+ * groups field of every permission.
+ *
+ * @author Christian Bremer
+ */
+public class SingleFieldAclIndexStrategy extends AbstractAclIndexStrategy {
+
+  /**
+   * Instantiates a new single field acl index strategy.
+   */
+  public SingleFieldAclIndexStrategy() {
+    super();
+  }
+
+  @Override
+  protected List<IndexDefinition> getEntriesIndexDefinitions(
+      String aclPath,
+      Set<String> permissions) {
+
+    return ENTRY_FIELDS.stream()
+        .flatMap(field -> permissions.stream()
+            .map(permission -> (IndexDefinition) new Index()
+                .on(path(aclPath, Acl.ENTRIES, permission, field), Direction.ASC)))
+        .collect(Collectors.toList());
+  }
+
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.bremersee.acl.spring.data.mongodb.index;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import org.bremersee.acl.AccessEvaluation;
+import org.bremersee.acl.AclUserContext;
+import org.bremersee.acl.spring.data.mongodb.AclTokens;
+import org.springframework.data.domain.Sort.Direction;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.IndexDefinition;
+import org.springframework.data.mongodb.core.query.Criteria;
+
+/**
+ * The token acl index strategy creates one multikey index on the acl tokens (see
+ * {@link AclTokens}). The permission criteria match the tokens of the user with {@code $in}.
+ *
+ * @author Christian Bremer
+ */
+public class TokenAclIndexStrategy extends AbstractAclIndexStrategy {
+
+  /**
+   * Instantiates a new token acl index strategy.
+   */
+  public TokenAclIndexStrategy() {
+    super();
+  }
+
+  @Override
+  protected List<IndexDefinition> getEntriesIndexDefinitions(
+      String aclPath,
+      Set<String> permissions) {
+
+    return List.of(new Index().on(path(aclPath, AclTokens.TOKENS), Direction.ASC));
+  }
+
+  @Override
+  public Criteria buildPermissionCriteria(
+      String aclPath,
+      AclUserContext userContext,
+      AccessEvaluation accessEvaluation,
+      Collection<String> permissions) {
+
+    List<String> distinctPermissions = distinct(permissions);
+    String tokensPath = path(aclPath, AclTokens.TOKENS);
+    if (accessEvaluation.isAnyPermission() || distinctPermissions.size() == 1) {
+      return anyOf(aclPath, userContext, List.of(Criteria
+          .where(tokensPath)
+          .in(AclTokens.of(userContext, distinctPermissions))));
+    }
+    return anyOf(aclPath, userContext, List.of(new Criteria()
+        .andOperator(distinctPermissions.stream()
+            .map(permission -> Criteria
+                .where(tokensPath)
+                .in(AclTokens.of(userContext, permission)))
+            .collect(Collectors.toList()))));
+  }
+
+  @Override
+  public boolean isWithTokens() {
+    return true;
+  }
+
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.bremersee.acl.spring.data.mongodb.index;
+
+import java.util.List;
+import java.util.Set;
+import org.bremersee.acl.Acl;
+import org.springframework.data.mongodb.core.index.IndexDefinition;
+import org.springframework.data.mongodb.core.index.WildcardIndex;
+
+/**
+ * The wildcard acl index strategy creates one wildcard index on all entries, so that the index
+ * doesn't depend on the permissions. Wildcard indexes require MongoDB 4.2 or newer.
+ *
+ * @author Christian Bremer
+ */
+public class WildcardAclIndexStrategy extends AbstractAclIndexStrategy {
+
+  /**
+   * Instantiates a new wildcard acl index strategy.
+   */
+  public WildcardAclIndexStrategy() {
+    super();
+  }
+
+  @Override
+  protected List<IndexDefinition> getEntriesIndexDefinitions(
+      String aclPath,
+      Set<String> permissions) {
+
+    return List.of(new WildcardIndex(path(aclPath, Acl.ENTRIES)));
+  }
+
+}
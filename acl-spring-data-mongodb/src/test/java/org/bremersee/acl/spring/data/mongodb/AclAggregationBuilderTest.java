@@ -0,0 +1,225 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.bremersee.acl.spring.data.mongodb;
+
+import java.util.Arrays;
+import java.util.List;
+import org.assertj.core.api.SoftAssertions;
+import org.assertj.core.api.junit.jupiter.SoftAssertionsExtension;
+import org.bremersee.acl.AccessEvaluation;
+import org.bremersee.acl.AclUserContext;
+import org.bremersee.acl.PermissionConstants;
+import org.bremersee.acl.spring.data.mongodb.index.AclIndexStrategy;
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
+import org.springframework.data.mongodb.core.query.Criteria;
+
+/**
+ * The acl aggregation builder test.
+ *
+ * @author Christian Bremer
+ */
+@ExtendWith(SoftAssertionsExtension.class)
+class AclAggregationBuilderTest {
+
+  private final AclAggregationBuilder target = new AclAggregationBuilder("acl");
+
+  /**
+   * Build effective permissions stages.
+   *
+   * @param softly the softly
+   */
+  @Test
+  void buildEffectivePermissionsStages(SoftAssertions softly) {
+    List<AggregationOperation> stages = target.buildEffectivePermissionsStages(
+        "permissions",
+        AclUserContext.builder()
+            .name("anna")
+            .roles(List.of("ROLE_USER", "ROLE_USER"))
+            .build(),
+        List.of(PermissionConstants.READ, PermissionConstants.READ));
+    List<Document> actual = Aggregation.newAggregation(stages)
+        .toPipeline(Aggregation.DEFAULT_CONTEXT);
+
+    Document read = new Document("$cond", Arrays.asList(
+        new Document("$or", List.of(
+            new Document("$eq", List.of("$acl.entries.read.guest", true)),
+            new Document("$in", List.of(
+                new Document("$literal", "anna"),
+                new Document("$ifNull", List.of("$acl.entries.read.users", List.of())))),
+            new Document("$gt", List.of(
+                new Document("$size", new Document("$setIntersection", List.of(
+                    new Document("$ifNull", List.of("$acl.entries.read.roles", List.of())),
+                    new Document("$literal", List.of("ROLE_USER"))))),
+                0)))),
+        new Document("$literal", PermissionConstants.READ),
+        null));
+    Document expected = new Document("$cond", List.of(
+        new Document("$eq", List.of("$acl.owner", new Document("$literal", "anna"))),
+        new Document("$literal", List.of(PermissionConstants.READ)),
+        new Document("$setDifference", List.of(
+            List.of(read),
+            Arrays.asList((Object) null)))));
+    softly.assertThat(actual)
+        .hasSize(2);
+    softly.assertThat(actual.get(0))
+        .isEqualTo(new Document("$addFields", new Document("permissions", expected)));
+    softly.assertThat(actual.get(1))
+        .isEqualTo(new Document("$project", new Document("acl", 0)));
+  }
+
+  /**
+   * Build effective permissions expression of anonymous user.
+   *
+   * @param softly the softly
+   */
+  @Test
+  void buildEffectivePermissionsExpressionOfAnonymous(SoftAssertions softly) {
+    Document actual = target
+        .buildEffectivePermissionsExpression(
+            AclUserContext.builder().build(),
+            List.of(PermissionConstants.WRITE))
+        .toDocument(Aggregation.DEFAULT_CONTEXT);
+    softly.assertThat(actual.keySet())
+        .containsExactly("$setDifference");
+    softly.assertThat(actual.toJson())
+        .doesNotContain("$acl.owner", "$acl.entries.write.users");
+  }
+
+  /**
+   * Build effective permissions expression with case-insensitive collation.
+   *
+   * @param softly the softly
+   */
+  @Test
+  void buildEffectivePermissionsExpressionCaseInsensitively(SoftAssertions softly) {
+    AclAggregationBuilder caseInsensitive = new AclAggregationBuilder(
+        new AclCriteriaAndUpdateBuilder(
+            "acl", AclIndexStrategy.caseInsensitive(AclIndexStrategy.singleField())));
+    Document actual = caseInsensitive
+        .buildEffectivePermissionsExpression(
+            AclUserContext.builder().name("anna").build(),
+            List.of(PermissionConstants.READ))
+        .toDocument(Aggregation.DEFAULT_CONTEXT);
+    softly.assertThat(actual.getList("$cond", Object.class))
+        .first()
+        .isEqualTo(new Document("$regexMatch", new Document("input", "$acl.owner")
+            .append("regex", "^\\Qanna\\E$")));
+  }
+
+  /**
+   * Build aggregation.
+   *
+   * @param softly the softly
+   */
+  @Test
+  void buildAggregation(SoftAssertions softly) {
+    AclUserContext userContext = AclUserContext.builder().name("anna").build();
+    List<String> permissions = List.of(PermissionConstants.READ);
+    Aggregation aggregation = target.buildAggregation(
+        Criteria.where("otherContent").is("junit"),
+        userContext,
+        AccessEvaluation.ANY_PERMISSION,
+        permissions,
+        true,
+        List.of(Aggregation.limit(10)));
+    List<Document> actual = aggregation.toPipeline(Aggregation.DEFAULT_CONTEXT);
+
+    Document permissionCriteria = new AclCriteriaAndUpdateBuilder("acl")
+        .buildPermissionCriteria(userContext, AccessEvaluation.ANY_PERMISSION, permissions)
+        .getCriteriaObject();
+    softly.assertThat(actual)
+        .hasSize(3);
+    softly.assertThat(actual.get(0))
+        .isEqualTo(new Document("$match", new Document("$and", List
+            .of(new Document("otherContent", "junit"), permissionCriteria))));
+    softly.assertThat(actual.get(1))
+        .isEqualTo(new Document("$project", new Document("acl", 0)));
+    softly.assertThat(actual.get(2))
+        .isEqualTo(new Document("$limit", 10L));
+    softly.assertThat(aggregation.getOptions().getCollation())
+        .isEmpty();
+
+    AclAggregationBuilder caseInsensitive = new AclAggregationBuilder(
+        new AclCriteriaAndUpdateBuilder(
+            "acl", AclIndexStrategy.caseInsensitive(AclIndexStrategy.singleField())));
+    softly.assertThat(caseInsensitive.buildAggregation(
+                null, userContext, AccessEvaluation.ANY_PERMISSION, permissions, false, null)
+            .getOptions()
+            .getCollation())
+        .isPresent();
+  }
+
+  /**
+   * Build union with stage.
+   *
+   * @param softly the softly
+   */
+  @Test
+  void buildUnionWithStage(SoftAssertions softly) {
+    AclUserContext userContext = AclUserContext.builder().name("anna").build();
+    List<String> permissions = List.of(PermissionConstants.READ);
+    AclAggregationBuilder other = new AclAggregationBuilder("otherAcl");
+    List<Document> actual = Aggregation.newAggregation(other.buildUnionWithStage(
+            "other-collection",
+            null,
+            userContext,
+            AccessEvaluation.ANY_PERMISSION,
+            permissions,
+            true,
+            List.of()))
+        .toPipeline(Aggregation.DEFAULT_CONTEXT);
+
+    Document permissionCriteria = new AclCriteriaAndUpdateBuilder("otherAcl")
+        .buildPermissionCriteria(userContext, AccessEvaluation.ANY_PERMISSION, permissions)
+        .getCriteriaObject();
+    softly.assertThat(actual)
+        .containsExactly(new Document("$unionWith", new Document("coll", "other-collection")
+            .append("pipeline", List.of(
+                new Document("$match", permissionCriteria),
+                new Document("$project", new Document("otherAcl", 0))))));
+  }
+
+  /**
+   * Build permission count aggregation.
+   *
+   * @param softly the softly
+   */
+  @Test
+  void buildPermissionCountAggregation(SoftAssertions softly) {
+    AclUserContext userContext = AclUserContext.builder().name("anna").build();
+    List<String> permissions = List.of(PermissionConstants.READ, PermissionConstants.WRITE);
+    List<Document> actual = target
+        .buildPermissionCountAggregation(null, userContext, permissions)
+        .toPipeline(Aggregation.DEFAULT_CONTEXT);
+
+    softly.assertThat(actual)
+        .map(stage -> stage.keySet().iterator().next())
+        .containsExactly("$match", "$project", "$unwind", "$group");
+    softly.assertThat(actual.get(0))
+        .isEqualTo(new Document("$match", new AclCriteriaAndUpdateBuilder("acl")
+            .buildPermissionCriteria(userContext, AccessEvaluation.ANY_PERMISSION, permissions)
+            .getCriteriaObject()));
+    softly.assertThat(actual.get(3))
+        .isEqualTo(new Document("$group", new Document("_id", "$permissions")
+            .append("count", new Document("$sum", 1))));
+  }
+
+}
@@ -0,0 +1,384 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.bremersee.acl.spring.data.mongodb;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.assertj.core.api.SoftAssertions;
+import org.assertj.core.api.junit.jupiter.SoftAssertionsExtension;
+import org.bremersee.acl.AccessEvaluation;
+import org.bremersee.acl.Acl;
+import org.bremersee.acl.AclUserContext;
+import org.bremersee.acl.PermissionConstants;
+import org.bremersee.acl.model.AccessControlEntryModifications;
+import org.bremersee.acl.model.AccessControlListModifications;
+import org.bremersee.acl.spring.data.mongodb.index.AclIndexStrategy;
+import org.bremersee.acl.spring.data.mongodb.index.CaseInsensitiveAclIndexStrategy;
+import org.bremersee.acl.spring.data.mongodb.index.CompoundAclIndexStrategy;
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.query.Collation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+/**
+ * The acl criteria and update builder test.
+ *
+ * @author Christian Bremer
+ */
+@ExtendWith(SoftAssertionsExtension.class)
+class AclCriteriaAndUpdateBuilderTest {
+
+  private final AclCriteriaAndUpdateBuilder target = new AclCriteriaAndUpdateBuilder("acl");
+
+  /**
+   * Build permission criteria.
+   *
+   * @param softly the softly
+   */
+  @Test
+  void buildPermissionCriteria(SoftAssertions softly) {
+    Document actual = target
+        .buildPermissionCriteria(
+            AclUserContext.builder()
+                .name("anna")
+                .roles(List.of("ROLE_USER", "ROLE_USER"))
+                .groups(List.of("net", "dev"))
+                .build(),
+            AccessEvaluation.ANY_PERMISSION,
+            List.of(PermissionConstants.READ, PermissionConstants.READ))
+        .getCriteriaObject();
+    Document expected = new Document("$or", List.of(
+        new Document("acl.owner", "anna"),
+        new Document("acl.entries.read.guest", true),
+        new Document("acl.entries.read.users", new Document("$in", List.of("anna"))),
+        new Document("acl.entries.read.roles", new Document("$in", List.of("ROLE_USER"))),
+        new Document("acl.entries.read.groups", new Document("$in", List.of("dev", "net")))));
+    softly.assertThat(actual)
+        .isEqualTo(expected);
+  }
+
+  /**
+   * Build permission criteria with stable shape.
+   *
+   * @param softly the softly
+   */
+  @Test
+  void buildPermissionCriteriaWithStableShape(SoftAssertions softly) {
+    List<String> permissions = List.of(PermissionConstants.WRITE, PermissionConstants.READ);
+    AclUserContext few = AclUserContext.builder()
+        .name("anna")
+        .groups(List.of("dev"))
+        .build();
+    AclUserContext many = AclUserContext.builder()
+        .name("james")
+        .roles(List.of("ROLE_USER", "ROLE_ADMIN"))
+        .groups(IntStream.range(0, 200)
+            .mapToObj(i -> "group" + i)
+            .collect(Collectors.toList()))
+        .build();
+    for (AccessEvaluation accessEvaluation : AccessEvaluation.values()) {
+      softly.assertThat(shape(target
+              .buildPermissionCriteria(many, accessEvaluation, permissions)
+              .getCriteriaObject()))
+          .isEqualTo(shape(target
+              .buildPermissionCriteria(few, accessEvaluation, List.of(
+                  PermissionConstants.READ, PermissionConstants.WRITE, PermissionConstants.READ))
+              .getCriteriaObject()));
+    }
+  }
+
+  /**
+   * Build permission criteria with prefix of compound index strategy.
+   *
+   * @param softly the softly
+   */
+  @Test
+  void buildPermissionCriteriaWithPrefix(SoftAssertions softly) {
+    CompoundAclIndexStrategy strategy = AclIndexStrategy
+        .compound("tenant", AclIndexStrategy.tokens());
+    AclUserContext userContext = AclUserContext.builder().name("anna").build();
+    List<String> permissions = List.of(PermissionConstants.READ);
+    Document permissionCriteria = new AclCriteriaAndUpdateBuilder("acl", strategy)
+        .buildPermissionCriteria(userContext, AccessEvaluation.ANY_PERMISSION, permissions)
+        .getCriteriaObject();
+    softly.assertThat(permissionCriteria)
+        .doesNotContainKey("$and");
+
+    Document actual = new AclCriteriaAndUpdateBuilder("acl", strategy.withPrefixValues("t1"))
+        .buildPermissionCriteria(userContext, AccessEvaluation.ANY_PERMISSION, permissions)
+        .getCriteriaObject();
+    softly.assertThat(actual)
+        .isEqualTo(new Document("$and", List.of(
+            new Document("tenant", "t1"),
+            permissionCriteria)));
+
+    actual = new AclCriteriaAndUpdateBuilder("acl", strategy.withPrefixValues("t1", "t2"))
+        .buildPermissionCriteria(userContext, AccessEvaluation.ANY_PERMISSION, permissions)
+        .getCriteriaObject();
+    softly.assertThat(actual)
+        .isEqualTo(new Document("$and", List.of(
+            new Document("tenant", new Document("$in", List.of("t1", "t2"))),
+            permissionCriteria)));
+
+    softly.assertThatThrownBy(() -> strategy.withPrefixCriteria(Criteria.where("other").is(1)))
+        .isInstanceOf(IllegalArgumentException.class);
+
+    CompoundAclIndexStrategy collated = AclIndexStrategy
+        .compound("tenant", AclIndexStrategy.caseInsensitive(AclIndexStrategy.singleField()));
+    softly.assertThat(collated.getCollation())
+        .isPresent();
+    softly.assertThatThrownBy(() -> collated.withPrefixValues("acme"))
+        .as("A case-insensitive tenant would match other tenants.")
+        .isInstanceOf(IllegalArgumentException.class);
+    softly.assertThatThrownBy(() -> AclIndexStrategy
+            .caseInsensitive(strategy.withPrefixValues("acme")))
+        .as("A case-insensitive tenant would match other tenants.")
+        .isInstanceOf(IllegalArgumentException.class);
+    softly.assertThat(AclIndexStrategy.caseInsensitive(strategy).getCollation())
+        .isPresent();
+  }
+
+  /**
+   * Build update with stored and new acl.
+   *
+   * @param softly the softly
+   */
+  @Test
+  void buildUpdateWithStoredAndNewAcl(SoftAssertions softly) {
+    Acl storedAcl = Acl.builder()
+        .owner("junit")
+        .guest(PermissionConstants.READ, true)
+        .addUsers(PermissionConstants.READ, List.of("anna"))
+        .addRoles(PermissionConstants.READ, List.of("ROLE_USER"))
+        .addGroups(PermissionConstants.READ, List.of("dev", "net"))
+        .addUsers(PermissionConstants.DELETE, List.of("anna"))
+        .build();
+    Acl newAcl = Acl.builder()
+        .owner("junit")
+        .guest(PermissionConstants.READ, true)
+        .addUsers(PermissionConstants.READ, List.of("anna", "james"))
+        .addGroups(PermissionConstants.READ, List.of("dev", "cron"))
+        .addUsers(PermissionConstants.WRITE, List.of("anna"))
+        .build();
+
+    Optional<Document> actual = target.buildUpdate(storedAcl, newAcl)
+        .map(Update::getUpdateObject);
+    softly.assertThat(actual)
+        .hasValueSatisfying(update -> {
+          softly.assertThat(update.keySet())
+              .containsExactlyInAnyOrder("$addToSet", "$pullAll", "$set", "$unset");
+          softly.assertThat(update.get("$addToSet", Document.class))
+              .containsOnlyKeys("acl.entries.read.users");
+          softly.assertThat(update.get("$pullAll", Document.class))
+              .containsOnlyKeys("acl.entries.read.roles");
+          softly.assertThat(update.get("$set", Document.class))
+              .containsOnlyKeys("acl.entries.read.groups", "acl.entries.write");
+          softly.assertThat(update.get("$unset", Document.class))
+              .containsOnlyKeys("acl.entries.delete");
+        });
+
+    softly.assertThat(target.buildUpdate(storedAcl, Acl.builder().from(storedAcl).build()))
+        .isEmpty();
+  }
+
+  /**
+   * Build update of modifications with tokens.
+   *
+   * @param softly the softly
+   */
+  @Test
+  void buildUpdateOfModificationsWithTokens(SoftAssertions softly) {
+    AclCriteriaAndUpdateBuilder builder = new AclCriteriaAndUpdateBuilder("acl", true);
+    AccessControlListModifications modifications = AccessControlListModifications.builder()
+        .modifications(List.of(AccessControlEntryModifications.builder()
+            .permission(PermissionConstants.READ)
+            .addAddUsers("anna")
+            .build()))
+        .build();
+    AclModificationUpdate actual = builder.buildUpdate(modifications);
+    softly.assertThat(actual.getPreparationUpdates())
+        .as("The guest token is removed, because the stored guest flag is unknown.")
+        .hasSize(1);
+    softly.assertThat(actual.getFinalUpdate().getUpdateObject().get("$pullAll", Document.class))
+        .containsEntry("acl.tokens", List.of(AclTokens.guest(PermissionConstants.READ)));
+
+    Acl storedAcl = Acl.builder()
+        .addUsers(PermissionConstants.READ, List.of("james"))
+        .build();
+    actual = builder.buildUpdate(modifications, storedAcl);
+    softly.assertThat(actual.getPreparationUpdates())
+        .isEmpty();
+    softly.assertThat(actual.getFinalUpdate().getUpdateObject())
+        .containsOnlyKeys("$set", "$addToSet");
+
+    actual = builder.buildUpdate(
+        modifications, Acl.builder().guest(PermissionConstants.READ, true).build());
+    softly.assertThat(actual.getPreparationUpdates())
+        .as("The guest flag changes from true to false.")
+        .hasSize(1);
+    softly.assertThat(actual.getFinalUpdate().getUpdateObject().get("$pullAll", Document.class))
+        .containsEntry("acl.tokens", List.of(AclTokens.guest(PermissionConstants.READ)));
+  }
+
+  /**
+   * Build tokens with separator in principal.
+   *
+   * @param softly the softly
+   */
+  @Test
+  void buildTokensWithSeparatorInPrincipal(SoftAssertions softly) {
+    AclCriteriaAndUpdateBuilder builder = new AclCriteriaAndUpdateBuilder("acl", true);
+    softly.assertThatThrownBy(() -> AclTokens.user(PermissionConstants.READ, "anna|u:james"))
+        .isInstanceOf(IllegalArgumentException.class);
+    softly.assertThatThrownBy(() -> builder
+            .buildRemovePrincipalUpdate(AclPrincipalType.USER, "anna|u:james"))
+        .isInstanceOf(IllegalArgumentException.class);
+    softly.assertThatThrownBy(() -> builder
+            .buildRenamePrincipalUpdate(AclPrincipalType.GROUP, "dev", "net|g:dev"))
+        .isInstanceOf(IllegalArgumentException.class);
+    softly.assertThat(AclTokens.of(
+            AclUserContext.builder()
+                .name("anna|u:james")
+                .roles(List.of("ROLE_USER"))
+                .build(),
+            PermissionConstants.READ))
+        .containsExactly(
+            AclTokens.guest(PermissionConstants.READ),
+            AclTokens.role(PermissionConstants.READ, "ROLE_USER"));
+  }
+
+  /**
+   * Build pipeline update.
+   *
+   * @param softly the softly
+   */
+  @Test
+  void buildPipelineUpdate(SoftAssertions softly) {
+    softly.assertThat(target.buildPipelineUpdate(null))
+        .isEmpty();
+    softly.assertThat(target.buildPipelineUpdate(AccessControlListModifications.builder()
+            .build()))
+        .isEmpty();
+
+    AccessControlListModifications modifications = AccessControlListModifications.builder()
+        .modifications(List.of(AccessControlEntryModifications.builder()
+            .permission(PermissionConstants.READ)
+            .addAddUsers("anna")
+            .addRemoveRoles("ROLE_USER")
+            .build()))
+        .build();
+    Document users = new Document("$setUnion", List.of(
+        new Document("$ifNull", List.of("$acl.entries.read.users", List.of())),
+        new Document("$literal", List.of("anna"))));
+    Document roles = new Document("$setDifference", List.of(
+        new Document("$ifNull", List.of("$acl.entries.read.roles", List.of())),
+        new Document("$literal", List.of("ROLE_USER"))));
+    softly.assertThat(target.buildPipelineUpdate(modifications))
+        .map(update -> update.toPipeline(Aggregation.DEFAULT_CONTEXT))
+        .hasValue(List.of(new Document("$set", new Document()
+            .append("acl.entries.read.guest", false)
+            .append("acl.entries.read.users", users)
+            .append("acl.entries.read.roles", roles))));
+
+    Document tokens = new Document("$setDifference", List.of(
+        new Document("$setUnion", List.of(
+            new Document("$ifNull", List.of("$acl.tokens", List.of())),
+            new Document("$literal", List.of(AclTokens.user(PermissionConstants.READ, "anna"))))),
+        new Document("$literal", List.of(
+            AclTokens.guest(PermissionConstants.READ),
+            AclTokens.role(PermissionConstants.READ, "ROLE_USER")))));
+    softly.assertThat(new AclCriteriaAndUpdateBuilder("acl", true)
+            .buildPipelineUpdate(modifications))
+        .map(update -> update.toPipeline(Aggregation.DEFAULT_CONTEXT))
+        .hasValueSatisfying(pipeline -> softly.assertThat(pipeline)
+            .singleElement()
+            .extracting(stage -> stage.get("$set", Document.class))
+            .satisfies(set -> softly.assertThat(set)
+                .containsEntry("acl.entries.read.users", users)
+                .containsEntry("acl.tokens", tokens)));
+  }
+
+  /**
+   * Apply collation.
+   *
+   * @param softly the softly
+   */
+  @Test
+  void applyCollation(SoftAssertions softly) {
+    softly.assertThat(target.applyCollation(new Query()).getCollation())
+        .isEmpty();
+
+    AclCriteriaAndUpdateBuilder caseInsensitive = new AclCriteriaAndUpdateBuilder(
+        "acl", AclIndexStrategy.caseInsensitive(AclIndexStrategy.singleField()));
+    softly.assertThat(caseInsensitive.applyCollation(new Query()).getCollation())
+        .map(Collation::toDocument)
+        .hasValueSatisfying(collation -> softly.assertThat(collation)
+            .containsEntry("locale", "en")
+            .containsEntry("strength", 2));
+    softly.assertThat(caseInsensitive.getIndexStrategy().getIndexDefinitions(
+            "acl", List.of(PermissionConstants.READ)))
+        .allSatisfy(indexDefinition -> softly.assertThat(indexDefinition.getIndexOptions())
+            .containsKey("collation")
+            .hasEntrySatisfying(
+                "name", name -> softly.assertThat(name.toString()).endsWith("_ci")));
+
+    String ownerCriteria = CaseInsensitiveAclIndexStrategy
+        .buildOwnerCriteria("acl.owner", "anna")
+        .getCriteriaObject()
+        .toJson();
+    softly.assertThat(ownerCriteria)
+        .startsWith("{\"$and\": [{\"acl.owner\": \"anna\"}, {\"acl.owner\": ")
+        .contains("^\\\\Qanna\\\\E$");
+    AclUserContext userContext = AclUserContext.builder()
+        .name("anna")
+        .roles(List.of("ROLE_USER"))
+        .build();
+    Document permissionCriteria = caseInsensitive.buildPermissionCriteria(
+            userContext, AccessEvaluation.ANY_PERMISSION, List.of(PermissionConstants.READ))
+        .getCriteriaObject();
+    softly.assertThat(permissionCriteria.getList("$or", Document.class))
+        .hasSize(5)
+        .first()
+        .satisfies(owner -> softly.assertThat(owner.toJson()).isEqualTo(ownerCriteria));
+    softly.assertThat(caseInsensitive.buildOwnerCriteria("anna").getCriteriaObject().toJson())
+        .isEqualTo(ownerCriteria);
+    softly.assertThat(target.buildOwnerCriteria("anna").getCriteriaObject())
+        .isEqualTo(new Document("acl.owner", "anna"));
+  }
+
+  private static Object shape(Object value) {
+    if (value instanceof Document) {
+      Document shape = new Document();
+      ((Document) value).forEach((key, entryValue) -> shape.put(key, shape(entryValue)));
+      return shape;
+    }
+    if (value instanceof List<?> && !((List<?>) value).isEmpty()
+        && ((List<?>) value).get(0) instanceof Document) {
+      return ((List<?>) value).stream()
+          .map(AclCriteriaAndUpdateBuilderTest::shape)
+          .collect(Collectors.toList());
+    }
+    return "?";
+  }
+
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.bremersee.acl.spring.data.mongodb;
+
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+import java.util.List;
+import org.assertj.core.api.SoftAssertions;
+import org.assertj.core.api.junit.jupiter.SoftAssertionsExtension;
+import org.bremersee.acl.Acl;
+import org.bremersee.acl.PartialAcl;
+import org.bremersee.acl.PermissionConstants;
+import org.bremersee.acl.spring.data.mongodb.app.ExampleEntity;
+import org.bremersee.acl.spring.data.mongodb.convert.AclToDocumentConverter;
+import org.bremersee.acl.spring.data.mongodb.convert.DocumentToAclConverter;
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.data.mongodb.core.query.Query;
+
+/**
+ * The acl projection test.
+ *
+ * @author Christian Bremer
+ */
+@ExtendWith(SoftAssertionsExtension.class)
+class AclProjectionTest {
+
+  private static final Acl ACL = Acl.builder()
+      .owner("junit")
+      .addUsers(PermissionConstants.WRITE, List.of("james"))
+      .addRoles(PermissionConstants.READ, List.of("ROLE_USER"))
+      .build();
+
+  /**
+   * Exclude acl.
+   *
+   * @param softly the softly
+   */
+  @Test
+  void excludeAcl(SoftAssertions softly) {
+    AclProjection target = AclProjection.excludeAcl(ExampleEntity.class);
+    softly.assertThat(target.isAclExcluded())
+        .isTrue();
+    softly.assertThat(target.applyTo(new Query()).getFieldsObject())
+        .isEqualTo(new Document(ExampleEntity.ACL, 0));
+    softly.assertThat(target.readAcl(new Document(ExampleEntity.ACL, new Document())))
+        .isEmpty();
+  }
+
+  /**
+   * Include permissions.
+   *
+   * @param softly the softly
+   */
+  @Test
+  void includePermissions(SoftAssertions softly) {
+    AclProjection target = AclProjection
+        .includePermissions(ExampleEntity.class, List.of(PermissionConstants.READ));
+    softly.assertThat(target.isAclExcluded())
+        .isFalse();
+    softly.assertThat(target.applyTo(new Query()).getFieldsObject())
+        .containsEntry(ExampleEntity.ACL + ".owner", 1)
+        .containsEntry(ExampleEntity.ACL + ".entries.read", 1)
+        .containsKey(ExampleEntity.ACL + "." + AclProjection.INCLUDED_PERMISSIONS)
+        .hasSize(3);
+
+    Document document = new Document(
+        ExampleEntity.ACL,
+        new AclToDocumentConverter().convert(ACL));
+    softly.assertThat(target.readAcl(document))
+        .hasValueSatisfying(acl -> {
+          softly.assertThat(acl.getOwner())
+              .isEqualTo("junit");
+          softly.assertThat(acl.getIncludedPermissions())
+              .containsExactly(PermissionConstants.READ);
+          softly.assertThat(acl.getPermissionMap())
+              .containsOnlyKeys(PermissionConstants.READ);
+        });
+  }
+
+  /**
+   * Convert projected acl.
+   *
+   * @param softly the softly
+   */
+  @Test
+  void convertProjectedAcl(SoftAssertions softly) {
+    Document document = new AclToDocumentConverter().convert(ACL);
+    document.put(AclProjection.INCLUDED_PERMISSIONS, List.of(PermissionConstants.READ));
+    Acl actual = new DocumentToAclConverter().convert(document);
+    softly.assertThat(actual)
+        .isInstanceOf(PartialAcl.class);
+    softly.assertThat(actual.getPermissionMap())
+        .containsOnlyKeys(PermissionConstants.READ);
+  }
+
+  /**
+   * Write partial acl.
+   */
+  @Test
+  void writePartialAcl() {
+    PartialAcl partialAcl = PartialAcl.of(ACL, List.of(PermissionConstants.READ));
+    assertThatExceptionOfType(IllegalArgumentException.class)
+        .isThrownBy(() -> new AclToDocumentConverter().convert(partialAcl));
+    assertThatExceptionOfType(IllegalArgumentException.class)
+        .isThrownBy(() -> new AclCriteriaAndUpdateBuilder(ExampleEntity.class)
+            .buildUpdate(ACL, partialAcl));
+  }
+
+}
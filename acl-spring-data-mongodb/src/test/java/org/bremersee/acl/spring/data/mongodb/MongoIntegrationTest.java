@@ -17,22 +17,38 @@
 package org.bremersee.acl.spring.data.mongodb;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import lombok.extern.slf4j.Slf4j;
 import org.assertj.core.api.SoftAssertions;
 import org.assertj.core.api.junit.jupiter.SoftAssertionsExtension;
 import org.bremersee.acl.AccessEvaluation;
+import org.bremersee.acl.AccessEvaluator;
+import org.bremersee.acl.Ace;
 import org.bremersee.acl.Acl;
 import org.bremersee.acl.AclUserContext;
+import org.bremersee.acl.PartialAcl;
 import org.bremersee.acl.PermissionConstants;
 import org.bremersee.acl.model.AccessControlEntryModifications;
 import org.bremersee.acl.model.AccessControlListModifications;
 import org.bremersee.acl.spring.data.mongodb.app.ExampleConfiguration;
 import org.bremersee.acl.spring.data.mongodb.app.ExampleEntity;
 import org.bremersee.acl.spring.data.mongodb.app.ExampleEntityRepository;
+import org.bremersee.acl.spring.data.mongodb.convert.AclToDocumentConverter;
+import org.bremersee.acl.spring.data.mongodb.index.AclIndexStrategy;
+import org.bremersee.acl.spring.data.mongodb.index.CompoundAclIndexStrategy;
+import org.bson.Document;
+import org.bson.types.ObjectId;
 import org.junit.jupiter.api.MethodOrderer;
 import org.junit.jupiter.api.Order;
 import org.junit.jupiter.api.Test;
@@ -42,8 +58,17 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
 import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Sort.Direction;
 import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
+import org.springframework.data.mongodb.core.index.Index;
 import org.springframework.data.mongodb.core.index.IndexInfo;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.testcontainers.containers.MongoDBContainer;
 import org.testcontainers.junit.jupiter.Container;
 import org.testcontainers.junit.jupiter.Testcontainers;
@@ -66,7 +91,7 @@ public class MongoIntegrationTest {
   @Container
   @ServiceConnection
   static MongoDBContainer mongoDBContainer = new MongoDBContainer(DockerImageName
-      .parse("mongo:4.0.10"));
+      .parse("mongo:6.0"));
 
   /**
    * The Mongo template.
@@ -383,4 +408,1186 @@ public class MongoIntegrationTest {
         .isEmpty();
   }
 
+  /**
+   * Find with projection and save.
+   *
+   * @param softly the softly
+   */
+  @Order(140)
+  @Test
+  void findWithProjectionAndSave(SoftAssertions softly) {
+    ExampleEntity entity = new ExampleEntity();
+    entity.setAcl(Acl.builder()
+        .owner("junit")
+        .addUsers(PermissionConstants.WRITE, List.of("james"))
+        .addRoles(PermissionConstants.READ, List.of("ROLE_USER"))
+        .build());
+    entity.setOtherContent(UUID.randomUUID().toString());
+    String id = repository.save(entity).getId();
+
+    AclProjection projection = AclProjection
+        .includePermissions(ExampleEntity.class, List.of(PermissionConstants.READ));
+    ExampleEntity actual = mongoTemplate.findOne(
+        projection.applyTo(Query.query(Criteria.where("_id").is(id))),
+        ExampleEntity.class);
+    softly.assertThat(actual)
+        .isNotNull()
+        .extracting(ExampleEntity::getAcl)
+        .isInstanceOf(PartialAcl.class)
+        .extracting(Acl::getPermissionMap)
+        .satisfies(permissionMap -> softly.assertThat(permissionMap)
+            .containsOnlyKeys(PermissionConstants.READ));
+    softly.assertThatThrownBy(() -> repository.save(actual))
+        .satisfies(e -> softly.assertThat(NestedExceptionUtils.getMostSpecificCause(e))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageContaining("partial"));
+    softly.assertThat(repository.findById(id))
+        .hasValueSatisfying(stored -> softly.assertThat(stored.getAcl().getPermissionMap())
+            .containsOnlyKeys(PermissionConstants.READ, PermissionConstants.WRITE));
+  }
+
+  /**
+   * Save, find and modify with tokens.
+   *
+   * @param softly the softly
+   */
+  @Order(200)
+  @Test
+  void saveFindAndModifyWithTokens(SoftAssertions softly) {
+    String collectionName = "acl-token-collection";
+    new AclIndexOperations(mongoTemplate)
+        .ensureAclTokenIndexes(collectionName, ExampleEntity.ACL, true);
+    softly.assertThat(new AclIndexOperations(mongoTemplate)
+            .getAclIndexInfo(collectionName, ExampleEntity.ACL))
+        .map(IndexInfo::getName)
+        .containsExactlyInAnyOrder(
+            ExampleEntity.ACL + "." + Acl.OWNER + "_1",
+            ExampleEntity.ACL + "." + AclTokens.TOKENS + "_1");
+
+    AclCriteriaAndUpdateBuilder builder = new AclCriteriaAndUpdateBuilder(
+        ExampleEntity.ACL, true);
+    Acl acl = Acl.builder()
+        .owner("junit")
+        .addUsers(PermissionConstants.WRITE, List.of("james"))
+        .addRoles(PermissionConstants.READ, List.of("ROLE_USER"))
+        .addGroups(PermissionConstants.DELETE, List.of("cron"))
+        .build();
+    String id = UUID.randomUUID().toString();
+    Query idQuery = Query.query(Criteria.where("_id").is(id));
+    mongoTemplate.upsert(idQuery, builder.buildUpdate(acl), collectionName);
+
+    Function<AclUserContext, Boolean> canRead = userContext -> mongoTemplate.exists(
+        Query.query(new Criteria().andOperator(
+            Criteria.where("_id").is(id),
+            builder.buildPermissionCriteria(
+                userContext,
+                AccessEvaluation.ANY_PERMISSION,
+                List.of(PermissionConstants.READ)))),
+        collectionName);
+    AclUserContext anna = AclUserContext.builder()
+        .name("anna")
+        .roles(List.of("ROLE_USER"))
+        .build();
+    AclUserContext max = AclUserContext.builder()
+        .name("max")
+        .roles(List.of("ROLE_GUEST"))
+        .build();
+    softly.assertThat(canRead.apply(anna))
+        .isTrue();
+    softly.assertThat(canRead.apply(max))
+        .isFalse();
+    softly.assertThat(mongoTemplate.exists(
+            Query.query(new Criteria().andOperator(
+                Criteria.where("_id").is(id),
+                builder.buildPermissionCriteria(
+                    AclUserContext.builder().name("james").roles(List.of("ROLE_USER")).build(),
+                    AccessEvaluation.ALL_PERMISSIONS,
+                    List.of(PermissionConstants.READ, PermissionConstants.WRITE)))),
+            collectionName))
+        .isTrue();
+
+    AccessControlListModifications modifications = AccessControlListModifications.builder()
+        .modifications(List.of(
+            AccessControlEntryModifications.builder()
+                .permission(PermissionConstants.READ)
+                .isGuest(true)
+                .addRemoveRoles("ROLE_USER")
+                .build()))
+        .build();
+    builder.buildUpdate(modifications).getUpdates()
+        .forEach(update -> mongoTemplate.updateFirst(idQuery, update, collectionName));
+    softly.assertThat(canRead.apply(max))
+        .isTrue();
+
+    modifications = AccessControlListModifications.builder()
+        .modifications(List.of(
+            AccessControlEntryModifications.builder()
+                .permission(PermissionConstants.READ)
+                .isGuest(false)
+                .build()))
+        .build();
+    builder.buildUpdate(modifications).getUpdates()
+        .forEach(update -> mongoTemplate.updateFirst(idQuery, update, collectionName));
+    softly.assertThat(canRead.apply(anna))
+        .isFalse();
+
+    Document actual = mongoTemplate.findOne(idQuery, Document.class, collectionName);
+    softly.assertThat(actual)
+        .isNotNull();
+    if (actual != null) {
+      softly.assertThat(actual.get(ExampleEntity.ACL, Document.class)
+              .getList(AclTokens.TOKENS, String.class))
+          .containsExactlyInAnyOrder(
+              AclTokens.user(PermissionConstants.WRITE, "james"),
+              AclTokens.group(PermissionConstants.DELETE, "cron"));
+    }
+  }
+
+  /**
+   * Ensure indexes of index strategies.
+   *
+   * @param softly the softly
+   */
+  @Order(300)
+  @Test
+  void ensureIndexesOfIndexStrategies(SoftAssertions softly) {
+    String collectionName = "acl-strategy-collection";
+    String prefix = ExampleEntity.ACL + ".";
+    AclIndexOperations aclIndexOperations = new AclIndexOperations(mongoTemplate);
+    List<String> permissions = List.of(PermissionConstants.READ);
+
+    aclIndexOperations.ensureAclIndexes(
+        collectionName, ExampleEntity.ACL, permissions, AclIndexStrategy.partialGuest(), true);
+    softly.assertThat(aclIndexOperations.getAclIndexInfo(collectionName, ExampleEntity.ACL))
+        .map(IndexInfo::getName)
+        .containsExactlyInAnyOrder(
+            prefix + "owner_1",
+            prefix + "entries.read.guest_1_partial",
+            prefix + "entries.read.users_1",
+            prefix + "entries.read.roles_1",
+            prefix + "entries.read.groups_1");
+
+    aclIndexOperations.ensureAclIndexes(
+        collectionName, ExampleEntity.ACL, permissions, AclIndexStrategy.wildcard(), true);
+    softly.assertThat(aclIndexOperations.getAclIndexInfo(collectionName, ExampleEntity.ACL))
+        .map(IndexInfo::getName)
+        .containsExactlyInAnyOrder(
+            prefix + "owner_1",
+            prefix + "entries.$**_1");
+
+    CompoundAclIndexStrategy compound = AclIndexStrategy
+        .compound("tenant", AclIndexStrategy.tokens());
+    aclIndexOperations.ensureAclIndexes(
+        collectionName, ExampleEntity.ACL, permissions, compound, true);
+    softly.assertThat(mongoTemplate.indexOps(collectionName).getIndexInfo())
+        .filteredOn(indexInfo -> AclIndexOperations
+            .isAclIndex(indexInfo, ExampleEntity.ACL, true))
+        .map(IndexInfo::getName)
+        .containsExactlyInAnyOrder(
+            "tenant_1_" + prefix + "owner_1",
+            "tenant_1_" + prefix + "tokens_1");
+    softly.assertThat(aclIndexOperations.getAclIndexInfo(collectionName, ExampleEntity.ACL))
+        .isEmpty();
+
+    mongoTemplate.indexOps(collectionName).ensureIndex(new Index()
+        .on("tenant", Direction.ASC)
+        .on(prefix + "entries.read.users", Direction.ASC)
+        .named("tenant_readers"));
+    aclIndexOperations.ensureAclIndexes(collectionName, ExampleEntity.ACL, permissions, true);
+    softly.assertThat(mongoTemplate.indexOps(collectionName).getIndexInfo())
+        .map(IndexInfo::getName)
+        .contains(
+            "tenant_readers",
+            "tenant_1_" + prefix + "owner_1",
+            "tenant_1_" + prefix + "tokens_1",
+            prefix + "owner_1",
+            prefix + "entries.read.users_1");
+
+    String id = UUID.randomUUID().toString();
+    mongoTemplate.upsert(
+        Query.query(Criteria.where("_id").is(id)),
+        new AclCriteriaAndUpdateBuilder(ExampleEntity.ACL, compound)
+            .buildUpdate(Acl.builder()
+                .owner("junit")
+                .addRoles(PermissionConstants.READ, List.of("ROLE_USER"))
+                .build())
+            .set("tenant", "t1"),
+        collectionName);
+    AclUserContext userContext = AclUserContext.builder()
+        .name("anna")
+        .roles(List.of("ROLE_USER"))
+        .build();
+    Query query = Query.query(
+        new AclCriteriaAndUpdateBuilder(ExampleEntity.ACL, compound.withPrefixValues("t1"))
+            .buildPermissionCriteria(userContext, AccessEvaluation.ANY_PERMISSION, permissions));
+    softly.assertThat(mongoTemplate.exists(query, collectionName))
+        .isTrue();
+    query = Query.query(
+        new AclCriteriaAndUpdateBuilder(ExampleEntity.ACL, compound.withPrefixValues("t2", "t3"))
+            .buildPermissionCriteria(userContext, AccessEvaluation.ANY_PERMISSION, permissions));
+    softly.assertThat(mongoTemplate.exists(query, collectionName))
+        .isFalse();
+  }
+
+  /**
+   * Bulk modify.
+   *
+   * @param softly the softly
+   */
+  @Order(400)
+  @Test
+  void bulkModify(SoftAssertions softly) {
+    String content = UUID.randomUUID().toString();
+    List<ExampleEntity> entities = repository.saveAll(IntStream.range(0, 25)
+        .mapToObj(i -> {
+          ExampleEntity entity = new ExampleEntity();
+          entity.setAcl(Acl.builder()
+              .owner("junit")
+              .addGroups(PermissionConstants.READ, List.of("cron"))
+              .build());
+          entity.setOtherContent(content);
+          return entity;
+        })
+        .collect(Collectors.toList()));
+
+    AclBulkOperations bulkOperations = new AclBulkOperations(
+        mongoTemplate,
+        new AclCriteriaAndUpdateBuilder(ExampleEntity.class));
+    AccessControlListModifications modifications = AccessControlListModifications.builder()
+        .modifications(List.of(
+            AccessControlEntryModifications.builder()
+                .permission(PermissionConstants.READ)
+                .addAddGroups("dev")
+                .addRemoveGroups("cron")
+                .build()))
+        .build();
+    AclBulkResult actual = bulkOperations.modify(
+        ExampleEntity.class,
+        Query.query(Criteria.where(ExampleEntity.OTHER_CONTENT).is(content)),
+        modifications,
+        AclBulkOptions.builder()
+            .batchSize(10)
+            .build());
+    softly.assertThat(actual.getMatchedCount())
+        .isEqualTo(25L);
+    softly.assertThat(actual.getModifiedCount())
+        .isEqualTo(25L);
+    softly.assertThat(actual.getBatchCount())
+        .isEqualTo(3);
+    softly.assertThat(actual.isCompleted())
+        .isTrue();
+
+    Acl expectedAcl = Acl.builder()
+        .owner("junit")
+        .addGroups(PermissionConstants.READ, List.of("dev"))
+        .build();
+    softly.assertThat(repository.findAllById(entities.stream()
+            .map(ExampleEntity::getId)
+            .collect(Collectors.toList())))
+        .map(ExampleEntity::getAcl)
+        .containsOnly(expectedAcl);
+
+    List<String> ids = entities.stream()
+        .limit(5)
+        .map(ExampleEntity::getId)
+        .collect(Collectors.toList());
+    actual = bulkOperations.modifyByIds(
+        ExampleEntity.class,
+        ids,
+        AccessControlListModifications.builder()
+            .modifications(List.of(
+                AccessControlEntryModifications.builder()
+                    .permission(PermissionConstants.WRITE)
+                    .addAddUsers("anna")
+                    .build()))
+            .build(),
+        AclBulkOptions.builder()
+            .batchSize(2)
+            .writeMode(AclBulkOptions.WriteMode.BULK_UNORDERED)
+            .startAfterId(ids.get(0))
+            .build());
+    softly.assertThat(actual.getModifiedCount())
+        .isEqualTo(4L);
+    softly.assertThat(actual.getBatchCount())
+        .isEqualTo(2);
+    softly.assertThat(actual.getLastId())
+        .hasValue(ids.get(4));
+
+    softly.assertThatThrownBy(() -> bulkOperations.modifyByIds(
+            ExampleEntity.class,
+            ids,
+            AccessControlListModifications.builder().build(),
+            AclBulkOptions.builder()
+                .startAfterId("unknown")
+                .build()))
+        .as("An unknown id to start after would start at the first id.")
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  /**
+   * Modify with pipeline update.
+   *
+   * @param softly the softly
+   */
+  @Order(410)
+  @Test
+  void modifyWithPipelineUpdate(SoftAssertions softly) {
+    String collectionName = "acl-pipeline-collection";
+    String id = UUID.randomUUID().toString();
+    Query idQuery = Query.query(Criteria.where("_id").is(id));
+    // the access control list has neither arrays nor tokens
+    mongoTemplate.insert(new Document("_id", id)
+        .append(ExampleEntity.ACL, new Document(Acl.OWNER, "junit")
+            .append(Acl.ENTRIES, new Document(PermissionConstants.READ, new Document(
+                Ace.GUEST, false)))), collectionName);
+
+    AclCriteriaAndUpdateBuilder builder = new AclCriteriaAndUpdateBuilder(
+        ExampleEntity.ACL, true);
+    softly.assertThat(builder.buildPipelineUpdate(AccessControlListModifications.builder()
+            .build()))
+        .isEmpty();
+    AccessControlListModifications modifications = AccessControlListModifications.builder()
+        .modifications(List.of(
+            AccessControlEntryModifications.builder()
+                .permission(PermissionConstants.READ)
+                .addAddUsers("anna")
+                .addRemoveRoles("ROLE_USER")
+                .build(),
+            AccessControlEntryModifications.builder()
+                .permission(PermissionConstants.WRITE)
+                .addRemoveGroups("cron")
+                .build()))
+        .build();
+    builder.buildPipelineUpdate(modifications)
+        .ifPresent(update -> mongoTemplate.updateFirst(idQuery, update, collectionName));
+
+    Document actual = mongoTemplate.findOne(idQuery, Document.class, collectionName);
+    softly.assertThat(actual)
+        .isNotNull();
+    if (actual != null) {
+      Document acl = actual.get(ExampleEntity.ACL, Document.class);
+      Document entries = acl.get(Acl.ENTRIES, Document.class);
+      softly.assertThat(entries.get(PermissionConstants.READ, Document.class))
+          .containsEntry(Ace.USERS, List.of("anna"))
+          .containsEntry(Ace.ROLES, List.of());
+      softly.assertThat(entries.get(PermissionConstants.WRITE, Document.class))
+          .containsEntry(Ace.GUEST, false)
+          .containsEntry(Ace.GROUPS, List.of());
+      softly.assertThat(acl.getList(AclTokens.TOKENS, String.class))
+          .containsExactly(AclTokens.user(PermissionConstants.READ, "anna"));
+    }
+
+    AclBulkResult result = new AclBulkOperations(mongoTemplate, builder).modify(
+        collectionName,
+        idQuery,
+        AccessControlListModifications.builder().build(),
+        AclBulkOptions.builder().build());
+    softly.assertThat(result.isCompleted())
+        .isTrue();
+    softly.assertThat(result.getBatchCount())
+        .isZero();
+  }
+
+  /**
+   * Bulk modify with case-insensitive collation.
+   *
+   * @param softly the softly
+   */
+  @Order(420)
+  @Test
+  void bulkModifyWithCaseInsensitiveCollation(SoftAssertions softly) {
+    String collectionName = "acl-bulk-case-collection";
+    AclCriteriaAndUpdateBuilder builder = new AclCriteriaAndUpdateBuilder(
+        ExampleEntity.ACL, AclIndexStrategy.caseInsensitive(AclIndexStrategy.singleField()));
+    for (String id : List.of("a", "A")) {
+      mongoTemplate.upsert(
+          Query.query(Criteria.where("_id").is(id)),
+          builder.buildUpdate(Acl.builder()
+                  .owner("junit")
+                  .addUsers(PermissionConstants.READ, List.of("anna"))
+                  .build())
+              .set(ExampleEntity.OTHER_CONTENT, id.equals("a") ? "x" : "y"),
+          collectionName);
+    }
+    AccessControlListModifications modifications = AccessControlListModifications.builder()
+        .modifications(List.of(
+            AccessControlEntryModifications.builder()
+                .permission(PermissionConstants.READ)
+                .addAddUsers("stephen")
+                .build()))
+        .build();
+    AclBulkOperations bulkOperations = new AclBulkOperations(mongoTemplate, builder);
+
+    AclBulkResult actual = bulkOperations.modifyByIds(
+        collectionName, List.of("a"), modifications, AclBulkOptions.builder().build());
+    softly.assertThat(actual.getModifiedCount())
+        .isEqualTo(1L);
+
+    actual = bulkOperations.modify(
+        collectionName,
+        builder.applyCollation(Query.query(
+            Criteria.where(ExampleEntity.OTHER_CONTENT).is("X"))),
+        AccessControlListModifications.builder()
+            .modifications(List.of(
+                AccessControlEntryModifications.builder()
+                    .permission(PermissionConstants.WRITE)
+                    .addAddUsers("anna")
+                    .build()))
+            .build(),
+        AclBulkOptions.builder().build());
+    softly.assertThat(actual.getMatchedCount())
+        .as("The query is selected with the collation.")
+        .isEqualTo(1L);
+
+    Document other = mongoTemplate.findOne(
+        Query.query(Criteria.where("_id").is("A")), Document.class, collectionName);
+    softly.assertThat(other)
+        .isNotNull();
+    if (other != null) {
+      Document entries = other.get(ExampleEntity.ACL, Document.class)
+          .get(Acl.ENTRIES, Document.class);
+      softly.assertThat(entries.get(PermissionConstants.READ, Document.class)
+              .getList(Ace.USERS, String.class))
+          .containsExactly("anna");
+      softly.assertThat(entries)
+          .doesNotContainKey(PermissionConstants.WRITE);
+    }
+  }
+
+  /**
+   * Purge, rename and transfer ownership.
+   *
+   * @param softly the softly
+   */
+  @Order(500)
+  @Test
+  void purgeRenameAndTransferOwnership(SoftAssertions softly) {
+    String suffix = UUID.randomUUID().toString();
+    String user = "user-" + suffix;
+    String group = "group-" + suffix;
+    String owner = "owner-" + suffix;
+    List<ExampleEntity> entities = repository.saveAll(IntStream.range(0, 5)
+        .mapToObj(i -> {
+          ExampleEntity entity = new ExampleEntity();
+          entity.setAcl(Acl.builder()
+              .owner(owner)
+              .addUsers(PermissionConstants.READ, List.of(user, "james"))
+              .addUsers("custom-" + i, List.of(user))
+              .addGroups(PermissionConstants.WRITE, List.of(group))
+              .build());
+          entity.setOtherContent(suffix);
+          return entity;
+        })
+        .collect(Collectors.toList()));
+    List<String> ids = entities.stream()
+        .map(ExampleEntity::getId)
+        .collect(Collectors.toList());
+
+    List<AclBulkResult> progress = new ArrayList<>();
+    AclPrincipalOperations principalOperations = new AclPrincipalOperations(
+        mongoTemplate,
+        new AclCriteriaAndUpdateBuilder(ExampleEntity.class));
+    AclBulkResult actual = principalOperations.purge(
+        ExampleEntity.class,
+        AclPrincipalType.USER,
+        user,
+        List.of(),
+        AclBulkOptions.builder()
+            .batchSize(2)
+            .progressListener(progress::add)
+            .build());
+    softly.assertThat(actual.isCompleted())
+        .isTrue();
+    softly.assertThat(progress)
+        .isNotEmpty();
+
+    principalOperations.rename(
+        ExampleEntity.class,
+        AclPrincipalType.GROUP,
+        group,
+        "renamed-" + group,
+        PermissionConstants.getAll(),
+        AclBulkOptions.defaults());
+    actual = principalOperations.transferOwnership(
+        ExampleEntity.class,
+        owner,
+        "new-" + owner,
+        AclBulkOptions.defaults());
+    softly.assertThat(actual.getModifiedCount())
+        .isEqualTo(5L);
+
+    softly.assertThat(repository.findAllById(ids))
+        .map(ExampleEntity::getAcl)
+        .allSatisfy(acl -> {
+          softly.assertThat(acl.getOwner())
+              .isEqualTo("new-" + owner);
+          softly.assertThat(acl.getPermissionMap().get(PermissionConstants.READ).getUsers())
+              .containsExactly("james");
+          softly.assertThat(acl.getPermissionMap().get(PermissionConstants.WRITE).getGroups())
+              .containsExactly("renamed-" + group);
+          softly.assertThat(acl.getPermissionMap().values())
+              .noneMatch(ace -> ace.getUsers().contains(user));
+        });
+  }
+
+  /**
+   * Compute effective permissions.
+   *
+   * @param softly the softly
+   */
+  @Order(600)
+  @Test
+  void computeEffectivePermissions(SoftAssertions softly) {
+    Acl acl = Acl.builder()
+        .owner("junit")
+        .addUsers(PermissionConstants.WRITE, List.of("james"))
+        .addRoles(PermissionConstants.READ, List.of("ROLE_USER"))
+        .addGroups(PermissionConstants.DELETE, List.of("cron"))
+        .guest(PermissionConstants.CREATE, true)
+        .build();
+    ExampleEntity entity = new ExampleEntity();
+    entity.setAcl(acl);
+    entity.setOtherContent(UUID.randomUUID().toString());
+    entity = repository.save(entity);
+
+    AclAggregationBuilder aggregationBuilder = new AclAggregationBuilder(ExampleEntity.class);
+    List<AclUserContext> userContexts = List.of(
+        AclUserContext.builder().name("junit").build(),
+        AclUserContext.builder().name("james").roles(List.of("ROLE_USER")).build(),
+        AclUserContext.builder().groups(List.of("cron")).build(),
+        AclUserContext.builder().name("max").build());
+    for (AclUserContext userContext : userContexts) {
+      List<AggregationOperation> stages = new ArrayList<>();
+      stages.add(Aggregation.match(Criteria.where("_id").is(new ObjectId(entity.getId()))));
+      stages.addAll(aggregationBuilder.buildEffectivePermissionsStages(
+          "permissions",
+          userContext,
+          PermissionConstants.getAll()));
+      Document actual = mongoTemplate
+          .aggregate(
+              Aggregation.newAggregation(stages),
+              "alc-example-collection",
+              Document.class)
+          .getUniqueMappedResult();
+      List<String> expected = PermissionConstants.getAll().stream()
+          .filter(permission -> AccessEvaluator.of(acl).hasPermission(userContext, permission))
+          .collect(Collectors.toList());
+      softly.assertThat(actual)
+          .isNotNull()
+          .doesNotContainKey(ExampleEntity.ACL);
+      softly.assertThat(actual.getList("permissions", String.class))
+          .as("Effective permissions of %s", userContext)
+          .containsExactlyInAnyOrderElementsOf(expected);
+    }
+  }
+
+  /**
+   * Find accessible ids.
+   *
+   * @param softly the softly
+   */
+  @Order(700)
+  @Test
+  void findAccessibleIds(SoftAssertions softly) {
+    String content = UUID.randomUUID().toString();
+    List<ExampleEntity> entities = repository.saveAll(IntStream.range(0, 7)
+        .mapToObj(i -> {
+          ExampleEntity entity = new ExampleEntity();
+          entity.setAcl(Acl.builder()
+              .owner("junit")
+              .addUsers(PermissionConstants.READ, i % 2 == 0 ? List.of("anna") : List.of())
+              .build());
+          entity.setOtherContent(content);
+          return entity;
+        })
+        .collect(Collectors.toList()));
+    List<String> ids = new ArrayList<>(entities.stream()
+        .map(ExampleEntity::getId)
+        .collect(Collectors.toList()));
+    ids.add(new ObjectId().toHexString());
+
+    AclAccessOperations accessOperations = new AclAccessOperations(
+        mongoTemplate,
+        new AclCriteriaAndUpdateBuilder(ExampleEntity.class),
+        3);
+    List<String> actual = accessOperations.findAccessibleIds(
+        ExampleEntity.class,
+        ids,
+        AclUserContext.builder().name("anna").build(),
+        AccessEvaluation.ANY_PERMISSION,
+        List.of(PermissionConstants.READ));
+    softly.assertThat(actual)
+        .containsExactly(ids.get(0), ids.get(2), ids.get(4), ids.get(6));
+
+    actual = accessOperations.findAccessibleIds(
+        ExampleEntity.class,
+        ids,
+        AclUserContext.builder().name("junit").build(),
+        AccessEvaluation.ALL_PERMISSIONS,
+        PermissionConstants.getAll());
+    softly.assertThat(actual)
+        .containsExactlyElementsOf(ids.subList(0, 7));
+
+    List<ObjectId> objectIds = ids.stream()
+        .map(ObjectId::new)
+        .collect(Collectors.toList());
+    softly.assertThat(accessOperations.findAccessibleIds(
+            "alc-example-collection",
+            objectIds,
+            AclUserContext.builder().name("anna").build(),
+            AccessEvaluation.ANY_PERMISSION,
+            List.of(PermissionConstants.READ)))
+        .containsExactly(objectIds.get(0), objectIds.get(2), objectIds.get(4), objectIds.get(6));
+  }
+
+  /**
+   * Reconcile indexes.
+   *
+   * @param softly the softly
+   */
+  @Order(800)
+  @Test
+  void reconcileIndexes(SoftAssertions softly) {
+    List<String> permissions = List.of(PermissionConstants.READ, PermissionConstants.WRITE);
+    List<AclIndexReconciliation> progress = new ArrayList<>();
+    AclIndexReconciler reconciler = new AclIndexReconciler(mongoTemplate)
+        .add("acl-reconcile-first", "acl", permissions, AclIndexStrategy.singleField(), false)
+        .add("acl-reconcile-second", "acl", permissions, AclIndexStrategy.tokens(), false);
+    softly.assertThat(reconciler.isReady())
+        .isFalse();
+    List<AclIndexReconciliation> actual = reconciler.start(progress::add).join();
+    softly.assertThat(reconciler.isReady())
+        .isTrue();
+    softly.assertThat(reconciler.getCompletedCount())
+        .isEqualTo(reconciler.getTotalCount());
+    softly.assertThat(progress)
+        .hasSize(2);
+    softly.assertThat(actual)
+        .map(AclIndexReconciliation::getCreatedIndexes)
+        .map(List::size)
+        .containsExactly(permissions.size() * 4 + 1, 2);
+
+    AclIndexReconciliation result = reconciler.reconcile(
+        "acl-reconcile-first", "acl", permissions, AclIndexStrategy.singleField(), false);
+    softly.assertThat(result.getCreatedIndexes())
+        .isEmpty();
+    result = reconciler.reconcile(
+        "acl-reconcile-first", "acl", permissions, AclIndexStrategy.wildcard(), true);
+    softly.assertThat(result.isSuccessful())
+        .isTrue();
+    softly.assertThat(result.getDroppedIndexes())
+        .hasSize(permissions.size() * 4);
+    softly.assertThat(result.getCreatedIndexes())
+        .hasSize(1);
+    softly.assertThat(new AclIndexOperations(mongoTemplate)
+            .getAclIndexInfo("acl-reconcile-first", "acl"))
+        .hasSize(2);
+
+    mongoTemplate.indexOps("acl-reconcile-third").ensureIndex(new Index()
+        .on("acl.owner", Direction.DESC)
+        .named("acl.owner_1"));
+    result = reconciler.reconcile(
+        "acl-reconcile-third", "acl", permissions, AclIndexStrategy.singleField(), false);
+    softly.assertThat(result.getMismatchedIndexes())
+        .containsExactly("acl.owner_1");
+    softly.assertThat(result.getCreatedIndexes())
+        .hasSize(permissions.size() * 4)
+        .doesNotContain("acl.owner_1");
+    softly.assertThat(result.isSuccessful())
+        .isTrue();
+    softly.assertThat(result.isConsistent())
+        .isFalse();
+    AclIndexReconciler mismatchedReconciler = new AclIndexReconciler(mongoTemplate)
+        .add("acl-reconcile-third", "acl", permissions, AclIndexStrategy.singleField(), false);
+    mismatchedReconciler.start().join();
+    softly.assertThat(mismatchedReconciler.isCompleted())
+        .isTrue();
+    softly.assertThat(mismatchedReconciler.isReady())
+        .isFalse();
+    result = reconciler.reconcile(
+        "acl-reconcile-third", "acl", permissions, AclIndexStrategy.singleField(), true);
+    softly.assertThat(result.isSuccessful())
+        .isTrue();
+    softly.assertThat(result.getDroppedIndexes())
+        .containsExactly("acl.owner_1");
+    softly.assertThat(result.getCreatedIndexes())
+        .containsExactly("acl.owner_1");
+    softly.assertThat(result.isConsistent())
+        .isTrue();
+
+    for (AclIndexStrategy indexStrategy : List.of(
+        AclIndexStrategy.partialGuest(),
+        AclIndexStrategy.caseInsensitive(AclIndexStrategy.singleField()))) {
+      reconciler.reconcile("acl-reconcile-third", "acl", permissions, indexStrategy, true);
+      result = reconciler.reconcile(
+          "acl-reconcile-third", "acl", permissions, indexStrategy, true);
+      softly.assertThat(result.getMismatchedIndexes())
+          .isEmpty();
+      softly.assertThat(result.getDroppedIndexes())
+          .isEmpty();
+      softly.assertThat(result.getCreatedIndexes())
+          .isEmpty();
+    }
+  }
+
+  /**
+   * Advise acl indexes.
+   *
+   * @param softly the softly
+   */
+  @Order(900)
+  @Test
+  void adviseIndexes(SoftAssertions softly) {
+    List<String> permissions = List.of(PermissionConstants.READ, PermissionConstants.WRITE);
+    AclIndexReconciliation reconciliation = new AclIndexReconciler(mongoTemplate).reconcile(
+        "acl-advisor-collection", "acl", permissions, AclIndexStrategy.singleField(), false);
+    softly.assertThat(reconciliation.isSuccessful())
+        .isTrue();
+
+    AclIndexAdvisor advisor = new AclIndexAdvisor(mongoTemplate, "acl-advisor-collection", "acl");
+    AclUserContext userContext = AclUserContext.builder()
+        .name("anna")
+        .roles(List.of("ROLE_USER"))
+        .build();
+    advisor.recording(AclIndexStrategy.singleField()).buildPermissionCriteria(
+        "acl", userContext, AccessEvaluation.ANY_PERMISSION, List.of(PermissionConstants.READ));
+    softly.assertThat(advisor.getRecordedFields())
+        .containsKeys("acl.owner", "acl.entries.read.roles")
+        .doesNotContainKey("acl.entries.write.roles");
+
+    AclIndexAdvice advice = advisor.advise(Duration.ZERO, false);
+    softly.assertThat(advice.getMissingIndexes())
+        .isEmpty();
+    softly.assertThat(advice.getUnusedIndexes())
+        .hasSize(4)
+        .allMatch(indexName -> indexName.startsWith("acl.entries.write."));
+    softly.assertThat(advice.isApplied())
+        .isFalse();
+
+    advice = advisor.advise(Duration.ZERO, true);
+    softly.assertThat(advice.isApplied())
+        .isTrue();
+    softly.assertThat(new AclIndexOperations(mongoTemplate)
+            .getAclIndexInfo("acl-advisor-collection", "acl"))
+        .hasSize(5);
+
+    mongoTemplate.indexOps("acl-advisor-collection").dropAllIndexes();
+    advice = advisor.advise(Duration.ofDays(1), false);
+    softly.assertThat(advice.getMissingIndexes())
+        .contains("acl.owner", "acl.entries.read.roles");
+    softly.assertThat(advice.getUnusedIndexes())
+        .isEmpty();
+
+    AclIndexAdvisor caseInsensitiveAdvisor = new AclIndexAdvisor(
+        mongoTemplate, "acl-advisor-collection", "acl");
+    caseInsensitiveAdvisor.recording(AclIndexStrategy.caseInsensitive(AclIndexStrategy
+        .singleField())).buildPermissionCriteria(
+        "acl", userContext, AccessEvaluation.ANY_PERMISSION, List.of(PermissionConstants.READ));
+    advice = caseInsensitiveAdvisor.advise(Duration.ZERO, true);
+    softly.assertThat(advice.getMissingIndexes())
+        .contains("acl.owner", "acl.entries.read.roles");
+    softly.assertThat(mongoTemplate.indexOps("acl-advisor-collection").getIndexInfo())
+        .filteredOn(indexInfo -> indexInfo.getName().startsWith("acl."))
+        .isNotEmpty()
+        .allMatch(indexInfo -> indexInfo.getName().endsWith("_1_ci")
+            && indexInfo.getCollation().isPresent());
+    softly.assertThat(caseInsensitiveAdvisor.advise(Duration.ZERO, false).getMissingIndexes())
+        .isEmpty();
+  }
+
+  /**
+   * Find accessible ids case-insensitively.
+   *
+   * @param softly the softly
+   */
+  @Order(1000)
+  @Test
+  void findAccessibleIdsCaseInsensitively(SoftAssertions softly) {
+    AclIndexStrategy indexStrategy = AclIndexStrategy
+        .caseInsensitive(AclIndexStrategy.singleField());
+    List<String> permissions = List.of(PermissionConstants.READ);
+    AclIndexReconciliation reconciliation = new AclIndexReconciler(mongoTemplate).reconcile(
+        "alc-example-collection", "acl", permissions, indexStrategy, false);
+    softly.assertThat(reconciliation.getCreatedIndexes())
+        .isNotEmpty()
+        .allMatch(indexName -> indexName.endsWith("_ci"));
+    softly.assertThat(mongoTemplate.indexOps(ExampleEntity.class).getIndexInfo())
+        .filteredOn(indexInfo -> indexInfo.getName().endsWith("_ci"))
+        .allMatch(indexInfo -> indexInfo.getCollation().isPresent());
+
+    ExampleEntity entity = new ExampleEntity();
+    entity.setAcl(Acl.builder()
+        .owner("junit")
+        .addUsers(PermissionConstants.READ, List.of("Alice"))
+        .build());
+    String id = repository.save(entity).getId();
+    AclUserContext userContext = AclUserContext.builder().name("alice").build();
+
+    List<String> actual = new AclAccessOperations(
+        mongoTemplate,
+        new AclCriteriaAndUpdateBuilder(ExampleEntity.class))
+        .findAccessibleIds(
+            ExampleEntity.class,
+            List.of(id),
+            userContext,
+            AccessEvaluation.ANY_PERMISSION,
+            permissions);
+    softly.assertThat(actual)
+        .isEmpty();
+
+    actual = new AclAccessOperations(
+        mongoTemplate,
+        new AclCriteriaAndUpdateBuilder(ExampleEntity.class, indexStrategy))
+        .findAccessibleIds(
+            ExampleEntity.class,
+            List.of(id),
+            userContext,
+            AccessEvaluation.ANY_PERMISSION,
+            permissions);
+    softly.assertThat(actual)
+        .containsExactly(id);
+
+    AclUserContext ownerInOtherCase = AclUserContext.builder().name("JUnit").build();
+    actual = new AclAccessOperations(
+        mongoTemplate,
+        new AclCriteriaAndUpdateBuilder(ExampleEntity.class, indexStrategy))
+        .findAccessibleIds(
+            ExampleEntity.class,
+            List.of(id),
+            ownerInOtherCase,
+            AccessEvaluation.ANY_PERMISSION,
+            permissions);
+    softly.assertThat(actual)
+        .as("The owner is matched case-sensitively like in memory.")
+        .isEmpty();
+    softly.assertThat(AccessEvaluator.of(entity.getAcl())
+            .hasPermission(ownerInOtherCase, PermissionConstants.READ))
+        .isFalse();
+  }
+
+  /**
+   * Find pages.
+   *
+   * @param softly the softly
+   */
+  @Order(1100)
+  @Test
+  void findPages(SoftAssertions softly) {
+    String content = UUID.randomUUID().toString();
+    List<ExampleEntity> entities = repository.saveAll(IntStream.range(0, 9)
+        .mapToObj(i -> {
+          ExampleEntity entity = new ExampleEntity();
+          entity.setAcl(Acl.builder()
+              .owner("junit")
+              .addUsers(PermissionConstants.READ, i % 2 == 0 ? List.of("anna") : List.of())
+              .build());
+          entity.setOtherContent(content);
+          return entity;
+        })
+        .collect(Collectors.toList()));
+    List<String> expected = entities.stream()
+        .filter(entity -> AccessEvaluator.of(entity.getAcl())
+            .hasPermission(AclUserContext.builder().name("anna").build(), PermissionConstants.READ))
+        .map(ExampleEntity::getId)
+        .sorted(Comparator.reverseOrder())
+        .collect(Collectors.toList());
+
+    Query query = Query.query(Criteria.where(ExampleEntity.OTHER_CONTENT).is(content))
+        .with(Sort.by(Direction.DESC, "_id"));
+    softly.assertThat(AclAccessOperations.buildKeysetIndex(query).getIndexKeys())
+        .isEqualTo(new Document("_id", -1));
+    mongoTemplate.indexOps(ExampleEntity.class)
+        .ensureIndex(AclAccessOperations.buildKeysetIndex(query));
+
+    AclAccessOperations accessOperations = new AclAccessOperations(
+        mongoTemplate,
+        new AclCriteriaAndUpdateBuilder(ExampleEntity.class));
+    List<String> actual = new ArrayList<>();
+    List<AclPage<ExampleEntity>> pages = new ArrayList<>();
+    String continuationToken = null;
+    do {
+      AclPage<ExampleEntity> page = accessOperations.findPage(
+          ExampleEntity.class,
+          query,
+          AclUserContext.builder().name("anna").build(),
+          AccessEvaluation.ANY_PERMISSION,
+          List.of(PermissionConstants.READ),
+          2,
+          continuationToken);
+      page.getContent().forEach(entity -> actual.add(entity.getId()));
+      pages.add(page);
+      continuationToken = page.getContinuationToken().orElse(null);
+    } while (continuationToken != null && pages.size() < 10);
+
+    softly.assertThat(actual)
+        .containsExactlyElementsOf(expected);
+    softly.assertThat(pages)
+        .hasSize(3);
+    softly.assertThat(pages.get(2).isLast())
+        .isTrue();
+
+    AclPage<Document> documents = accessOperations.findPage(
+        "alc-example-collection",
+        query,
+        AclUserContext.builder().name("anna").build(),
+        AccessEvaluation.ANY_PERMISSION,
+        List.of(PermissionConstants.READ),
+        10,
+        null);
+    softly.assertThat(documents.getContent())
+        .map(document -> document.get("_id").toString())
+        .containsExactlyElementsOf(expected);
+    softly.assertThat(documents.isLast())
+        .isTrue();
+
+    softly.assertThatThrownBy(() -> accessOperations.findPage(
+            "alc-example-collection",
+            query,
+            AclUserContext.builder().name("anna").build(),
+            AccessEvaluation.ANY_PERMISSION,
+            List.of(PermissionConstants.READ),
+            10,
+            pages.get(0).getContinuationToken().orElseThrow().substring(2)))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  /**
+   * Find pages with optional sort field.
+   *
+   * @param softly the softly
+   */
+  @Order(1110)
+  @Test
+  void findPagesWithOptionalSortField(SoftAssertions softly) {
+    String collectionName = "acl-page-collection";
+    Document acl = new AclToDocumentConverter().convert(Acl.builder()
+        .owner("junit")
+        .addUsers(PermissionConstants.READ, List.of("anna"))
+        .build());
+    mongoTemplate.insert(
+        List.of(
+            new Document("_id", "a").append("rank", 2).append(ExampleEntity.ACL, acl),
+            new Document("_id", "b").append(ExampleEntity.ACL, acl),
+            new Document("_id", "c").append("rank", 1).append(ExampleEntity.ACL, acl),
+            new Document("_id", "d").append("rank", null).append(ExampleEntity.ACL, acl),
+            new Document("_id", "e").append("rank", 3).append(ExampleEntity.ACL, acl),
+            new Document("_id", "f").append(ExampleEntity.ACL, acl)),
+        collectionName);
+
+    AclAccessOperations accessOperations = new AclAccessOperations(
+        mongoTemplate,
+        new AclCriteriaAndUpdateBuilder(ExampleEntity.ACL));
+    Function<Direction, List<Object>> findAll = direction -> {
+      List<Object> ids = new ArrayList<>();
+      String continuationToken = null;
+      int pages = 0;
+      do {
+        AclPage<Document> page = accessOperations.findPage(
+            collectionName,
+            new Query().with(Sort.by(direction, "rank")),
+            AclUserContext.builder().name("anna").build(),
+            AccessEvaluation.ANY_PERMISSION,
+            List.of(PermissionConstants.READ),
+            2,
+            continuationToken);
+        page.getContent().forEach(document -> ids.add(document.get("_id")));
+        continuationToken = page.getContinuationToken().orElse(null);
+      } while (continuationToken != null && ++pages < 10);
+      return ids;
+    };
+    softly.assertThat(findAll.apply(Direction.ASC))
+        .containsExactly("b", "d", "f", "c", "a", "e");
+    softly.assertThat(findAll.apply(Direction.DESC))
+        .containsExactly("e", "a", "c", "b", "d", "f");
+  }
+
+  /**
+   * Count by permission.
+   *
+   * @param softly the softly
+   */
+  @Order(1200)
+  @Test
+  void countByPermission(SoftAssertions softly) {
+    String content = UUID.randomUUID().toString();
+    repository.saveAll(IntStream.range(0, 6)
+        .mapToObj(i -> {
+          ExampleEntity entity = new ExampleEntity();
+          entity.setAcl(Acl.builder()
+              .owner("junit")
+              .addUsers(PermissionConstants.READ, i % 2 == 0 ? List.of("anna") : List.of())
+              .addUsers(PermissionConstants.WRITE, i % 3 == 0 ? List.of("anna") : List.of())
+              .build());
+          entity.setOtherContent(content);
+          return entity;
+        })
+        .collect(Collectors.toList()));
+    List<String> permissions = List.of(
+        PermissionConstants.READ, PermissionConstants.WRITE, PermissionConstants.DELETE);
+    Criteria criteria = Criteria.where(ExampleEntity.OTHER_CONTENT).is(content);
+    AclAccessOperations accessOperations = new AclAccessOperations(
+        mongoTemplate,
+        new AclCriteriaAndUpdateBuilder(ExampleEntity.class));
+
+    softly.assertThat(accessOperations.countByPermission(
+            ExampleEntity.class,
+            criteria,
+            AclUserContext.builder().name("anna").build(),
+            permissions))
+        .containsExactly(
+            entry(PermissionConstants.READ, 3L),
+            entry(PermissionConstants.WRITE, 2L),
+            entry(PermissionConstants.DELETE, 0L));
+    softly.assertThat(accessOperations.countByPermission(
+            "alc-example-collection",
+            criteria,
+            AclUserContext.builder().name("junit").build(),
+            permissions))
+        .containsExactly(
+            entry(PermissionConstants.READ, 6L),
+            entry(PermissionConstants.WRITE, 6L),
+            entry(PermissionConstants.DELETE, 6L));
+  }
+
+  /**
+   * Cache acls, that are invalidated by the change stream of the single node replica set.
+   *
+   * @param softly the softly
+   * @throws InterruptedException the interrupted exception
+   */
+  @Order(1300)
+  @Test
+  void cacheAcls(SoftAssertions softly) throws InterruptedException {
+    ExampleEntity entity = new ExampleEntity();
+    entity.setAcl(Acl.builder()
+        .owner("junit")
+        .addUsers(PermissionConstants.READ, List.of("anna"))
+        .build());
+    entity.setOtherContent(UUID.randomUUID().toString());
+    String id = repository.save(entity).getId();
+    String unknownId = new ObjectId().toHexString();
+
+    try (AclCache cache = new AclCache(
+        mongoTemplate, ExampleEntity.class, AclCacheOptions.defaults())) {
+      cache.start();
+      softly.assertThat(await(() -> cache.getStatistics().isWatching()))
+          .isTrue();
+
+      softly.assertThat(cache.getAll(List.of(id, unknownId)))
+          .containsOnlyKeys(id);
+      softly.assertThat(cache.get(id))
+          .map(Acl::getOwner)
+          .hasValue("junit");
+      AclCacheStatistics statistics = cache.getStatistics();
+      softly.assertThat(statistics.getHitCount())
+          .isEqualTo(1L);
+      softly.assertThat(statistics.getMissCount())
+          .isEqualTo(2L);
+      softly.assertThat(statistics.getLoadCount())
+          .isEqualTo(1L);
+
+      long invalidationCount = statistics.getInvalidationCount();
+      mongoTemplate.updateFirst(
+          Query.query(Criteria.where("id").is(id)),
+          new Update().set(ExampleEntity.OTHER_CONTENT, "changed"),
+          ExampleEntity.class);
+      mongoTemplate.updateFirst(
+          Query.query(Criteria.where("id").is(id)),
+          new Update().set("acl.owner", "anna"),
+          ExampleEntity.class);
+      softly.assertThat(await(() -> cache.getStatistics().getInvalidationCount()
+              > invalidationCount))
+          .isTrue();
+      softly.assertThat(cache.getStatistics().getInvalidationCount())
+          .isEqualTo(invalidationCount + 1L);
+      softly.assertThat(cache.getStatistics().getChangeLag())
+          .isPresent();
+      softly.assertThat(cache.get(id))
+          .map(Acl::getOwner)
+          .hasValue("anna");
+    }
+
+    AclCache cache = new AclCache(mongoTemplate, ExampleEntity.class, AclCacheOptions.builder()
+        .watchChanges(false)
+        .timeToLive(Duration.ofMillis(50L))
+        .build());
+    cache.start();
+    softly.assertThat(cache.get(id))
+        .map(Acl::getOwner)
+        .hasValue("anna");
+    mongoTemplate.updateFirst(
+        Query.query(Criteria.where("id").is(id)),
+        new Update().set("acl.owner", "junit"),
+        ExampleEntity.class);
+    softly.assertThat(cache.get(id))
+        .map(Acl::getOwner)
+        .hasValue("anna");
+    Thread.sleep(100L);
+    softly.assertThat(cache.get(id))
+        .map(Acl::getOwner)
+        .hasValue("junit");
+    softly.assertThat(cache.getStatistics().isWatching())
+        .isFalse();
+    softly.assertThat(cache.getStatistics().getHitRate())
+        .isEqualTo(1.0 / 3.0);
+  }
+
+  /**
+   * Cache nested acls, that are invalidated by updates of an ancestor of the acl path.
+   *
+   * @param softly the softly
+   * @throws InterruptedException the interrupted exception
+   */
+  @Order(1310)
+  @Test
+  void cacheNestedAcls(SoftAssertions softly) throws InterruptedException {
+    String collectionName = "acl-cache-nested-collection";
+    AclToDocumentConverter converter = new AclToDocumentConverter();
+    mongoTemplate.insert(
+        new Document("_id", "n1").append("security", new Document()
+            .append("acl", converter.convert(Acl.builder().owner("junit").build()))
+            .append("label", "public")),
+        collectionName);
+
+    try (AclCache cache = new AclCache(
+        mongoTemplate, collectionName, "security.acl", AclCacheOptions.defaults())) {
+      cache.start();
+      softly.assertThat(await(() -> cache.getStatistics().isWatching()))
+          .isTrue();
+      softly.assertThat(cache.get("n1"))
+          .map(Acl::getOwner)
+          .hasValue("junit");
+
+      long invalidationCount = cache.getStatistics().getInvalidationCount();
+      mongoTemplate.updateFirst(
+          Query.query(Criteria.where("_id").is("n1")),
+          new Update().set("security.label", "internal"),
+          collectionName);
+      mongoTemplate.updateFirst(
+          Query.query(Criteria.where("_id").is("n1")),
+          new Update().set("security", new Document(
+              "acl", converter.convert(Acl.builder().owner("anna").build()))),
+          collectionName);
+      softly.assertThat(await(() -> cache.getStatistics().getInvalidationCount()
+              > invalidationCount))
+          .isTrue();
+      softly.assertThat(cache.getStatistics().getInvalidationCount())
+          .isEqualTo(invalidationCount + 1L);
+      softly.assertThat(cache.get("n1"))
+          .map(Acl::getOwner)
+          .hasValue("anna");
+    }
+  }
+
+  private static boolean await(BooleanSupplier condition) throws InterruptedException {
+    long timeout = System.currentTimeMillis() + 10000L;
+    while (!condition.getAsBoolean()) {
+      if (System.currentTimeMillis() > timeout) {
+        return false;
+      }
+      Thread.sleep(50L);
+    }
+    return true;
+  }
+
 }
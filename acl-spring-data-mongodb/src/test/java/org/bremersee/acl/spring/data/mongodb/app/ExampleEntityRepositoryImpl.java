@@ -26,11 +26,11 @@ import org.bremersee.acl.AclUserContext;
 import org.bremersee.acl.model.AccessControlListModifications;
 import org.bremersee.acl.spring.data.mongodb.AclCriteriaAndUpdateBuilder;
 import org.bremersee.acl.spring.data.mongodb.AclIndexOperations;
-import org.bremersee.acl.spring.data.mongodb.AclModificationUpdate;
 import org.springframework.boot.context.event.ApplicationReadyEvent;
 import org.springframework.context.event.EventListener;
 import org.springframework.data.mongodb.core.FindAndModifyOptions;
 import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.AggregationUpdate;
 import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.data.mongodb.core.query.Update;
@@ -95,15 +95,15 @@ public class ExampleEntityRepositoryImpl implements ExampleEntityRepositoryCusto
         List.of(PermissionConstants.ADMINISTRATION));
     Criteria otherContentCriteria = Criteria.where(ExampleEntity.OTHER_CONTENT).is(otherContent);
     Query query = Query.query(new Criteria().andOperator(accessCriteria, otherContentCriteria));
-    AclModificationUpdate updates = builder.buildUpdate(modifications);
-    updates.getPreparationUpdates()
-        .forEach(preparationUpdate -> mongoTemplate
-            .updateFirst(query, preparationUpdate, ExampleEntity.class));
+    Optional<AggregationUpdate> update = builder.buildPipelineUpdate(modifications);
+    if (update.isEmpty()) {
+      return Optional.ofNullable(mongoTemplate.findOne(query, ExampleEntity.class));
+    }
     FindAndModifyOptions options = new FindAndModifyOptions()
         .returnNew(true);
     return Optional.ofNullable(mongoTemplate.findAndModify(
         query,
-        updates.getFinalUpdate(),
+        update.get(),
         options,
         ExampleEntity.class));
   }
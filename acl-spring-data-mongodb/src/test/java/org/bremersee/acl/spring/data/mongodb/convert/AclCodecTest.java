@@ -0,0 +1,150 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.bremersee.acl.spring.data.mongodb.convert;
+
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+import java.util.List;
+import org.assertj.core.api.SoftAssertions;
+import org.assertj.core.api.junit.jupiter.SoftAssertionsExtension;
+import org.bremersee.acl.Ace;
+import org.bremersee.acl.Acl;
+import org.bremersee.acl.PartialAcl;
+import org.bremersee.acl.PermissionConstants;
+import org.bson.BsonDocument;
+import org.bson.BsonDocumentReader;
+import org.bson.BsonDocumentWriter;
+import org.bson.BsonString;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.EncoderContext;
+import org.bson.codecs.configuration.CodecRegistry;
+import org.bson.conversions.Bson;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+/**
+ * The acl codec test.
+ *
+ * @author Christian Bremer
+ */
+@ExtendWith(SoftAssertionsExtension.class)
+class AclCodecTest {
+
+  private static final Acl ACL = Acl.builder()
+      .owner("junit")
+      .addUsers(PermissionConstants.WRITE, List.of("james"))
+      .addRoles(PermissionConstants.READ, List.of("ROLE_USER", "ROLE_ADMIN"))
+      .addGroups(PermissionConstants.DELETE, List.of("cron"))
+      .guest(PermissionConstants.READ, true)
+      .build();
+
+  private static BsonDocument encode(AclCodec codec, Acl acl) {
+    BsonDocument document = new BsonDocument();
+    codec.encode(new BsonDocumentWriter(document), acl, EncoderContext.builder().build());
+    return document;
+  }
+
+  /**
+   * Encode and decode.
+   *
+   * @param softly the softly
+   */
+  @Test
+  void encodeAndDecode(SoftAssertions softly) {
+    for (boolean withTokens : List.of(false, true)) {
+      AclCodec target = new AclCodec(withTokens);
+      BsonDocument actual = encode(target, ACL);
+      softly.assertThat(actual)
+          .as("Encoded with tokens = %s", withTokens)
+          .isEqualTo(new AclToDocumentConverter(withTokens).convert(ACL).toBsonDocument());
+      softly.assertThat(target.decode(
+              new BsonDocumentReader(actual),
+              DecoderContext.builder().build()))
+          .isEqualTo(ACL);
+    }
+  }
+
+  /**
+   * Decode into sorted structures, that the acl copies without sorting them again.
+   *
+   * @param softly the softly
+   */
+  @Test
+  void decodeWithoutSorting(SoftAssertions softly) {
+    Acl actual = new AclCodec().decode(
+        new BsonDocumentReader(encode(new AclCodec(), ACL)),
+        DecoderContext.builder().build());
+    softly.assertThat(actual)
+        .isEqualTo(ACL);
+    softly.assertThat(actual.getPermissionMap().comparator())
+        .isSameAs(String.CASE_INSENSITIVE_ORDER);
+    softly.assertThat(actual.getPermissionMap().get(PermissionConstants.READ).getRoles()
+            .comparator())
+        .isSameAs(String.CASE_INSENSITIVE_ORDER);
+  }
+
+  /**
+   * Decode with unknown fields.
+   *
+   * @param softly the softly
+   */
+  @Test
+  void decodeWithUnknownFields(SoftAssertions softly) {
+    BsonDocument document = encode(new AclCodec(), ACL);
+    document.put("unknown", new BsonString("value"));
+    document.getDocument(Acl.ENTRIES)
+        .getDocument(PermissionConstants.READ)
+        .put("other", new BsonString("value"));
+    document.getDocument(Acl.ENTRIES)
+        .put("invalid", new BsonString("value"));
+    softly.assertThat(new AclCodec().decode(
+            new BsonDocumentReader(document),
+            DecoderContext.builder().build()))
+        .isEqualTo(ACL);
+  }
+
+  /**
+   * Encode partial acl.
+   */
+  @Test
+  void encodePartialAcl() {
+    assertThatExceptionOfType(IllegalArgumentException.class)
+        .isThrownBy(() -> encode(
+            new AclCodec(),
+            PartialAcl.of(ACL, List.of(PermissionConstants.READ))));
+  }
+
+  /**
+   * Codec provider.
+   *
+   * @param softly the softly
+   */
+  @Test
+  void codecProvider(SoftAssertions softly) {
+    CodecRegistry registry = new AclCodecProvider()
+        .withFallback(Bson.DEFAULT_CODEC_REGISTRY);
+    softly.assertThat(registry.get(Acl.class))
+        .isInstanceOf(AclCodec.class);
+    softly.assertThat(registry.get(ACL.getClass()))
+        .isInstanceOf(AclCodec.class);
+    softly.assertThat(registry.get(Ace.class))
+        .isInstanceOf(AceCodec.class);
+    softly.assertThat(registry.get(BsonDocument.class))
+        .isNotNull();
+  }
+
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.bremersee.acl.spring.data.mongodb.convert;
+
+import java.util.List;
+import org.assertj.core.api.SoftAssertions;
+import org.assertj.core.api.junit.jupiter.SoftAssertionsExtension;
+import org.bremersee.acl.AccessEvaluator;
+import org.bremersee.acl.Acl;
+import org.bremersee.acl.AclUserContext;
+import org.bremersee.acl.PermissionConstants;
+import org.bson.BsonDocument;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.BsonDocumentCodec;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+/**
+ * The lazy acl test.
+ *
+ * @author Christian Bremer
+ */
+@ExtendWith(SoftAssertionsExtension.class)
+class LazyAclTest {
+
+  private static final Acl ACL = Acl.builder()
+      .owner("junit")
+      .addUsers(PermissionConstants.WRITE, List.of("james"))
+      .addRoles(PermissionConstants.READ, List.of("ROLE_USER", "ROLE_ADMIN"))
+      .addGroups(PermissionConstants.DELETE, List.of("cron"))
+      .guest(PermissionConstants.CREATE, true)
+      .build();
+
+  private static final List<AclUserContext> USERS = List.of(
+      AclUserContext.builder().name("junit").build(),
+      AclUserContext.builder().name("James").build(),
+      AclUserContext.builder().name("anna").roles(List.of("role_user")).build(),
+      AclUserContext.builder().groups(List.of("dev", "cron")).build(),
+      AclUserContext.builder().build());
+
+  /**
+   * Read lazy acl.
+   *
+   * @param softly the softly
+   */
+  @Test
+  void readLazyAcl(SoftAssertions softly) {
+    LazyAcl actual = new LazyAcl(new RawBsonDocument(ACL, new AclCodec()));
+    softly.assertThat(actual.getOwner())
+        .isEqualTo("junit");
+    softly.assertThat(actual.getPermissionMap())
+        .containsOnlyKeys(ACL.getPermissionMap().keySet());
+    softly.assertThat(actual.getPermissionMap().get("READ"))
+        .isEqualTo(ACL.getPermissionMap().get(PermissionConstants.READ));
+    softly.assertThat(actual.getPermissionMap().get(PermissionConstants.ADMINISTRATION))
+        .isNull();
+    softly.assertThat(actual)
+        .isEqualTo(ACL);
+    softly.assertThat(Acl.builder().from(actual).build())
+        .isEqualTo(ACL);
+    for (AclUserContext user : USERS) {
+      for (String permission : PermissionConstants.getAll()) {
+        softly.assertThat(AccessEvaluator.of(actual).hasPermission(user, permission))
+            .as("User %s with permission %s", user, permission)
+            .isEqualTo(AccessEvaluator.of(ACL).hasPermission(user, permission));
+      }
+    }
+  }
+
+  /**
+   * Of document.
+   *
+   * @param softly the softly
+   */
+  @Test
+  void ofDocument(SoftAssertions softly) {
+    BsonDocument document = new BsonDocument("acl", new RawBsonDocument(ACL, new AclCodec()));
+    RawBsonDocument raw = new RawBsonDocument(document, new BsonDocumentCodec());
+    softly.assertThat(LazyAcl.of(raw, "acl"))
+        .hasValue(new LazyAcl(new RawBsonDocument(ACL, new AclCodec())));
+    softly.assertThat(LazyAcl.of(raw, "other"))
+        .isEmpty();
+  }
+
+}
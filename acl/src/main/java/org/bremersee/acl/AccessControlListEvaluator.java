@@ -0,0 +1,229 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.bremersee.acl;
+
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+import static org.bremersee.acl.AclUserContext.ANONYMOUS;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.Predicate;
+import org.bremersee.acl.model.AccessControlEntry;
+import org.bremersee.acl.model.AccessControlList;
+
+/**
+ * An access evaluator that reads the access control list data transfer object directly, so that
+ * it must not be mapped into an {@link Acl} before.
+ *
+ * <p>The decisions are the same as the ones of {@link AccessEvaluator#of(Acl)} with the access
+ * control list that is returned by
+ * {@link org.bremersee.acl.mapper.DefaultAclMapper#map(AccessControlList)}, if the evaluator is
+ * created with the same default permissions and admin roles.
+ *
+ * <p>Without index, every evaluation scans the entries. With index, the entries are indexed by
+ * their permission on the first evaluation and the principals of an entry are indexed on the
+ * first evaluation of its permission. The index pays off, if the evaluator is used for many
+ * evaluations.
+ *
+ * @author Christian Bremer
+ */
+public class AccessControlListEvaluator implements AccessEvaluator {
+
+  private final AccessControlList accessControlList;
+
+  private final Set<String> defaultPermissions;
+
+  private final Set<String> adminRoles;
+
+  private final boolean indexed;
+
+  private volatile SortedMap<String, IndexedEntry> index;
+
+  /**
+   * Instantiates a new access control list evaluator without default permissions and admin roles
+   * and without index.
+   *
+   * @param accessControlList the access control list
+   */
+  public AccessControlListEvaluator(AccessControlList accessControlList) {
+    this(accessControlList, List.of(), List.of(), false);
+  }
+
+  /**
+   * Instantiates a new access control list evaluator.
+   *
+   * @param accessControlList the access control list
+   * @param defaultPermissions the default permissions
+   * @param adminRoles the admin roles, which are granted on every present or default permission
+   * @param indexed specifies whether the entries are indexed lazily
+   */
+  public AccessControlListEvaluator(
+      AccessControlList accessControlList,
+      Collection<String> defaultPermissions,
+      Collection<String> adminRoles,
+      boolean indexed) {
+
+    this.accessControlList = accessControlList;
+    this.defaultPermissions = ignoreCase(defaultPermissions);
+    this.adminRoles = ignoreCase(adminRoles);
+    this.indexed = indexed;
+  }
+
+  private static Set<String> ignoreCase(Collection<String> values) {
+    Set<String> set = new TreeSet<>(String::compareToIgnoreCase);
+    if (nonNull(values)) {
+      values.stream()
+          .filter(value -> nonNull(value) && !value.isBlank())
+          .forEach(set::add);
+    }
+    return set;
+  }
+
+  @Override
+  public boolean hasPermission(AclUserContext userContext, String permission) {
+    if (isNull(accessControlList) || isNull(permission)) {
+      return false;
+    }
+    String owner = accessControlList.getOwner();
+    if (!ANONYMOUS.equals(userContext.getName())
+        && nonNull(owner) && !owner.isBlank()
+        && owner.equals(userContext.getName())) {
+      return true;
+    }
+    return indexed
+        ? hasPermissionIndexed(userContext, permission)
+        : hasPermissionScanned(userContext, permission);
+  }
+
+  private boolean hasPermissionScanned(AclUserContext userContext, String permission) {
+    AccessControlEntry entry = accessControlList.getEntries().stream()
+        .filter(ace -> isValidPermission(ace) && ace.getPermission()
+            .compareToIgnoreCase(permission) == 0)
+        .findFirst()
+        .orElse(null);
+    if (isNull(entry)) {
+      return defaultPermissions.contains(permission) && isAdmin(userContext);
+    }
+    if (entry.isGuest()) {
+      return true;
+    }
+    if (containsIgnoreCase(entry.getUsers(), userContext.getName())) {
+      return true;
+    }
+    if (userContext.getRoles().stream()
+        .anyMatch(role -> containsIgnoreCase(entry.getRoles(), role))) {
+      return true;
+    }
+    if (userContext.getGroups().stream()
+        .anyMatch(group -> containsIgnoreCase(entry.getGroups(), group))) {
+      return true;
+    }
+    return isAdmin(userContext);
+  }
+
+  private boolean hasPermissionIndexed(AclUserContext userContext, String permission) {
+    IndexedEntry entry = getIndex().get(permission);
+    if (isNull(entry)) {
+      return defaultPermissions.contains(permission) && isAdmin(userContext);
+    }
+    Ace ace = entry.getAce();
+    return ace.isGuest()
+        || ace.getUsers().contains(userContext.getName())
+        || userContext.getRoles().stream().anyMatch(role -> ace.getRoles().contains(role))
+        || userContext.getGroups().stream().anyMatch(group -> ace.getGroups().contains(group))
+        || isAdmin(userContext);
+  }
+
+  private SortedMap<String, IndexedEntry> getIndex() {
+    SortedMap<String, IndexedEntry> result = index;
+    if (isNull(result)) {
+      synchronized (this) {
+        result = index;
+        if (isNull(result)) {
+          result = new TreeMap<>(String::compareToIgnoreCase);
+          for (AccessControlEntry entry : accessControlList.getEntries()) {
+            if (isValidPermission(entry)) {
+              result.putIfAbsent(entry.getPermission(), new IndexedEntry(entry));
+            }
+          }
+          index = result;
+        }
+      }
+    }
+    return result;
+  }
+
+  private boolean isAdmin(AclUserContext userContext) {
+    return !adminRoles.isEmpty() && userContext.getRoles().stream()
+        .filter(nonBlank())
+        .anyMatch(adminRoles::contains);
+  }
+
+  private static boolean isValidPermission(AccessControlEntry entry) {
+    return nonNull(entry.getPermission()) && !entry.getPermission().isBlank();
+  }
+
+  private static boolean containsIgnoreCase(Collection<String> principals, String principal) {
+    if (isNull(principal) || principal.isBlank()) {
+      return false;
+    }
+    for (String value : principals) {
+      if (nonNull(value) && value.compareToIgnoreCase(principal) == 0) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static Predicate<String> nonBlank() {
+    return value -> nonNull(value) && !value.isBlank();
+  }
+
+  /**
+   * An indexed entry, whose principals are indexed on first access.
+   */
+  private static class IndexedEntry {
+
+    private final AccessControlEntry entry;
+
+    private volatile Ace ace;
+
+    private IndexedEntry(AccessControlEntry entry) {
+      this.entry = entry;
+    }
+
+    private Ace getAce() {
+      Ace result = ace;
+      if (isNull(result)) {
+        result = Ace.builder()
+            .guest(entry.isGuest())
+            .users(entry.getUsers())
+            .roles(entry.getRoles())
+            .groups(entry.getGroups())
+            .build();
+        ace = result;
+      }
+      return result;
+    }
+  }
+
+}
@@ -0,0 +1,495 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.bremersee.acl;
+
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Collectors;
+import lombok.EqualsAndHashCode;
+
+/**
+ * The access decision cache is a bounded cache of access decisions, which is shared between many
+ * evaluations, e.g. of different requests. Granted and denied decisions are cached. If the cache
+ * is full, the least recently used decision is removed.
+ *
+ * <p>The decisions are keyed by the access control list, the user name, the roles and groups of
+ * the user and the permissions. The access control list is either identified by a fingerprint of
+ * its content ({@link #of(Acl)}), so that a modified access control list never gets a decision of
+ * its previous state, or by an id and a version ({@link #of(Object, Object, Acl)}), which is
+ * cheaper. If the version of an access control list is not changed on modification, the decisions
+ * of it must be removed with {@link #invalidate(Object)}.
+ *
+ * <p>The cache is thread safe. Large caches are divided into segments with their own locks, the
+ * least recently used decision is then removed from the segment of the new decision.
+ *
+ * @author Christian Bremer
+ */
+public class AccessDecisionCache {
+
+  private static final int MAX_SEGMENTS = 16;
+
+  private static final int MIN_SEGMENT_SIZE = 64;
+
+  private final Segment[] segments;
+
+  private final Map<Object, AclEntry> keysByAclId = new ConcurrentHashMap<>();
+
+  private final LongAdder hitCount = new LongAdder();
+
+  private final LongAdder missCount = new LongAdder();
+
+  private final LongAdder evictionCount = new LongAdder();
+
+  /**
+   * Instantiates a new access decision cache.
+   *
+   * @param maximumSize the maximum number of cached decisions
+   */
+  public AccessDecisionCache(int maximumSize) {
+    if (maximumSize < 1) {
+      throw new IllegalArgumentException("Maximum size must be greater than zero.");
+    }
+    int count = 1;
+    while (count < MAX_SEGMENTS && maximumSize / (count * 2) >= MIN_SEGMENT_SIZE) {
+      count *= 2;
+    }
+    this.segments = new Segment[count];
+    for (int i = 0; i < count; i++) {
+      segments[i] = new Segment(maximumSize / count + (i < maximumSize % count ? 1 : 0));
+    }
+  }
+
+  /**
+   * Creates an access evaluator for the given access control list, that uses this cache. The
+   * access control list is identified by its content.
+   *
+   * @param acl the access control list
+   * @return the access evaluator
+   */
+  public AccessEvaluator of(Acl acl) {
+    return new CachingEvaluator(acl, isNull(acl) ? null : Fingerprint.of(acl));
+  }
+
+  /**
+   * Creates an access evaluator for the given access control list, that uses this cache. The
+   * access control list is identified by the given id and version.
+   *
+   * @param aclId the id of the access control list, e.g. the id of the entity
+   * @param version the version of the access control list, e.g. the version of the entity
+   * @param acl the access control list
+   * @return the access evaluator
+   */
+  public AccessEvaluator of(Object aclId, Object version, Acl acl) {
+    Objects.requireNonNull(aclId, "Acl id must be present.");
+    return new CachingEvaluator(acl, isNull(acl) ? null : new VersionKey(aclId, version));
+  }
+
+  /**
+   * Removes all decisions of the access control list with the given id.
+   *
+   * @param aclId the id of the access control list
+   */
+  public void invalidate(Object aclId) {
+    if (isNull(aclId)) {
+      return;
+    }
+    List<DecisionKey> keys = null;
+    while (isNull(keys)) {
+      AclEntry entry = keysByAclId.get(aclId);
+      if (isNull(entry)) {
+        return;
+      }
+      synchronized (entry) {
+        if (!entry.removed) {
+          keys = new ArrayList<>(entry.keys);
+          remove(aclId, entry);
+        }
+      }
+    }
+    keys.forEach(key -> segmentOf(key).remove(key));
+  }
+
+  /**
+   * Removes all decisions.
+   */
+  public void invalidateAll() {
+    keysByAclId.forEach((aclId, entry) -> {
+      synchronized (entry) {
+        if (!entry.removed) {
+          remove(aclId, entry);
+        }
+      }
+    });
+    for (Segment segment : segments) {
+      segment.clear();
+    }
+  }
+
+  /**
+   * Gets the number of cached decisions.
+   *
+   * @return the number of cached decisions
+   */
+  public int size() {
+    int size = 0;
+    for (Segment segment : segments) {
+      size += segment.size();
+    }
+    return size;
+  }
+
+  /**
+   * Gets the number of decisions that were taken from the cache.
+   *
+   * @return the hit count
+   */
+  public long getHitCount() {
+    return hitCount.sum();
+  }
+
+  /**
+   * Gets the number of decisions that were evaluated.
+   *
+   * @return the miss count
+   */
+  public long getMissCount() {
+    return missCount.sum();
+  }
+
+  /**
+   * Gets the number of decisions that were removed, because the cache was full.
+   *
+   * @return the eviction count
+   */
+  public long getEvictionCount() {
+    return evictionCount.sum();
+  }
+
+  private boolean get(DecisionKey key, BooleanSupplier evaluation) {
+    Segment segment = segmentOf(key);
+    Boolean decision = segment.get(key);
+    if (nonNull(decision)) {
+      hitCount.increment();
+      return decision;
+    }
+    missCount.increment();
+    if (!(key.aclKey instanceof VersionKey)) {
+      boolean granted = evaluation.getAsBoolean();
+      removeFromIndex(segment.put(key, granted));
+      return granted;
+    }
+    // the entry of the acl id is taken before the evaluation; if it is invalidated meanwhile, the
+    // decision may be outdated and is not cached
+    Object aclId = ((VersionKey) key.aclKey).aclId;
+    AclEntry entry = keysByAclId.computeIfAbsent(aclId, id -> new AclEntry());
+    DecisionKey evicted = null;
+    boolean cached = false;
+    try {
+      boolean granted = evaluation.getAsBoolean();
+      synchronized (entry) {
+        if (!entry.removed) {
+          entry.keys.add(key);
+          evicted = segment.put(key, granted);
+          cached = true;
+        }
+      }
+      return granted;
+    } finally {
+      if (!cached) {
+        removeIfEmpty(aclId, entry);
+      }
+      removeFromIndex(evicted);
+    }
+  }
+
+  private Segment segmentOf(DecisionKey key) {
+    int hash = key.hashCode();
+    return segments[(hash ^ (hash >>> 16)) & (segments.length - 1)];
+  }
+
+  private void removeFromIndex(DecisionKey evicted) {
+    if (isNull(evicted) || !(evicted.aclKey instanceof VersionKey)) {
+      return;
+    }
+    Object aclId = ((VersionKey) evicted.aclKey).aclId;
+    AclEntry entry = keysByAclId.get(aclId);
+    if (nonNull(entry)) {
+      synchronized (entry) {
+        // the evicted decision may have been cached again meanwhile
+        if (!entry.removed && !segmentOf(evicted).contains(evicted)
+            && entry.keys.remove(evicted) && entry.keys.isEmpty()) {
+          remove(aclId, entry);
+        }
+      }
+    }
+  }
+
+  private void removeIfEmpty(Object aclId, AclEntry entry) {
+    synchronized (entry) {
+      if (!entry.removed && entry.keys.isEmpty()) {
+        remove(aclId, entry);
+      }
+    }
+  }
+
+  private void remove(Object aclId, AclEntry entry) {
+    entry.removed = true;
+    keysByAclId.remove(aclId, entry);
+  }
+
+  private static List<String> normalize(Collection<String> values) {
+    return isNull(values)
+        ? List.of()
+        : values.stream()
+            .filter(Objects::nonNull)
+            .distinct()
+            .sorted()
+            .collect(Collectors.toList());
+  }
+
+  /**
+   * The caching evaluator.
+   */
+  private class CachingEvaluator implements AccessEvaluator {
+
+    private final AccessEvaluator delegate;
+
+    private final Object aclKey;
+
+    private CachingEvaluator(Acl acl, Object aclKey) {
+      this.delegate = AccessEvaluator.of(acl);
+      this.aclKey = aclKey;
+    }
+
+    @Override
+    public boolean hasPermission(AclUserContext userContext, String permission) {
+      if (isNull(aclKey) || isNull(permission)) {
+        return false;
+      }
+      return get(
+          new DecisionKey(aclKey, new UserKey(userContext), permission),
+          () -> delegate.hasPermission(userContext, permission));
+    }
+
+    @Override
+    public boolean hasPermissions(
+        AclUserContext userContext,
+        AccessEvaluation accessEvaluation,
+        Collection<String> permissions) {
+
+      if (isNull(aclKey)) {
+        return false;
+      }
+      List<Object> permissionsKey = new ArrayList<>();
+      permissionsKey.add(accessEvaluation);
+      permissionsKey.addAll(normalize(permissions));
+      return get(
+          new DecisionKey(aclKey, new UserKey(userContext), permissionsKey),
+          () -> delegate.hasPermissions(userContext, accessEvaluation, permissions));
+    }
+  }
+
+  /**
+   * The decision key.
+   */
+  @EqualsAndHashCode
+  private static class DecisionKey {
+
+    private final Object aclKey;
+
+    private final UserKey userKey;
+
+    private final Object permissionKey;
+
+    private DecisionKey(Object aclKey, UserKey userKey, Object permissionKey) {
+      this.aclKey = aclKey;
+      this.userKey = userKey;
+      this.permissionKey = permissionKey;
+    }
+  }
+
+  /**
+   * The decision keys of an access control list, that is identified by id. An entry is removed
+   * only once; a decision, whose evaluation started before, is then not cached anymore. The lock
+   * of an entry may be held while the lock of a segment is acquired, but not vice versa.
+   */
+  private static class AclEntry {
+
+    private final Set<DecisionKey> keys = new HashSet<>();
+
+    private boolean removed;
+  }
+
+  /**
+   * A segment of the cache is a bounded map of decisions, that removes the least recently used
+   * decision, if it is full. Each segment has its own lock.
+   */
+  private class Segment {
+
+    private final Map<DecisionKey, Boolean> decisions;
+
+    private DecisionKey evicted;
+
+    private Segment(int maximumSize) {
+      this.decisions = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<DecisionKey, Boolean> eldest) {
+          boolean remove = size() > maximumSize;
+          if (remove) {
+            evictionCount.increment();
+            evicted = eldest.getKey();
+          }
+          return remove;
+        }
+      };
+    }
+
+    private synchronized Boolean get(DecisionKey key) {
+      return decisions.get(key);
+    }
+
+    // returns the evicted key, that must be removed from the index after the lock is released
+    private synchronized DecisionKey put(DecisionKey key, Boolean decision) {
+      evicted = null;
+      decisions.put(key, decision);
+      DecisionKey result = evicted;
+      evicted = null;
+      return result;
+    }
+
+    private synchronized boolean contains(DecisionKey key) {
+      return decisions.containsKey(key);
+    }
+
+    private synchronized void remove(DecisionKey key) {
+      decisions.remove(key);
+    }
+
+    private synchronized void clear() {
+      decisions.clear();
+    }
+
+    private synchronized int size() {
+      return decisions.size();
+    }
+  }
+
+  /**
+   * The key of an access control list, that is identified by its content. It is a fingerprint
+   * (128 bits of the SHA-256 digest) of the owner and the entries, so it doesn't hold a reference
+   * to the access control list.
+   */
+  @EqualsAndHashCode
+  private static class Fingerprint {
+
+    private final long high;
+
+    private final long low;
+
+    private Fingerprint(long high, long low) {
+      this.high = high;
+      this.low = low;
+    }
+
+    private static Fingerprint of(Acl acl) {
+      MessageDigest digest;
+      try {
+        digest = MessageDigest.getInstance("SHA-256");
+      } catch (NoSuchAlgorithmException e) {
+        throw new IllegalStateException("SHA-256 is not supported.", e);
+      }
+      update(digest, acl.getOwner());
+      for (Map.Entry<String, Ace> entry : acl.getPermissionMap().entrySet()) {
+        Ace ace = entry.getValue();
+        update(digest, entry.getKey());
+        digest.update((byte) (nonNull(ace) && ace.isGuest() ? 1 : 0));
+        update(digest, isNull(ace) ? List.of() : ace.getUsers());
+        update(digest, isNull(ace) ? List.of() : ace.getRoles());
+        update(digest, isNull(ace) ? List.of() : ace.getGroups());
+      }
+      ByteBuffer bytes = ByteBuffer.wrap(digest.digest());
+      return new Fingerprint(bytes.getLong(), bytes.getLong());
+    }
+
+    private static void update(MessageDigest digest, Collection<String> values) {
+      digest.update(ByteBuffer.allocate(Integer.BYTES).putInt(values.size()).array());
+      values.forEach(value -> update(digest, value));
+    }
+
+    private static void update(MessageDigest digest, String value) {
+      if (isNull(value)) {
+        digest.update(ByteBuffer.allocate(Integer.BYTES).putInt(-1).array());
+        return;
+      }
+      byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+      digest.update(ByteBuffer.allocate(Integer.BYTES).putInt(bytes.length).array());
+      digest.update(bytes);
+    }
+  }
+
+  /**
+   * The key of an access control list, that is identified by id and version.
+   */
+  @EqualsAndHashCode
+  private static class VersionKey {
+
+    private final Object aclId;
+
+    private final Object version;
+
+    private VersionKey(Object aclId, Object version) {
+      this.aclId = aclId;
+      this.version = version;
+    }
+  }
+
+  /**
+   * The resolved user context.
+   */
+  @EqualsAndHashCode
+  private static class UserKey {
+
+    private final String name;
+
+    private final List<String> roles;
+
+    private final List<String> groups;
+
+    private UserKey(AclUserContext userContext) {
+      this.name = userContext.getName();
+      this.roles = normalize(userContext.getRoles());
+      this.groups = normalize(userContext.getGroups());
+    }
+  }
+
+}
@@ -20,6 +20,7 @@ import static java.util.Objects.isNull;
 import static org.bremersee.acl.AclUserContext.ANONYMOUS;
 
 import java.util.Collection;
+import org.bremersee.acl.model.AccessControlList;
 
 /**
  * The access evaluator.
@@ -38,6 +39,17 @@ public interface AccessEvaluator {
     return new Impl(acl);
   }
 
+  /**
+   * Creates an access evaluator that reads the given access control list data transfer object
+   * directly.
+   *
+   * @param accessControlList the access control list data transfer object
+   * @return the access evaluator
+   */
+  static AccessEvaluator of(AccessControlList accessControlList) {
+    return new AccessControlListEvaluator(accessControlList);
+  }
+
   /**
    * Determines whether the given user with the given roles and groups has the specified
    * permission.
@@ -110,13 +122,13 @@ public interface AccessEvaluator {
       if (ace.isGuest()) {
         return true;
       }
-      if (ace.getUsers().contains(userContext.getName())) {
+      if (ace.containsUser(userContext.getName())) {
         return true;
       }
-      if (userContext.getRoles().stream().anyMatch(role -> ace.getRoles().contains(role))) {
+      if (ace.containsAnyRole(userContext.getRoles())) {
         return true;
       }
-      return userContext.getGroups().stream().anyMatch(group -> ace.getGroups().contains(group));
+      return ace.containsAnyGroup(userContext.getGroups());
     }
   }
 
@@ -0,0 +1,420 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.bremersee.acl;
+
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+import static org.bremersee.acl.AclUserContext.ANONYMOUS;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
+
+/**
+ * The access matrix computes which of many users can access which of many access control lists.
+ *
+ * <p>Users with identical roles and groups share a signature. Roles and groups of an entry are
+ * evaluated only once per distinct signature, whereas owner and user entries are resolved by a
+ * lookup of the user name. The access control lists are read in chunks from the given stream and
+ * each chunk is evaluated in parallel. The result is identical to calling
+ * {@link AccessEvaluator#hasPermission(AclUserContext, String)} for every user and every access
+ * control list.
+ *
+ * @author Christian Bremer
+ */
+public class AccessMatrix {
+
+  /**
+   * The default chunk size.
+   */
+  public static final int DEFAULT_CHUNK_SIZE = 512;
+
+  private final List<AclUserContext> userContexts;
+
+  private final Map<String, int[]> usersByName;
+
+  private final Map<String, int[]> usersByNameIgnoreCase;
+
+  private final List<Signature> signatures;
+
+  private final int chunkSize;
+
+  private final boolean parallel;
+
+  /**
+   * Instantiates a new access matrix.
+   *
+   * @param userContexts the user contexts
+   */
+  public AccessMatrix(List<? extends AclUserContext> userContexts) {
+    this(userContexts, DEFAULT_CHUNK_SIZE, true);
+  }
+
+  /**
+   * Instantiates a new access matrix.
+   *
+   * @param userContexts the user contexts
+   * @param chunkSize the number of access control lists that are evaluated together
+   * @param parallel specifies whether the access control lists of a chunk are evaluated in
+   *     parallel
+   */
+  public AccessMatrix(
+      List<? extends AclUserContext> userContexts,
+      int chunkSize,
+      boolean parallel) {
+
+    if (chunkSize < 1) {
+      throw new IllegalArgumentException("Chunk size must be greater than zero.");
+    }
+    this.userContexts = isNull(userContexts) ? List.of() : List.copyOf(userContexts);
+    this.chunkSize = chunkSize;
+    this.parallel = parallel;
+
+    Map<String, List<Integer>> names = new HashMap<>();
+    Map<String, List<Integer>> namesIgnoreCase = new TreeMap<>(String::compareToIgnoreCase);
+    Map<List<List<String>>, List<Integer>> members = new LinkedHashMap<>();
+    for (int i = 0; i < this.userContexts.size(); i++) {
+      AclUserContext userContext = this.userContexts.get(i);
+      String name = userContext.getName();
+      if (nonNull(name) && !ANONYMOUS.equals(name)) {
+        names.computeIfAbsent(name, key -> new ArrayList<>()).add(i);
+        namesIgnoreCase.computeIfAbsent(name, key -> new ArrayList<>()).add(i);
+      }
+      members
+          .computeIfAbsent(
+              List.of(distinct(userContext.getRoles()), distinct(userContext.getGroups())),
+              key -> new ArrayList<>())
+          .add(i);
+    }
+    this.usersByName = toIndexMap(names, new HashMap<>());
+    this.usersByNameIgnoreCase = toIndexMap(
+        namesIgnoreCase,
+        new TreeMap<>(String::compareToIgnoreCase));
+    this.signatures = members.entrySet().stream()
+        .map(entry -> new Signature(
+            entry.getKey().get(0),
+            entry.getKey().get(1),
+            entry.getValue().stream().mapToInt(Integer::intValue).toArray()))
+        .filter(Signature::hasPrincipals)
+        .collect(Collectors.toList());
+  }
+
+  private static List<String> distinct(Collection<String> principals) {
+    if (isNull(principals)) {
+      return List.of();
+    }
+    return principals.stream()
+        .filter(principal -> nonNull(principal) && !principal.isBlank())
+        .distinct()
+        .sorted()
+        .collect(Collectors.toList());
+  }
+
+  private static Map<String, int[]> toIndexMap(
+      Map<String, List<Integer>> source,
+      Map<String, int[]> target) {
+    source.forEach((key, value) -> target
+        .put(key, value.stream().mapToInt(Integer::intValue).toArray()));
+    return target;
+  }
+
+  /**
+   * Gets the user contexts. The indexes of the granted users of a row refer to this list.
+   *
+   * @return the user contexts
+   */
+  public List<AclUserContext> getUserContexts() {
+    return userContexts;
+  }
+
+  /**
+   * Gets the number of distinct role and group signatures.
+   *
+   * @return the number of distinct signatures
+   */
+  public int getSignatureCount() {
+    return signatures.size();
+  }
+
+  /**
+   * Computes the users that have the given permission on each of the given access control lists.
+   * The returned stream must be closed, if the given stream must be closed.
+   *
+   * @param acls the access control lists
+   * @param permission the permission
+   * @return the rows of the matrix in chunks, in the order of the given access control lists
+   */
+  public Stream<List<Row>> compute(Stream<? extends Acl> acls, String permission) {
+    return compute(
+        acls,
+        AccessEvaluation.ALL_PERMISSIONS,
+        Collections.singletonList(permission));
+  }
+
+  /**
+   * Computes the users that have the given permissions according to the given access evaluation
+   * type on each of the given access control lists. The returned stream must be closed, if the
+   * given stream must be closed.
+   *
+   * @param acls the access control lists
+   * @param accessEvaluation the access evaluation type
+   * @param permissions the permissions
+   * @return the rows of the matrix in chunks, in the order of the given access control lists
+   */
+  public Stream<List<Row>> compute(
+      Stream<? extends Acl> acls,
+      AccessEvaluation accessEvaluation,
+      Collection<String> permissions) {
+
+    Objects.requireNonNull(acls, "Stream of access control lists must be present.");
+    Objects.requireNonNull(accessEvaluation, "Access evaluation type must be present.");
+    Set<String> distinctPermissions = isNull(permissions)
+        ? Set.of()
+        : new LinkedHashSet<>(permissions);
+    Iterator<? extends Acl> iterator = acls.iterator();
+    Iterator<List<Row>> chunks = new Iterator<>() {
+      @Override
+      public boolean hasNext() {
+        return iterator.hasNext();
+      }
+
+      @Override
+      public List<Row> next() {
+        if (!iterator.hasNext()) {
+          throw new NoSuchElementException();
+        }
+        List<Acl> chunk = new ArrayList<>(chunkSize);
+        while (iterator.hasNext() && chunk.size() < chunkSize) {
+          chunk.add(iterator.next());
+        }
+        Stream<Acl> chunkStream = parallel ? chunk.parallelStream() : chunk.stream();
+        return chunkStream
+            .map(acl -> new Row(
+                acl,
+                evaluate(acl, accessEvaluation, distinctPermissions),
+                userContexts))
+            .collect(Collectors.toUnmodifiableList());
+      }
+    };
+    return StreamSupport
+        .stream(
+            Spliterators.spliteratorUnknownSize(chunks, Spliterator.ORDERED | Spliterator.NONNULL),
+            false)
+        .onClose(acls::close);
+  }
+
+  /**
+   * Determines the users that have the given permission on the given access control list.
+   *
+   * @param acl the access control list
+   * @param permission the permission
+   * @return the indexes of the granted users
+   */
+  public BitSet evaluate(Acl acl, String permission) {
+    BitSet granted = new BitSet(userContexts.size());
+    if (isNull(acl) || isNull(permission)) {
+      return granted;
+    }
+    int[] owners = usersByName.get(acl.getOwner());
+    if (nonNull(owners)) {
+      set(granted, owners);
+    }
+    Ace ace = acl.getPermissionMap().getOrDefault(permission, Ace.empty());
+    if (ace.isGuest()) {
+      granted.set(0, userContexts.size());
+      return granted;
+    }
+    for (String user : ace.getUsers()) {
+      int[] users = usersByNameIgnoreCase.get(user);
+      if (nonNull(users)) {
+        set(granted, users);
+      }
+    }
+    for (Signature signature : signatures) {
+      if (signature.isGranted(ace)) {
+        set(granted, signature.members);
+      }
+    }
+    return granted;
+  }
+
+  /**
+   * Determines the users that have the given permissions according to the given access evaluation
+   * type on the given access control list.
+   *
+   * @param acl the access control list
+   * @param accessEvaluation the access evaluation type
+   * @param permissions the permissions
+   * @return the indexes of the granted users
+   */
+  public BitSet evaluate(
+      Acl acl,
+      AccessEvaluation accessEvaluation,
+      Collection<String> permissions) {
+
+    BitSet granted = null;
+    if (isNull(accessEvaluation) || isNull(permissions)) {
+      return new BitSet(userContexts.size());
+    }
+    for (String permission : permissions) {
+      BitSet permissionGranted = evaluate(acl, permission);
+      if (isNull(granted)) {
+        granted = permissionGranted;
+      } else if (accessEvaluation.isAnyPermission()) {
+        granted.or(permissionGranted);
+      } else {
+        granted.and(permissionGranted);
+      }
+    }
+    return isNull(granted) ? new BitSet(userContexts.size()) : granted;
+  }
+
+  private static void set(BitSet bitSet, int[] indexes) {
+    for (int index : indexes) {
+      bitSet.set(index);
+    }
+  }
+
+  /**
+   * The users with identical roles and groups.
+   */
+  private static class Signature {
+
+    private final List<String> roles;
+
+    private final List<String> groups;
+
+    private final int[] members;
+
+    private Signature(List<String> roles, List<String> groups, int[] members) {
+      this.roles = roles;
+      this.groups = groups;
+      this.members = members;
+    }
+
+    private boolean hasPrincipals() {
+      return !roles.isEmpty() || !groups.isEmpty();
+    }
+
+    private boolean isGranted(Ace ace) {
+      if (!ace.getRoles().isEmpty()) {
+        for (String role : roles) {
+          if (ace.getRoles().contains(role)) {
+            return true;
+          }
+        }
+      }
+      if (!ace.getGroups().isEmpty()) {
+        for (String group : groups) {
+          if (ace.getGroups().contains(group)) {
+            return true;
+          }
+        }
+      }
+      return false;
+    }
+  }
+
+  /**
+   * A row of the access matrix.
+   *
+   * @author Christian Bremer
+   */
+  @ToString(exclude = "userContexts")
+  @EqualsAndHashCode(exclude = "userContexts")
+  public static class Row {
+
+    private final Acl acl;
+
+    private final BitSet grantedUsers;
+
+    private final List<AclUserContext> userContexts;
+
+    private Row(Acl acl, BitSet grantedUsers, List<AclUserContext> userContexts) {
+      this.acl = acl;
+      this.grantedUsers = grantedUsers;
+      this.userContexts = userContexts;
+    }
+
+    /**
+     * Gets the access control list.
+     *
+     * @return the access control list
+     */
+    public Acl getAcl() {
+      return acl;
+    }
+
+    /**
+     * Gets the indexes of the granted users.
+     *
+     * @return the indexes of the granted users
+     */
+    public BitSet getGrantedUsers() {
+      return (BitSet) grantedUsers.clone();
+    }
+
+    /**
+     * Determines whether the user with the given index is granted.
+     *
+     * @param userIndex the user index
+     * @return {@code true} if the user is granted, otherwise {@code false}
+     */
+    public boolean isGranted(int userIndex) {
+      return grantedUsers.get(userIndex);
+    }
+
+    /**
+     * Gets the number of granted users.
+     *
+     * @return the number of granted users
+     */
+    public int getGrantedCount() {
+      return grantedUsers.cardinality();
+    }
+
+    /**
+     * Gets the granted user contexts.
+     *
+     * @return the granted user contexts
+     */
+    public List<AclUserContext> getGrantedUserContexts() {
+      return Collections.unmodifiableList(grantedUsers.stream()
+          .mapToObj(userContexts::get)
+          .collect(Collectors.toList()));
+    }
+  }
+
+}
@@ -0,0 +1,276 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.bremersee.acl;
+
+import static java.util.Objects.isNull;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * The access snapshot memoizes the access decisions of one user within a scope, e.g. a http
+ * request. It should be created at the beginning of the scope and closed at the end of it.
+ *
+ * <p>The decisions are keyed by the access control list and the permission. The access control
+ * list is compared by its identity or, with {@link KeyMode#FINGERPRINT}, by its content. The
+ * content of an access control list instance is hashed and compared only once, when it is looked
+ * up the first time; the instance is then mapped to the first equal instance, whose identity is
+ * the key of the decisions. The decisions are stored in a small open addressing table without
+ * boxing.
+ *
+ * <p>An access snapshot is not thread safe.
+ *
+ * @author Christian Bremer
+ */
+public class AccessSnapshot implements AutoCloseable {
+
+  private static final int DEFAULT_CAPACITY = 16;
+
+  private static final byte EMPTY = 0;
+
+  private static final byte DENIED = 1;
+
+  private static final byte GRANTED = 2;
+
+  private final AclUserContext userContext;
+
+  private final KeyMode keyMode;
+
+  private final Map<Acl, Acl> canonicalAcls = new IdentityHashMap<>();
+
+  private final Map<Acl, Acl> aclsByContent = new HashMap<>();
+
+  private Acl[] acls;
+
+  private String[] permissions;
+
+  private byte[] decisions;
+
+  private int size;
+
+  private long hits;
+
+  private long misses;
+
+  private boolean closed;
+
+  /**
+   * Instantiates a new access snapshot.
+   *
+   * @param userContext the user context
+   * @param keyMode the key mode
+   * @param initialCapacity the initial capacity
+   */
+  public AccessSnapshot(AclUserContext userContext, KeyMode keyMode, int initialCapacity) {
+    this.userContext = Objects.requireNonNull(userContext, "User context must be present.");
+    this.keyMode = Objects.requireNonNull(keyMode, "Key mode must be present.");
+    int capacity = Integer.highestOneBit(Math.max(DEFAULT_CAPACITY, initialCapacity) - 1) << 1;
+    allocate(capacity);
+  }
+
+  /**
+   * Creates an access snapshot, that compares access control lists by identity.
+   *
+   * @param userContext the user context
+   * @return the access snapshot
+   */
+  public static AccessSnapshot of(AclUserContext userContext) {
+    return new AccessSnapshot(userContext, KeyMode.IDENTITY, DEFAULT_CAPACITY);
+  }
+
+  /**
+   * Gets user context.
+   *
+   * @return the user context
+   */
+  public AclUserContext getUserContext() {
+    return userContext;
+  }
+
+  /**
+   * Determines whether the user of this snapshot has the given permission on the given access
+   * control list.
+   *
+   * @param acl the access control list
+   * @param permission the permission
+   * @return {@code true} if the user has the permission, otherwise {@code false}
+   */
+  public boolean hasPermission(Acl acl, String permission) {
+    if (closed) {
+      throw new IllegalStateException("Access snapshot is closed.");
+    }
+    if (isNull(acl) || isNull(permission)) {
+      return false;
+    }
+    Acl key = key(acl);
+    int mask = acls.length - 1;
+    int index = hash(key, permission) & mask;
+    while (decisions[index] != EMPTY) {
+      if (acls[index] == key && permissions[index].equals(permission)) {
+        hits++;
+        return decisions[index] == GRANTED;
+      }
+      index = (index + 1) & mask;
+    }
+    misses++;
+    boolean granted = AccessEvaluator.of(acl).hasPermission(userContext, permission);
+    acls[index] = key;
+    permissions[index] = permission;
+    decisions[index] = granted ? GRANTED : DENIED;
+    if (++size * 2 > acls.length) {
+      resize();
+    }
+    return granted;
+  }
+
+  /**
+   * Determines whether the user of this snapshot has the given permissions on the given access
+   * control list according to the given access evaluation type.
+   *
+   * @param acl the access control list
+   * @param accessEvaluation the access evaluation type
+   * @param permissions the permissions
+   * @return {@code true} if the user has the permissions, otherwise {@code false}
+   */
+  public boolean hasPermissions(
+      Acl acl,
+      AccessEvaluation accessEvaluation,
+      Collection<String> permissions) {
+    return evaluator(acl).hasPermissions(userContext, accessEvaluation, permissions);
+  }
+
+  /**
+   * Creates an access evaluator for the given access control list, that uses this snapshot for the
+   * user of this snapshot. Other users are evaluated without memoization.
+   *
+   * @param acl the access control list
+   * @return the access evaluator
+   */
+  public AccessEvaluator evaluator(Acl acl) {
+    return (otherUserContext, permission) -> (otherUserContext == userContext
+        || userContext.equals(otherUserContext))
+        ? hasPermission(acl, permission)
+        : AccessEvaluator.of(acl).hasPermission(otherUserContext, permission);
+  }
+
+  /**
+   * Gets the number of memoized decisions.
+   *
+   * @return the number of memoized decisions
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Gets the number of decisions that were taken from the memo.
+   *
+   * @return the number of hits
+   */
+  public long getHits() {
+    return hits;
+  }
+
+  /**
+   * Gets the number of decisions that were evaluated.
+   *
+   * @return the number of misses
+   */
+  public long getMisses() {
+    return misses;
+  }
+
+  /**
+   * Discards the memoized decisions. The snapshot cannot be used anymore.
+   */
+  @Override
+  public void close() {
+    closed = true;
+    acls = new Acl[0];
+    permissions = new String[0];
+    decisions = new byte[0];
+    size = 0;
+    canonicalAcls.clear();
+    aclsByContent.clear();
+  }
+
+  private Acl key(Acl acl) {
+    if (keyMode == KeyMode.IDENTITY) {
+      return acl;
+    }
+    Acl canonical = canonicalAcls.get(acl);
+    if (isNull(canonical)) {
+      canonical = aclsByContent.computeIfAbsent(acl, content -> content);
+      canonicalAcls.put(acl, canonical);
+    }
+    return canonical;
+  }
+
+  private static int hash(Acl key, String permission) {
+    int h = 31 * System.identityHashCode(key) + permission.hashCode();
+    return h ^ (h >>> 16);
+  }
+
+  private void allocate(int capacity) {
+    acls = new Acl[capacity];
+    permissions = new String[capacity];
+    decisions = new byte[capacity];
+  }
+
+  private void resize() {
+    Acl[] oldAcls = acls;
+    String[] oldPermissions = permissions;
+    byte[] oldDecisions = decisions;
+    allocate(oldAcls.length << 1);
+    int mask = acls.length - 1;
+    for (int i = 0; i < oldAcls.length; i++) {
+      if (oldDecisions[i] != EMPTY) {
+        int index = hash(oldAcls[i], oldPermissions[i]) & mask;
+        while (decisions[index] != EMPTY) {
+          index = (index + 1) & mask;
+        }
+        acls[index] = oldAcls[i];
+        permissions[index] = oldPermissions[i];
+        decisions[index] = oldDecisions[i];
+      }
+    }
+  }
+
+  /**
+   * The key mode specifies how access control lists are compared.
+   *
+   * @author Christian Bremer
+   */
+  public enum KeyMode {
+
+    /**
+     * Access control lists are compared by identity. This is the fastest mode.
+     */
+    IDENTITY,
+
+    /**
+     * Access control lists are compared by their content, so that equal access control lists,
+     * that were loaded more than once, share their decisions. The content of every instance is
+     * compared only once.
+     */
+    FINGERPRINT
+  }
+
+}
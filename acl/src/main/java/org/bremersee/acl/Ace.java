@@ -17,6 +17,7 @@
 package org.bremersee.acl;
 
 import static java.util.Collections.unmodifiableSortedSet;
+import static java.util.Objects.isNull;
 import static java.util.Objects.nonNull;
 
 import java.util.Collection;
@@ -64,6 +65,42 @@ public interface Ace {
     return new AceBuilder();
   }
 
+  /**
+   * Creates an access control entry from the given sets. Sets, that are sorted with
+   * {@link String#CASE_INSENSITIVE_ORDER} and contain no blank values, are copied in linear time
+   * without sorting them again; this is intended for readers, that decode the principals directly
+   * into such sets. Other sets go through the builder. The entry never shares the given sets, so
+   * they can be modified afterwards.
+   *
+   * @param guest specifies whether guests have access
+   * @param users the users
+   * @param roles the roles
+   * @param groups the groups
+   * @return the ace
+   */
+  static Ace of(
+      boolean guest,
+      SortedSet<String> users,
+      SortedSet<String> roles,
+      SortedSet<String> groups) {
+
+    if (isCaseInsensitive(users) && isCaseInsensitive(roles) && isCaseInsensitive(groups)) {
+      return new AceImpl(guest, new TreeSet<>(users), new TreeSet<>(roles), new TreeSet<>(groups));
+    }
+    return builder()
+        .guest(guest)
+        .users(users)
+        .roles(roles)
+        .groups(groups)
+        .build();
+  }
+
+  private static boolean isCaseInsensitive(SortedSet<String> values) {
+    return nonNull(values)
+        && values.comparator() == String.CASE_INSENSITIVE_ORDER
+        && values.stream().noneMatch(value -> isNull(value) || value.isBlank());
+  }
+
   /**
    * Empty ace.
    *
@@ -101,6 +138,44 @@ public interface Ace {
    */
   SortedSet<String> getGroups();
 
+  /**
+   * Determines whether the given user is one of the users.
+   *
+   * @param user the user
+   * @return {@code true} if the user is one of the users, otherwise {@code false}
+   */
+  default boolean containsUser(String user) {
+    return nonNull(user) && getUsers().contains(user);
+  }
+
+  /**
+   * Determines whether any of the given roles is one of the roles.
+   *
+   * @param roles the roles
+   * @return {@code true} if any of the given roles is one of the roles, otherwise {@code false}
+   */
+  default boolean containsAnyRole(Collection<String> roles) {
+    return containsAny(getRoles(), roles);
+  }
+
+  /**
+   * Determines whether any of the given groups is one of the groups.
+   *
+   * @param groups the groups
+   * @return {@code true} if any of the given groups is one of the groups, otherwise
+   *     {@code false}
+   */
+  default boolean containsAnyGroup(Collection<String> groups) {
+    return containsAny(getGroups(), groups);
+  }
+
+  private static boolean containsAny(SortedSet<String> entries, Collection<String> values) {
+    if (entries.isEmpty() || isNull(values)) {
+      return false;
+    }
+    return values.stream().anyMatch(value -> nonNull(value) && entries.contains(value));
+  }
+
   /**
    * The ace builder.
    *
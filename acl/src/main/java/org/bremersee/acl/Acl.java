@@ -61,6 +61,36 @@ public interface Acl {
     return new AclBuilder();
   }
 
+  /**
+   * Creates an access control list from the given map. A map, that is sorted with
+   * {@link String#CASE_INSENSITIVE_ORDER} and contains neither blank permissions nor missing
+   * entries, is copied in linear time without sorting it again; this is intended for readers, that
+   * decode the entries directly into such a map. Other maps go through the builder. The access
+   * control list never shares the given map, so it can be modified afterwards.
+   *
+   * @param owner the owner
+   * @param permissionMap the permission map
+   * @return the acl
+   */
+  static Acl of(String owner, SortedMap<String, Ace> permissionMap) {
+    if (isCaseInsensitive(permissionMap)) {
+      return new AclImpl(owner, new TreeMap<>(permissionMap));
+    }
+    return builder()
+        .owner(owner)
+        .permissionMap(permissionMap)
+        .build();
+  }
+
+  private static boolean isCaseInsensitive(SortedMap<String, Ace> permissionMap) {
+    return nonNull(permissionMap)
+        && permissionMap.comparator() == String.CASE_INSENSITIVE_ORDER
+        && permissionMap.entrySet().stream()
+        .allMatch(entry -> nonNull(entry.getKey())
+            && !entry.getKey().isBlank()
+            && nonNull(entry.getValue()));
+  }
+
   /**
    * With acl.
    *
@@ -546,6 +576,11 @@ public interface Acl {
 
     private final SortedMap<String, Ace> permissionMap;
 
+    private AclImpl(String owner, SortedMap<String, Ace> permissionMap) {
+      this.owner = nonNull(owner) && !owner.isBlank() ? owner : ANONYMOUS;
+      this.permissionMap = unmodifiableSortedMap(permissionMap);
+    }
+
     private AclImpl(String owner, Map<String, Ace> permissionMap) {
       this.owner = nonNull(owner) && !owner.isBlank() ? owner : ANONYMOUS;
       this.permissionMap = unmodifiableSortedMap(permissionMap.entrySet().stream()
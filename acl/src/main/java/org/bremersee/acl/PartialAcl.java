@@ -0,0 +1,135 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.bremersee.acl;
+
+import static java.util.Collections.unmodifiableSortedMap;
+import static java.util.Collections.unmodifiableSortedSet;
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+
+import java.util.Collection;
+import java.util.Optional;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+import org.bremersee.acl.model.AccessControlEntryModifications;
+import org.bremersee.acl.model.AccessControlListModifications;
+
+/**
+ * The partial access control list contains only the owner and the entries of some permissions of
+ * an access control list, for example because only these parts were loaded from the database. A
+ * partial access control list can be evaluated for the included permissions, but it must not be
+ * written back, because the entries of all other permissions are missing. Modifying it is
+ * restricted to the included permissions and returns a partial access control list again.
+ *
+ * @author Christian Bremer
+ */
+public interface PartialAcl extends Acl {
+
+  /**
+   * Creates a partial access control list, that contains the entries of the included permissions
+   * of the given access control list.
+   *
+   * @param acl the access control list
+   * @param includedPermissions the included permissions
+   * @return the partial access control list
+   */
+  static PartialAcl of(Acl acl, Collection<String> includedPermissions) {
+    return new PartialAclImpl(acl, includedPermissions);
+  }
+
+  /**
+   * Gets the included permissions.
+   *
+   * @return the included permissions
+   */
+  SortedSet<String> getIncludedPermissions();
+
+  /**
+   * Determines whether the given permission is included.
+   *
+   * @param permission the permission
+   * @return {@code true} if the permission is included, otherwise {@code false}
+   */
+  default boolean isIncluded(String permission) {
+    return nonNull(permission) && getIncludedPermissions().contains(permission);
+  }
+
+  /**
+   * The partial acl implementation.
+   *
+   * @author Christian Bremer
+   */
+  @SuppressWarnings("SameNameButDifferent")
+  @Getter
+  @ToString
+  @EqualsAndHashCode
+  class PartialAclImpl implements PartialAcl {
+
+    private final String owner;
+
+    private final SortedMap<String, Ace> permissionMap;
+
+    private final SortedSet<String> includedPermissions;
+
+    private PartialAclImpl(Acl acl, Collection<String> includedPermissions) {
+      Acl source = isNull(acl) ? Acl.builder().build() : acl;
+      SortedSet<String> permissions = new TreeSet<>(String::compareToIgnoreCase);
+      if (nonNull(includedPermissions)) {
+        includedPermissions.stream()
+            .filter(permission -> nonNull(permission) && !permission.isBlank())
+            .forEach(permissions::add);
+      }
+      SortedMap<String, Ace> entries = new TreeMap<>(String::compareToIgnoreCase);
+      source.getPermissionMap().forEach((permission, ace) -> {
+        if (permissions.contains(permission)) {
+          entries.put(permission, ace);
+        }
+      });
+      this.owner = source.getOwner();
+      this.permissionMap = unmodifiableSortedMap(entries);
+      this.includedPermissions = unmodifiableSortedSet(permissions);
+    }
+
+    @Override
+    public Optional<Acl> modify(
+        AccessControlListModifications mods,
+        AclUserContext userContext,
+        AccessEvaluation accessEvaluation,
+        Collection<String> permissions) {
+
+      if (nonNull(mods)) {
+        mods.getModifications().stream()
+            .map(AccessControlEntryModifications::getPermission)
+            .filter(permission -> !isIncluded(permission))
+            .findAny()
+            .ifPresent(permission -> {
+              throw new IllegalArgumentException(String.format(
+                  "Permission '%s' is not included in the partial access control list.",
+                  permission));
+            });
+      }
+      return PartialAcl.super.modify(mods, userContext, accessEvaluation, permissions)
+          .map(acl -> PartialAcl.of(acl, includedPermissions));
+    }
+  }
+
+}
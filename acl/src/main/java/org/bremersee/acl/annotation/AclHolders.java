@@ -0,0 +1,69 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.bremersee.acl.annotation;
+
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+
+/**
+ * The acl holders determine the acl path of entity classes, that are annotated with
+ * {@link AclHolder}.
+ *
+ * @author Christian Bremer
+ */
+public abstract class AclHolders {
+
+  private AclHolders() {
+  }
+
+  /**
+   * Gets the acl path of the given entity class. The annotation is searched on the class, its
+   * super classes and its interfaces. If it is missing, an {@link IllegalArgumentException} is
+   * thrown.
+   *
+   * @param entityClass the entity class
+   * @return the acl path
+   */
+  public static String getAclPath(Class<?> entityClass) {
+    if (isNull(entityClass)) {
+      throw new IllegalArgumentException("Entity class must be present.");
+    }
+    AclHolder aclHolder = findAclHolder(entityClass);
+    if (isNull(aclHolder)) {
+      throw new IllegalArgumentException(String.format(
+          "Entity class %s must be annotated with %s.",
+          entityClass.getSimpleName(), AclHolder.class.getSimpleName()));
+    }
+    return aclHolder.path();
+  }
+
+  private static AclHolder findAclHolder(Class<?> type) {
+    // the annotation is inherited by sub classes, but not by implementations of interfaces
+    AclHolder aclHolder = type.getAnnotation(AclHolder.class);
+    for (Class<?> current = type; isNull(aclHolder) && nonNull(current);
+        current = current.getSuperclass()) {
+      for (Class<?> interfaceType : current.getInterfaces()) {
+        aclHolder = findAclHolder(interfaceType);
+        if (nonNull(aclHolder)) {
+          break;
+        }
+      }
+    }
+    return aclHolder;
+  }
+
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.bremersee.acl.audience;
+
+import java.util.List;
+import java.util.Optional;
+import org.immutables.value.Value;
+
+/**
+ * A page of users that are granted by an access control list.
+ *
+ * @author Christian Bremer
+ */
+@Value.Immutable
+public interface AudiencePage {
+
+  /**
+   * Creates new audience page builder.
+   *
+   * @return the audience page builder
+   */
+  static ImmutableAudiencePage.Builder builder() {
+    return ImmutableAudiencePage.builder();
+  }
+
+  /**
+   * Gets users.
+   *
+   * @return the users in ascending order
+   */
+  List<String> getUsers();
+
+  /**
+   * Gets the value of the {@code after} parameter to request the next page. It is empty, if there
+   * is no next page.
+   *
+   * @return the value to request the next page
+   */
+  Optional<String> getNext();
+
+}
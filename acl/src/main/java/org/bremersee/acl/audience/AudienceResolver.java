@@ -0,0 +1,223 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.bremersee.acl.audience;
+
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+import static org.bremersee.acl.AclUserContext.ANONYMOUS;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import org.bremersee.acl.Ace;
+import org.bremersee.acl.Acl;
+
+/**
+ * The audience resolver determines all users that have a permission on an access control list.
+ *
+ * <p>The owner, the users of the entry and the members of the roles and groups of the entry,
+ * which are provided by the {@link PrincipalDirectory}, are merged lazily. Because the directory
+ * returns the members in ascending order, duplicates are removed without collecting the users.
+ * User names are compared case-insensitively ({@link String#CASE_INSENSITIVE_ORDER}) like the
+ * entries of the access control list, so names, that differ only in case, are returned once.
+ *
+ * @author Christian Bremer
+ */
+public class AudienceResolver {
+
+  private final PrincipalDirectory principalDirectory;
+
+  /**
+   * Instantiates a new audience resolver.
+   *
+   * @param principalDirectory the principal directory
+   */
+  public AudienceResolver(PrincipalDirectory principalDirectory) {
+    this.principalDirectory = Objects
+        .requireNonNull(principalDirectory, "Principal directory must be present.");
+  }
+
+  /**
+   * Resolves the users that have the given permission on the given access control list. The
+   * returned stream must be closed.
+   *
+   * @param acl the access control list
+   * @param permission the permission
+   * @return the distinct users in ascending order
+   */
+  public Stream<String> resolve(Acl acl, String permission) {
+    return resolve(acl, permission, null);
+  }
+
+  /**
+   * Resolves the users that have the given permission on the given access control list and that
+   * are greater than the given user name. The returned stream must be closed.
+   *
+   * @param acl the access control list
+   * @param permission the permission
+   * @param after the user name after which the result starts (exclusive), can be {@code null}
+   * @return the distinct users in ascending order
+   */
+  public Stream<String> resolve(Acl acl, String permission, String after) {
+    if (isNull(acl) || isNull(permission)) {
+      return Stream.empty();
+    }
+    Ace ace = acl.getPermissionMap().getOrDefault(permission, Ace.empty());
+    List<Stream<String>> sources = new ArrayList<>();
+    String owner = acl.getOwner();
+    if (nonNull(owner) && !ANONYMOUS.equals(owner) && isAfter(owner, after)) {
+      sources.add(Stream.of(owner));
+    }
+    sources.add(ace.getUsers().stream()
+        .filter(user -> isAfter(user, after))
+        .sorted(String.CASE_INSENSITIVE_ORDER));
+    if (ace.isGuest()) {
+      sources.add(principalDirectory.findAllUsers(after));
+    } else {
+      ace.getRoles()
+          .forEach(role -> sources.add(principalDirectory.findUsersByRole(role, after)));
+      ace.getGroups()
+          .forEach(group -> sources.add(principalDirectory.findUsersByGroup(group, after)));
+    }
+    return merge(sources);
+  }
+
+  /**
+   * Resolves a page of users that have the given permission on the given access control list.
+   *
+   * @param acl the access control list
+   * @param permission the permission
+   * @param after the user name after which the page starts (exclusive), can be {@code null}; to
+   *     request the next page use {@link AudiencePage#getNext()}
+   * @param size the maximum number of users of the page
+   * @return the audience page
+   */
+  public AudiencePage resolvePage(Acl acl, String permission, String after, int size) {
+    if (size < 1) {
+      throw new IllegalArgumentException("Page size must be greater than zero.");
+    }
+    List<String> users;
+    try (Stream<String> audience = resolve(acl, permission, after)) {
+      users = audience.limit(size + 1L).collect(Collectors.toList());
+    }
+    boolean hasNext = users.size() > size;
+    List<String> content = hasNext ? users.subList(0, size) : users;
+    return AudiencePage.builder()
+        .users(content)
+        .next(hasNext ? Optional.of(content.get(size - 1)) : Optional.empty())
+        .build();
+  }
+
+  private static boolean isAfter(String user, String after) {
+    return isNull(after) || String.CASE_INSENSITIVE_ORDER.compare(user, after) > 0;
+  }
+
+  private static Stream<String> merge(List<Stream<String>> sources) {
+    PriorityQueue<PeekingIterator> queue = new PriorityQueue<>(
+        Math.max(1, sources.size()),
+        Comparator.comparing(PeekingIterator::peek, String.CASE_INSENSITIVE_ORDER));
+    Iterator<String> merged = new Iterator<>() {
+
+      private boolean initialized;
+
+      private String last;
+
+      private void init() {
+        if (!initialized) {
+          initialized = true;
+          sources.stream()
+              .map(source -> new PeekingIterator(source.iterator()))
+              .filter(PeekingIterator::hasNext)
+              .forEach(queue::add);
+        }
+      }
+
+      @Override
+      public boolean hasNext() {
+        init();
+        while (!queue.isEmpty() && nonNull(last)
+            && String.CASE_INSENSITIVE_ORDER.compare(queue.peek().peek(), last) == 0) {
+          PeekingIterator duplicate = queue.poll();
+          duplicate.next();
+          advance(duplicate);
+        }
+        return !queue.isEmpty();
+      }
+
+      @Override
+      public String next() {
+        if (!hasNext()) {
+          throw new NoSuchElementException();
+        }
+        PeekingIterator head = queue.poll();
+        last = head.next();
+        advance(head);
+        return last;
+      }
+
+      private void advance(PeekingIterator iterator) {
+        if (iterator.hasNext()) {
+          queue.add(iterator);
+        }
+      }
+    };
+    return StreamSupport
+        .stream(
+            Spliterators.spliteratorUnknownSize(
+                merged,
+                Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.NONNULL),
+            false)
+        .onClose(() -> sources.forEach(Stream::close));
+  }
+
+  private static class PeekingIterator {
+
+    private final Iterator<String> iterator;
+
+    private String next;
+
+    private PeekingIterator(Iterator<String> iterator) {
+      this.iterator = iterator;
+      this.next = iterator.hasNext() ? iterator.next() : null;
+    }
+
+    private boolean hasNext() {
+      return nonNull(next);
+    }
+
+    private String peek() {
+      return next;
+    }
+
+    private String next() {
+      String current = next;
+      next = iterator.hasNext() ? iterator.next() : null;
+      return current;
+    }
+  }
+
+}
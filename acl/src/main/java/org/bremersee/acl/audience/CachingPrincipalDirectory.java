@@ -0,0 +1,178 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.bremersee.acl.audience;
+
+import static java.util.Objects.isNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.BiFunction;
+import java.util.stream.Stream;
+
+/**
+ * The caching principal directory keeps reverse indexes from role to users and from group to
+ * users of another principal directory.
+ *
+ * <p>Only roles and groups with at most {@code maxMembers} users are cached, the members of larger
+ * ones are always streamed from the underlying directory. The number of cached roles and groups
+ * is bounded, the least recently used ones are removed first. The result of
+ * {@link #findAllUsers(String)} is never cached.
+ *
+ * @author Christian Bremer
+ */
+public class CachingPrincipalDirectory implements PrincipalDirectory {
+
+  private static final String[] TOO_LARGE = new String[0];
+
+  private final PrincipalDirectory principalDirectory;
+
+  private final int maxMembers;
+
+  private final Map<String, String[]> roleIndex;
+
+  private final Map<String, String[]> groupIndex;
+
+  /**
+   * Instantiates a new caching principal directory.
+   *
+   * @param principalDirectory the principal directory
+   * @param maxEntries the maximum number of cached roles and the maximum number of cached groups
+   * @param maxMembers the maximum number of users of a cached role or group
+   */
+  public CachingPrincipalDirectory(
+      PrincipalDirectory principalDirectory,
+      int maxEntries,
+      int maxMembers) {
+
+    this.principalDirectory = Objects
+        .requireNonNull(principalDirectory, "Principal directory must be present.");
+    if (maxEntries < 1) {
+      throw new IllegalArgumentException("Max entries must be greater than zero.");
+    }
+    if (maxMembers < 0) {
+      throw new IllegalArgumentException("Max members must not be negative.");
+    }
+    this.maxMembers = maxMembers;
+    this.roleIndex = createIndex(maxEntries);
+    this.groupIndex = createIndex(maxEntries);
+  }
+
+  private static Map<String, String[]> createIndex(int maxEntries) {
+    return new LinkedHashMap<>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, String[]> eldest) {
+        return size() > maxEntries;
+      }
+    };
+  }
+
+  @Override
+  public Stream<String> findAllUsers(String after) {
+    return principalDirectory.findAllUsers(after);
+  }
+
+  @Override
+  public Stream<String> findUsersByRole(String role, String after) {
+    return find(roleIndex, role, after, principalDirectory::findUsersByRole);
+  }
+
+  @Override
+  public Stream<String> findUsersByGroup(String group, String after) {
+    return find(groupIndex, group, after, principalDirectory::findUsersByGroup);
+  }
+
+  /**
+   * Removes the cached users of the given role.
+   *
+   * @param role the role
+   */
+  public void invalidateRole(String role) {
+    synchronized (roleIndex) {
+      roleIndex.remove(role);
+    }
+  }
+
+  /**
+   * Removes the cached users of the given group.
+   *
+   * @param group the group
+   */
+  public void invalidateGroup(String group) {
+    synchronized (groupIndex) {
+      groupIndex.remove(group);
+    }
+  }
+
+  /**
+   * Removes all cached users.
+   */
+  public void invalidateAll() {
+    synchronized (roleIndex) {
+      roleIndex.clear();
+    }
+    synchronized (groupIndex) {
+      groupIndex.clear();
+    }
+  }
+
+  private Stream<String> find(
+      Map<String, String[]> index,
+      String principal,
+      String after,
+      BiFunction<String, String, Stream<String>> loader) {
+
+    String[] users;
+    synchronized (index) {
+      users = index.get(principal);
+    }
+    if (isNull(users)) {
+      users = load(principal, loader);
+      synchronized (index) {
+        index.put(principal, users);
+      }
+    }
+    if (users == TOO_LARGE) {
+      return loader.apply(principal, after);
+    }
+    int from = 0;
+    if (!isNull(after)) {
+      int position = Arrays.binarySearch(users, after, String.CASE_INSENSITIVE_ORDER);
+      from = position >= 0 ? position + 1 : -(position + 1);
+    }
+    return Arrays.stream(users, from, users.length);
+  }
+
+  private String[] load(String principal, BiFunction<String, String, Stream<String>> loader) {
+    List<String> users = new ArrayList<>();
+    try (Stream<String> members = loader.apply(principal, null)) {
+      Iterator<String> iterator = members.iterator();
+      while (iterator.hasNext()) {
+        if (users.size() == maxMembers) {
+          return TOO_LARGE;
+        }
+        users.add(iterator.next());
+      }
+    }
+    return users.toArray(new String[0]);
+  }
+
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.bremersee.acl.audience;
+
+import java.util.stream.Stream;
+
+/**
+ * The principal directory provides the members of roles and groups. It must be implemented by the
+ * application, e.g. with a query against a user database or a directory service.
+ *
+ * <p>All methods must return distinct user names in ascending case-insensitive order ({@link
+ * String#CASE_INSENSITIVE_ORDER}) that are greater than the given {@code after} value in this
+ * order. If {@code after} is {@code null}, the streams start with the first user. The returned
+ * streams are closed by the caller.
+ *
+ * @author Christian Bremer
+ */
+public interface PrincipalDirectory {
+
+  /**
+   * Finds all users. This is used to resolve guest entries.
+   *
+   * @param after the user name after which the result starts (exclusive), can be {@code null}
+   * @return the users in ascending order
+   */
+  Stream<String> findAllUsers(String after);
+
+  /**
+   * Finds the users that have the given role.
+   *
+   * @param role the role
+   * @param after the user name after which the result starts (exclusive), can be {@code null}
+   * @return the users in ascending order
+   */
+  Stream<String> findUsersByRole(String role, String after);
+
+  /**
+   * Finds the users that are members of the given group.
+   *
+   * @param group the group
+   * @param after the user name after which the result starts (exclusive), can be {@code null}
+   * @return the users in ascending order
+   */
+  Stream<String> findUsersByGroup(String group, String after);
+
+}
@@ -21,6 +21,8 @@ import static java.util.Objects.isNull;
 import java.util.List;
 import java.util.Set;
 import java.util.stream.Collectors;
+import org.bremersee.acl.AccessControlListEvaluator;
+import org.bremersee.acl.AccessEvaluator;
 import org.bremersee.acl.Ace;
 import org.bremersee.acl.Acl;
 import org.bremersee.acl.model.AccessControlEntry;
@@ -69,4 +71,21 @@ public class DefaultAclMapper extends AbstractAclMapper<Acl> {
         .build();
   }
 
+  /**
+   * Creates an access evaluator that reads the given access control list directly. The decisions
+   * are the same as the ones of the access evaluator of the mapped access control list, but the
+   * mapping is skipped.
+   *
+   * @param accessControlList the access control list
+   * @param indexed specifies whether the entries are indexed lazily
+   * @return the access evaluator
+   */
+  public AccessEvaluator evaluator(AccessControlList accessControlList, boolean indexed) {
+    return new AccessControlListEvaluator(
+        accessControlList,
+        defaultPermissions,
+        hideAdminRoles ? adminRoles : List.of(),
+        indexed);
+  }
+
 }
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.bremersee.acl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import java.util.Set;
+import org.assertj.core.api.SoftAssertions;
+import org.assertj.core.api.junit.jupiter.SoftAssertionsExtension;
+import org.bremersee.acl.mapper.DefaultAclMapper;
+import org.bremersee.acl.model.AccessControlEntry;
+import org.bremersee.acl.model.AccessControlList;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+/**
+ * The access control list evaluator test.
+ *
+ * @author Christian Bremer
+ */
+@ExtendWith(SoftAssertionsExtension.class)
+class AccessControlListEvaluatorTest {
+
+  private static final AccessControlList ACCESS_CONTROL_LIST = AccessControlList.builder()
+      .owner("junit")
+      .entries(List.of(
+          AccessControlEntry.builder()
+              .permission(PermissionConstants.READ)
+              .isGuest(true)
+              .build(),
+          AccessControlEntry.builder()
+              .permission(PermissionConstants.WRITE)
+              .users(List.of("Anna"))
+              .roles(List.of("ROLE_USER"))
+              .groups(List.of("dev"))
+              .build(),
+          AccessControlEntry.builder()
+              .permission(PermissionConstants.DELETE)
+              .groups(List.of("cron"))
+              .build()))
+      .build();
+
+  private static final List<AclUserContext> USERS = List.of(
+      AclUserContext.builder().name("junit").build(),
+      AclUserContext.builder().name("anna").build(),
+      AclUserContext.builder().name("james").roles(List.of("role_user")).build(),
+      AclUserContext.builder().name("max").groups(List.of("DEV", "cron")).build(),
+      AclUserContext.builder().name("admin").roles(List.of("ROLE_ADMIN")).build(),
+      AclUserContext.builder().build());
+
+  /**
+   * Has permission with null.
+   *
+   * @param softly the softly
+   */
+  @Test
+  void hasPermissionWithNull(SoftAssertions softly) {
+    softly.assertThat(AccessEvaluator.of((AccessControlList) null)
+            .hasPermission(USERS.get(0), PermissionConstants.READ))
+        .isFalse();
+    softly.assertThat(AccessEvaluator.of(ACCESS_CONTROL_LIST)
+            .hasPermission(USERS.get(0), null))
+        .isFalse();
+  }
+
+  /**
+   * Has permission with owner.
+   */
+  @Test
+  void hasPermissionWithOwner() {
+    assertThat(AccessEvaluator.of(ACCESS_CONTROL_LIST)
+        .hasPermission(USERS.get(0), PermissionConstants.ADMINISTRATION))
+        .isTrue();
+  }
+
+  /**
+   * Has permission is same as mapped acl.
+   *
+   * @param softly the softly
+   */
+  @Test
+  void hasPermissionIsSameAsMappedAcl(SoftAssertions softly) {
+    for (boolean hideAdminRoles : List.of(true, false)) {
+      DefaultAclMapper mapper = new DefaultAclMapper(
+          new String[]{PermissionConstants.ADMINISTRATION},
+          hideAdminRoles,
+          Set.of("ROLE_ADMIN"));
+      AccessEvaluator expected = AccessEvaluator.of(mapper.map(ACCESS_CONTROL_LIST));
+      for (boolean indexed : List.of(true, false)) {
+        AccessEvaluator target = mapper.evaluator(ACCESS_CONTROL_LIST, indexed);
+        for (AclUserContext user : USERS) {
+          for (String permission : PermissionConstants.getAll()) {
+            softly.assertThat(target.hasPermission(user, permission))
+                .as("User %s with permission %s (hide admin roles = %s, indexed = %s)",
+                    user, permission, hideAdminRoles, indexed)
+                .isEqualTo(expected.hasPermission(user, permission));
+          }
+        }
+      }
+    }
+  }
+
+}
@@ -0,0 +1,286 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.bremersee.acl;
+
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.assertj.core.api.SoftAssertions;
+import org.assertj.core.api.junit.jupiter.SoftAssertionsExtension;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+/**
+ * The access decision cache test.
+ *
+ * @author Christian Bremer
+ */
+@ExtendWith(SoftAssertionsExtension.class)
+class AccessDecisionCacheTest {
+
+  private static final AclUserContext ANNA = AclUserContext.builder()
+      .name("anna")
+      .roles(List.of("ROLE_USER", "ROLE_ADMIN"))
+      .build();
+
+  private static final AclUserContext ANNA_REORDERED = AclUserContext.builder()
+      .name("anna")
+      .roles(List.of("ROLE_ADMIN", "ROLE_USER", "ROLE_USER"))
+      .build();
+
+  private static final Acl ACL = Acl.builder()
+      .owner("junit")
+      .addRoles(PermissionConstants.READ, List.of("ROLE_USER"))
+      .build();
+
+  /**
+   * Has permission with content key.
+   *
+   * @param softly the softly
+   */
+  @Test
+  void hasPermissionWithContentKey(SoftAssertions softly) {
+    AccessDecisionCache target = new AccessDecisionCache(100);
+    softly.assertThat(target.of(ACL).hasPermission(ANNA, PermissionConstants.READ))
+        .isTrue();
+    softly.assertThat(target.of(ACL).hasPermission(ANNA_REORDERED, PermissionConstants.READ))
+        .isTrue();
+    softly.assertThat(target.of(ACL).hasPermission(ANNA, PermissionConstants.WRITE))
+        .isFalse();
+    softly.assertThat(target.of(ACL).hasPermission(ANNA, PermissionConstants.WRITE))
+        .isFalse();
+    softly.assertThat(target.getMissCount())
+        .isEqualTo(2L);
+    softly.assertThat(target.getHitCount())
+        .isEqualTo(2L);
+    softly.assertThat(target.size())
+        .isEqualTo(2);
+
+    Acl modified = Acl.builder()
+        .from(ACL)
+        .removeRoles(PermissionConstants.READ, List.of("ROLE_USER"))
+        .build();
+    softly.assertThat(target.of(modified).hasPermission(ANNA, PermissionConstants.READ))
+        .isFalse();
+  }
+
+  /**
+   * Has permissions with version key.
+   *
+   * @param softly the softly
+   */
+  @Test
+  void hasPermissionsWithVersionKey(SoftAssertions softly) {
+    AccessDecisionCache target = new AccessDecisionCache(100);
+    List<String> permissions = List.of(PermissionConstants.READ, PermissionConstants.WRITE);
+    softly.assertThat(target.of("1", 1L, ACL)
+            .hasPermissions(ANNA, AccessEvaluation.ANY_PERMISSION, permissions))
+        .isTrue();
+    softly.assertThat(target.of("1", 1L, ACL)
+            .hasPermissions(ANNA, AccessEvaluation.ALL_PERMISSIONS, permissions))
+        .isFalse();
+    softly.assertThat(target.of("1", 1L, Acl.builder().build())
+            .hasPermissions(ANNA, AccessEvaluation.ANY_PERMISSION, permissions))
+        .as("Decision of same id and version is taken from cache")
+        .isTrue();
+    softly.assertThat(target.of("1", 2L, Acl.builder().build())
+            .hasPermissions(ANNA, AccessEvaluation.ANY_PERMISSION, permissions))
+        .isFalse();
+
+    target.invalidate("1");
+    softly.assertThat(target.size())
+        .isZero();
+    softly.assertThat(target.of("1", 1L, Acl.builder().build())
+            .hasPermissions(ANNA, AccessEvaluation.ANY_PERMISSION, permissions))
+        .isFalse();
+  }
+
+  /**
+   * Eviction.
+   *
+   * @param softly the softly
+   */
+  @Test
+  void eviction(SoftAssertions softly) {
+    AccessDecisionCache target = new AccessDecisionCache(2);
+    for (String permission : PermissionConstants.getAll()) {
+      target.of(ACL).hasPermission(ANNA, permission);
+    }
+    softly.assertThat(target.size())
+        .isEqualTo(2);
+    softly.assertThat(target.getEvictionCount())
+        .isEqualTo(PermissionConstants.getAll().size() - 2L);
+
+    target.invalidateAll();
+    softly.assertThat(target.size())
+        .isZero();
+  }
+
+  /**
+   * Eviction and invalidation of a segmented cache.
+   *
+   * @param softly the softly
+   */
+  @Test
+  void evictionAndInvalidationWithSegments(SoftAssertions softly) {
+    AccessDecisionCache target = new AccessDecisionCache(10000);
+    for (int i = 0; i < 20000; i++) {
+      target.of("id" + (i % 500), 1L, ACL).hasPermission(ANNA, "permission" + (i / 500));
+    }
+    softly.assertThat(target.size())
+        .isEqualTo(10000);
+    softly.assertThat(target.getEvictionCount())
+        .isEqualTo(10000L);
+
+    target.invalidate("id0");
+    softly.assertThat(target.size())
+        .isLessThan(10000);
+    for (int i = 1; i < 500; i++) {
+      target.invalidate("id" + i);
+    }
+    softly.assertThat(target.size())
+        .isZero();
+  }
+
+  /**
+   * Invalidate while a decision is evaluated.
+   *
+   * @param softly the softly
+   * @throws Exception if the evaluation fails
+   */
+  @Test
+  void invalidateWhileEvaluating(SoftAssertions softly) throws Exception {
+    AccessDecisionCache target = new AccessDecisionCache(100);
+    Acl acl = Acl.builder()
+        .addGroups(PermissionConstants.READ, List.of("dev"))
+        .build();
+    CountDownLatch evaluating = new CountDownLatch(1);
+    CountDownLatch invalidated = new CountDownLatch(1);
+    AtomicInteger groupCalls = new AtomicInteger();
+    AclUserContext userContext = new AclUserContext() {
+      @Override
+      public String getName() {
+        return "anna";
+      }
+
+      @Override
+      public Collection<String> getGroups() {
+        // the first call builds the key, the second one is part of the evaluation
+        if (groupCalls.incrementAndGet() == 2) {
+          evaluating.countDown();
+          try {
+            invalidated.await(10, TimeUnit.SECONDS);
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+        }
+        return List.of("dev");
+      }
+    };
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      Future<Boolean> granted = executor.submit(() -> target.of("1", 1L, acl)
+          .hasPermission(userContext, PermissionConstants.READ));
+      softly.assertThat(evaluating.await(10, TimeUnit.SECONDS))
+          .isTrue();
+      target.invalidate("1");
+      invalidated.countDown();
+      softly.assertThat(granted.get(10, TimeUnit.SECONDS))
+          .isTrue();
+    } finally {
+      executor.shutdownNow();
+    }
+    softly.assertThat(target.size())
+        .as("A decision, that is evaluated before an invalidation, is not cached.")
+        .isZero();
+  }
+
+  /**
+   * Invalidate concurrently.
+   *
+   * @param softly the softly
+   * @throws Exception if an evaluation fails
+   */
+  @Test
+  void invalidateConcurrently(SoftAssertions softly) throws Exception {
+    AccessDecisionCache target = new AccessDecisionCache(256);
+    List<String> permissions = List.of(
+        PermissionConstants.READ, PermissionConstants.WRITE, PermissionConstants.DELETE);
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (int thread = 0; thread < 3; thread++) {
+        futures.add(executor.submit(() -> {
+          for (int i = 0; i < 20000; i++) {
+            target.of("id" + (i % 8), 1L, ACL)
+                .hasPermission(ANNA, permissions.get(i % 3));
+          }
+        }));
+      }
+      futures.add(executor.submit(() -> {
+        for (int i = 0; i < 20000; i++) {
+          target.invalidate("id" + (i % 8));
+        }
+      }));
+      for (Future<?> future : futures) {
+        future.get(60, TimeUnit.SECONDS);
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+    for (int i = 0; i < 8; i++) {
+      target.invalidate("id" + i);
+    }
+    softly.assertThat(target.size())
+        .as("Every cached decision can be invalidated.")
+        .isZero();
+  }
+
+  /**
+   * Has permission with null.
+   *
+   * @param softly the softly
+   */
+  @Test
+  void hasPermissionWithNull(SoftAssertions softly) {
+    AccessDecisionCache target = new AccessDecisionCache(2);
+    softly.assertThat(target.of(null).hasPermission(ANNA, PermissionConstants.READ))
+        .isFalse();
+    softly.assertThat(target.of(ACL).hasPermission(ANNA, null))
+        .isFalse();
+    softly.assertThat(target.size())
+        .isZero();
+  }
+
+  /**
+   * Instantiate with illegal maximum size.
+   */
+  @Test
+  void instantiateWithIllegalMaximumSize() {
+    assertThatExceptionOfType(IllegalArgumentException.class)
+        .isThrownBy(() -> new AccessDecisionCache(0));
+  }
+
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.bremersee.acl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.assertj.core.api.SoftAssertions;
+import org.assertj.core.api.junit.jupiter.SoftAssertionsExtension;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+/**
+ * The access matrix test.
+ *
+ * @author Christian Bremer
+ */
+@ExtendWith(SoftAssertionsExtension.class)
+class AccessMatrixTest {
+
+  private static final List<AclUserContext> USERS = List.of(
+      AclUserContext.builder().name("anna").roles(List.of("ROLE_USER")).build(),
+      AclUserContext.builder().name("james").roles(List.of("ROLE_USER")).build(),
+      AclUserContext.builder().name("max").roles(List.of("ROLE_GUEST")).build(),
+      AclUserContext.builder().name("stephen").groups(List.of("cron")).build(),
+      AclUserContext.builder().groups(List.of("cron", "dev")).build(),
+      AclUserContext.builder().name("junit").build(),
+      AclUserContext.builder().build());
+
+  private static final List<Acl> ACLS = List.of(
+      Acl.builder()
+          .owner("junit")
+          .addUsers(PermissionConstants.WRITE, List.of("James"))
+          .addRoles(PermissionConstants.READ, List.of("ROLE_USER"))
+          .addGroups(PermissionConstants.DELETE, List.of("cron"))
+          .build(),
+      Acl.builder()
+          .owner("anna")
+          .addPermissions(List.of(PermissionConstants.READ))
+          .guest(PermissionConstants.READ, true)
+          .addGroups(PermissionConstants.WRITE, List.of("dev"))
+          .build(),
+      Acl.builder().build());
+
+  /**
+   * Signature count.
+   */
+  @Test
+  void getSignatureCount() {
+    assertThat(new AccessMatrix(USERS).getSignatureCount())
+        .isEqualTo(4);
+  }
+
+  /**
+   * Compute with one permission.
+   *
+   * @param softly the softly
+   */
+  @Test
+  void computeWithPermission(SoftAssertions softly) {
+    AccessMatrix target = new AccessMatrix(USERS, 2, true);
+    for (String permission : PermissionConstants.getAll()) {
+      List<List<AccessMatrix.Row>> chunks;
+      try (Stream<List<AccessMatrix.Row>> stream = target.compute(ACLS.stream(), permission)) {
+        chunks = stream.collect(Collectors.toList());
+      }
+      softly.assertThat(chunks)
+          .hasSize(2);
+      List<AccessMatrix.Row> rows = chunks.stream()
+          .flatMap(List::stream)
+          .collect(Collectors.toList());
+      softly.assertThat(rows)
+          .map(AccessMatrix.Row::getAcl)
+          .containsExactlyElementsOf(ACLS);
+      for (AccessMatrix.Row row : rows) {
+        for (int i = 0; i < USERS.size(); i++) {
+          softly.assertThat(row.isGranted(i))
+              .as("User %s with permission %s on %s", USERS.get(i), permission, row.getAcl())
+              .isEqualTo(AccessEvaluator.of(row.getAcl()).hasPermission(USERS.get(i), permission));
+        }
+      }
+    }
+  }
+
+  /**
+   * Compute with many permissions.
+   *
+   * @param softly the softly
+   */
+  @Test
+  void computeWithPermissions(SoftAssertions softly) {
+    AccessMatrix target = new AccessMatrix(USERS, 1, false);
+    List<String> permissions = List.of(PermissionConstants.READ, PermissionConstants.WRITE);
+    for (AccessEvaluation accessEvaluation : AccessEvaluation.values()) {
+      List<AccessMatrix.Row> rows = target
+          .compute(ACLS.stream(), accessEvaluation, permissions)
+          .flatMap(List::stream)
+          .collect(Collectors.toList());
+      for (AccessMatrix.Row row : rows) {
+        List<AclUserContext> expected = USERS.stream()
+            .filter(user -> AccessEvaluator.of(row.getAcl())
+                .hasPermissions(user, accessEvaluation, permissions))
+            .collect(Collectors.toList());
+        softly.assertThat(row.getGrantedUserContexts())
+            .containsExactlyElementsOf(expected);
+        softly.assertThat(row.getGrantedCount())
+            .isEqualTo(expected.size());
+      }
+    }
+  }
+
+  /**
+   * Evaluate with null.
+   */
+  @Test
+  void evaluateWithNull() {
+    AccessMatrix target = new AccessMatrix(USERS);
+    assertThat(target.evaluate(null, PermissionConstants.READ).isEmpty())
+        .isTrue();
+    assertThat(target.evaluate(ACLS.get(0), null).isEmpty())
+        .isTrue();
+  }
+
+  /**
+   * Instantiate with illegal chunk size.
+   */
+  @Test
+  void instantiateWithIllegalChunkSize() {
+    assertThatExceptionOfType(IllegalArgumentException.class)
+        .isThrownBy(() -> new AccessMatrix(USERS, 0, true));
+  }
+
+}
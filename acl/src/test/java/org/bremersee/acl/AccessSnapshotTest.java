@@ -0,0 +1,204 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.bremersee.acl;
+
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+import java.util.List;
+import java.util.SortedMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.assertj.core.api.SoftAssertions;
+import org.assertj.core.api.junit.jupiter.SoftAssertionsExtension;
+import org.bremersee.acl.AccessSnapshot.KeyMode;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+/**
+ * The access snapshot test.
+ *
+ * @author Christian Bremer
+ */
+@ExtendWith(SoftAssertionsExtension.class)
+class AccessSnapshotTest {
+
+  private static final AclUserContext USER = AclUserContext.builder()
+      .name("anna")
+      .roles(List.of("ROLE_USER"))
+      .build();
+
+  private static Acl createAcl() {
+    return Acl.builder()
+        .owner("junit")
+        .addRoles(PermissionConstants.READ, List.of("ROLE_USER"))
+        .addUsers(PermissionConstants.WRITE, List.of("james"))
+        .build();
+  }
+
+  /**
+   * Has permission with identity.
+   *
+   * @param softly the softly
+   */
+  @Test
+  void hasPermissionWithIdentity(SoftAssertions softly) {
+    Acl acl = createAcl();
+    try (AccessSnapshot target = AccessSnapshot.of(USER)) {
+      softly.assertThat(target.hasPermission(acl, PermissionConstants.READ)).isTrue();
+      softly.assertThat(target.hasPermission(acl, PermissionConstants.WRITE)).isFalse();
+      softly.assertThat(target.hasPermission(acl, PermissionConstants.READ)).isTrue();
+      softly.assertThat(target.hasPermission(acl, PermissionConstants.WRITE)).isFalse();
+      softly.assertThat(target.hasPermission(createAcl(), PermissionConstants.READ)).isTrue();
+      softly.assertThat(target.hasPermission(null, PermissionConstants.READ)).isFalse();
+
+      softly.assertThat(target.getHits()).isEqualTo(2L);
+      softly.assertThat(target.getMisses()).isEqualTo(3L);
+      softly.assertThat(target.size()).isEqualTo(3);
+    }
+  }
+
+  /**
+   * Has permission with fingerprint.
+   *
+   * @param softly the softly
+   */
+  @Test
+  void hasPermissionWithFingerprint(SoftAssertions softly) {
+    try (AccessSnapshot target = new AccessSnapshot(USER, KeyMode.FINGERPRINT, 4)) {
+      softly.assertThat(target.hasPermission(createAcl(), PermissionConstants.READ)).isTrue();
+      softly.assertThat(target.hasPermission(createAcl(), PermissionConstants.READ)).isTrue();
+
+      softly.assertThat(target.getHits()).isEqualTo(1L);
+      softly.assertThat(target.getMisses()).isEqualTo(1L);
+    }
+  }
+
+  /**
+   * Has permission with fingerprint, that is computed once per instance.
+   *
+   * @param softly the softly
+   */
+  @Test
+  void hasPermissionWithFingerprintComputedOnce(SoftAssertions softly) {
+    AtomicInteger hashCodeCalls = new AtomicInteger();
+    Acl acl = createAcl();
+    Acl countingAcl = new Acl() {
+      @Override
+      public String getOwner() {
+        return acl.getOwner();
+      }
+
+      @Override
+      public SortedMap<String, Ace> getPermissionMap() {
+        return acl.getPermissionMap();
+      }
+
+      @Override
+      public boolean equals(Object obj) {
+        return acl.equals(obj);
+      }
+
+      @Override
+      public int hashCode() {
+        hashCodeCalls.incrementAndGet();
+        return acl.hashCode();
+      }
+    };
+    try (AccessSnapshot target = new AccessSnapshot(USER, KeyMode.FINGERPRINT, 4)) {
+      for (int i = 0; i < 3; i++) {
+        for (String permission : PermissionConstants.getAll()) {
+          softly.assertThat(target.hasPermission(countingAcl, permission))
+              .isEqualTo(AccessEvaluator.of(acl).hasPermission(USER, permission));
+        }
+      }
+      softly.assertThat(hashCodeCalls.get())
+          .as("The content of an instance is hashed only once.")
+          .isEqualTo(1);
+      softly.assertThat(target.size())
+          .isEqualTo(PermissionConstants.getAll().size());
+      softly.assertThat(target.getMisses())
+          .isEqualTo(PermissionConstants.getAll().size());
+    }
+  }
+
+  /**
+   * Has permission with many acls.
+   *
+   * @param softly the softly
+   */
+  @Test
+  void hasPermissionWithManyAcls(SoftAssertions softly) {
+    List<Acl> acls = List.of(
+        createAcl(),
+        Acl.builder().owner("anna").build(),
+        Acl.builder().addUsers(PermissionConstants.DELETE, List.of("anna")).build());
+    try (AccessSnapshot target = AccessSnapshot.of(USER)) {
+      for (int i = 0; i < 2; i++) {
+        for (Acl acl : acls) {
+          for (String permission : PermissionConstants.getAll()) {
+            softly.assertThat(target.hasPermission(acl, permission))
+                .isEqualTo(AccessEvaluator.of(acl).hasPermission(USER, permission));
+          }
+        }
+      }
+      int expectedSize = acls.size() * PermissionConstants.getAll().size();
+      softly.assertThat(target.size()).isEqualTo(expectedSize);
+      softly.assertThat(target.getHits()).isEqualTo(expectedSize);
+      softly.assertThat(target.getMisses()).isEqualTo(expectedSize);
+    }
+  }
+
+  /**
+   * Evaluator.
+   *
+   * @param softly the softly
+   */
+  @Test
+  void evaluator(SoftAssertions softly) {
+    Acl acl = createAcl();
+    try (AccessSnapshot target = AccessSnapshot.of(USER)) {
+      AccessEvaluator evaluator = target.evaluator(acl);
+      softly.assertThat(evaluator.hasPermissions(
+              USER,
+              AccessEvaluation.ANY_PERMISSION,
+              List.of(PermissionConstants.WRITE, PermissionConstants.READ)))
+          .isTrue();
+      softly.assertThat(evaluator.hasPermission(
+              AclUserContext.builder().name("james").build(),
+              PermissionConstants.WRITE))
+          .isTrue();
+      softly.assertThat(target.getMisses()).isEqualTo(2L);
+      softly.assertThat(target.hasPermissions(
+              acl,
+              AccessEvaluation.ALL_PERMISSIONS,
+              List.of(PermissionConstants.WRITE, PermissionConstants.READ)))
+          .isFalse();
+      softly.assertThat(target.getHits()).isEqualTo(1L);
+    }
+  }
+
+  /**
+   * Has permission with closed snapshot.
+   */
+  @Test
+  void hasPermissionWithClosedSnapshot() {
+    AccessSnapshot target = AccessSnapshot.of(USER);
+    target.close();
+    assertThatExceptionOfType(IllegalStateException.class)
+        .isThrownBy(() -> target.hasPermission(createAcl(), PermissionConstants.READ));
+  }
+
+}
@@ -17,6 +17,8 @@
 package org.bremersee.acl;
 
 import java.util.List;
+import java.util.SortedSet;
+import java.util.TreeSet;
 import org.assertj.core.api.InstanceOfAssertFactories;
 import org.assertj.core.api.SoftAssertions;
 import org.assertj.core.api.junit.jupiter.SoftAssertionsExtension;
@@ -60,6 +62,36 @@ class AceTest {
         .contains("false");
   }
 
+  /**
+   * Of.
+   *
+   * @param softly the softly
+   */
+  @Test
+  void of(SoftAssertions softly) {
+    SortedSet<String> users = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+    users.addAll(List.of("james", "anna"));
+    Ace actual = Ace.of(true, users, new TreeSet<>(String.CASE_INSENSITIVE_ORDER), new TreeSet<>(
+        String.CASE_INSENSITIVE_ORDER));
+    softly.assertThat(actual)
+        .isEqualTo(Ace.builder().guest(true).addUsers(List.of("anna", "james")).build());
+    users.add("stephen");
+    softly.assertThat(actual.getUsers())
+        .as("The entry doesn't share the given users.")
+        .containsExactly("anna", "james");
+
+    users.add(" ");
+    softly.assertThat(Ace.of(false, users, null, null).getUsers())
+        .containsExactly("anna", "james", "stephen");
+
+    actual = Ace.of(false, new TreeSet<>(List.of("b", "A", " ")), null, null);
+    softly.assertThat(actual.getUsers())
+        .as("The users are copied, because they have another order.")
+        .containsExactly("A", "b");
+    softly.assertThat(actual.getRoles())
+        .isEmpty();
+  }
+
   /**
    * Is guest.
    *
@@ -135,4 +167,30 @@ class AceTest {
     softly.assertThat(actual.toString())
         .contains("2");
   }
-}
\ No newline at end of file
+
+  /**
+   * Contains user, any role and any group.
+   *
+   * @param softly the softly
+   */
+  @Test
+  void containsPrincipals(SoftAssertions softly) {
+    Ace actual = Ace.builder()
+        .users(List.of("anna"))
+        .roles(List.of("ROLE_USER"))
+        .groups(List.of("dev"))
+        .build();
+    softly.assertThat(actual.containsUser("Anna"))
+        .isTrue();
+    softly.assertThat(actual.containsUser(null))
+        .isFalse();
+    softly.assertThat(actual.containsAnyRole(List.of("ROLE_ADMIN", "role_user")))
+        .isTrue();
+    softly.assertThat(actual.containsAnyRole(null))
+        .isFalse();
+    softly.assertThat(actual.containsAnyGroup(List.of("net")))
+        .isFalse();
+    softly.assertThat(actual.containsAnyGroup(List.of("net", "dev")))
+        .isTrue();
+  }
+}
@@ -19,7 +19,10 @@ package org.bremersee.acl;
 import static org.assertj.core.api.Assertions.assertThat;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.SortedMap;
+import java.util.TreeMap;
 import org.assertj.core.api.InstanceOfAssertFactories;
 import org.assertj.core.api.SoftAssertions;
 import org.assertj.core.api.junit.jupiter.SoftAssertionsExtension;
@@ -54,6 +57,37 @@ class AclTest {
     }
   }
 
+  /**
+   * Of.
+   *
+   * @param softly the softly
+   */
+  @Test
+  void of(SoftAssertions softly) {
+    SortedMap<String, Ace> permissionMap = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+    permissionMap.put(PermissionConstants.READ, Ace.builder().guest(true).build());
+    Acl actual = Acl.of("junit", permissionMap);
+    softly.assertThat(actual)
+        .isEqualTo(Acl.builder().owner("junit").guest(PermissionConstants.READ, true).build());
+    softly.assertThat(actual.getPermissionMap().comparator())
+        .as("The permission map is not sorted again.")
+        .isSameAs(String.CASE_INSENSITIVE_ORDER);
+    permissionMap.put(PermissionConstants.WRITE, Ace.empty());
+    softly.assertThat(actual.getPermissionMap())
+        .as("The access control list doesn't share the given map.")
+        .containsOnlyKeys(PermissionConstants.READ);
+
+    permissionMap.put(" ", Ace.empty());
+    softly.assertThat(Acl.of("junit", permissionMap).getPermissionMap())
+        .containsOnlyKeys(PermissionConstants.READ, PermissionConstants.WRITE);
+
+    actual = Acl.of(null, new TreeMap<>(Map.of(" ", Ace.empty())));
+    softly.assertThat(actual.getOwner())
+        .isEqualTo(AclUserContext.ANONYMOUS);
+    softly.assertThat(actual.getPermissionMap())
+        .isEmpty();
+  }
+
   /**
    * Gets owner.
    *
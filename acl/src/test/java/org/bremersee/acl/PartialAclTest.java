@@ -0,0 +1,109 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.bremersee.acl;
+
+import java.util.List;
+import java.util.Optional;
+import org.assertj.core.api.SoftAssertions;
+import org.assertj.core.api.junit.jupiter.SoftAssertionsExtension;
+import org.bremersee.acl.model.AccessControlEntryModifications;
+import org.bremersee.acl.model.AccessControlListModifications;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+/**
+ * The partial acl test.
+ *
+ * @author Christian Bremer
+ */
+@ExtendWith(SoftAssertionsExtension.class)
+class PartialAclTest {
+
+  private static final Acl ACL = Acl.builder()
+      .owner("junit")
+      .addUsers(PermissionConstants.WRITE, List.of("james"))
+      .addRoles(PermissionConstants.READ, List.of("ROLE_USER"))
+      .addGroups(PermissionConstants.DELETE, List.of("cron"))
+      .build();
+
+  /**
+   * Of.
+   *
+   * @param softly the softly
+   */
+  @Test
+  void of(SoftAssertions softly) {
+    PartialAcl actual = PartialAcl.of(ACL, List.of(PermissionConstants.READ, "unknown", " "));
+    softly.assertThat(actual.getOwner())
+        .isEqualTo("junit");
+    softly.assertThat(actual.getIncludedPermissions())
+        .containsExactly(PermissionConstants.READ, "unknown");
+    softly.assertThat(actual.getPermissionMap())
+        .containsOnlyKeys(PermissionConstants.READ);
+    softly.assertThat(actual.isIncluded(PermissionConstants.READ))
+        .isTrue();
+    softly.assertThat(actual.isIncluded(PermissionConstants.WRITE))
+        .isFalse();
+    softly.assertThat(AccessEvaluator.of(actual).hasPermission(
+            AclUserContext.builder().name("anna").roles(List.of("ROLE_USER")).build(),
+            PermissionConstants.READ))
+        .isTrue();
+  }
+
+  /**
+   * Modify.
+   *
+   * @param softly the softly
+   */
+  @Test
+  void modify(SoftAssertions softly) {
+    PartialAcl target = PartialAcl.of(ACL, List.of(PermissionConstants.READ));
+    AclUserContext userContext = AclUserContext.builder().name("junit").build();
+    Optional<Acl> actual = target.modify(
+        AccessControlListModifications.builder()
+            .modifications(List.of(AccessControlEntryModifications.builder()
+                .permission(PermissionConstants.READ)
+                .addAddUsers("anna")
+                .build()))
+            .build(),
+        userContext,
+        AccessEvaluation.ANY_PERMISSION,
+        List.of(PermissionConstants.ADMINISTRATION));
+    softly.assertThat(actual)
+        .hasValueSatisfying(acl -> {
+          softly.assertThat(acl)
+              .isInstanceOf(PartialAcl.class);
+          softly.assertThat(acl.getPermissionMap())
+              .containsOnlyKeys(PermissionConstants.READ);
+          softly.assertThat(acl.getPermissionMap().get(PermissionConstants.READ).getUsers())
+              .containsExactly("anna");
+        });
+
+    softly.assertThatThrownBy(() -> target.modify(
+            AccessControlListModifications.builder()
+                .modifications(List.of(AccessControlEntryModifications.builder()
+                    .permission(PermissionConstants.WRITE)
+                    .addAddUsers("anna")
+                    .build()))
+                .build(),
+            userContext,
+            AccessEvaluation.ANY_PERMISSION,
+            List.of(PermissionConstants.ADMINISTRATION)))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+
+}
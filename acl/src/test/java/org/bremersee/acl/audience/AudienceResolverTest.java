@@ -0,0 +1,213 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.bremersee.acl.audience;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.assertj.core.api.SoftAssertions;
+import org.assertj.core.api.junit.jupiter.SoftAssertionsExtension;
+import org.bremersee.acl.Acl;
+import org.bremersee.acl.PermissionConstants;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+/**
+ * The audience resolver test.
+ *
+ * @author Christian Bremer
+ */
+@ExtendWith(SoftAssertionsExtension.class)
+class AudienceResolverTest {
+
+  private static final PrincipalDirectory DIRECTORY = new InMemoryDirectory(
+      List.of("anna", "cron", "james", "junit", "max", "stephen"),
+      Map.of("ROLE_USER", List.of("anna", "james", "stephen")),
+      Map.of("cron", List.of("cron", "james"), "dev", List.of("max")));
+
+  private static final Acl ACL = Acl.builder()
+      .owner("junit")
+      .addUsers(PermissionConstants.READ, List.of("stephen", "zoe"))
+      .addRoles(PermissionConstants.READ, List.of("ROLE_USER"))
+      .addGroups(PermissionConstants.READ, List.of("cron", "unknown"))
+      .addPermissions(List.of(PermissionConstants.WRITE))
+      .guest(PermissionConstants.WRITE, true)
+      .build();
+
+  private final AudienceResolver target = new AudienceResolver(DIRECTORY);
+
+  /**
+   * Resolve.
+   *
+   * @param softly the softly
+   */
+  @Test
+  void resolve(SoftAssertions softly) {
+    try (Stream<String> actual = target.resolve(ACL, PermissionConstants.READ)) {
+      softly.assertThat(actual)
+          .containsExactly("anna", "cron", "james", "junit", "stephen", "zoe");
+    }
+    try (Stream<String> actual = target.resolve(ACL, PermissionConstants.READ, "james")) {
+      softly.assertThat(actual)
+          .containsExactly("junit", "stephen", "zoe");
+    }
+    try (Stream<String> actual = target.resolve(ACL, PermissionConstants.DELETE)) {
+      softly.assertThat(actual)
+          .containsExactly("junit");
+    }
+    try (Stream<String> actual = target.resolve(ACL, null)) {
+      softly.assertThat(actual)
+          .isEmpty();
+    }
+  }
+
+  /**
+   * Resolve with guest.
+   */
+  @Test
+  void resolveWithGuest() {
+    try (Stream<String> actual = target.resolve(ACL, PermissionConstants.WRITE)) {
+      assertThat(actual)
+          .containsExactly("anna", "cron", "james", "junit", "max", "stephen");
+    }
+  }
+
+  /**
+   * Resolve with mixed case.
+   *
+   * @param softly the softly
+   */
+  @Test
+  void resolveWithMixedCase(SoftAssertions softly) {
+    AudienceResolver resolver = new AudienceResolver(new InMemoryDirectory(
+        List.of("Anna", "ben", "Carl", "dora"),
+        Map.of("ROLE_USER", List.of("Anna", "ben", "Carl")),
+        Map.of("dev", List.of("ANNA", "carl", "Dora"))));
+    Acl acl = Acl.builder()
+        .owner("BEN")
+        .addUsers(PermissionConstants.READ, List.of("anna", "Emil"))
+        .addRoles(PermissionConstants.READ, List.of("ROLE_USER"))
+        .addGroups(PermissionConstants.READ, List.of("dev"))
+        .build();
+    try (Stream<String> actual = resolver.resolve(acl, PermissionConstants.READ)) {
+      softly.assertThat(actual)
+          .map(String::toLowerCase)
+          .containsExactly("anna", "ben", "carl", "dora", "emil");
+    }
+    try (Stream<String> actual = resolver.resolve(acl, PermissionConstants.READ, "CARL")) {
+      softly.assertThat(actual)
+          .map(String::toLowerCase)
+          .containsExactly("dora", "emil");
+    }
+    AudiencePage page = resolver.resolvePage(acl, PermissionConstants.READ, null, 2);
+    softly.assertThat(page.getUsers())
+        .map(String::toLowerCase)
+        .containsExactly("anna", "ben");
+    page = resolver.resolvePage(acl, PermissionConstants.READ, page.getNext().orElseThrow(), 2);
+    softly.assertThat(page.getUsers())
+        .map(String::toLowerCase)
+        .containsExactly("carl", "dora");
+  }
+
+  /**
+   * Resolve page.
+   *
+   * @param softly the softly
+   */
+  @Test
+  void resolvePage(SoftAssertions softly) {
+    AudiencePage page = target.resolvePage(ACL, PermissionConstants.READ, null, 4);
+    softly.assertThat(page.getUsers())
+        .containsExactly("anna", "cron", "james", "junit");
+    softly.assertThat(page.getNext())
+        .hasValue("junit");
+
+    page = target.resolvePage(ACL, PermissionConstants.READ, page.getNext().orElseThrow(), 4);
+    softly.assertThat(page.getUsers())
+        .containsExactly("stephen", "zoe");
+    softly.assertThat(page.getNext())
+        .isEmpty();
+  }
+
+  /**
+   * Resolve page with illegal size.
+   */
+  @Test
+  void resolvePageWithIllegalSize() {
+    assertThatExceptionOfType(IllegalArgumentException.class)
+        .isThrownBy(() -> target.resolvePage(ACL, PermissionConstants.READ, null, 0));
+  }
+
+  /**
+   * The in memory directory.
+   */
+  static class InMemoryDirectory implements PrincipalDirectory {
+
+    private final List<String> users;
+
+    private final Map<String, List<String>> roles;
+
+    private final Map<String, List<String>> groups;
+
+    /**
+     * Instantiates a new in memory directory.
+     *
+     * @param users the users
+     * @param roles the roles
+     * @param groups the groups
+     */
+    InMemoryDirectory(
+        List<String> users,
+        Map<String, List<String>> roles,
+        Map<String, List<String>> groups) {
+      this.users = users;
+      this.roles = roles;
+      this.groups = groups;
+    }
+
+    @Override
+    public Stream<String> findAllUsers(String after) {
+      return find(users, after);
+    }
+
+    @Override
+    public Stream<String> findUsersByRole(String role, String after) {
+      return find(roles.getOrDefault(role, List.of()), after);
+    }
+
+    @Override
+    public Stream<String> findUsersByGroup(String group, String after) {
+      return find(groups.getOrDefault(group, List.of()), after);
+    }
+
+    private static Stream<String> find(List<String> users, String after) {
+      TreeSet<String> sortedUsers = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+      sortedUsers.addAll(users);
+      return sortedUsers.stream()
+          .filter(user -> Objects.isNull(after) || user.compareToIgnoreCase(after) > 0)
+          .collect(Collectors.toList())
+          .stream();
+    }
+  }
+
+}
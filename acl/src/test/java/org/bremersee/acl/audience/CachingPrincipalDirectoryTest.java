@@ -0,0 +1,106 @@
+/*
+ * Copyright 2022 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.bremersee.acl.audience;
+
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.stream.Stream;
+import org.assertj.core.api.SoftAssertions;
+import org.assertj.core.api.junit.jupiter.SoftAssertionsExtension;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+/**
+ * The caching principal directory test.
+ *
+ * @author Christian Bremer
+ */
+@ExtendWith(SoftAssertionsExtension.class)
+class CachingPrincipalDirectoryTest {
+
+  /**
+   * Find users by role.
+   *
+   * @param softly the softly
+   */
+  @Test
+  void findUsersByRole(SoftAssertions softly) {
+    PrincipalDirectory directory = mock(PrincipalDirectory.class);
+    when(directory.findUsersByRole(anyString(), isNull()))
+        .thenAnswer(invocation -> Stream.of("anna", "james", "stephen"));
+    CachingPrincipalDirectory target = new CachingPrincipalDirectory(directory, 10, 10);
+
+    softly.assertThat(target.findUsersByRole("ROLE_USER", null))
+        .containsExactly("anna", "james", "stephen");
+    softly.assertThat(target.findUsersByRole("ROLE_USER", "anna"))
+        .containsExactly("james", "stephen");
+    softly.assertThat(target.findUsersByRole("ROLE_USER", "ben"))
+        .containsExactly("james", "stephen");
+    softly.assertThat(target.findUsersByRole("ROLE_USER", "ANNA"))
+        .containsExactly("james", "stephen");
+    verify(directory, times(1)).findUsersByRole("ROLE_USER", null);
+
+    target.invalidateRole("ROLE_USER");
+    softly.assertThat(target.findUsersByRole("ROLE_USER", null))
+        .containsExactly("anna", "james", "stephen");
+    verify(directory, times(2)).findUsersByRole("ROLE_USER", null);
+  }
+
+  /**
+   * Find users by group that is too large.
+   *
+   * @param softly the softly
+   */
+  @Test
+  void findUsersByGroupThatIsTooLarge(SoftAssertions softly) {
+    PrincipalDirectory directory = mock(PrincipalDirectory.class);
+    when(directory.findUsersByGroup(anyString(), any()))
+        .thenAnswer(invocation -> Stream.of("anna", "james", "stephen"));
+    CachingPrincipalDirectory target = new CachingPrincipalDirectory(directory, 10, 2);
+
+    softly.assertThat(target.findUsersByGroup("cron", null))
+        .containsExactly("anna", "james", "stephen");
+    softly.assertThat(target.findUsersByGroup("cron", null))
+        .containsExactly("anna", "james", "stephen");
+    verify(directory, times(3)).findUsersByGroup("cron", null);
+
+    target.invalidateAll();
+    softly.assertThat(target.findUsersByGroup("cron", null))
+        .containsExactly("anna", "james", "stephen");
+    verify(directory, times(5)).findUsersByGroup("cron", null);
+  }
+
+  /**
+   * Instantiate with illegal arguments.
+   */
+  @Test
+  void instantiateWithIllegalArguments() {
+    PrincipalDirectory directory = mock(PrincipalDirectory.class);
+    assertThatExceptionOfType(IllegalArgumentException.class)
+        .isThrownBy(() -> new CachingPrincipalDirectory(directory, 0, 10));
+    assertThatExceptionOfType(IllegalArgumentException.class)
+        .isThrownBy(() -> new CachingPrincipalDirectory(directory, 10, -1));
+  }
+
+}